@@ -11,10 +11,13 @@
 package org.eclipse.jdt.core.groovy.tests.builder;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import groovy.lang.GroovyClassLoader;
+
 import junit.framework.Test;
 
 import org.codehaus.groovy.ast.ClassHelper;
@@ -28,6 +31,10 @@ import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
 import org.codehaus.groovy.ast.expr.Expression;
 import org.codehaus.groovy.ast.stmt.ReturnStatement;
 import org.codehaus.groovy.vmplugin.VMPluginFactory;
+import org.codehaus.jdt.groovy.control.ParseResultCache;
+import org.codehaus.jdt.groovy.internal.BuildChunker;
+import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyClassLoaderPool;
+import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyParser;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTClassNode;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
@@ -60,6 +67,11 @@ public class BasicGroovyBuildTests extends GroovierBuilderTests {
 	public static Test suite() {
 		return buildTestSuite(BasicGroovyBuildTests.class);
 	} 
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		BuildChunker.resetStatistics();
+	}
 	
 	/**
 	 * Testing that the classpath computation works for multi dependent
@@ -2392,6 +2404,249 @@ public class BasicGroovyBuildTests extends GroovierBuilderTests {
 		// assertEquals(filesize,filesizeNow);
 	}
 
+	public void testBuildWithParseResultCache() throws Exception {
+		boolean wasEnabled = ParseResultCache.enabled;
+		ParseResultCache.enabled = true;
+		try {
+			IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+			env.addExternalJars(projectPath, Util.getJavaClassLibs());
+			env.addGroovyJars(projectPath);
+			fullBuild(projectPath);
+
+			// remove old package fragment root so that names don't collide
+			env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+			IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+			env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+			env.addGroovyClass(root, "p1", "Hello", "package p1;\n"
+					+ "/** the class */\n" + "class Hello {\n" + "   // the method\n" + "   static void main(String[] args) {\n"
+					+ "      print \"Hello Groovy world\"\n" + "   }\n" + "}\n");
+
+			ParseResultCache.resetStatistics();
+			incrementalBuild(projectPath);
+			expectingCompiledClassesV("p1.Hello");
+			expectingNoProblems();
+			executeClass(projectPath, "p1.Hello", "Hello Groovy world", null);
+			assertTrue("Should have looked the file up", ParseResultCache.getMissCount() > 0);
+
+			ParseResultCache.waitForWrites();
+			assertTrue("Parse result should have been written", ParseResultCache.getWriteCount() > 0);
+			File cacheFolder = env.getProject(projectPath).getWorkingLocation("org.eclipse.jdt.groovy.core")
+					.append("parsecache").toFile();
+			String[] entries = cacheFolder.list();
+			assertTrue("Parse result should have been cached", entries != null && entries.length > 0);
+
+			// second build is served from the cache and must produce the same result
+			ParseResultCache.resetStatistics();
+			fullBuild(projectPath);
+			expectingCompiledClassesV("p1.Hello");
+			expectingNoProblems();
+			executeClass(projectPath, "p1.Hello", "Hello Groovy world", null);
+			assertTrue("Should have skipped parsing Hello", ParseResultCache.getHitCount() > 0);
+			assertEquals("Nothing should have been parsed", 0, ParseResultCache.getMissCount());
+		} finally {
+			ParseResultCache.enabled = wasEnabled;
+		}
+	}
+
+	public void testParallelParseProducesIdenticalClassFiles() throws Exception {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		fullBuild(projectPath);
+
+		// remove old package fragment root so that names don't collide
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		// enough units for the compiler to work through them as a batch
+		int count = 15;
+		for (int i = 0; i < count; i++) {
+			env.addGroovyClass(root, "p1", "Type" + i, "package p1\n" + "class Type" + i + (i > 0 ? " extends Type" + (i - 1) : "")
+					+ " {\n" + "  String name" + i + " = 'type" + i + "'\n" + "  def closure" + i + " = { it * " + i + " }\n"
+					+ "  List<String> names() { [name" + i + "] }\n" + "}\n");
+		}
+
+		boolean wasParallel = GroovyParser.parallelParse;
+		int threads = GroovyParser.parallelParseThreads;
+		// the batch is only handed to the parser when the compiler reads sources on worker threads
+		String singleThread = System.getProperty("jdt.compiler.useSingleThread");
+		try {
+			System.setProperty("jdt.compiler.useSingleThread", "false");
+			GroovyParser.parallelParseThreads = 4;
+
+			GroovyParser.parallelParse = false;
+			int parsedAhead = GroovyParser.getParsedAheadCount();
+			fullBuild(projectPath);
+			expectingNoProblems();
+			assertEquals("Nothing should be parsed ahead", parsedAhead, GroovyParser.getParsedAheadCount());
+			byte[][] sequential = readClassFiles(projectPath, count);
+
+			GroovyParser.parallelParse = true;
+			parsedAhead = GroovyParser.getParsedAheadCount();
+			fullBuild(projectPath);
+			expectingNoProblems();
+			assertEquals("Every unit should be parsed ahead", parsedAhead + count, GroovyParser.getParsedAheadCount());
+			byte[][] parallel = readClassFiles(projectPath, count);
+
+			for (int i = 0; i < count; i++) {
+				assertTrue("Class file for p1.Type" + i + " differs when parsing in parallel",
+						Arrays.equals(sequential[i], parallel[i]));
+			}
+		} finally {
+			GroovyParser.parallelParse = wasParallel;
+			GroovyParser.parallelParseThreads = threads;
+			if (singleThread == null) {
+				System.clearProperty("jdt.compiler.useSingleThread");
+			} else {
+				System.setProperty("jdt.compiler.useSingleThread", singleThread);
+			}
+		}
+	}
+
+	private byte[][] readClassFiles(IPath projectPath, int count) throws Exception {
+		File outputFolder = new File(env.getWorkspaceRootPath().append(env.getOutputLocation(projectPath)).toOSString(), "p1");
+		byte[][] contents = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			contents[i] = org.eclipse.jdt.internal.compiler.util.Util.getFileByteContent(new File(outputFolder, "Type" + i
+					+ ".class"));
+		}
+		return contents;
+	}
+
+	public void testChunkedBuild() throws Exception {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		fullBuild(projectPath);
+
+		// remove old package fragment root so that names don't collide
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		// a groovy hierarchy with a java client, each compiled after the types it refers to
+		for (int i = 0; i < 4; i++) {
+			env.addGroovyClass(root, "p1", "Groovy" + i, "package p1\n" + "class Groovy" + i
+					+ (i > 0 ? " extends Groovy" + (i - 1) : "") + " {\n" + "  int value" + i + " = " + i + "\n" + "}\n");
+		}
+		env.addClass(root, "p1", "Client", "package p1;\n" + "public class Client {\n"
+				+ "  public int sum(Groovy3 g) { return g.getValue0() + g.getValue3(); }\n" + "}\n");
+		// unrelated java and groovy types
+		for (int i = 0; i < 4; i++) {
+			env.addClass(root, "p2", "Java" + i, "package p2;\n" + "public class Java" + i + " {\n"
+					+ (i > 0 ? "  Java" + (i - 1) + " previous;\n" : "") + "}\n");
+		}
+		env.addGroovyClass(root, "p3", "Script", "package p3\n" + "class Other { }\n" + "println new Other()\n");
+		env.addClass(root, "p3", "UsesOther", "package p3;\n" + "public class UsesOther {\n" + "  Other other;\n" + "}\n");
+
+		boolean wasEnabled = BuildChunker.ENABLED;
+		int maxAtOnce = AbstractImageBuilder.MAX_AT_ONCE;
+		try {
+			BuildChunker.ENABLED = true;
+			AbstractImageBuilder.MAX_AT_ONCE = 3;
+			fullBuild(projectPath);
+			expectingNoProblems();
+			// no files refer to each other in a cycle, so the 12 files fill 4 batches
+			assertEquals("Unexpected number of batches", 4, BuildChunker.getChunkCount());
+			assertEquals(3, BuildChunker.getLargestChunkSize());
+			expectingCompiledClassesV("p1.Groovy0", "p1.Groovy1", "p1.Groovy2", "p1.Groovy3", "p1.Client", "p2.Java0",
+					"p2.Java1", "p2.Java2", "p2.Java3", "p3.Script", "p3.Other", "p3.UsesOther");
+		} finally {
+			BuildChunker.ENABLED = wasEnabled;
+			AbstractImageBuilder.MAX_AT_ONCE = maxAtOnce;
+		}
+	}
+
+	public void testChunkedBuildWithCommonType() throws Exception {
+		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
+		env.addExternalJars(projectPath, Util.getJavaClassLibs());
+		env.addGroovyJars(projectPath);
+		fullBuild(projectPath);
+
+		// remove old package fragment root so that names don't collide
+		env.removePackageFragmentRoot(projectPath, ""); //$NON-NLS-1$
+
+		IPath root = env.addPackageFragmentRoot(projectPath, "src"); //$NON-NLS-1$
+		env.setOutputFolder(projectPath, "bin"); //$NON-NLS-1$
+
+		// a type that every other file refers to must not pull them all into one batch
+		env.addGroovyClass(root, "util", "Util", "package util\n" + "class Util {\n" + "  static String name(Object o) { o.class.name }\n"
+				+ "}\n");
+		for (int i = 0; i < 4; i++) {
+			env.addGroovyClass(root, "p1", "Groovy" + i, "package p1\n" + "import util.Util\n" + "class Groovy" + i + " {\n"
+					+ "  String name = Util.name(this)\n" + "}\n");
+			env.addClass(root, "p2", "Java" + i, "package p2;\n" + "import util.*;\n" + "public class Java" + i + " {\n"
+					+ "  String name() { return Util.name(this); }\n" + "}\n");
+		}
+		// a cycle is compiled in one batch
+		env.addGroovyClass(root, "p3", "Ping", "package p3\n" + "class Ping { Pong pong }\n");
+		env.addClass(root, "p3", "Pong", "package p3;\n" + "public class Pong { Ping ping; }\n");
+		// the same simple name in another package is not a reference
+		env.addClass(root, "p4", "Util", "package p4;\n" + "public class Util { }\n");
+
+		boolean wasEnabled = BuildChunker.ENABLED;
+		int maxAtOnce = AbstractImageBuilder.MAX_AT_ONCE;
+		try {
+			BuildChunker.ENABLED = true;
+			AbstractImageBuilder.MAX_AT_ONCE = 3;
+			fullBuild(projectPath);
+			expectingNoProblems();
+			// 12 files in batches of at most 3, depending on where the cycle falls
+			int chunks = BuildChunker.getChunkCount();
+			assertTrue("Unexpected number of batches: " + chunks, chunks == 4 || chunks == 5);
+			assertEquals(3, BuildChunker.getLargestChunkSize());
+			expectingCompiledClassesV("util.Util", "p1.Groovy0", "p1.Groovy1", "p1.Groovy2", "p1.Groovy3", "p2.Java0",
+					"p2.Java1", "p2.Java2", "p2.Java3", "p3.Ping", "p3.Pong", "p4.Util");
+		} finally {
+			BuildChunker.ENABLED = wasEnabled;
+			AbstractImageBuilder.MAX_AT_ONCE = maxAtOnce;
+		}
+	}
+
+	public void testClassLoaderPool() throws Exception {
+		File tmp = new File(System.getProperty("java.io.tmpdir"));
+		String classpath = new File(tmp, "pool1").getPath() + File.pathSeparator + new File(tmp, "pool2").getPath();
+		// the same entries spelled differently result in the same loader
+		String sameClasspath = classpath + File.pathSeparator + new File(new File(tmp, "pool1"), ".").getPath();
+
+		int created = GroovyClassLoaderPool.getCreatedCount(), closed = GroovyClassLoaderPool.getClosedCount();
+		GroovyClassLoader loader = GroovyClassLoaderPool.acquire(classpath);
+		assertSame(loader, GroovyClassLoaderPool.acquire(sameClasspath));
+		assertEquals(2, GroovyClassLoaderPool.getReferenceCount(loader));
+		assertEquals(created + 1, GroovyClassLoaderPool.getCreatedCount());
+
+		// released but still reusable, so the loader stays pooled
+		GroovyClassLoaderPool.release(loader, true);
+		GroovyClassLoaderPool.closeUnused();
+		assertEquals(1, GroovyClassLoaderPool.getReferenceCount(loader));
+
+		GroovyClassLoaderPool.release(loader, false);
+		GroovyClassLoader replacement = GroovyClassLoaderPool.acquire(classpath);
+		assertNotSame(loader, replacement);
+		GroovyClassLoaderPool.release(replacement, false);
+		GroovyClassLoaderPool.closeUnused();
+		assertEquals(-1, GroovyClassLoaderPool.getReferenceCount(loader));
+		assertEquals(-1, GroovyClassLoaderPool.getReferenceCount(replacement));
+		assertEquals(closed + 2, GroovyClassLoaderPool.getClosedCount());
+
+		// a loader that a compilation still uses is not closed when its project lets go of it
+		GroovyClassLoader used = GroovyClassLoaderPool.acquire(classpath);
+		Object compilation = new Object();
+		GroovyClassLoaderPool.addUser(used, compilation);
+		GroovyClassLoaderPool.release(used, false);
+		GroovyClassLoaderPool.closeUnused();
+		assertEquals(1, GroovyClassLoaderPool.getUserCount(used));
+		assertEquals(closed + 2, GroovyClassLoaderPool.getClosedCount());
+		GroovyClassLoaderPool.removeUser(used, compilation);
+		assertEquals(-1, GroovyClassLoaderPool.getUserCount(used));
+		assertEquals(closed + 3, GroovyClassLoaderPool.getClosedCount());
+	}
+
 	// build .groovy file hello world then run it
 	public void testBuildGroovyHelloWorld() throws Exception {
 		IPath projectPath = env.addProject("Project"); //$NON-NLS-1$
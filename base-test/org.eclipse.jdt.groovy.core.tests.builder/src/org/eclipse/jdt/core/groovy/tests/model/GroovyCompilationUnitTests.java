@@ -16,8 +16,21 @@ import java.util.HashMap;
 
 import junit.framework.Test;
 
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.jdt.groovy.internal.compiler.ast.SharedTypeDescriptorCache;
+import org.codehaus.jdt.groovy.model.ElementInfoMover;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.codehaus.jdt.groovy.model.IncrementalReconciler;
 import org.codehaus.jdt.groovy.model.ModuleNodeMapper;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
@@ -29,6 +42,7 @@ import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMemberValuePair;
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
@@ -202,7 +216,124 @@ public class GroovyCompilationUnitTests extends AbstractGroovyTypeRootTests {
         unit1.discardWorkingCopy();
         assertTrue("Multiple calls to getModuleNode should return the same object after a call to reconcile with no force problem detection", node1 == node2);
     }
-    
+
+    public void testModuleNodeMapperStatistics() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        unit1.becomeWorkingCopy(null);
+        ModuleNodeMapper.resetStatistics();
+        ModuleNode node1 = unit1.getModuleNode();
+        ModuleNode node2 = unit1.getModuleNode();
+        unit1.discardWorkingCopy();
+        assertTrue("Multiple calls to getModuleNode should return the same object if nothing has changed underneath", node1 == node2);
+        assertEquals("Both calls to getModuleNode should be cache hits\n" + ModuleNodeMapper.getStatistics(), 2, ModuleNodeMapper.getHitCount());
+        assertEquals("No call to getModuleNode should be a cache miss\n" + ModuleNodeMapper.getStatistics(), 0, ModuleNodeMapper.getMissCount());
+    }
+
+    public void testSharedTypeDescriptorsAcrossReconciles() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        SharedTypeDescriptorCache.invalidateAll();
+        ClassNode list = unit1.getNewModuleInfo().resolver.resolve("java.util.ArrayList");
+        assertTrue("ArrayList declares no such method", list.getDeclaredMethods("noSuchMethod").isEmpty());
+        SharedTypeDescriptorCache.resetStatistics();
+
+        // a new reconcile builds new nodes, but knows what ArrayList declares without initializing its members
+        ClassNode other = unit1.getNewModuleInfo().resolver.resolve("java.util.ArrayList");
+        assertNotSame("Class nodes should not be shared between compilations", list, other);
+        assertTrue("ArrayList declares no such method", other.getDeclaredMethods("noSuchMethod").isEmpty());
+        assertNull("ArrayList declares no such field", other.getDeclaredField("noSuchField"));
+        assertTrue("A second reconcile should reuse the descriptor built by the first", SharedTypeDescriptorCache.getHitCount() > 0);
+        assertFalse("ArrayList declares add", other.getDeclaredMethods("add").isEmpty());
+
+        // members added to a node are found even though the descriptor does not know them
+        ClassNode added = unit1.getNewModuleInfo().resolver.resolve("java.util.ArrayList");
+        added.addMethod(new MethodNode("addedMethod", ClassNode.ACC_PUBLIC, ClassHelper.VOID_TYPE, Parameter.EMPTY_ARRAY,
+                ClassNode.EMPTY_ARRAY, null));
+        added.addField(new FieldNode("addedField", ClassNode.ACC_PUBLIC, ClassHelper.OBJECT_TYPE, added, null));
+        assertEquals(1, added.getDeclaredMethods("addedMethod").size());
+        assertNotNull(added.getDeclaredField("addedField"));
+
+        // a change to any classpath starts over with new descriptors
+        String classpath = groovyFile.getProject().getLocation().append("lib.jar").toOSString();
+        SharedTypeDescriptorCache cache = SharedTypeDescriptorCache.forClasspath(classpath);
+        assertSame(cache, SharedTypeDescriptorCache.forClasspath(classpath));
+        SharedTypeDescriptorCache.classpathChanged();
+        assertNotSame("Descriptors of an earlier classpath generation should not be used", cache,
+                SharedTypeDescriptorCache.forClasspath(classpath));
+    }
+
+    public void testIncrementalReconcileOfMethodBody() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        boolean wasEnabled = IncrementalReconciler.enabled;
+        IncrementalReconciler.enabled = true;
+        ModuleNode node1, node2;
+        MethodNode oldMain;
+        int classEnd, typeEnd, newTypeEnd;
+        long incrementalCount, moveCount;
+        try {
+            unit1.becomeWorkingCopy(null);
+            node1 = unit1.getModuleNode();
+            oldMain = node1.getClasses().get(0).getMethods("main").get(0);
+            classEnd = node1.getClasses().get(0).getEnd();
+            typeEnd = sourceEnd(unit1.getTypes()[0]);
+            incrementalCount = IncrementalReconciler.getIncrementalCount();
+            moveCount = ElementInfoMover.getMoveCount();
+            unit1.getBuffer().replace(unit1.getSource().indexOf("Hello world"), "Hello".length(), "Goodbye");
+            node2 = unit1.getModuleNode();
+            newTypeEnd = sourceEnd(unit1.getTypes()[0]);
+            unit1.discardWorkingCopy();
+        } finally {
+            IncrementalReconciler.enabled = wasEnabled;
+        }
+
+        assertTrue("An edit inside of a method body should update the cached module node", node1 == node2);
+        assertEquals("The edit should have been applied incrementally", incrementalCount + 1, IncrementalReconciler.getIncrementalCount());
+        assertEquals("The structure should have been moved rather than parsed", moveCount + 1, ElementInfoMover.getMoveCount());
+        ClassNode clazz = node2.getClasses().get(0);
+        MethodNode main = clazz.getMethods("main").get(0);
+        assertNotSame("The edited method should have been replaced rather than changed", oldMain, main);
+        assertEquals("Hello world", printed(oldMain));
+        assertEquals("Goodbye world", printed(main));
+        assertEquals("Nodes after the edit should have moved", classEnd + 2, clazz.getEnd());
+        assertEquals("Elements after the edit should have moved", typeEnd + 2, newTypeEnd);
+    }
+
+    public void testIncrementalReconcileOfCommentFallsBack() throws Exception {
+        IFile groovyFile = createSimpleGroovyProject();
+        GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
+        boolean wasEnabled = IncrementalReconciler.enabled;
+        IncrementalReconciler.enabled = true;
+        ModuleNode node1, node2;
+        long incrementalCount;
+        try {
+            unit1.becomeWorkingCopy(null);
+            node1 = unit1.getModuleNode();
+            incrementalCount = IncrementalReconciler.getIncrementalCount();
+            // a task tag has to be reported by a full reconcile
+            unit1.getBuffer().replace(unit1.getSource().indexOf("print"), 0, "// TODO\n      ");
+            node2 = unit1.getModuleNode();
+            unit1.discardWorkingCopy();
+        } finally {
+            IncrementalReconciler.enabled = wasEnabled;
+        }
+
+        assertTrue("An edit of a comment should create a new module node", node1 != node2);
+        assertEquals(incrementalCount, IncrementalReconciler.getIncrementalCount());
+    }
+
+    private static int sourceEnd(IType type) throws JavaModelException {
+        ISourceRange range = type.getSourceRange();
+        return range.getOffset() + range.getLength();
+    }
+
+    private static Object printed(MethodNode method) {
+        ExpressionStatement statement = (ExpressionStatement) ((BlockStatement) method.getCode()).getStatements().get(0);
+        ArgumentListExpression arguments = (ArgumentListExpression) ((MethodCallExpression) statement.getExpression()).getArguments();
+        return ((ConstantExpression) arguments.getExpression(0)).getValue();
+    }
+
     public void testGetNewModuleNode() throws Exception {
         IFile groovyFile = createSimpleGroovyProject();
         GroovyCompilationUnit unit1 = (GroovyCompilationUnit) JavaCore.createCompilationUnitFrom(groovyFile);
@@ -17,10 +17,19 @@
  */
 package org.eclipse.jdt.core.groovy.tests.search;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.zip.ZipFile;
 
 import junit.framework.Test;
 
+import org.codehaus.jdt.groovy.integration.ISupplementalIndexer;
+import org.codehaus.jdt.groovy.integration.internal.BinaryGroovySupplementalIndexer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
@@ -37,6 +46,7 @@ import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.search.SearchMatch;
 import org.eclipse.jdt.core.search.SearchParticipant;
 import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 
 /** 
  * Tests for searches into class files
@@ -178,6 +188,37 @@ public class BinarySearchTests extends AbstractGroovySearchTest {
     	assertMatches(toFind, requestor, 2, 1);
     }
     
+	public void testNamedReferences() throws Exception {
+		Path libFolder = new Path(FileLocator.resolve(Platform.getBundle("org.eclipse.jdt.groovy.core.tests.builder").getEntry("lib")).getFile());
+		ZipFile jar = new ZipFile(libFolder.append("binGroovySearch.jar").toFile());
+		byte[] contents;
+		try {
+			InputStream in = jar.getInputStream(jar.getEntry("pack/AGroovyClass.class"));
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int read; (read = in.read(buffer)) != -1;) {
+				out.write(buffer, 0, read);
+			}
+			in.close();
+			contents = out.toByteArray();
+		} finally {
+			jar.close();
+		}
+		final List<String> references = new ArrayList<String>();
+		new BinaryGroovySupplementalIndexer().extractNamedReferences(contents, new ClassFileReader(contents, null),
+				new ISupplementalIndexer.IReferenceRequestor() {
+					public void acceptReference(char[] reference) {
+						references.add(String.valueOf(reference));
+					}
+				});
+		// each part of a dotted name is reported, and only once
+		assertEquals(references.toString(), new HashSet<String>(references).size(), references.size());
+		assertTrue(references.toString(), references.containsAll(Arrays.asList("pack", "AGroovyClass", "name_1", "age_1", "doit",
+				"referencedInInitializer", "fieldInInitializer", "println")));
+		assertFalse(references.toString(), references.contains(""));
+		assertFalse(references.toString(), references.contains("pack.AGroovyClass"));
+	}
+
 	private void assertMatches(String toFind, MockSearchRequestor requestor,
 			int allMatches, int firstMatches) {
 		
@@ -24,6 +24,7 @@ import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.eclipse.jdt.core.tests.util.GroovyUtils;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
+import org.eclipse.jdt.groovy.search.TypeMemberCache;
 
 /**
  * Lots of tests to see that expressions have the proper type associated with them
@@ -164,6 +165,16 @@ public class InferencingTests extends AbstractInferencingTest {
         assertType(contents, start, end, "java.lang.Integer");
     }
     
+    // the members of Foo are looked up once per module, later references are answered from the cache
+    public void testRepeatedPropertyReferences() throws Exception {
+        String contents = "class Foo { String name }\n def f = new Foo()\n f.name\n f.name\n f.name.length()";
+        TypeMemberCache.resetStatistics();
+        int start = contents.lastIndexOf("name");
+        int end = start + "name".length();
+        assertType(contents, start, end, "java.lang.String");
+        assertTrue("Expected member lookups to be answered from the cache", TypeMemberCache.getHitCount() > 0);
+    }
+
     public void testInferString1() throws Exception {
         assertType("\"10\"", "java.lang.String");
     }
@@ -16,11 +16,14 @@
 
 package org.eclipse.jdt.core.groovy.tests.search;
 
+import java.io.ByteArrayInputStream;
 import java.util.List;
 
 import junit.framework.Test;
 
+import org.codehaus.jdt.groovy.integration.internal.GroovyLanguageSupport;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IMethod;
@@ -30,6 +33,7 @@ import org.eclipse.jdt.core.search.SearchEngine;
 import org.eclipse.jdt.core.search.SearchMatch;
 import org.eclipse.jdt.core.search.SearchParticipant;
 import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.groovy.search.InferredReferenceIndex;
 import org.eclipse.jdt.internal.core.Openable;
 
 /**
@@ -309,6 +313,40 @@ public class MethodReferenceSearchTests extends AbstractGroovySearchTest {
         assertEquals("Should have found 4 matches in Other.groovy", 4, otherCnt);
     }
     
+    public void testInferredReferenceIndex() throws Exception {
+        GroovyCompilationUnit first = createUnit("First", FIRST_CONTENTS_CLASS_FOR_METHODS);
+        GroovyCompilationUnit second = createUnit("Second", "new First().xxx()");
+        SearchPattern xxx = SearchPattern.createPattern(first.getType("First").getMethod("xxx", new String[0]),
+                IJavaSearchConstants.REFERENCES);
+        SearchPattern yyy = SearchPattern.createPattern("yyy", IJavaSearchConstants.METHOD, IJavaSearchConstants.REFERENCES,
+                SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE);
+        MockPossibleMatch possibleMatch = new MockPossibleMatch(second);
+        boolean wasEnabled = InferredReferenceIndex.enabled;
+        InferredReferenceIndex.enabled = true;
+        try {
+            InferredReferenceIndex index = InferredReferenceIndex.getDefault();
+            // nothing is known about the file before it has been searched
+            assertFalse(index.canSkip(possibleMatch, yyy));
+            MockSearchRequestor requestor = new MockSearchRequestor();
+            assertTrue(new GroovyLanguageSupport().maybePerformDelegatedSearch(possibleMatch, xxx, requestor));
+            assertEquals("Incorrect number of matches:\n" + requestor.matches, 1, requestor.matches.size());
+
+            assertTrue(index.canSkip(possibleMatch, yyy));
+            assertFalse(index.canSkip(possibleMatch, xxx));
+            long skipped = index.getSkippedCount();
+            requestor = new MockSearchRequestor();
+            assertTrue(new GroovyLanguageSupport().maybePerformDelegatedSearch(possibleMatch, yyy, requestor));
+            assertEquals(0, requestor.matches.size());
+            assertEquals(skipped + 1, index.getSkippedCount());
+
+            // a change to the file makes its entry stale
+            ((IFile) second.getResource()).setContents(new ByteArrayInputStream("new First().yyy()".getBytes()), true, false, null);
+            assertFalse(index.canSkip(possibleMatch, yyy));
+        } finally {
+            InferredReferenceIndex.enabled = wasEnabled;
+        }
+    }
+
     private void doTestForTwoMethodReferencesInScript(String secondContents) throws JavaModelException {
         doTestForTwoMethodReferences(FIRST_CONTENTS_CLASS_FOR_METHODS, secondContents, true, 3, "xxx");
     }
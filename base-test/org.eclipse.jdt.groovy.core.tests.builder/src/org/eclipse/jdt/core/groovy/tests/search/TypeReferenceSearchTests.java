@@ -22,6 +22,8 @@ import java.util.List;
 
 import junit.framework.Test;
 
+import org.codehaus.jdt.groovy.integration.internal.DelegatedSearchBatch;
+import org.codehaus.jdt.groovy.integration.internal.GroovyLanguageSupport;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -37,6 +39,7 @@ import org.eclipse.jdt.core.search.SearchMatch;
 import org.eclipse.jdt.core.search.SearchParticipant;
 import org.eclipse.jdt.core.search.SearchPattern;
 import org.eclipse.jdt.core.search.SearchRequestor;
+import org.eclipse.jdt.internal.core.search.matching.PossibleMatch;
 
 /**
  * @author Andrew Eisenberg
@@ -387,6 +390,75 @@ public class TypeReferenceSearchTests extends AbstractGroovySearchTest {
     	assertEquals("Wrong number of matches found\n" + matches, 3, matches.size());
     }
     
+    public void testParallelDelegatedSearch() throws Exception {
+        GroovyCompilationUnit first = createUnit("First", FIRST_CONTENTS_CLASS);
+        SearchPattern pattern = SearchPattern.createPattern(first.getType("First"), IJavaSearchConstants.REFERENCES);
+        PossibleMatch[] possibleMatches = new PossibleMatch[6];
+        for (int i = 0; i < possibleMatches.length; i++) {
+            possibleMatches[i] = new MockPossibleMatch(createUnit("Second" + i, "First f = new First()"));
+        }
+        String sequential = searchInOrder(possibleMatches, pattern, false);
+        assertEquals("Wrong number of matches found\n" + sequential, 12, sequential.split("\n").length);
+        // matches must be reported in the same order, whichever thread found them
+        for (int i = 0; i < 3; i++) {
+            assertEquals(sequential, searchInOrder(possibleMatches, pattern, true));
+        }
+    }
+
+    public void testParallelSearchFinishedEarly() throws Exception {
+        GroovyCompilationUnit first = createUnit("First", FIRST_CONTENTS_CLASS);
+        SearchPattern pattern = SearchPattern.createPattern(first.getType("First"), IJavaSearchConstants.REFERENCES);
+        PossibleMatch[] possibleMatches = new PossibleMatch[4];
+        for (int i = 0; i < possibleMatches.length; i++) {
+            possibleMatches[i] = new MockPossibleMatch(createUnit("Second" + i, "First f = new First()"));
+        }
+        String expected = searchInOrder(possibleMatches, pattern, false);
+        boolean wasEnabled = DelegatedSearchBatch.enabled;
+        DelegatedSearchBatch.enabled = true;
+        try {
+            GroovyLanguageSupport support = new GroovyLanguageSupport();
+            support.prepareDelegatedSearch(possibleMatches, 0, possibleMatches.length, pattern, null);
+            SearchRequestor ignored = new SearchRequestor() {
+                @Override
+                public void acceptSearchMatch(SearchMatch match) {
+                }
+            };
+            assertTrue(support.maybePerformDelegatedSearch(possibleMatches[0], pattern, ignored));
+            // the rest of the batch is dropped, so a later search of the same files is not served from it
+            support.finishDelegatedSearch();
+        } finally {
+            DelegatedSearchBatch.enabled = wasEnabled;
+        }
+        assertEquals(expected, searchInOrder(possibleMatches, pattern, false));
+    }
+
+    private String searchInOrder(PossibleMatch[] possibleMatches, SearchPattern pattern, boolean parallel) {
+        boolean wasEnabled = DelegatedSearchBatch.enabled;
+        DelegatedSearchBatch.enabled = parallel;
+        try {
+            final StringBuilder sb = new StringBuilder();
+            SearchRequestor requestor = new SearchRequestor() {
+                @Override
+                public void acceptSearchMatch(SearchMatch match) {
+                    IJavaElement unit = ((IJavaElement) match.getElement()).getAncestor(IJavaElement.COMPILATION_UNIT);
+                    sb.append(unit.getElementName()).append(':').append(match.getOffset()).append('\n');
+                }
+            };
+            GroovyLanguageSupport support = new GroovyLanguageSupport();
+            support.prepareDelegatedSearch(possibleMatches, 0, possibleMatches.length, pattern, null);
+            try {
+                for (PossibleMatch possibleMatch : possibleMatches) {
+                    assertTrue(support.maybePerformDelegatedSearch(possibleMatch, pattern, requestor));
+                }
+            } finally {
+                support.finishDelegatedSearch();
+            }
+            return sb.toString();
+        } finally {
+            DelegatedSearchBatch.enabled = wasEnabled;
+        }
+    }
+
     private void doTestForTwoInScript(String secondContents) throws JavaModelException {
         doTestForTwoTypeReferences(FIRST_CONTENTS_CLASS, secondContents, true, 3);
     }
@@ -161,6 +161,29 @@ public class AntlrParserPlugin extends ASTHelper implements ParserPlugin, Groovy
     }
     // end
 
+    // GRECLIPSE: new methods
+    /**
+     * @return the tree made by the last parse, or null
+     */
+    public AST getAST() {
+        return ast;
+    }
+
+    public LocationSupport getLocations() {
+        return locations;
+    }
+
+    /**
+     * Prepares this plugin to build the module of the source unit from a tree
+     * made by an earlier parse of the same contents, in place of parseCST.
+     */
+    public void setAST(SourceUnit sourceUnit, AST ast, LocationSupport locations) {
+        setController(sourceUnit);
+        this.ast = ast;
+        this.locations = locations;
+    }
+    // end
+
     protected void processAST() {
         AntlrASTProcessor snippets = new AntlrASTProcessSnippets();
         ast = snippets.process(ast);
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.control;
+
+import groovyjarjarantlr.collections.AST;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.codehaus.groovy.antlr.AntlrParserPlugin;
+import org.codehaus.groovy.antlr.LocationSupport;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.ParserPlugin;
+import org.codehaus.groovy.control.ParserPluginFactory;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.messages.SimpleMessage;
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.groovy.syntax.ParserException;
+import org.codehaus.groovy.syntax.Reduction;
+
+/**
+ * Creates parser plugins that consult the {@link ParseResultCache} of a project before running the antlr lexer and parser. The
+ * actual parsing and conversion is delegated to the parser plugin that groovy would otherwise have used; on a cache hit, that
+ * plugin is handed the cached tree with {@link AntlrParserPlugin#setAST(SourceUnit, AST, LocationSupport)} instead.
+ */
+public class CachingParserPluginFactory extends ParserPluginFactory {
+
+	private final ParseResultCache cache;
+
+	public CachingParserPluginFactory(ParseResultCache cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public ParserPlugin createParserPlugin() {
+		return new CachingParserPlugin(ParserPluginFactory.newInstance(true).createParserPlugin(), cache);
+	}
+
+	static class CachingParserPlugin implements ParserPlugin {
+
+		private final ParserPlugin delegate;
+		private final ParseResultCache cache;
+
+		CachingParserPlugin(ParserPlugin delegate, ParseResultCache cache) {
+			this.delegate = delegate;
+			this.cache = cache;
+		}
+
+		public Reduction parseCST(SourceUnit sourceUnit, Reader reader) throws CompilationFailedException {
+			if (!(delegate instanceof AntlrParserPlugin)) {
+				return delegate.parseCST(sourceUnit, reader);
+			}
+			AntlrParserPlugin antlrPlugin = (AntlrParserPlugin) delegate;
+
+			String contents;
+			try {
+				contents = readFully(reader);
+			} catch (IOException e) {
+				sourceUnit.getErrorCollector().addFatalError(new SimpleMessage(e.getMessage(), sourceUnit));
+				return null;
+			}
+			String key = ParseResultCache.computeKey(contents);
+
+			ParseResultCache.Entry entry = key != null ? cache.get(key) : null;
+			if (entry != null) {
+				antlrPlugin.setAST(sourceUnit, entry.ast, new LocationSupport(entry.lineEndings));
+				sourceUnit.setComments(entry.comments);
+				if (GroovyLogManager.manager.hasLoggers()) {
+					GroovyLogManager.manager.log(TraceCategory.COMPILER, "Parse cache hit: " + sourceUnit.getName());
+				}
+				return null;
+			}
+
+			boolean hadErrors = sourceUnit.getErrorCollector().hasErrors();
+			Reduction cst = delegate.parseCST(sourceUnit, new StringReader(contents));
+			// trees recovered from syntax errors are not cached since the errors would not be reported on a cache hit
+			if (key != null && !hadErrors && !sourceUnit.getErrorCollector().hasErrors()) {
+				AST ast = antlrPlugin.getAST();
+				LocationSupport locations = antlrPlugin.getLocations();
+				if (ast != null && locations != null && locations.isPopulated() && ParseResultCache.isCacheable(ast)) {
+					cache.put(key, new ParseResultCache.Entry(ast, getLineEndings(locations), sourceUnit.getComments()));
+				}
+			}
+			return cst;
+		}
+
+		public ModuleNode buildAST(SourceUnit sourceUnit, ClassLoader classLoader, Reduction cst) throws ParserException {
+			return delegate.buildAST(sourceUnit, classLoader, cst);
+		}
+
+		/**
+		 * Reads back the line endings that the locations were made from, through the public API of {@link LocationSupport}.
+		 */
+		private static int[] getLineEndings(LocationSupport locations) {
+			int[] lineEndings = new int[locations.getEndLine() + 1];
+			for (int i = 0; i < lineEndings.length; i++) {
+				lineEndings[i] = locations.findOffset(i + 1, 1);
+			}
+			return lineEndings;
+		}
+
+		private static String readFully(Reader reader) throws IOException {
+			StringBuilder sb = new StringBuilder();
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				sb.append(buffer, 0, read);
+			}
+			return sb.toString();
+		}
+	}
+}
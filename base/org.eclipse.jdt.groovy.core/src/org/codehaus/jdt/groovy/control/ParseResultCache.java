@@ -0,0 +1,499 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.control;
+
+import groovy.lang.GroovySystem;
+import groovyjarjarantlr.collections.AST;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.antlr.GroovySourceAST;
+import org.codehaus.groovy.ast.Comment;
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.groovy.core.Activator;
+
+/**
+ * On-disk cache of parse results for groovy source files, keyed by a hash of the file contents. A cached entry holds the
+ * (post-processing) antlr tree, the line endings and the comments of a file that parsed without errors, so that an unchanged
+ * file can skip lexing and parsing entirely and go straight to conversion. Entries are stored under the working location of the
+ * project that owns the file.
+ * <p>
+ * Entries are written, and old ones pruned, by a background job so that parsing never waits for the disk to be written. Entries
+ * are only read by builds, never by reconciles.
+ * <p>
+ * The cache is only used when {@link #enabled} is set, which defaults to the value of the <code>greclipse.parse.cache</code>
+ * system property.
+ */
+public class ParseResultCache {
+
+	public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.parse.cache", "false")).booleanValue();
+
+	private static final int MAGIC = 0x47504331; // GPC1
+	private static final int FORMAT_VERSION = 1;
+
+	/** entries that have not been read or written for this long are removed the first time a project's cache is used */
+	private static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final Map<String, ParseResultCache> projectCaches = Collections
+			.synchronizedMap(new HashMap<String, ParseResultCache>());
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong writes = new AtomicLong();
+
+	/**
+	 * The cached data for one source file
+	 */
+	public static class Entry {
+		public final AST ast;
+		public final int[] lineEndings;
+		public final List<Comment> comments;
+
+		public Entry(AST ast, int[] lineEndings, List<Comment> comments) {
+			this.ast = ast;
+			this.lineEndings = lineEndings;
+			this.comments = comments;
+		}
+	}
+
+	private final File root;
+	private volatile boolean pruned;
+
+	// entries waiting for the writer, in the order they were parsed
+	private final Map<String, Entry> pending = new LinkedHashMap<String, Entry>();
+
+	private final Job writer = new Job("Write Groovy parse cache") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			prune();
+			while (!monitor.isCanceled()) {
+				String key;
+				Entry entry;
+				synchronized (pending) {
+					if (pending.isEmpty()) {
+						break;
+					}
+					key = pending.keySet().iterator().next();
+					entry = pending.remove(key);
+				}
+				writeEntry(key, entry);
+			}
+			return Status.OK_STATUS;
+		}
+
+		@Override
+		public boolean belongsTo(Object family) {
+			return family == ParseResultCache.class;
+		}
+	};
+
+	private ParseResultCache(File root) {
+		this.root = root;
+		writer.setSystem(true);
+		writer.setPriority(Job.DECORATE);
+	}
+
+	/**
+	 * @return the cache for the given project or null if caching is disabled or the workspace is not available (ie- batch mode)
+	 */
+	public static ParseResultCache getCache(String projectName) {
+		if (!enabled || projectName == null || ResourcesPlugin.getPlugin() == null) {
+			return null;
+		}
+		ParseResultCache cache = projectCaches.get(projectName);
+		if (cache == null) {
+			IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
+			if (!project.isAccessible()) {
+				return null;
+			}
+			IPath location = project.getWorkingLocation(Activator.PLUGIN_ID);
+			if (location == null) {
+				return null;
+			}
+			cache = new ParseResultCache(location.append("parsecache").toFile());
+			projectCaches.put(projectName, cache);
+			cache.writer.schedule();
+		}
+		return cache;
+	}
+
+	/**
+	 * @return number of parses that were served from the cache
+	 */
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of parses that found no entry in the cache
+	 */
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of entries written to disk
+	 */
+	public static long getWriteCount() {
+		return writes.get();
+	}
+
+	public static void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+		writes.set(0);
+	}
+
+	/**
+	 * Waits until all the entries put into any cache so far are written to disk.
+	 */
+	public static void waitForWrites() throws InterruptedException {
+		Job.getJobManager().join(ParseResultCache.class, null);
+	}
+
+	/**
+	 * @return a key for the contents that also covers the groovy version and the cache format, so that switching compiler levels
+	 *         never picks up a tree created by a different grammar
+	 */
+	public static String computeKey(String contents) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(GroovySystem.getVersion().getBytes("UTF-8"));
+			digest.update((byte) FORMAT_VERSION);
+			digest.update(contents.getBytes("UTF-8"));
+			byte[] bytes = digest.digest();
+			char[] chars = new char[bytes.length * 2];
+			for (int i = 0; i < bytes.length; i++) {
+				chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+				chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+			}
+			return new String(chars);
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		} catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the cached entry for the key or null if there is none or it could not be read
+	 */
+	public Entry get(String key) {
+		Entry entry;
+		synchronized (pending) {
+			entry = pending.get(key);
+		}
+		if (entry == null) {
+			entry = readEntry(key);
+		}
+		if (entry != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return entry;
+	}
+
+	private Entry readEntry(String key) {
+		File file = new File(root, key);
+		if (!file.isFile()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			Entry entry = read(in);
+			file.setLastModified(System.currentTimeMillis());
+			return entry;
+		} catch (IOException e) {
+			// corrupt or truncated, will be rewritten after the next parse
+			file.delete();
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * Queues the entry to be written to disk by a background job.
+	 */
+	public void put(String key, Entry entry) {
+		synchronized (pending) {
+			pending.put(key, entry);
+		}
+		writer.schedule();
+	}
+
+	private void writeEntry(String key, Entry entry) {
+		if (!root.isDirectory() && !root.mkdirs()) {
+			return;
+		}
+		// write to a temp file first so that concurrent readers never see a partial entry
+		File temp = new File(root, key + "." + Thread.currentThread().getId() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			write(out, entry);
+			out.close();
+			out = null;
+			File file = new File(root, key);
+			if (temp.renameTo(file)) {
+				writes.incrementAndGet();
+			} else {
+				temp.delete();
+			}
+		} catch (IOException e) {
+			temp.delete();
+			if (GroovyLogManager.manager.hasLoggers()) {
+				GroovyLogManager.manager.log(TraceCategory.COMPILER, "Unable to write parse cache entry " + key + ": " + e);
+			}
+		} finally {
+			close(out);
+		}
+	}
+
+	private void prune() {
+		if (pruned) {
+			return;
+		}
+		pruned = true;
+		File[] files = root.listFiles();
+		if (files != null) {
+			long oldest = System.currentTimeMillis() - MAX_AGE;
+			for (File file : files) {
+				if (file.lastModified() < oldest || file.getName().endsWith(".tmp")) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------------------------------------------------------------------
+	// Format: header, string table, line endings, comments, then the tree in pre-order with child/sibling flags
+
+	private static final int HAS_CHILD = 1;
+	private static final int HAS_SIBLING = 2;
+
+	private static void write(DataOutputStream out, Entry entry) throws IOException {
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+		collectStrings(entry.ast, strings, stringIndex);
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		writeVarInt(out, strings.size());
+		for (String s : strings) {
+			out.writeUTF(s);
+		}
+
+		writeVarInt(out, entry.lineEndings.length);
+		for (int lineEnding : entry.lineEndings) {
+			writeVarInt(out, lineEnding);
+		}
+
+		List<Comment> comments = entry.comments != null ? entry.comments : Collections.<Comment> emptyList();
+		writeVarInt(out, comments.size());
+		for (Comment comment : comments) {
+			out.writeBoolean(isSingleLine(comment));
+			writeVarInt(out, comment.sline);
+			writeVarInt(out, comment.scol);
+			writeVarInt(out, comment.eline);
+			writeVarInt(out, comment.ecol);
+			out.writeUTF(comment.toString());
+		}
+
+		out.writeBoolean(entry.ast != null);
+		if (entry.ast != null) {
+			writeTree(out, (GroovySourceAST) entry.ast, stringIndex);
+		}
+	}
+
+	private static Entry read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			throw new IOException("Unrecognized parse cache entry");
+		}
+		String[] strings = new String[readVarInt(in)];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = in.readUTF();
+		}
+
+		int[] lineEndings = new int[readVarInt(in)];
+		for (int i = 0; i < lineEndings.length; i++) {
+			lineEndings[i] = readVarInt(in);
+		}
+
+		int commentCount = readVarInt(in);
+		List<Comment> comments = new ArrayList<Comment>(commentCount);
+		for (int i = 0; i < commentCount; i++) {
+			boolean singleLine = in.readBoolean();
+			int sline = readVarInt(in), scol = readVarInt(in), eline = readVarInt(in), ecol = readVarInt(in);
+			String text = in.readUTF();
+			comments.add(singleLine ? Comment.makeSingleLineComment(sline, scol, eline, ecol, text) : Comment
+					.makeMultiLineComment(sline, scol, eline, ecol, text));
+		}
+
+		AST ast = in.readBoolean() ? readTree(in, strings) : null;
+		return new Entry(ast, lineEndings, comments);
+	}
+
+	/**
+	 * @return true iff every node of the tree can be represented in the cache format
+	 */
+	public static boolean isCacheable(AST ast) {
+		for (AST node = ast; node != null; node = node.getNextSibling()) {
+			if (node.getClass() != GroovySourceAST.class) {
+				return false;
+			}
+			if (node.getFirstChild() != null && !isCacheable(node.getFirstChild())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSingleLine(Comment comment) {
+		return comment.getClass().getSimpleName().equals("SingleLineComment");
+	}
+
+	private static void collectStrings(AST ast, List<String> strings, Map<String, Integer> stringIndex) {
+		for (AST node = ast; node != null; node = node.getNextSibling()) {
+			intern(node.getText(), strings, stringIndex);
+			intern(((GroovySourceAST) node).getSnippet(), strings, stringIndex);
+			if (node.getFirstChild() != null) {
+				collectStrings(node.getFirstChild(), strings, stringIndex);
+			}
+		}
+	}
+
+	private static void intern(String s, List<String> strings, Map<String, Integer> stringIndex) {
+		if (s != null && !stringIndex.containsKey(s)) {
+			stringIndex.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+
+	private static void writeTree(DataOutputStream out, GroovySourceAST ast, Map<String, Integer> stringIndex) throws IOException {
+		for (GroovySourceAST node = ast; node != null; node = (GroovySourceAST) node.getNextSibling()) {
+			int flags = (node.getFirstChild() != null ? HAS_CHILD : 0) | (node.getNextSibling() != null ? HAS_SIBLING : 0);
+			out.writeByte(flags);
+			writeVarInt(out, node.getType());
+			writeVarInt(out, indexOf(node.getText(), stringIndex));
+			writeVarInt(out, indexOf(node.getSnippet(), stringIndex));
+			writeVarInt(out, node.getLine());
+			writeVarInt(out, node.getColumn());
+			writeVarInt(out, node.getLineLast());
+			writeVarInt(out, node.getColumnLast());
+			if (node.getFirstChild() != null) {
+				writeTree(out, (GroovySourceAST) node.getFirstChild(), stringIndex);
+			}
+		}
+	}
+
+	private static GroovySourceAST readTree(DataInputStream in, String[] strings) throws IOException {
+		GroovySourceAST first = null, previous = null;
+		boolean more = true;
+		while (more) {
+			int flags = in.readByte();
+			GroovySourceAST node = new GroovySourceAST();
+			node.setType(readVarInt(in));
+			node.setText(stringAt(readVarInt(in), strings));
+			node.setSnippet(stringAt(readVarInt(in), strings));
+			node.setLine(readVarInt(in));
+			node.setColumn(readVarInt(in));
+			node.setLineLast(readVarInt(in));
+			node.setColumnLast(readVarInt(in));
+			if ((flags & HAS_CHILD) != 0) {
+				node.setFirstChild(readTree(in, strings));
+			}
+			if (first == null) {
+				first = node;
+			} else {
+				previous.setNextSibling(node);
+			}
+			previous = node;
+			more = (flags & HAS_SIBLING) != 0;
+		}
+		return first;
+	}
+
+	/** index 0 is reserved for null */
+	private static int indexOf(String s, Map<String, Integer> stringIndex) {
+		return s == null ? 0 : stringIndex.get(s).intValue() + 1;
+	}
+
+	private static String stringAt(int index, String[] strings) throws IOException {
+		if (index == 0) {
+			return null;
+		}
+		if (index > strings.length) {
+			throw new IOException("Bad string index " + index);
+		}
+		return strings[index - 1];
+	}
+
+	// line and column values may be negative for synthetic nodes, so zig-zag encode them
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		int v = (value << 1) ^ (value >> 31);
+		while ((v & ~0x7f) != 0) {
+			out.writeByte((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readByte();
+			v |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return (v >>> 1) ^ -(v & 1);
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+}
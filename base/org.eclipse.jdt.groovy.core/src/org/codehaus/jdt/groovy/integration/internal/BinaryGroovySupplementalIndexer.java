@@ -1,6 +1,6 @@
 /*
  * Copyright 2011 SpringSource, a division of VMware, Inc
- * 
+ *
  * andrew - Initial API and implementation
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -17,59 +17,227 @@
  */
 package org.codehaus.jdt.groovy.integration.internal;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.codehaus.jdt.groovy.integration.ISupplementalIndexer;
-import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileConstants;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 
 /**
- * 
+ * Indexes the string constants of groovy class files, since groovy method calls and property accesses are dynamically
+ * invoked and accessed. Every UTF8 constant that is a dotted name is split on '.' and each part is reported once per class.
+ * <p>
+ * The constants are checked and split directly on the bytes of the class file, and only the parts that are reported are
+ * decoded into new arrays. Parts that have already been reported are found with a set of byte ranges that is reused for every
+ * class scanned on the same thread.
+ *
  * @author Andrew Eisenberg
  * @created 2013-04-30
  */
 public class BinaryGroovySupplementalIndexer implements ISupplementalIndexer {
 
-	public List<char[]> extractNamedReferences(byte[] contents, ClassFileReader reader) {
+	// which ascii characters may start a name and which may be part of one; '.' separates parts and '$' is not allowed
+	private static final boolean[] ASCII_START = new boolean[128];
+	private static final boolean[] ASCII_PART = new boolean[128];
+	static {
+		for (char c = 0; c < 128; c++) {
+			ASCII_START[c] = (Character.isJavaIdentifierStart(c) || c == '.') && c != '$';
+			ASCII_PART[c] = (Character.isJavaIdentifierPart(c) || c == '.') && c != '$';
+		}
+	}
+
+	private static final ThreadLocal<NameSet> NAMES = new ThreadLocal<NameSet>() {
+		@Override
+		protected NameSet initialValue() {
+			return new NameSet();
+		}
+	};
+
+	public void extractNamedReferences(byte[] contents, ClassFileReader reader, IReferenceRequestor requestor) {
 		int[] constantPoolOffsets = reader.getConstantPoolOffsets();
 		int constantPoolCount = constantPoolOffsets.length;
-		List<char[]> refs = new ArrayList<char[]>();
-		for (int i = 1; i < constantPoolCount; i++) {
-			int tag = reader.u1At(constantPoolOffsets[i]);
-			switch (tag) {
-				case ClassFileConstants.Utf8Tag:
-					char[] strConst = extractStringConstant(constantPoolOffsets, reader, i);
-					if (isValidId(strConst)) {
-						char[][] splits = CharOperation.splitOn('.', strConst);
-						for (char[] split : splits) {
-							refs.add(split);
-						}
+		NameSet names = NAMES.get();
+		names.reset(contents);
+		try {
+			for (int i = 1; i < constantPoolCount; i++) {
+				int offset = constantPoolOffsets[i];
+				if (contents[offset] == ClassFileConstants.Utf8Tag) {
+					int start = offset + 3; // +1 for the tag type and +2 for the strlen
+					int end = start + (((contents[offset + 1] & 0xFF) << 8) | (contents[offset + 2] & 0xFF));
+					if (isValidId(contents, start, end)) {
+						reportParts(contents, start, end, names, requestor);
 					}
+				}
 			}
+		} finally {
+			names.reset(null);
 		}
-		return refs;
 	}
 
-	private boolean isValidId(char[] strConst) {
-		if (strConst == null || strConst.length == 0) {
+	/**
+	 * @return true if the modified UTF-8 bytes are a name that may contain '.', but no '$'
+	 */
+	private static boolean isValidId(byte[] bytes, int start, int end) {
+		if (start == end) {
 			return false;
 		}
-		if (!(Character.isJavaIdentifierStart(strConst[0]) || strConst[0] == '.') || strConst[0] == '$') {
-			return false;
-		}
-		for (int i = 1; i < strConst.length; i++) {
-			if (!(Character.isJavaIdentifierPart(strConst[i]) || strConst[i] == '.') || strConst[i] == '$') {
-				return false;
+		boolean first = true;
+		int i = start;
+		while (i < end) {
+			int b = bytes[i] & 0xFF;
+			if (b < 0x80) {
+				if (!(first ? ASCII_START[b] : ASCII_PART[b])) {
+					return false;
+				}
+				i += 1;
+			} else {
+				char c;
+				if ((b & 0xE0) == 0xC0 && i + 1 < end) {
+					c = (char) (((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+					i += 2;
+				} else if ((b & 0xF0) == 0xE0 && i + 2 < end) {
+					c = (char) (((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+					i += 3;
+				} else {
+					// not modified UTF-8
+					return false;
+				}
+				if (!(first ? Character.isJavaIdentifierStart(c) : Character.isJavaIdentifierPart(c))) {
+					return false;
+				}
 			}
+			first = false;
 		}
 		return true;
 	}
 
-	private char[] extractStringConstant(int[] constantPoolOffsets, ClassFileReader reader, int index) {
-		int strlen = reader.u2At(constantPoolOffsets[index] + 1); // / +1 for the tag type
-		int strstart = constantPoolOffsets[index] + 3; // +1 for the tag type and +2 for the strlen
-		return reader.utf8At(strstart, strlen);
+	/**
+	 * Reports the non-empty parts between the dots that have not been reported for this class yet
+	 */
+	private static void reportParts(byte[] bytes, int start, int end, NameSet names, IReferenceRequestor requestor) {
+		int partStart = start;
+		for (int i = start; i <= end; i++) {
+			// multi-byte characters never contain the byte of '.'
+			if (i == end || bytes[i] == '.') {
+				if (i > partStart && names.add(partStart, i)) {
+					requestor.acceptReference(decode(bytes, partStart, i));
+				}
+				partStart = i + 1;
+			}
+		}
+	}
+
+	private static char[] decode(byte[] bytes, int start, int end) {
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			if ((bytes[i] & 0xC0) != 0x80) {
+				length += 1;
+			}
+		}
+		char[] chars = new char[length];
+		int i = start;
+		for (int j = 0; j < length; j++) {
+			int b = bytes[i] & 0xFF;
+			if (b < 0x80) {
+				chars[j] = (char) b;
+				i += 1;
+			} else if ((b & 0xE0) == 0xC0) {
+				chars[j] = (char) (((b & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+				i += 2;
+			} else {
+				chars[j] = (char) (((b & 0x0F) << 12) | ((bytes[i + 1] & 0x3F) << 6) | (bytes[i + 2] & 0x3F));
+				i += 3;
+			}
+		}
+		return chars;
+	}
+
+	/**
+	 * The byte ranges of the names reported for one class file, kept in open addressing tables
+	 */
+	static class NameSet {
+		private static final int INITIAL_CAPACITY = 256;
+
+		// tables larger than this are not kept for the next class
+		private static final int MAX_KEPT_CAPACITY = 1 << 14;
+
+		private byte[] bytes;
+
+		// an empty slot has an end of 0, since no name ends at the start of a class file
+		private int[] starts = new int[INITIAL_CAPACITY];
+		private int[] ends = new int[INITIAL_CAPACITY];
+		private int[] hashes = new int[INITIAL_CAPACITY];
+		private int size;
+
+		void reset(byte[] bytes) {
+			this.bytes = bytes;
+			if (size > 0) {
+				if (ends.length > MAX_KEPT_CAPACITY) {
+					starts = new int[INITIAL_CAPACITY];
+					ends = new int[INITIAL_CAPACITY];
+					hashes = new int[INITIAL_CAPACITY];
+				} else {
+					Arrays.fill(ends, 0);
+				}
+				size = 0;
+			}
+		}
+
+		/**
+		 * @return true if the name in the byte range was not in the set
+		 */
+		boolean add(int start, int end) {
+			int hash = 0;
+			for (int i = start; i < end; i++) {
+				hash = 31 * hash + bytes[i];
+			}
+			hash ^= hash >>> 16;
+			int mask = ends.length - 1;
+			int slot = hash & mask;
+			while (ends[slot] != 0) {
+				if (hashes[slot] == hash && equal(starts[slot], ends[slot], start, end)) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			starts[slot] = start;
+			ends[slot] = end;
+			hashes[slot] = hash;
+			if (++size * 2 > ends.length) {
+				grow();
+			}
+			return true;
+		}
+
+		private boolean equal(int start1, int end1, int start2, int end2) {
+			if (end1 - start1 != end2 - start2) {
+				return false;
+			}
+			for (int i = start1, j = start2; i < end1; i++, j++) {
+				if (bytes[i] != bytes[j]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void grow() {
+			int[] oldStarts = starts, oldEnds = ends, oldHashes = hashes;
+			int capacity = oldEnds.length * 2, mask = capacity - 1;
+			starts = new int[capacity];
+			ends = new int[capacity];
+			hashes = new int[capacity];
+			for (int i = 0; i < oldEnds.length; i++) {
+				if (oldEnds[i] != 0) {
+					int slot = oldHashes[i] & mask;
+					while (ends[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+					starts[slot] = oldStarts[i];
+					ends[slot] = oldEnds[i];
+					hashes[slot] = oldHashes[i];
+				}
+			}
+		}
 	}
 }
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.integration.internal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.search.SearchMatch;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.SearchRequestor;
+import org.eclipse.jdt.internal.core.search.matching.PossibleMatch;
+import org.eclipse.jdt.internal.core.util.Util;
+
+/**
+ * The groovy files of one call to <code>MatchLocator.locateMatches</code>, searched on a pool of threads ahead of the locator.
+ * Each file is type inferred with its own visitor and type requestor, and its matches are kept until the locator asks for the
+ * file with {@link GroovyLanguageSupport#maybePerformDelegatedSearch}. The matches are then passed to the locator's requestor
+ * on the locator's thread, so that they arrive in the same order as when the files are searched one at a time. A file that no
+ * pool thread has started on yet is searched by the locator itself. All searches share one pool, with a thread per processor.
+ */
+public class DelegatedSearchBatch {
+
+	/**
+	 * When set, the groovy files of a search are searched in parallel. Defaults to the value of the
+	 * <code>greclipse.parallelSearch</code> system property.
+	 */
+	public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.parallelSearch", "false")).booleanValue();
+
+	// the batch of the search running on the current thread
+	private static final ThreadLocal<DelegatedSearchBatch> current = new ThreadLocal<DelegatedSearchBatch>();
+
+	// shared by the searches of all threads, so that concurrent searches do not each start a pool of their own
+	private static ExecutorService executor;
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), SEARCH_THREADS);
+		}
+		return executor;
+	}
+
+	private final Map<PossibleMatch, Search> searches = new IdentityHashMap<PossibleMatch, Search>();
+
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+
+	// the thread of the search that the batch belongs to
+	private final Thread owner = Thread.currentThread();
+
+	/**
+	 * Starts searching the groovy files among the possible matches. Any batch that the previous search on this thread did not
+	 * use up is dropped.
+	 */
+	static void start(PossibleMatch[] possibleMatches, int start, int length, SearchPattern pattern, IProgressMonitor monitor) {
+		end();
+		if (!enabled) {
+			return;
+		}
+		List<PossibleMatch> groovyMatches = new ArrayList<PossibleMatch>();
+		for (int i = start, end = start + length; i < end; i++) {
+			PossibleMatch possibleMatch = possibleMatches[i];
+			if (possibleMatch != null && possibleMatch.isInterestingSourceFile()) {
+				groovyMatches.add(possibleMatch);
+			}
+		}
+		if (groovyMatches.size() < 2) {
+			return;
+		}
+
+		DelegatedSearchBatch batch = new DelegatedSearchBatch();
+		current.set(batch);
+		ExecutorService executor = getExecutor();
+		// submitted in order, so the files the locator asks for first are searched first
+		for (PossibleMatch possibleMatch : groovyMatches) {
+			Search search = batch.new Search(possibleMatch, pattern, monitor);
+			batch.searches.put(possibleMatch, search);
+			search.future = executor.submit(search);
+		}
+	}
+
+	/**
+	 * Drops the batch of the search running on this thread, if any. The files of the batch that the pool has not started on are
+	 * not searched.
+	 */
+	static void end() {
+		DelegatedSearchBatch batch = current.get();
+		if (batch != null) {
+			current.remove();
+			batch.cancel();
+		}
+	}
+
+	/**
+	 * @return the batch that the possible match of the search running on this thread belongs to, or null if there is none
+	 */
+	static DelegatedSearchBatch get(PossibleMatch possibleMatch) {
+		DelegatedSearchBatch batch = current.get();
+		return batch != null && batch.searches.containsKey(possibleMatch) ? batch : null;
+	}
+
+	/**
+	 * Waits for the possible match to be searched, or searches it on this thread if that has not started yet, and passes its
+	 * matches to the requestor.
+	 *
+	 * @return true iff the search was performed
+	 */
+	boolean finish(PossibleMatch possibleMatch, SearchRequestor requestor) {
+		Search search = searches.remove(possibleMatch);
+		if (searches.isEmpty() && current.get() == this) {
+			current.remove();
+		}
+		search.run();
+		try {
+			search.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel();
+			return false;
+		}
+		if (search.error != null) {
+			// the locator stops here, so the files after this one are not needed
+			cancel();
+			if (search.error instanceof RuntimeException) {
+				throw (RuntimeException) search.error;
+			} else if (search.error instanceof Error) {
+				throw (Error) search.error;
+			}
+		}
+		for (SearchMatch match : search.matches) {
+			try {
+				requestor.acceptSearchMatch(match);
+			} catch (CoreException e) {
+				// same as the requestors do when they report matches themselves
+				org.eclipse.jdt.internal.core.util.Util.log(e, "Error reporting search match inside of " //$NON-NLS-1$
+						+ new String(possibleMatch.getFileName()));
+			}
+		}
+		return search.performed;
+	}
+
+	/**
+	 * Stops the pool from starting on the files of this batch. Searches that have already started run to completion.
+	 */
+	private void cancel() {
+		cancelled.set(true);
+		for (Search search : searches.values()) {
+			if (search.future != null) {
+				search.future.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * The search of one file, run by whichever thread gets to it first
+	 */
+	private class Search implements Runnable {
+		final PossibleMatch possibleMatch;
+		final SearchPattern pattern;
+		final IProgressMonitor monitor;
+		final AtomicBoolean claimed = new AtomicBoolean();
+		final CountDownLatch done = new CountDownLatch(1);
+
+		final List<SearchMatch> matches = new ArrayList<SearchMatch>();
+		boolean performed;
+		Throwable error;
+		// the search queued on the pool
+		Future<?> future;
+
+		Search(PossibleMatch possibleMatch, SearchPattern pattern, IProgressMonitor monitor) {
+			this.possibleMatch = possibleMatch;
+			this.pattern = pattern;
+			this.monitor = monitor;
+		}
+
+		public void run() {
+			boolean onPool = Thread.currentThread() != owner;
+			if (onPool && (cancelled.get() || (monitor != null && monitor.isCanceled()))) {
+				// left for the locator, which stops when the search is cancelled
+				return;
+			}
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				performed = GroovyLanguageSupport.performDelegatedSearch(possibleMatch, pattern, new SearchRequestor() {
+					@Override
+					public void acceptSearchMatch(SearchMatch match) {
+						matches.add(match);
+					}
+				});
+			} catch (Throwable t) {
+				error = t;
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+
+	private static final ThreadFactory SEARCH_THREADS = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Groovy search " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+}
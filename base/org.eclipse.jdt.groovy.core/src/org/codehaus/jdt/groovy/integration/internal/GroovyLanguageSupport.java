@@ -44,6 +44,7 @@ import org.eclipse.jdt.groovy.core.util.ContentTypeUtils;
 import org.eclipse.jdt.groovy.core.util.GroovyUtils;
 import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
 import org.eclipse.jdt.groovy.search.ITypeRequestor;
+import org.eclipse.jdt.groovy.search.InferredReferenceIndex;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorFactory;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
 import org.eclipse.jdt.groovy.search.TypeRequestorFactory;
@@ -191,12 +192,45 @@ public class GroovyLanguageSupport implements LanguageSupport {
 		return ContentTypeUtils.isGroovyLikeFileName(fileName);
 	}
 
+	public void prepareDelegatedSearch(PossibleMatch[] possibleMatches, int start, int length, SearchPattern pattern,
+			IProgressMonitor monitor) {
+		DelegatedSearchBatch.start(possibleMatches, start, length, pattern, monitor);
+	}
+
+	public void finishDelegatedSearch() {
+		DelegatedSearchBatch.end();
+	}
+
 	public boolean maybePerformDelegatedSearch(PossibleMatch possibleMatch, SearchPattern pattern, SearchRequestor requestor) {
+		DelegatedSearchBatch batch = DelegatedSearchBatch.get(possibleMatch);
+		if (batch != null) {
+			return batch.finish(possibleMatch, requestor);
+		}
+		return performDelegatedSearch(possibleMatch, pattern, requestor);
+	}
+
+	/**
+	 * Type infers the possible match with a new visitor and type requestor, which report to the given requestor. When the
+	 * {@link InferredReferenceIndex} is on, files that it knows can not hold a match are not inferred, and the entries of the
+	 * others are brought up to date.
+	 */
+	static boolean performDelegatedSearch(PossibleMatch possibleMatch, SearchPattern pattern, SearchRequestor requestor) {
 		if (possibleMatch.openable != null && possibleMatch.openable.exists()) {
 			ITypeRequestor typeRequestor = new TypeRequestorFactory().createRequestor(possibleMatch, pattern, requestor);
 			if (typeRequestor != null) {
+				InferredReferenceIndex.Recorder recorder = null;
+				if (InferredReferenceIndex.enabled) {
+					InferredReferenceIndex index = InferredReferenceIndex.getDefault();
+					if (index.canSkip(possibleMatch, pattern)) {
+						return true;
+					}
+					recorder = index.createRecorder(possibleMatch, typeRequestor);
+				}
 				TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(possibleMatch);
-				visitor.visitCompilationUnit(typeRequestor);
+				visitor.visitCompilationUnit(recorder != null ? recorder : typeRequestor);
+				if (recorder != null) {
+					recorder.finish();
+				}
 				return true;
 			}
 		}
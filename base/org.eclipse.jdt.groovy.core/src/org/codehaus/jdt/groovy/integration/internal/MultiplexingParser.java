@@ -55,6 +55,9 @@ public class MultiplexingParser extends Parser {
 
 	@Override
 	public void reset() {
+		if (groovyParser != null) {
+			groovyParser.dispose();
+		}
 		groovyParser = null;
 	}
 
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.internal.compiler.ast;
+
+import groovy.lang.GroovyClassLoader;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+import java.util.jar.JarFile;
+
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+
+/**
+ * Pool of the GroovyClassLoaders used to find AST transforms and other supporting classes. Loaders are keyed by a fingerprint of
+ * the classpath they were created for, so projects with the same transform classpath share one loader (and with it one set of
+ * open jar files and loaded classes) instead of each loading everything again.
+ * <p>
+ * Every {@link #acquire(String)} must be balanced by a {@link #release(GroovyClassLoader, boolean)}. Those references are taken
+ * for a project; on top of them every compilation unit that runs with a loader registers itself as a user with
+ * {@link #addUser(GroovyClassLoader, Object)} and gives the loader back with {@link #removeUser(GroovyClassLoader, Object)} once
+ * it is done. Users are held weakly, so a compilation that is dropped without being told it is done stops counting once it has
+ * been collected. A loader is never closed while it has references or users.
+ * <p>
+ * A loader that nobody references or uses any more stays idle for <code>greclipse.loaderPool.idleMillis</code> (one minute by
+ * default), during which it can be acquired again, and is then closed by a background timer (or by the first pool operation after
+ * that, whichever comes first). {@link #closeUnused()} closes idle loaders that are no longer handed out right away.
+ */
+public class GroovyClassLoaderPool {
+
+	private static final long IDLE_MILLIS = Long.getLong("greclipse.loaderPool.idleMillis", 60000).longValue();
+
+	static class Entry {
+		final String fingerprint;
+		final URLClassLoader jarLoader;
+		final GroovyClassLoader loader;
+		int references;
+		// the compilation units running with the loader, weakly held
+		final Map<Object, Boolean> users = new WeakHashMap<Object, Boolean>();
+		long idleSince;
+		// false once the loader is not handed out anymore (eg. after a clean of a project that used it)
+		boolean reusable = true;
+
+		Entry(String fingerprint, URLClassLoader jarLoader) {
+			this.fingerprint = fingerprint;
+			this.jarLoader = jarLoader;
+			this.loader = new GroovyClassLoader(jarLoader);
+		}
+
+		boolean isIdle() {
+			return references == 0 && users.isEmpty();
+		}
+	}
+
+	// the entries that can be handed out, keyed by classpath fingerprint
+	private static final Map<String, Entry> reusableEntries = new HashMap<String, Entry>();
+
+	// every loader that has not been closed yet
+	private static final Map<GroovyClassLoader, Entry> liveEntries = new IdentityHashMap<GroovyClassLoader, Entry>();
+
+	private static int created;
+	private static int closed;
+
+	// closes loaders once they have been idle long enough; created the first time a loader becomes idle
+	private static Timer evictionTimer;
+
+	/**
+	 * @return a loader for the given classpath, shared with everyone else who acquired one for an equivalent classpath
+	 */
+	public static synchronized GroovyClassLoader acquire(String classpath) {
+		closeExpired(System.currentTimeMillis());
+		String fingerprint = fingerprint(classpath);
+		Entry entry = reusableEntries.get(fingerprint);
+		if (entry == null) {
+			if (GroovyLogManager.manager.hasLoggers()) {
+				GroovyLogManager.manager.log(TraceCategory.AST_TRANSFORM, "Creating GroovyClassLoader for classpath: " + classpath);
+			}
+			entry = new Entry(fingerprint, GroovyParser.createConfigureLoader(classpath));
+			reusableEntries.put(fingerprint, entry);
+			liveEntries.put(entry.loader, entry);
+			created += 1;
+		}
+		entry.references += 1;
+		return entry.loader;
+	}
+
+	/**
+	 * Give back a loader obtained from {@link #acquire(String)}.
+	 *
+	 * @param reusable false if the loader must not be handed out again, for example because classes it loaded from an output
+	 *        folder are now stale
+	 */
+	public static synchronized void release(GroovyClassLoader loader, boolean reusable) {
+		long now = System.currentTimeMillis();
+		Entry entry = liveEntries.get(loader);
+		if (entry != null) {
+			if (!reusable && entry.reusable) {
+				entry.reusable = false;
+				if (reusableEntries.get(entry.fingerprint) == entry) {
+					reusableEntries.remove(entry.fingerprint);
+				}
+			}
+			if (entry.references > 0) {
+				entry.references -= 1;
+				if (entry.isIdle()) {
+					entry.idleSince = now;
+					scheduleEviction();
+				}
+			}
+		}
+		closeExpired(now);
+	}
+
+	/**
+	 * Record that a compilation unit runs with a pooled loader, which keeps the loader open until
+	 * {@link #removeUser(GroovyClassLoader, Object)} is called for the same unit or the unit is garbage collected. Loaders that
+	 * are not pooled are ignored.
+	 */
+	public static synchronized void addUser(GroovyClassLoader loader, Object compilationUnit) {
+		Entry entry = liveEntries.get(loader);
+		if (entry != null) {
+			entry.users.put(compilationUnit, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Record that a compilation unit is done with a loader. A loader that is neither handed out nor used any more is closed.
+	 */
+	public static synchronized void removeUser(GroovyClassLoader loader, Object compilationUnit) {
+		Entry entry = liveEntries.get(loader);
+		if (entry != null && entry.users.remove(compilationUnit) != null && entry.isIdle()) {
+			if (entry.reusable) {
+				entry.idleSince = System.currentTimeMillis();
+				scheduleEviction();
+			} else {
+				liveEntries.remove(loader);
+				close(entry);
+			}
+		}
+	}
+
+	/**
+	 * Close the loaders that are neither referenced nor handed out anymore, without waiting for them to expire.
+	 */
+	public static synchronized void closeUnused() {
+		for (Iterator<Entry> it = liveEntries.values().iterator(); it.hasNext();) {
+			Entry entry = it.next();
+			if (!entry.reusable && entry.isIdle()) {
+				it.remove();
+				close(entry);
+			}
+		}
+	}
+
+	private static void scheduleEviction() {
+		if (evictionTimer == null) {
+			evictionTimer = new Timer("Groovy class loader pool eviction", true);
+		}
+		evictionTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				synchronized (GroovyClassLoaderPool.class) {
+					closeExpired(System.currentTimeMillis());
+				}
+			}
+		}, IDLE_MILLIS);
+	}
+
+	private static void closeExpired(long now) {
+		for (Iterator<Entry> it = liveEntries.values().iterator(); it.hasNext();) {
+			Entry entry = it.next();
+			if (entry.isIdle() && now - entry.idleSince >= IDLE_MILLIS) {
+				it.remove();
+				if (reusableEntries.get(entry.fingerprint) == entry) {
+					reusableEntries.remove(entry.fingerprint);
+				}
+				close(entry);
+			}
+		}
+	}
+
+	private static void close(Entry entry) {
+		if (GroovyLogManager.manager.hasLoggers()) {
+			GroovyLogManager.manager.log(TraceCategory.AST_TRANSFORM, "Closing GroovyClassLoader for classpath: " + entry.fingerprint);
+		}
+		closed += 1;
+		closeLoader(entry.loader);
+		closeLoader(entry.jarLoader);
+	}
+
+	private static void closeLoader(URLClassLoader loader) {
+		try {
+			// URLClassLoader.close() exists from Java 7
+			Method close = URLClassLoader.class.getMethod("close");
+			close.invoke(loader);
+			return;
+		} catch (NoSuchMethodException e) {
+			// older VM, close the jars directly
+		} catch (Exception e) {
+			GroovyLogManager.manager.log(TraceCategory.AST_TRANSFORM, "Failed to close class loader: " + e);
+			return;
+		}
+		for (JarFile jarFile : getOpenJars(loader)) {
+			try {
+				jarFile.close();
+			} catch (Exception e) {
+				// already closed or not closeable
+			}
+		}
+	}
+
+	/**
+	 * The jar files a URLClassLoader has opened so far.
+	 */
+	private static List<JarFile> getOpenJars(URLClassLoader loader) {
+		List<JarFile> jars = new ArrayList<JarFile>();
+		try {
+			Object urlClasspath = ReflectionUtils.throwableGetPrivateField(URLClassLoader.class, "ucp", loader);
+			Field field_loaders = urlClasspath.getClass().getDeclaredField("loaders");
+			field_loaders.setAccessible(true);
+			for (Object jarLoader : ((Collection<?>) field_loaders.get(urlClasspath)).toArray()) {
+				try {
+					Field field_jarFile = jarLoader.getClass().getDeclaredField("jar");
+					field_jarFile.setAccessible(true);
+					Object jarFile = field_jarFile.get(jarLoader);
+					if (jarFile instanceof JarFile) {
+						jars.add((JarFile) jarFile);
+					}
+				} catch (Exception e) {
+					// Probably not a JarLoader
+				}
+			}
+		} catch (Exception e) {
+			// Not the kind of VM we thought it was...
+		}
+		return jars;
+	}
+
+	/**
+	 * The fingerprint of a classpath lists each distinct entry once, with its absolute path, followed by the size and time stamp of
+	 * the entries that are files, so that a rebuilt jar results in a new fingerprint.
+	 */
+	static String fingerprint(String classpath) {
+		if (classpath == null) {
+			return "";
+		}
+		Set<File> entries = new LinkedHashSet<File>();
+		StringTokenizer st = new StringTokenizer(classpath, File.pathSeparator);
+		while (st.hasMoreTokens()) {
+			entries.add(new File(new File(st.nextToken()).getAbsoluteFile().toURI().normalize()));
+		}
+		StringBuilder fingerprint = new StringBuilder(classpath.length() * 2);
+		for (File file : entries) {
+			fingerprint.append(file.getPath());
+			if (file.isFile()) {
+				fingerprint.append('@').append(file.lastModified()).append(':').append(file.length());
+			}
+			fingerprint.append(File.pathSeparatorChar);
+		}
+		return fingerprint.toString();
+	}
+
+	//--------------------------------------------------------------------------
+	// Metrics
+
+	/**
+	 * @return the number of loaders that have not been closed yet, whether they are referenced or idle
+	 */
+	public static synchronized int getLoaderCount() {
+		return liveEntries.size();
+	}
+
+	public static synchronized int getCreatedCount() {
+		return created;
+	}
+
+	public static synchronized int getClosedCount() {
+		return closed;
+	}
+
+	/**
+	 * @return the number of times the loader has been acquired and not yet released, or -1 if it is not (or no longer) pooled
+	 */
+	public static synchronized int getReferenceCount(GroovyClassLoader loader) {
+		Entry entry = liveEntries.get(loader);
+		return entry == null ? -1 : entry.references;
+	}
+
+	/**
+	 * @return the number of compilation units that use the loader, or -1 if it is not (or no longer) pooled
+	 */
+	public static synchronized int getUserCount(GroovyClassLoader loader) {
+		Entry entry = liveEntries.get(loader);
+		return entry == null ? -1 : entry.users.size();
+	}
+
+	/**
+	 * @return the number of classes defined by the pooled loaders, or -1 if the VM does not allow them to be counted
+	 */
+	public static synchronized int getLoadedClassCount() {
+		int count = 0;
+		for (Entry entry : liveEntries.values()) {
+			int jarLoaderClasses = countClasses(entry.jarLoader), loaderClasses = countClasses(entry.loader);
+			if (jarLoaderClasses < 0 || loaderClasses < 0) {
+				return -1;
+			}
+			count += jarLoaderClasses + loaderClasses;
+		}
+		return count;
+	}
+
+	private static int countClasses(ClassLoader loader) {
+		try {
+			Object classes = ReflectionUtils.throwableGetPrivateField(ClassLoader.class, "classes", loader);
+			if (classes instanceof Collection<?>) {
+				synchronized (classes) {
+					return ((Collection<?>) classes).size();
+				}
+			}
+		} catch (Exception e) {
+			// not the kind of VM we thought it was
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of jar files held open by the pooled loaders
+	 */
+	public static synchronized int getOpenJarCount() {
+		int count = 0;
+		for (Entry entry : liveEntries.values()) {
+			count += getOpenJars(entry.jarLoader).size();
+		}
+		return count;
+	}
+
+	public static synchronized String getStatistics() {
+		return "GroovyClassLoaderPool: loaders=" + getLoaderCount() + " created=" + created + " closed=" + closed
+				+ " loadedClasses=" + getLoadedClassCount() + " openJars=" + getOpenJarCount();
+	}
+}
@@ -25,7 +25,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.jar.JarFile;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.xbean.classloader.NonLockingJarFileClassLoader;
 import org.codehaus.groovy.ast.ClassNode;
@@ -39,16 +46,21 @@ import org.codehaus.groovy.control.Phases;
 import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.groovy.eclipse.GroovyLogManager;
 import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.jdt.groovy.control.CachingParserPluginFactory;
 import org.codehaus.jdt.groovy.control.EclipseSourceUnit;
+import org.codehaus.jdt.groovy.control.ParseResultCache;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.util.CompilerUtils;
+import org.eclipse.jdt.groovy.core.util.ContentTypeUtils;
 import org.eclipse.jdt.groovy.core.util.GroovyUtils;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
 import org.eclipse.jdt.groovy.core.util.ScriptFolderSelector;
 import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.ReadManager;
 import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
 import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
 import org.eclipse.jdt.internal.compiler.batch.FileSystem;
@@ -82,12 +94,32 @@ public class GroovyParser {
 	private boolean allowTransforms;
 	private boolean isReconcile;
 
+	/**
+	 * When set, the groovy sources of each batch the builder compiles are parsed on a pool of threads up front, instead of one at
+	 * a time as JDT asks for them. Conversion and all later phases still run on the compiling thread. Defaults to the value of the
+	 * <code>greclipse.parallelParse</code> system property.
+	 */
+	public static boolean parallelParse = Boolean.valueOf(System.getProperty("greclipse.parallelParse", "false")).booleanValue();
+
+	/**
+	 * The number of threads used when parsing in parallel, or 0 to use one per available processor. Defaults to the value of the
+	 * <code>greclipse.parallelParseThreads</code> system property.
+	 */
+	public static int parallelParseThreads = Integer.getInteger("greclipse.parallelParseThreads", 0).intValue();
+
+	// number of units whose parsed-ahead source has been used
+	private static final AtomicInteger parsedAheadCount = new AtomicInteger();
+
+	// sources of the current batch that are being parsed ahead, keyed by file name
+	private Map<String, Future<ParsedSource>> parsedAhead;
+	private ReadManager parsedAheadFor;
+
 	/*
 	 * Each project is allowed a GroovyClassLoader that will be used to load transform definitions and supporting classes. A cache
 	 * is maintained from project names to the current classpath and associated loader. If the classpath matches the cached version
-	 * on a call to build a parser then it is reused. If it does not match then a new loader is created and stored (storing it
-	 * orphans the previously cached one). When either a full build or a clean or project close occurs, we also discard the loader
-	 * instances associated with the project.
+	 * on a call to build a parser then it is reused. If it does not match then a loader for the new classpath is acquired from the
+	 * GroovyClassLoaderPool and the previous one is released back to it. Projects with the same classpath share a loader. When
+	 * either a full build or a clean or project close occurs, we also release the loader associated with the project.
 	 */
 
 	private static Map<String, PathLoaderPair> projectToLoaderCache = Collections
@@ -101,44 +133,7 @@ public class GroovyParser {
 
 		PathLoaderPair(String classpath) {
 			this.classpath = classpath;
-			this.groovyClassLoader = new GroovyClassLoader(createConfigureLoader(classpath));
-		}
-	}
-
-	/**
-	 * Close the jar files that have been kept open by the URLClassLoader
-	 */
-	public static void close(GroovyClassLoader groovyClassLoader) {
-		// System.out.println("Running close for GCL " + groovyClassLoader);
-		try {
-			Class<?> clazz = java.net.URLClassLoader.class;
-			Field field_urlClasspath = clazz.getDeclaredField("ucp");
-			field_urlClasspath.setAccessible(true);
-			Object urlClasspath = field_urlClasspath.get(groovyClassLoader);
-			Field field_loaders = urlClasspath.getClass().getDeclaredField("loaders");
-			field_loaders.setAccessible(true);
-			Object[] jarLoaders = ((java.util.Collection<?>) field_loaders.get(urlClasspath)).toArray();
-			// int count = 0;
-			for (Object jarLoader : jarLoaders) {
-				try {
-					Field field_jarFile = jarLoader.getClass().getDeclaredField("jar");
-					field_jarFile.setAccessible(true);
-					JarFile jarFile = (JarFile) field_jarFile.get(jarLoader);
-					String jarFileName = jarFile.getName();
-					if (jarFileName.indexOf("cache") != -1 || jarFileName.indexOf("plugins") != -1) {
-						// System.out.println("Closing " + jarFile.getName());
-						// count++;
-						jarFile.close();
-					}
-				} catch (Throwable t) {
-					// t.printStackTrace();
-					// Probably not a JarLoader
-				}
-			}
-			// System.out.println("Closed " + count + " jars");
-		} catch (Throwable t) {
-			// Not the kind of VM we thought it was...
-			// t.printStackTrace();
+			this.groovyClassLoader = GroovyClassLoaderPool.acquire(classpath);
 		}
 	}
 
@@ -146,15 +141,22 @@ public class GroovyParser {
 	 * Remove all cached classloaders for this project
 	 */
 	public static void tidyCache(String projectName) {
-		// This will orphan the loader on the heap
-		projectToLoaderCache.remove(projectName);
+		// the loader may have loaded classes from the output folders, so it is not handed out again
+		PathLoaderPair pathLoaderPair = projectToLoaderCache.remove(projectName);
+		if (pathLoaderPair != null) {
+			GroovyClassLoaderPool.release(pathLoaderPair.groovyClassLoader, false);
+		}
 		scriptFolderSelectorCache.remove(projectName);
 	}
 
 	public static void closeClassLoader(String projectName) {
-		PathLoaderPair pathLoaderPair = projectToLoaderCache.get(projectName);
+		PathLoaderPair pathLoaderPair = projectToLoaderCache.remove(projectName);
 		if (pathLoaderPair != null) {
-			close(pathLoaderPair.groovyClassLoader);
+			// the jars are closed now unless another project still shares the loader
+			GroovyClassLoaderPool.release(pathLoaderPair.groovyClassLoader, false);
+			GroovyClassLoaderPool.closeUnused();
+			// descriptors shared for this classpath are not needed once the project is closed
+			SharedTypeDescriptorCache.invalidate(pathLoaderPair.classpath);
 		}
 	}
 
@@ -162,7 +164,12 @@ public class GroovyParser {
 	 * Clears cached class loaders for all caches. It helps to fix problems with cached trait helper classes.
 	 */
 	static void tidyCache() {
-		projectToLoaderCache.clear();
+		synchronized (projectToLoaderCache) {
+			for (PathLoaderPair pathLoaderPair : projectToLoaderCache.values()) {
+				GroovyClassLoaderPool.release(pathLoaderPair.groovyClassLoader, false);
+			}
+			projectToLoaderCache.clear();
+		}
 	}
 
 	// public GroovyParser(CompilerOptions options, ProblemReporter problemReporter) {
@@ -228,13 +235,13 @@ public class GroovyParser {
 								"Classpath for GroovyClassLoader (used to discover transforms): " + path);
 					}
 					pathAndLoader = new PathLoaderPair(path);
-					projectToLoaderCache.put(projectName, pathAndLoader);
+					releaseReplaced(projectToLoaderCache.put(projectName, pathAndLoader));
 				} else {
 					if (!path.equals(pathAndLoader.classpath)) {
 						// classpath change detected
 						// System.out.println("Classpath change detected for " + projectName);
 						pathAndLoader = new PathLoaderPair(path);
-						projectToLoaderCache.put(projectName, pathAndLoader);
+						releaseReplaced(projectToLoaderCache.put(projectName, pathAndLoader));
 					}
 				}
 				// System.out.println("Using loader with path " + pathAndLoader.classpath);
@@ -244,6 +251,12 @@ public class GroovyParser {
 		return gcl;
 	}
 
+	private static void releaseReplaced(PathLoaderPair replaced) {
+		if (replaced != null) {
+			GroovyClassLoaderPool.release(replaced.groovyClassLoader, true);
+		}
+	}
+
 	// FIXASC review callers who pass null for options
 	public GroovyParser(Object requestor, CompilerOptions options, ProblemReporter problemReporter, boolean allowTransforms,
 			boolean isReconcile) {
@@ -277,6 +290,7 @@ public class GroovyParser {
 		// Currently it is not cached but created each time - we'll have to decide if there is a need to cache
 		GrapeAwareGroovyClassLoader grabbyLoader = new GrapeAwareGroovyClassLoader(gcl);
 		this.groovyCompilationUnit = makeCompilationUnit(grabbyLoader, gcl, isReconcile, allowTransforms);
+		useLoader(gcl);
 		this.groovyCompilationUnit.tweak(isReconcile);
 		this.groovyCompilationUnit.removeOutputPhaseOperation();
 
@@ -292,7 +306,7 @@ public class GroovyParser {
 		}
 		// this.lookupEnvironment = lookupEnvironment;
 		this.problemReporter = problemReporter;
-		this.resolver = new JDTResolver(groovyCompilationUnit);
+		this.resolver = new JDTResolver(groovyCompilationUnit, SharedTypeDescriptorCache.forClasspath(gclClasspath));
 		// groovyCompilationUnit.setClassLoader(gcl);
 		groovyCompilationUnit.setResolveVisitor(resolver);
 	}
@@ -360,7 +374,7 @@ public class GroovyParser {
 		}
 	}
 
-	private static URLClassLoader createConfigureLoader(String path) {
+	static URLClassLoader createConfigureLoader(String path) {
 		// GRECLIPSE-1090
 		ClassLoader pcl = GroovyParser.class.getClassLoader();// Thread.currentThread().getContextClassLoader();
 		if (path == null) {
@@ -402,14 +416,9 @@ public class GroovyParser {
 	}
 
 	/**
-	 * Call the groovy parser to drive the first few phases of
+	 * Creates the groovy source unit for a JDT compilation unit. Does not add it to the groovy compilation unit.
 	 */
-	public CompilationUnitDeclaration dietParse(ICompilationUnit sourceUnit, CompilationResult compilationResult) {
-		char[] sourceCode = sourceUnit.getContents();
-		if (sourceCode == null) {
-			sourceCode = CharOperation.NO_CHAR; // pretend empty from thereon
-		}
-
+	private EclipseSourceUnit createSourceUnit(ICompilationUnit sourceUnit, char[] sourceCode) {
 		// groovyCompilerConfig.setPluginFactory(new ErrorRecoveredCSTParserPluginFactory(null));
 		ErrorCollector errorCollector = new GroovyErrorCollectorForJDT(groovyCompilationUnit.getConfiguration());
 		String filepath = null;
@@ -438,9 +447,132 @@ public class GroovyParser {
 			}
 		}
 
-		SourceUnit groovySourceUnit = new EclipseSourceUnit(eclipseFile, filepath, new String(sourceCode),
+		EclipseSourceUnit groovySourceUnit = new EclipseSourceUnit(eclipseFile, filepath, new String(sourceCode),
 				groovyCompilationUnit.getConfiguration(), groovyCompilationUnit.getClassLoader(), errorCollector, this.resolver);
 		groovySourceUnit.isReconcile = isReconcile;
+		return groovySourceUnit;
+	}
+
+	/**
+	 * A groovy source unit that has been taken through the parsing phase ahead of JDT asking for it
+	 */
+	static class ParsedSource {
+		final char[] sourceCode;
+		final SourceUnit sourceUnit;
+
+		ParsedSource(char[] sourceCode, SourceUnit sourceUnit) {
+			this.sourceCode = sourceCode;
+			this.sourceUnit = sourceUnit;
+		}
+	}
+
+	/**
+	 * @return the parsed-ahead source for the unit or null if it has not been parsed ahead (or parsing it ahead failed). If parallel
+	 *         parsing is enabled and the compiler is working through a new batch of units, all groovy units in that batch are
+	 *         submitted for parsing first.
+	 */
+	private ParsedSource takeParsedAhead(ICompilationUnit sourceUnit) {
+		if (!parallelParse || !(requestor instanceof org.eclipse.jdt.internal.compiler.Compiler)) {
+			return null;
+		}
+		ReadManager readManager = ((org.eclipse.jdt.internal.compiler.Compiler) requestor).parser.readManager;
+		if (readManager != null && readManager != parsedAheadFor) {
+			parsedAheadFor = readManager;
+			ICompilationUnit[] units = (ICompilationUnit[]) ReflectionUtils.getPrivateField(ReadManager.class, "units", readManager);
+			if (units != null) {
+				parseAhead(units);
+			}
+		}
+		if (parsedAhead == null) {
+			return null;
+		}
+		Future<ParsedSource> future = parsedAhead.remove(new String(sourceUnit.getFileName()));
+		if (future == null) {
+			return null;
+		}
+		try {
+			ParsedSource parsed = future.get();
+			parsedAheadCount.incrementAndGet();
+			return parsed;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// parse it again on this thread, which reports the problem through the usual channels
+		}
+		return null;
+	}
+
+	/**
+	 * Parses the groovy units on a pool of threads. Only the per-source parsing phase is run here since the later phases (from
+	 * conversion onwards) share state across the whole groovy compilation unit.
+	 */
+	private void parseAhead(ICompilationUnit[] units) {
+		// make sure the parser plugin factory is created before it is accessed from several threads
+		groovyCompilationUnit.getConfiguration().getPluginFactory();
+
+		parsedAhead = new ConcurrentHashMap<String, Future<ParsedSource>>();
+		int threads = parallelParseThreads > 0 ? parallelParseThreads : Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, PARSER_THREADS);
+		try {
+			for (final ICompilationUnit unit : units) {
+				if (unit == null || !ContentTypeUtils.isGroovyLikeFileName(unit.getFileName())) {
+					continue;
+				}
+				parsedAhead.put(new String(unit.getFileName()), executor.submit(new Callable<ParsedSource>() {
+					public ParsedSource call() throws Exception {
+						char[] sourceCode = unit.getContents();
+						if (sourceCode == null) {
+							sourceCode = CharOperation.NO_CHAR;
+						}
+						SourceUnit groovySourceUnit = createSourceUnit(unit, sourceCode);
+						groovySourceUnit.parse();
+						groovySourceUnit.completePhase();
+						return new ParsedSource(sourceCode, groovySourceUnit);
+					}
+				}));
+			}
+		} finally {
+			// already submitted parses run to completion
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * @return the number of units whose source was parsed ahead on the thread pool and then used by the compiler
+	 */
+	public static int getParsedAheadCount() {
+		return parsedAheadCount.get();
+	}
+
+	private static final ThreadFactory PARSER_THREADS = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Groovy parser " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/**
+	 * Call the groovy parser to drive the first few phases of
+	 */
+	public CompilationUnitDeclaration dietParse(ICompilationUnit sourceUnit, CompilationResult compilationResult) {
+		char[] sourceCode = null;
+		SourceUnit groovySourceUnit = null;
+		ParsedSource parsed = takeParsedAhead(sourceUnit);
+		if (parsed != null) {
+			sourceCode = parsed.sourceCode;
+			groovySourceUnit = parsed.sourceUnit;
+		} else {
+			sourceCode = sourceUnit.getContents();
+			if (sourceCode == null) {
+				sourceCode = CharOperation.NO_CHAR; // pretend empty from thereon
+			}
+			groovySourceUnit = createSourceUnit(sourceUnit, sourceCode);
+		}
+		IFile eclipseFile = ((EclipseSourceUnit) groovySourceUnit).getEclipseFile();
+
 		GroovyCompilationUnitDeclaration gcuDeclaration = new GroovyCompilationUnitDeclaration(problemReporter, compilationResult,
 				sourceCode.length, groovyCompilationUnit, groovySourceUnit, compilerOptions);
 		// FIXASC get this from the Antlr parser
@@ -537,20 +669,47 @@ public class GroovyParser {
 	}
 
 	public void reset() {
+		dispose();
 		GroovyClassLoader gcl = getLoaderFor(gclClasspath);
 		GrapeAwareGroovyClassLoader grabbyLoader = new GrapeAwareGroovyClassLoader(gcl);
 		boolean allowTransforms = this.groovyCompilationUnit.allowTransforms;
 		boolean isReconcile = this.groovyCompilationUnit.isReconcile;
 		this.groovyCompilationUnit = makeCompilationUnit(grabbyLoader, gcl, isReconcile, allowTransforms);
-		this.resolver = new JDTResolver(groovyCompilationUnit);
+		useLoader(gcl);
+		this.resolver = new JDTResolver(groovyCompilationUnit, SharedTypeDescriptorCache.forClasspath(gclClasspath));
 		this.groovyCompilationUnit.setResolveVisitor(resolver);
 	}
 
+	/**
+	 * The current compilation unit runs with the given transform loader, which must not be closed until the unit is done.
+	 */
+	private void useLoader(GroovyClassLoader gcl) {
+		if (gcl != null) {
+			GroovyClassLoaderPool.addUser(gcl, groovyCompilationUnit);
+		}
+	}
+
+	/**
+	 * The current compilation unit is done: its transform loader may be closed once no other compilation or project uses it.
+	 * Parsers that are dropped without being disposed give their loader back once the compilation unit is garbage collected.
+	 */
+	public void dispose() {
+		GroovyClassLoader gcl = groovyCompilationUnit.getTransformLoader();
+		if (gcl != null) {
+			GroovyClassLoaderPool.removeUser(gcl, groovyCompilationUnit);
+		}
+	}
+
 	private CompilationUnit makeCompilationUnit(GroovyClassLoader loader, GroovyClassLoader transformLoader, boolean isReconcile,
 			boolean allowTransforms) {
 
 		// FIXASC (M3) need our own tweaked subclass of CompilerConfiguration?
 		CompilerConfiguration compilerConfiguration = new CompilerConfiguration();
+		// reconciles do not wait for the disk, and their contents are mostly being edited anyway
+		ParseResultCache parseResultCache = isReconcile ? null : ParseResultCache.getCache(projectName);
+		if (parseResultCache != null) {
+			compilerConfiguration.setPluginFactory(new CachingParserPluginFactory(parseResultCache));
+		}
 		if (compilerOptions.groovyCustomizerClassesList != null && transformLoader != null) {
 			List<CompilationCustomizer> customizers = new ArrayList<CompilationCustomizer>();
 			if (loader != null) {
@@ -12,6 +12,7 @@
 package org.codehaus.jdt.groovy.internal.compiler.ast;
 
 import java.lang.reflect.Modifier;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -84,6 +85,9 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 
 	private boolean anyGenericsInitialized = false;
 
+	// set once any member is added (by lazy initialization or a transform), after which the shared descriptor is not consulted
+	private volatile boolean membersAdded = false;
+
 	// The resolver instance involved at the moment
 	JDTResolver resolver;
 
@@ -325,6 +329,50 @@ public class JDTClassNode extends ClassNode implements JDTNode {
 		}
 	}
 
+	/**
+	 * A type that is known not to declare a member of the given name answers without initializing its members, unless members have
+	 * been added to it that the descriptor does not know about.
+	 */
+	@Override
+	public List<MethodNode> getDeclaredMethods(String name) {
+		if (!lazyInitDone && !membersAdded && redirect == null) {
+			SharedTypeDescriptorCache.TypeDescriptor descriptor = resolver.getTypeDescriptor(jdtBinding);
+			if (descriptor != null && !descriptor.declaresMethod(name)) {
+				return Collections.emptyList();
+			}
+		}
+		return super.getDeclaredMethods(name);
+	}
+
+	@Override
+	public FieldNode getDeclaredField(String name) {
+		if (!lazyInitDone && !membersAdded && redirect == null) {
+			SharedTypeDescriptorCache.TypeDescriptor descriptor = resolver.getTypeDescriptor(jdtBinding);
+			if (descriptor != null && !descriptor.declaresField(name)) {
+				return null;
+			}
+		}
+		return super.getDeclaredField(name);
+	}
+
+	@Override
+	public void addMethod(MethodNode node) {
+		membersAdded = true;
+		super.addMethod(node);
+	}
+
+	@Override
+	public void addField(FieldNode node) {
+		membersAdded = true;
+		super.addField(node);
+	}
+
+	@Override
+	public void addFieldFirst(FieldNode node) {
+		membersAdded = true;
+		super.addFieldFirst(node);
+	}
+
 	@Override
 	public boolean mightHaveInners() {
 		// return super.hasInnerClasses();
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.internal.compiler.ast;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jdt.internal.compiler.lookup.Binding;
+
+/**
+ * The cache a {@link JDTResolver} keeps from bindings to the JDTClassNodes built for them. Next to the binding map an index from
+ * the readable name of each binding (eg. <tt>java.util.List&lt;E&gt;</tt>) is maintained, so that looking a node up by name does
+ * not depend on the number of cached nodes.
+ * <p>
+ * The binding map has weak keys, although a node refers to its own binding, so in practice entries live as long as the cache. The
+ * name index therefore holds its nodes strongly without extending their lifetime.
+ */
+public class JDTClassNodeCache {
+
+	private final Map<Binding, JDTClassNode> nodesByBinding = new WeakHashMap<Binding, JDTClassNode>();
+
+	private final Map<String, JDTClassNode> nodesByName = new HashMap<String, JDTClassNode>();
+
+	public synchronized JDTClassNode get(Binding binding) {
+		return nodesByBinding.get(binding);
+	}
+
+	/**
+	 * @return the node for the binding whose readable name is the given one, or <code>null</code>. If several bindings share the
+	 *         name, the node that was cached first is answered.
+	 */
+	public synchronized JDTClassNode getByName(String readableName) {
+		return nodesByName.get(readableName);
+	}
+
+	public synchronized void put(Binding binding, JDTClassNode node) {
+		nodesByBinding.put(binding, node);
+		String name = new String(binding.readableName());
+		if (!nodesByName.containsKey(name)) {
+			nodesByName.put(name, node);
+		}
+	}
+
+	public synchronized int size() {
+		return nodesByBinding.size();
+	}
+
+	public synchronized void clear() {
+		nodesByBinding.clear();
+		nodesByName.clear();
+	}
+}
@@ -14,14 +14,12 @@ package org.codehaus.jdt.groovy.internal.compiler.ast;
 import groovy.lang.GroovyClassLoader;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.WeakHashMap;
 
 import org.codehaus.groovy.ast.ClassHelper;
 import org.codehaus.groovy.ast.ClassNode;
@@ -32,7 +30,6 @@ import org.codehaus.groovy.control.SourceUnit;
 import org.codehaus.jdt.groovy.internal.compiler.ast.GroovyParser.GrapeAwareGroovyClassLoader;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.ast.TypeDeclaration;
-import org.eclipse.jdt.internal.compiler.lookup.Binding;
 import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
 
 /**
@@ -41,10 +38,11 @@ import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
  *
  * Resolver lifecycle:<br>
  * The JDTResolver is created at the same time as the (Groovy) CompilationUnit. The CompilationUnit knows about all the code that is
- * to be compiled together. The resolver maintains a cache from Binding to JDTClassNode and the cache contents have the same
- * lifetime as the JDTResolver. The resolver does type lookups through the currently active scope - the active scope is set when the
- * method 'commencingResolution()' is called. This is called by the superclass (ResolveVisitor) when it is about to start resolving
- * every reference in a type.
+ * to be compiled together. The resolver maintains a cache from Binding to JDTClassNode (a {@link JDTClassNodeCache}) and the cache
+ * contents have the same lifetime as the JDTResolver. The resolver does type lookups through the currently active scope - the active
+ * scope is set when the method 'commencingResolution()' is called. This is called by the superclass (ResolveVisitor) when it is
+ * about to start resolving every reference in a type. The member names of binary types from archives are shared with other
+ * resolvers that compile against the same classpath, through a {@link SharedTypeDescriptorCache}.
  *
  * @author Andy Clement
  */
@@ -89,6 +87,14 @@ public class JDTResolver extends ResolveVisitor {
 		commonTypes.put("short", ClassHelper.short_TYPE);
 	}
 
+	/**
+	 * @return the node every resolver redirects references to the given type to, or null if the type is not one of the common
+	 *         types that are resolved without asking JDT
+	 */
+	public static ClassNode getCommonType(String qualifiedName) {
+		return commonTypes.get(qualifiedName);
+	}
+
 	// By recording what is currently in progress in terms of creation, we avoid recursive problems (like Enum<E extends Enum<E>>)
 	private Map<TypeBinding, JDTClassNode> inProgress = new HashMap<TypeBinding, JDTClassNode>();
 
@@ -102,10 +108,18 @@ public class JDTResolver extends ResolveVisitor {
 	private List<ClassNode> haveBeenResolved = new ArrayList<ClassNode>();
 
 	// Cache from bindings to JDTClassNodes to avoid unnecessary JDTClassNode creation
-	private Map<Binding, JDTClassNode> nodeCache = Collections.synchronizedMap(new WeakHashMap<Binding, JDTClassNode>());
+	private JDTClassNodeCache nodeCache = new JDTClassNodeCache();
+
+	// Descriptors of binary types that are shared with other resolvers using the same classpath (may be null)
+	private final SharedTypeDescriptorCache typeDescriptors;
 
 	public JDTResolver(CompilationUnit groovyCompilationUnit) {
+		this(groovyCompilationUnit, null);
+	}
+
+	public JDTResolver(CompilationUnit groovyCompilationUnit, SharedTypeDescriptorCache typeDescriptors) {
 		super(groovyCompilationUnit);
+		this.typeDescriptors = typeDescriptors;
 		if (recordInstances) {
 			if (instances == null) {
 				instances = new ArrayList<JDTResolver>();
@@ -115,23 +129,14 @@ public class JDTResolver extends ResolveVisitor {
 	}
 
 	public static JDTClassNode getCachedNode(JDTResolver instance, String name) {
-		for (Map.Entry<Binding, JDTClassNode> nodeFromCache : instance.nodeCache.entrySet()) {
-			String nodename = new String(nodeFromCache.getKey().readableName());
-			if (nodename.equals(name)) {
-				return nodeFromCache.getValue();
-			}
-		}
-		return null;
+		return instance.nodeCache.getByName(name);
 	}
 
 	public static JDTClassNode getCachedNode(String name) {
 		for (JDTResolver resolver : instances) {
-			for (Map.Entry<Binding, JDTClassNode> nodeFromCache : resolver.nodeCache.entrySet()) {
-				String nodename = new String(nodeFromCache.getKey().readableName());
-				System.out.println(nodename);
-				if (nodename.equals(name)) {
-					return nodeFromCache.getValue();
-				}
+			JDTClassNode node = resolver.nodeCache.getByName(name);
+			if (node != null) {
+				return node;
 			}
 		}
 		return null;
@@ -483,6 +488,13 @@ public class JDTResolver extends ResolveVisitor {
 		return classNode;
 	}
 
+	/**
+	 * @return the shared description of the members of a binary type, or null if the type is not described
+	 */
+	SharedTypeDescriptorCache.TypeDescriptor getTypeDescriptor(TypeBinding jdtBinding) {
+		return typeDescriptors != null ? typeDescriptors.get(jdtBinding) : null;
+	}
+
 	/**
 	 * Called when a resolvevisitor is commencing resolution for a type - allows us to setup the JDTResolver to point at the right
 	 * scope for resolutionification. If not able to find a scope, that is a serious problem!
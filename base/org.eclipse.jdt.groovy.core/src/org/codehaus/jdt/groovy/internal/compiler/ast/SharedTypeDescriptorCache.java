@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.internal.compiler.ast;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.internal.compiler.env.IDependent;
+import org.eclipse.jdt.internal.compiler.lookup.BinaryTypeBinding;
+import org.eclipse.jdt.internal.compiler.lookup.FieldBinding;
+import org.eclipse.jdt.internal.compiler.lookup.MethodBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
+
+/**
+ * Shares what is known about the binary types on a classpath between all the resolvers that compile against it. Every reconcile
+ * creates a fresh resolver that wraps the same JDK, Groovy runtime and library bindings into new {@link JDTClassNode}s, and
+ * looking up a method or field by name initializes all the members of every node it passes on its way up a hierarchy. The
+ * descriptors kept here record the names of the members that each type declares, so that a node can answer that it has no member
+ * of some name without being initialized.
+ * <p>
+ * The nodes themselves are not shared: they hold the bindings of the lookup environment that created them, which are only valid
+ * for that compilation. Descriptors hold nothing but names.
+ * <p>
+ * Only plain binary types read from archives are described. Their contents can only change if an archive or a classpath
+ * changes, which Java model deltas report: each such change starts a new classpath generation, and a cache made in an earlier
+ * generation is dropped the next time it is asked for. The cache for a project that is closed is dropped as well. Descriptors
+ * are kept in LRU order and bounded by the <code>greclipse.classNodeCache.size</code> system property; setting
+ * <code>greclipse.classNodeCache</code> to false turns the sharing off.
+ *
+ * @see JDTClassNode#getDeclaredMethods(String)
+ */
+public class SharedTypeDescriptorCache {
+
+	public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.classNodeCache", "true")).booleanValue();
+
+	private static final int MAX_TYPES = Integer.getInteger("greclipse.classNodeCache.size", 5000);
+
+	// the number of distinct classpaths that are cached at any one time
+	private static final int MAX_CLASSPATHS = 4;
+
+	private static final Map<String, SharedTypeDescriptorCache> caches = new LinkedHashMap<String, SharedTypeDescriptorCache>(8,
+			0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SharedTypeDescriptorCache> eldest) {
+			return size() > MAX_CLASSPATHS;
+		}
+	};
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private static final AtomicLong currentGeneration = new AtomicLong();
+
+	private static final int CLASSPATH_CHANGE_FLAGS = IJavaElementDelta.F_CLASSPATH_CHANGED
+			| IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED
+			| IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH;
+
+	private static final IElementChangedListener classpathListener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			if (isClasspathChange(event.getDelta())) {
+				classpathChanged();
+			}
+		}
+	};
+
+	/**
+	 * Start a new classpath generation whenever the Java model reports a change to a classpath or an archive.
+	 */
+	public static void install() {
+		JavaCore.addElementChangedListener(classpathListener, ElementChangedEvent.POST_CHANGE);
+	}
+
+	public static void uninstall() {
+		JavaCore.removeElementChangedListener(classpathListener);
+	}
+
+	private static boolean isClasspathChange(IJavaElementDelta delta) {
+		if ((delta.getFlags() & CLASSPATH_CHANGE_FLAGS) != 0) {
+			return true;
+		}
+		// only the model, projects and roots report classpath changes
+		if (delta.getElement().getElementType() < IJavaElement.PACKAGE_FRAGMENT_ROOT) {
+			IJavaElementDelta[] children = delta.getAffectedChildren();
+			for (int i = 0; i < children.length; i++) {
+				if (isClasspathChange(children[i])) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Start a new classpath generation, so that the descriptors of all classpaths are computed again.
+	 */
+	public static void classpathChanged() {
+		currentGeneration.incrementAndGet();
+	}
+
+	/**
+	 * @return the current classpath generation, which changes whenever a classpath or an archive changes
+	 */
+	public static long getGeneration() {
+		return currentGeneration.get();
+	}
+
+	/**
+	 * @param classpath the classpath a compilation runs against, entries separated by {@link File#pathSeparator}
+	 * @return the cache to use for that classpath or <code>null</code> if descriptors should not be shared
+	 */
+	public static SharedTypeDescriptorCache forClasspath(String classpath) {
+		if (!enabled || classpath == null || classpath.length() == 0) {
+			return null;
+		}
+		long current = currentGeneration.get();
+		synchronized (caches) {
+			SharedTypeDescriptorCache cache = caches.get(classpath);
+			if (cache == null || cache.generation != current) {
+				cache = new SharedTypeDescriptorCache(current);
+				caches.put(classpath, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Discard the descriptors shared for the given classpath.
+	 */
+	public static void invalidate(String classpath) {
+		synchronized (caches) {
+			caches.remove(classpath);
+		}
+	}
+
+	/**
+	 * Discard all shared descriptors.
+	 */
+	public static void invalidateAll() {
+		synchronized (caches) {
+			caches.clear();
+		}
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	public static void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	/**
+	 * Only plain binary types loaded from an archive can be described: types from output folders change with every build and the
+	 * other kinds of bindings (including missing types) are specific to the compilation that created them.
+	 */
+	public static boolean isShareable(TypeBinding binding) {
+		if (binding.getClass() != BinaryTypeBinding.class) {
+			return false;
+		}
+		char[] fileName = ((BinaryTypeBinding) binding).getFileName();
+		if (fileName == null) {
+			return false;
+		}
+		for (int i = 0; i < fileName.length; i++) {
+			if (fileName[i] == IDependent.JAR_FILE_ENTRY_SEPARATOR) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private final long generation;
+
+	private final Map<String, TypeDescriptor> descriptors = new LinkedHashMap<String, TypeDescriptor>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TypeDescriptor> eldest) {
+			return size() > MAX_TYPES;
+		}
+	};
+
+	private SharedTypeDescriptorCache(long generation) {
+		this.generation = generation;
+	}
+
+	/**
+	 * @return the descriptor of the type, which is computed from the binding if the type has not been described yet, or
+	 *         <code>null</code> if the type cannot be described
+	 */
+	TypeDescriptor get(TypeBinding binding) {
+		if (!isShareable(binding)) {
+			return null;
+		}
+		String key = new String(binding.computeUniqueKey());
+		TypeDescriptor descriptor;
+		synchronized (descriptors) {
+			descriptor = descriptors.get(key);
+		}
+		if (descriptor != null) {
+			hits.incrementAndGet();
+			return descriptor;
+		}
+		misses.incrementAndGet();
+		descriptor = new TypeDescriptor((BinaryTypeBinding) binding);
+		synchronized (descriptors) {
+			descriptors.put(key, descriptor);
+		}
+		return descriptor;
+	}
+
+	int size() {
+		synchronized (descriptors) {
+			return descriptors.size();
+		}
+	}
+
+	/**
+	 * The names of the methods and fields that a binary type declares, taken from the same bindings that {@link JDTClassNode}
+	 * turns into members.
+	 */
+	static class TypeDescriptor {
+
+		private final Set<String> methodNames;
+
+		private final Set<String> fieldNames;
+
+		TypeDescriptor(BinaryTypeBinding binding) {
+			Set<String> methods = new HashSet<String>();
+			addMethodNames(methods, binding.methods());
+			addMethodNames(methods, binding.infraMethods());
+			Set<String> fields = new HashSet<String>();
+			FieldBinding[] fieldBindings = binding.fields();
+			if (fieldBindings != null) {
+				for (int i = 0; i < fieldBindings.length; i++) {
+					fields.add(new String(fieldBindings[i].name));
+				}
+			}
+			this.methodNames = Collections.unmodifiableSet(methods);
+			this.fieldNames = Collections.unmodifiableSet(fields);
+		}
+
+		private static void addMethodNames(Set<String> names, MethodBinding[] bindings) {
+			if (bindings != null) {
+				for (int i = 0; i < bindings.length; i++) {
+					if (!bindings[i].isConstructor()) {
+						names.add(new String(bindings[i].selector));
+					}
+				}
+			}
+		}
+
+		boolean declaresMethod(String name) {
+			return methodNames.contains(name);
+		}
+
+		boolean declaresField(String name) {
+			return fieldNames.contains(name);
+		}
+	}
+}
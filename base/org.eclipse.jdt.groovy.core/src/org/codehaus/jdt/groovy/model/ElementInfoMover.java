@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.ILocalVariable;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.internal.compiler.ast.Annotation;
+import org.eclipse.jdt.internal.core.AnnotatableInfo;
+import org.eclipse.jdt.internal.core.AnnotationInfo;
+import org.eclipse.jdt.internal.core.CompilationUnitElementInfo;
+import org.eclipse.jdt.internal.core.ImportContainerInfo;
+import org.eclipse.jdt.internal.core.ImportDeclarationElementInfo;
+import org.eclipse.jdt.internal.core.JavaElement;
+import org.eclipse.jdt.internal.core.JavaElementInfo;
+import org.eclipse.jdt.internal.core.JavaModelManager;
+import org.eclipse.jdt.internal.core.LocalVariable;
+import org.eclipse.jdt.internal.core.SourceMethodElementInfo;
+import org.eclipse.jdt.internal.core.SourceTypeElementInfo;
+import org.eclipse.jdt.internal.core.TypeParameterElementInfo;
+
+/**
+ * Builds the Java model structure of a working copy without parsing it again, after {@link IncrementalReconciler} has applied an
+ * edit to its module. The edit is confined to a method body that declares no types, so the new contents declare the same
+ * elements as the old ones: the element infos built for the old contents are copied and the positions that follow the edit are
+ * moved by the size of the edit. The old infos are still cached while the new structure is built and are not changed, since
+ * they may be read at the same time.
+ */
+public class ElementInfoMover {
+
+	private static final AtomicLong moves = new AtomicLong();
+
+	/**
+	 * @return the number of times the structure of a working copy was moved rather than parsed
+	 */
+	public static long getMoveCount() {
+		return moves.get();
+	}
+
+	public static void resetStatistics() {
+		moves.set(0);
+	}
+
+	// SourceRefElementInfo holds the source range of every member, but is not visible outside of its package
+	private static final Class<?> SOURCE_REF_INFO = AnnotationInfo.class.getSuperclass();
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	/**
+	 * @param update the edit that was applied to the module, along with the structure built for the old contents
+	 * @param newInfo the info of the unit to fill in for the new contents
+	 * @param newElements receives the infos of the elements of the unit
+	 * @return true iff the structure has been moved; otherwise nothing has been added to newElements and the unit has to be parsed
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	static boolean move(IncrementalReconciler.Update update, CompilationUnitElementInfo newInfo, Map newElements) {
+		CompilationUnitElementInfo oldInfo = update.oldStructure;
+		if (oldInfo == null || oldInfo.getSourceLength() != update.oldLength) {
+			return false;
+		}
+		ElementInfoMover mover = new ElementInfoMover(update);
+		IJavaElement[] children = oldInfo.getChildren();
+		try {
+			if (!mover.copyAll(children)) {
+				return false;
+			}
+		} catch (RuntimeException e) {
+			if (GroovyLogManager.manager.hasLoggers()) {
+				GroovyLogManager.manager.log(TraceCategory.COMPILER, "Moving the structure of the unit failed: " + e);
+			}
+			return false;
+		}
+		newInfo.setChildren(children);
+		newInfo.setSourceLength(update.newLength);
+		newInfo.annotationNumber = oldInfo.annotationNumber;
+		newInfo.setIsStructureKnown(oldInfo.isStructureKnown());
+		newElements.putAll(mover.infos);
+		moves.incrementAndGet();
+		return true;
+	}
+
+	private final JavaModelManager manager = JavaModelManager.getJavaModelManager();
+	private final Map<IJavaElement, Object> infos = new HashMap<IJavaElement, Object>();
+	private final int editStart, oldEnd, delta;
+	// cleared when an element has a position inside of the text the edit replaced
+	private boolean valid = true;
+
+	private ElementInfoMover(IncrementalReconciler.Update update) {
+		this.editStart = update.editStart;
+		this.oldEnd = update.oldEnd;
+		this.delta = update.newEnd - update.oldEnd;
+	}
+
+	private boolean copyAll(IJavaElement[] elements) {
+		if (elements != null) {
+			for (IJavaElement element : elements) {
+				if (!copy(element)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the info of the element and of everything it declares.
+	 */
+	private boolean copy(IJavaElement element) {
+		Object old = manager.getInfo(element);
+		if (!(old instanceof JavaElementInfo)) {
+			return false;
+		}
+		JavaElementInfo info = (JavaElementInfo) ((JavaElementInfo) old).clone();
+		if (!moveInfo(info)) {
+			return false;
+		}
+		infos.put(element, info);
+		if (info instanceof AnnotatableInfo
+				&& !copyAll((IJavaElement[]) ReflectionUtils.getPrivateField(AnnotatableInfo.class, "annotations", info))) {
+			return false;
+		}
+		if (info instanceof SourceTypeElementInfo
+				&& !copyAll((IJavaElement[]) ReflectionUtils.getPrivateField(SourceTypeElementInfo.class, "typeParameters", info))) {
+			return false;
+		}
+		if (info instanceof SourceMethodElementInfo) {
+			if (!copyAll((IJavaElement[]) ReflectionUtils.getPrivateField(SourceMethodElementInfo.class, "typeParameters", info))
+					|| !moveArguments((SourceMethodElementInfo) info)) {
+				return false;
+			}
+		}
+		return valid && copyAll(info.getChildren());
+	}
+
+	/**
+	 * @return false iff the info is of a kind that cannot be moved
+	 */
+	private boolean moveInfo(JavaElementInfo info) {
+		if (info instanceof ImportContainerInfo) {
+			return true;
+		}
+		if (!SOURCE_REF_INFO.isInstance(info)) {
+			return false;
+		}
+		moveField(SOURCE_REF_INFO, "sourceRangeStart", info);
+		moveField(SOURCE_REF_INFO, "sourceRangeEnd", info);
+		if (info instanceof AnnotatableInfo) {
+			moveField(AnnotatableInfo.class, "nameStart", info);
+			moveField(AnnotatableInfo.class, "nameEnd", info);
+		} else if (info instanceof ImportDeclarationElementInfo) {
+			moveField(ImportDeclarationElementInfo.class, "nameStart", info);
+			moveField(ImportDeclarationElementInfo.class, "nameEnd", info);
+		} else if (info instanceof AnnotationInfo) {
+			AnnotationInfo annotation = (AnnotationInfo) info;
+			annotation.nameStart = move(annotation.nameStart);
+			annotation.nameEnd = move(annotation.nameEnd);
+		} else if (info instanceof TypeParameterElementInfo) {
+			TypeParameterElementInfo typeParameter = (TypeParameterElementInfo) info;
+			typeParameter.nameStart = move(typeParameter.nameStart);
+			typeParameter.nameEnd = move(typeParameter.nameEnd);
+		}
+		return true;
+	}
+
+	/**
+	 * Parameters are compared by their positions, so the parameters of a method that follows the edit are replaced by new ones.
+	 * Their annotations are children of the old parameters, so annotated parameters cannot be moved.
+	 */
+	private boolean moveArguments(SourceMethodElementInfo info) {
+		ILocalVariable[] arguments = (ILocalVariable[]) ReflectionUtils.getPrivateField(SourceMethodElementInfo.class, "arguments",
+				info);
+		if (arguments == null) {
+			return true;
+		}
+		ILocalVariable[] moved = new ILocalVariable[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			if (!(arguments[i] instanceof LocalVariable)) {
+				return false;
+			}
+			LocalVariable argument = (LocalVariable) arguments[i];
+			LocalVariable copy = argument;
+			if (argument.declarationSourceEnd >= editStart) {
+				if (argument.annotations != null && argument.annotations.length > 0) {
+					return false;
+				}
+				copy = new LocalVariable((JavaElement) argument.getParent(), argument.getElementName(),
+						move(argument.declarationSourceStart), move(argument.declarationSourceEnd), move(argument.nameStart),
+						move(argument.nameEnd), argument.getTypeSignature(), NO_ANNOTATIONS, argument.getFlags(),
+						argument.isParameter());
+			} else if (!copyAll(argument.annotations)) {
+				return false;
+			}
+			Object old = manager.getInfo(argument);
+			if (old instanceof JavaElementInfo) {
+				JavaElementInfo localInfo = (JavaElementInfo) ((JavaElementInfo) old).clone();
+				if (!moveInfo(localInfo)) {
+					return false;
+				}
+				infos.put(copy, localInfo);
+			} else if (old != null) {
+				return false;
+			}
+			moved[i] = copy;
+		}
+		ReflectionUtils.setPrivateField(SourceMethodElementInfo.class, "arguments", info, moved);
+		return valid;
+	}
+
+	private void moveField(Class<?> declaringClass, String name, Object info) {
+		int position = ((Integer) ReflectionUtils.getPrivateField(declaringClass, name, info)).intValue();
+		ReflectionUtils.setPrivateField(declaringClass, name, info, Integer.valueOf(move(position)));
+	}
+
+	private int move(int position) {
+		if (position >= oldEnd) {
+			return position + delta;
+		}
+		if (position >= editStart) {
+			// only the edited body encloses the edit, and it declares no elements
+			valid = false;
+		}
+		return position;
+	}
+}
@@ -122,7 +122,8 @@ public class GroovyCompilationUnit extends CompilationUnit {
 				makeConsistent(null);
 			}
 			boolean becameWorkingCopy = false;
-			ModuleNodeMapper.getInstance().lock();
+			PerWorkingCopyInfo purged = null;
+			ModuleNodeMapper.getInstance().lock(this);
 			// discard the working copy after finishing
 			// if there was no working copy to begin with
 			try {
@@ -131,7 +132,11 @@ public class GroovyCompilationUnit extends CompilationUnit {
 				}
 				PerWorkingCopyInfo info = getPerWorkingCopyInfo();
 				if (info != null) {
-					return ModuleNodeMapper.getInstance().get(info);
+					ModuleNodeInfo moduleInfo = ModuleNodeMapper.getInstance().get(info);
+					if (moduleInfo != null || becameWorkingCopy || !ModuleNodeMapper.shouldStoreResovler()) {
+						return moduleInfo;
+					}
+					purged = info;
 				}
 			} finally {
 				try {
@@ -139,9 +144,15 @@ public class GroovyCompilationUnit extends CompilationUnit {
 						discardWorkingCopy();
 					}
 				} finally {
-					ModuleNodeMapper.getInstance().unlock();
+					ModuleNodeMapper.getInstance().unlock(this);
 				}
 			}
+			if (purged != null) {
+				// entry was purged because its resolver was collected, so rebuild it. This is done outside of the lock so that a slow
+				// build does not hold up other units; the new module node is published under the lock by buildStructure
+				openWhenClosed(createElementInfo(), false, new NullProgressMonitor());
+				return ModuleNodeMapper.getInstance().get(purged);
+			}
 		} catch (JavaModelException e) {
 			Util.log(e, "Exception thrown when trying to get Groovy module node for " + this.getElementName()); //$NON-NLS-1$
 		}
@@ -167,7 +178,7 @@ public class GroovyCompilationUnit extends CompilationUnit {
 	@Override
 	public void discardWorkingCopy() throws JavaModelException {
 		// GRECLIPSE-804 must synchronize
-		ModuleNodeMapper.getInstance().lock();
+		ModuleNodeMapper.getInstance().lock(this);
 		try {
 			PerWorkingCopyInfo info = getPerWorkingCopyInfo();
 			if (workingCopyInfoWillBeDiscarded(info)) {
@@ -175,7 +186,7 @@ public class GroovyCompilationUnit extends CompilationUnit {
 			}
 			super.discardWorkingCopy();
 		} finally {
-			ModuleNodeMapper.getInstance().unlock();
+			ModuleNodeMapper.getInstance().unlock(this);
 		}
 	}
 
@@ -323,26 +334,38 @@ public class GroovyCompilationUnit extends CompilationUnit {
 				// this buildStructure for each one. The 'full' parse (with bindings) is only required for
 				// the top most (regardless of the computeProblems setting) and so we track how many recursive
 				// calls we have made - if we are at depth 2 we do what JDT was going to do (the quick thing).
+				// set when the module cached for this working copy has been brought up to date without compiling the unit
+				Map incrementalProblems = null;
 				if (computeProblems || depth.get() < 2) {
-					if (problems == null) {
+					IncrementalReconciler.Update update = null;
+					if (!createAST && depth.get() < 2) {
+						// a DOM AST needs the whole unit compiled; otherwise an edit inside a method body can be applied to the
+						// cached module
+						update = ModuleNodeMapper.getInstance().reconcileIncrementally(perWorkingCopyInfo, source.getContents(),
+								unitInfo);
+					}
+					if (update != null) {
+						incrementalProblems = update.problems;
+						// the elements of the unit have not changed, so the structure built for the old contents is moved rather
+						// than parsed again, unless it is not known
+						if (!ElementInfoMover.move(update, unitInfo, newElements)) {
+							compilationUnitDeclaration = (GroovyCompilationUnitDeclaration) parser.parseCompilationUnit(source,
+									true /* full parse to find local elements */, pm);
+						}
+						if (problems == null) {
+							if (computeProblems) {
+								reportProblems(perWorkingCopyInfo, incrementalProblems);
+							}
+						} else {
+							problems.putAll(incrementalProblems);
+						}
+					} else if (problems == null) {
 						// report problems to the problem requestor
 						problems = new HashMap();
 						compilationUnitDeclaration = (GroovyCompilationUnitDeclaration) CompilationUnitProblemFinder.process(
 								source, parser, this.owner, problems, createAST, reconcileFlags, pm);
 						if (computeProblems) {
-							try {
-								perWorkingCopyInfo.beginReporting();
-								for (Iterator iteraror = problems.values().iterator(); iteraror.hasNext();) {
-									CategorizedProblem[] categorizedProblems = (CategorizedProblem[]) iteraror.next();
-									if (categorizedProblems == null)
-										continue;
-									for (int i = 0, length = categorizedProblems.length; i < length; i++) {
-										perWorkingCopyInfo.acceptProblem(categorizedProblems[i]);
-									}
-								}
-							} finally {
-								perWorkingCopyInfo.endReporting();
-							}
+							reportProblems(perWorkingCopyInfo, problems);
 						}
 					} else {
 						// collect problems
@@ -352,11 +375,19 @@ public class GroovyCompilationUnit extends CompilationUnit {
 				} else {
 					compilationUnitDeclaration = (GroovyCompilationUnitDeclaration) parser
 							.parseCompilationUnit(source, true /* full parse to find local elements */, pm);
+					// the cached module has not been brought up to date with the contents this structure was built from
+					ModuleNodeMapper.getInstance().forgetStructure(perWorkingCopyInfo);
 				}
 
 				// GROOVY
 				// if this is a working copy, then we have more work to do
-				maybeCacheModuleNode(perWorkingCopyInfo, compilationUnitDeclaration);
+				if (incrementalProblems == null) {
+					maybeCacheModuleNode(perWorkingCopyInfo, compilationUnitDeclaration);
+					if (problems != null && compilationUnitDeclaration != null) {
+						ModuleNodeMapper.getInstance().recordReconcileState(perWorkingCopyInfo,
+								compilationUnitDeclaration.getModuleNode(), source.getContents(), problems, unitInfo);
+					}
+				}
 
 				// create the DOM AST from the compiler AST
 				if (createAST) {
@@ -407,6 +438,22 @@ public class GroovyCompilationUnit extends CompilationUnit {
 		}
 	}
 
+	private void reportProblems(JavaModelManager.PerWorkingCopyInfo perWorkingCopyInfo, Map problems) {
+		try {
+			perWorkingCopyInfo.beginReporting();
+			for (Iterator iteraror = problems.values().iterator(); iteraror.hasNext();) {
+				CategorizedProblem[] categorizedProblems = (CategorizedProblem[]) iteraror.next();
+				if (categorizedProblems == null)
+					continue;
+				for (int i = 0, length = categorizedProblems.length; i < length; i++) {
+					perWorkingCopyInfo.acceptProblem(categorizedProblems[i]);
+				}
+			}
+		} finally {
+			perWorkingCopyInfo.endReporting();
+		}
+	}
+
 	/**
 	 * @param perWorkingCopyInfo
 	 * @param compilationUnitDeclaration
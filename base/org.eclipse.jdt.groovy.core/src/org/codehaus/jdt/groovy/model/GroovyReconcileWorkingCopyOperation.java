@@ -23,6 +23,7 @@ import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
 import org.eclipse.jdt.internal.core.CompilationUnit;
+import org.eclipse.jdt.internal.core.CompilationUnitElementInfo;
 import org.eclipse.jdt.internal.core.CompilationUnitProblemFinder;
 import org.eclipse.jdt.internal.core.JavaElementDelta;
 import org.eclipse.jdt.internal.core.JavaModelManager;
@@ -86,6 +87,11 @@ public class GroovyReconcileWorkingCopyOperation extends ReconcileWorkingCopyOpe
 					if (!(workingCopy instanceof GroovyClassFileWorkingCopy)) {
 						ModuleNodeMapper.getInstance().maybeCacheModuleNode(workingCopy.getPerWorkingCopyInfo(),
 								(GroovyCompilationUnitDeclaration) unit);
+						// the working copy is consistent, so its structure has been built from the same contents
+						Object structure = JavaModelManager.getJavaModelManager().getInfo(workingCopy);
+						ModuleNodeMapper.getInstance().recordReconcileState(workingCopy.getPerWorkingCopyInfo(),
+								((GroovyCompilationUnitDeclaration) unit).getModuleNode(), source.getContents(), this.problems,
+								structure instanceof CompilationUnitElementInfo ? (CompilationUnitElementInfo) structure : null);
 					}
 				}
 				// GROOVY end
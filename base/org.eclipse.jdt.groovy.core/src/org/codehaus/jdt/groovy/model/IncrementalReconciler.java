@@ -0,0 +1,1411 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.model;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.GroovyBugError;
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.AnnotatedNode;
+import org.codehaus.groovy.ast.AnnotationNode;
+import org.codehaus.groovy.ast.ClassCodeVisitorSupport;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport;
+import org.codehaus.groovy.ast.Comment;
+import org.codehaus.groovy.ast.ConstructorNode;
+import org.codehaus.groovy.ast.DynamicVariable;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.GenericsType;
+import org.codehaus.groovy.ast.ImportNode;
+import org.codehaus.groovy.ast.ImportNodeCompatibilityWrapper;
+import org.codehaus.groovy.ast.InnerClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.codehaus.groovy.ast.VariableScope;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.ArrayExpression;
+import org.codehaus.groovy.ast.expr.AttributeExpression;
+import org.codehaus.groovy.ast.expr.BinaryExpression;
+import org.codehaus.groovy.ast.expr.BitwiseNegationExpression;
+import org.codehaus.groovy.ast.expr.BooleanExpression;
+import org.codehaus.groovy.ast.expr.CastExpression;
+import org.codehaus.groovy.ast.expr.ClassExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.ClosureListExpression;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.ConstructorCallExpression;
+import org.codehaus.groovy.ast.expr.DeclarationExpression;
+import org.codehaus.groovy.ast.expr.ElvisOperatorExpression;
+import org.codehaus.groovy.ast.expr.Expression;
+import org.codehaus.groovy.ast.expr.FieldExpression;
+import org.codehaus.groovy.ast.expr.GStringExpression;
+import org.codehaus.groovy.ast.expr.ListExpression;
+import org.codehaus.groovy.ast.expr.MapEntryExpression;
+import org.codehaus.groovy.ast.expr.MapExpression;
+import org.codehaus.groovy.ast.expr.MethodCallExpression;
+import org.codehaus.groovy.ast.expr.MethodPointerExpression;
+import org.codehaus.groovy.ast.expr.NotExpression;
+import org.codehaus.groovy.ast.expr.PostfixExpression;
+import org.codehaus.groovy.ast.expr.PrefixExpression;
+import org.codehaus.groovy.ast.expr.PropertyExpression;
+import org.codehaus.groovy.ast.expr.RangeExpression;
+import org.codehaus.groovy.ast.expr.SpreadExpression;
+import org.codehaus.groovy.ast.expr.SpreadMapExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.TernaryExpression;
+import org.codehaus.groovy.ast.expr.TupleExpression;
+import org.codehaus.groovy.ast.expr.UnaryMinusExpression;
+import org.codehaus.groovy.ast.expr.UnaryPlusExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.codehaus.groovy.ast.stmt.BlockStatement;
+import org.codehaus.groovy.ast.stmt.CatchStatement;
+import org.codehaus.groovy.ast.stmt.ForStatement;
+import org.codehaus.groovy.ast.stmt.Statement;
+import org.codehaus.groovy.classgen.BytecodeExpression;
+import org.codehaus.groovy.classgen.VariableScopeVisitor;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.ErrorCollector;
+import org.codehaus.groovy.control.ParserPluginFactory;
+import org.codehaus.groovy.control.ResolveVisitor;
+import org.codehaus.groovy.control.SourceUnit;
+import org.codehaus.groovy.control.StaticImportVisitor;
+import org.codehaus.groovy.control.StaticVerifier;
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.internal.core.CompilationUnitElementInfo;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblem;
+import org.eclipse.jdt.internal.compiler.problem.ProblemSeverities;
+
+/**
+ * Brings the module node cached for a working copy up to date with an edit that is confined to the body of a single method or
+ * constructor, without compiling the whole file again. Typing in a method (or in a closure inside of it) changes nothing but
+ * that body, yet a full reconcile parses, resolves and converts every declaration of the file.
+ * <p>
+ * Only the edited body is parsed, from a copy of the new contents in which everything in front of the body is blanked out so
+ * that the new nodes get their final positions. The body is then scoped, resolved and checked for static scope errors against
+ * the declaring class in the cached module, and the nodes that follow the edit are moved by the size of the edit. Types are
+ * resolved without asking JDT, so the body may only refer to types that the module already refers to, declares or imports.
+ * Whenever the edit cannot be applied safely (it crosses a declaration boundary, the method or its class is annotated and may be
+ * subject to an AST transform, the file has errors, the new body has errors or the edit touches a comment that may hold a task
+ * tag, an anonymous inner class is involved, the body refers to a type that cannot be found this way, ...) the module is left
+ * alone and the caller has to reconcile the whole file.
+ * <p>
+ * The edited method itself is never changed: the new body goes into a new method node, along with copies of the parameters,
+ * which takes the place of the old one in its declaring class. Code that walks the module at the same time either sees the old
+ * method with its old body and scope or the new one. The nodes that follow the edit are moved in place though, so such code may
+ * see positions from before and after the edit, much like code that holds on to a module across a full reconcile sees positions
+ * that no longer match the buffer. The Java model structure of the unit does not have to be parsed again either, see
+ * {@link ElementInfoMover}. Incremental updates are turned on with the <code>greclipse.reconcile.incremental</code> system
+ * property.
+ */
+public class IncrementalReconciler {
+
+	public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.reconcile.incremental", "false")).booleanValue();
+
+	private static final AtomicLong updates = new AtomicLong();
+	private static final AtomicLong fallbacks = new AtomicLong();
+
+	/**
+	 * @return the number of edits that were applied to a cached module
+	 */
+	public static long getIncrementalCount() {
+		return updates.get();
+	}
+
+	/**
+	 * @return the number of edits after which the whole file had to be reconciled again
+	 */
+	public static long getFallbackCount() {
+		return fallbacks.get();
+	}
+
+	public static void resetStatistics() {
+		updates.set(0);
+		fallbacks.set(0);
+	}
+
+	/**
+	 * An edit that has been applied to a module, along with the problems of the new contents.
+	 */
+	static final class Update {
+		final Map<String, CategorizedProblem[]> problems;
+		// the edit replaced [editStart, oldEnd) of the old contents with [editStart, newEnd) of the new contents
+		final int editStart, oldEnd, newEnd;
+		final int oldLength, newLength;
+		// the Java model structure built for the old contents, if it is known
+		CompilationUnitElementInfo oldStructure;
+
+		Update(Map<String, CategorizedProblem[]> problems, int editStart, int oldEnd, int newEnd, int oldLength, int newLength) {
+			this.problems = problems;
+			this.editStart = editStart;
+			this.oldEnd = oldEnd;
+			this.newEnd = newEnd;
+			this.oldLength = oldLength;
+			this.newLength = newLength;
+		}
+	}
+
+	/**
+	 * @param module the module built from the old contents, updated if the edit can be applied to it
+	 * @param oldProblems the problems reported for the old contents
+	 * @return the edit along with the old problems moved to their positions in the new contents, or null if the module has not
+	 *         been changed and the whole file must be reconciled
+	 */
+	static Update reconcile(ModuleNode module, char[] oldContents, Map<String, CategorizedProblem[]> oldProblems,
+			char[] newContents) {
+		Update update = null;
+		try {
+			update = new IncrementalReconciler(module, oldContents, newContents).update(oldProblems);
+		} catch (RuntimeException e) {
+			// the module is only changed once nothing can fail anymore, so a full reconcile takes care of it
+			log("Incremental reconcile of " + module.getDescription() + " failed: " + e);
+		} catch (GroovyBugError e) {
+			log("Incremental reconcile of " + module.getDescription() + " failed: " + e);
+		}
+		if (update != null) {
+			updates.incrementAndGet();
+		} else {
+			fallbacks.incrementAndGet();
+		}
+		return update;
+	}
+
+	private static void log(String message) {
+		if (GroovyLogManager.manager.hasLoggers()) {
+			GroovyLogManager.manager.log(TraceCategory.COMPILER, message);
+		}
+	}
+
+	private final ModuleNode module;
+	private final char[] oldContents;
+	private final char[] newContents;
+
+	// the edit replaced [editStart, oldEnd) of the old contents with [editStart, newEnd) of the new contents
+	private int editStart, oldEnd, newEnd;
+	// line and column (both 1-based, like the positions of the nodes) of oldEnd in the old and newEnd in the new contents
+	private int oldEndLine, oldEndColumn, newEndLine, newEndColumn;
+
+	// the method whose body contains the edit and the method that carries the new body until it is spliced in
+	private MethodNode method;
+	private MethodNode replacement;
+
+	private List<Comment> bodyComments;
+
+	private IncrementalReconciler(ModuleNode module, char[] oldContents, char[] newContents) {
+		this.module = module;
+		this.oldContents = oldContents;
+		this.newContents = newContents;
+	}
+
+	private Update update(Map<String, CategorizedProblem[]> oldProblems) {
+		if (!findEdit()) {
+			return new Update(oldProblems, oldContents.length, oldContents.length, newContents.length, oldContents.length,
+					newContents.length);
+		}
+		if (splitsLineDelimiter(oldContents, editStart) || splitsLineDelimiter(oldContents, oldEnd)
+				|| splitsLineDelimiter(newContents, newEnd) || hasErrors(oldProblems) || !findEditedMethod()) {
+			return null;
+		}
+		Statement body = method.getCode();
+		if (hasProblemsIn(oldProblems, body.getStart(), body.getEnd()) || !new BodyChecker(false).accepts(body)) {
+			return null;
+		}
+
+		// every node of the old module is collected before anything is changed; the edited method and its body are replaced
+		// rather than moved
+		PositionCollector collector = new PositionCollector();
+		collector.collect(module);
+		PositionCollector oldBody = new PositionCollector();
+		body.visit(oldBody);
+		collector.nodes.remove(method);
+		collector.nodes.keySet().removeAll(oldBody.nodes.keySet());
+
+		SourceUnit snippet = parseBody();
+		if (snippet == null || !resolveBody(snippet, collectTypes(collector.references))
+				|| !new BodyChecker(true).accepts(replacement.getCode()) || commentTouchesEdit()) {
+			return null;
+		}
+		List<? extends MethodNode> members = getMembers();
+		if (members.indexOf(method) < 0) {
+			return null;
+		}
+		Map<String, CategorizedProblem[]> newProblems = moveProblems(oldProblems);
+		if (newProblems == null) {
+			return null;
+		}
+		List<Comment> comments = moveComments();
+
+		// nothing can go wrong anymore, so start changing the module
+		for (ASTNode node : collector.nodes.keySet()) {
+			move(node);
+		}
+		Parameter[] oldParameters = method.getParameters(), newParameters = replacement.getParameters();
+		for (int i = 0; i < newParameters.length; i++) {
+			newParameters[i].setInitialExpression(oldParameters[i].getInitialExpression());
+		}
+		// setting the parameters replaces the variable scope, so the scope of the new body goes back in afterwards
+		VariableScope scope = replacement.getVariableScope();
+		replacement.setParameters(newParameters);
+		replacement.setVariableScope(scope);
+		move(replacement);
+		swapMethod(members);
+		if (comments != null) {
+			module.getContext().setComments(comments);
+		}
+		log("Reconciled " + module.getDescription() + " incrementally in method " + method.getName());
+		return new Update(newProblems, editStart, oldEnd, newEnd, oldContents.length, newContents.length);
+	}
+
+	/**
+	 * @return the list of methods or constructors of the declaring class that the edited method belongs to
+	 */
+	private List<? extends MethodNode> getMembers() {
+		ClassNode declaring = method.getDeclaringClass();
+		return method instanceof ConstructorNode ? declaring.getDeclaredConstructors() : declaring.getMethods();
+	}
+
+	/**
+	 * Puts the new method in the place of the old one. The lists are changed with set(), which does not disturb code that
+	 * iterates over them at the same time.
+	 */
+	private void swapMethod(List<? extends MethodNode> members) {
+		ClassNode declaring = method.getDeclaringClass();
+		if (method instanceof ConstructorNode) {
+			List<ConstructorNode> constructors = declaring.getDeclaredConstructors();
+			constructors.set(constructors.indexOf(method), (ConstructorNode) replacement);
+		} else {
+			List<MethodNode> methods = declaring.getMethods();
+			methods.set(methods.indexOf(method), replacement);
+			List<MethodNode> named = declaring.getDeclaredMethods(method.getName());
+			int index = named.indexOf(method);
+			if (index >= 0) {
+				named.set(index, replacement);
+			}
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	// Locating the edit
+
+	/**
+	 * @return false iff the contents have not changed
+	 */
+	private boolean findEdit() {
+		int oldLength = oldContents.length, newLength = newContents.length;
+		int max = Math.min(oldLength, newLength);
+		int prefix = 0;
+		while (prefix < max && oldContents[prefix] == newContents[prefix]) {
+			prefix += 1;
+		}
+		if (prefix == oldLength && prefix == newLength) {
+			return false;
+		}
+		int suffix = 0;
+		while (suffix < max - prefix && oldContents[oldLength - 1 - suffix] == newContents[newLength - 1 - suffix]) {
+			suffix += 1;
+		}
+		editStart = prefix;
+		oldEnd = oldLength - suffix;
+		newEnd = newLength - suffix;
+
+		int[] position = lineAndColumn(oldContents, oldEnd);
+		oldEndLine = position[0];
+		oldEndColumn = position[1];
+		position = lineAndColumn(newContents, newEnd);
+		newEndLine = position[0];
+		newEndColumn = position[1];
+		return true;
+	}
+
+	private static int[] lineAndColumn(char[] contents, int offset) {
+		int line = 1, lineStart = 0;
+		for (int i = 0; i < offset; i++) {
+			char c = contents[i];
+			if (c == '\n' || (c == '\r' && (i + 1 == contents.length || contents[i + 1] != '\n'))) {
+				line += 1;
+				lineStart = i + 1;
+			}
+		}
+		return new int[] { line, offset - lineStart + 1 };
+	}
+
+	private static boolean splitsLineDelimiter(char[] contents, int offset) {
+		return offset > 0 && offset < contents.length && contents[offset - 1] == '\r' && contents[offset] == '\n';
+	}
+
+	/**
+	 * Looks for the one method or constructor whose body strictly encloses the edit and checks that its body can be replaced.
+	 */
+	private boolean findEditedMethod() {
+		for (ClassNode type : module.getClasses()) {
+			List<MethodNode> members = new ArrayList<MethodNode>(type.getMethods());
+			members.addAll(type.getDeclaredConstructors());
+			for (MethodNode member : members) {
+				if (member.getCode() instanceof BlockStatement && enclosesEdit(member.getCode())) {
+					if (method != null) {
+						// nested bodies, as in a local or anonymous class
+						return false;
+					}
+					method = member;
+				}
+			}
+		}
+		if (method == null || method.getName().startsWith("<") || !method.getAnnotations().isEmpty()) {
+			return false;
+		}
+		ClassNode declaring = method.getDeclaringClass();
+		if (declaring == null || declaring.isInterface() || (declaring.isScript() && method.getName().equals("run"))) {
+			return false;
+		}
+		for (ClassNode type = declaring; type != null; type = type instanceof InnerClassNode ? ((InnerClassNode) type)
+				.getOuterClass() : null) {
+			if (!type.getAnnotations().isEmpty() || (type instanceof InnerClassNode && ((InnerClassNode) type).isAnonymous())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean enclosesEdit(Statement code) {
+		int start = code.getStart(), end = code.getEnd();
+		return start >= 0 && start < editStart && oldEnd < end && end <= oldContents.length && oldContents[start] == '{'
+				&& oldContents[end - 1] == '}';
+	}
+
+	private static boolean hasErrors(Map<String, CategorizedProblem[]> problems) {
+		if (problems != null) {
+			for (CategorizedProblem[] categorized : problems.values()) {
+				for (CategorizedProblem problem : categorized) {
+					if (problem.isError()) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasProblemsIn(Map<String, CategorizedProblem[]> problems, int start, int end) {
+		if (problems != null) {
+			for (CategorizedProblem[] categorized : problems.values()) {
+				for (CategorizedProblem problem : categorized) {
+					if (problem.getSourceEnd() >= start && problem.getSourceStart() < end) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	//--------------------------------------------------------------------------
+	// Building the new body
+
+	/**
+	 * Parses the new body on its own. The text in front of the body is replaced by whitespace (keeping the line structure) into
+	 * which a class and method header is written, so that the parsed nodes end up with their positions in the new contents.
+	 *
+	 * @return the unit the body was parsed in, or null if it cannot be parsed like that
+	 */
+	private SourceUnit parseBody() {
+		Statement body = method.getCode();
+		int bodyStart = body.getStart();
+		int newBodyEnd = body.getEnd() + newEnd - oldEnd;
+		char[] text = new char[newBodyEnd + 2];
+		for (int i = 0; i < bodyStart; i++) {
+			char c = newContents[i];
+			text[i] = c == '\n' || c == '\r' || c == '\t' ? c : ' ';
+		}
+		System.arraycopy(newContents, bodyStart, text, bodyStart, newBodyEnd - bodyStart);
+		text[newBodyEnd] = '\n';
+		text[newBodyEnd + 1] = '}';
+
+		boolean isConstructor = method instanceof ConstructorNode;
+		int headerStart = writeBackwards(text, isConstructor ? "__R()" : "def __m()", bodyStart);
+		if (headerStart < 0 || writeBackwards(text, "class __R {", headerStart) < 0) {
+			return null;
+		}
+
+		CompilerConfiguration configuration = new CompilerConfiguration();
+		configuration.setPluginFactory(ParserPluginFactory.newInstance(true));
+		SourceUnit context = module.getContext();
+		SourceUnit unit = new SourceUnit(context.getName(), new String(text), configuration, context.getClassLoader(),
+				new ErrorCollector(configuration));
+		unit.parse();
+		unit.completePhase();
+		unit.convert();
+		ModuleNode parsed = unit.getAST();
+		if (unit.getErrorCollector().hasErrors() || parsed == null || parsed.getClasses().size() != 1) {
+			return null;
+		}
+		ClassNode wrapper = parsed.getClasses().get(0);
+		List<? extends MethodNode> parsedMethods = isConstructor ? wrapper.getDeclaredConstructors() : wrapper.getMethods("__m");
+		if (parsedMethods.size() != 1) {
+			return null;
+		}
+		Statement code = parsedMethods.get(0).getCode();
+		if (!(code instanceof BlockStatement) || code.getStart() != bodyStart || code.getEnd() != newBodyEnd) {
+			return null;
+		}
+
+		Parameter[] parameters = copyParameters(method.getParameters());
+		if (isConstructor) {
+			replacement = new ConstructorNode(method.getModifiers(), parameters, method.getExceptions(), code);
+		} else {
+			replacement = new MethodNode(method.getName(), method.getModifiers(), method.getReturnType(), parameters,
+					method.getExceptions(), code);
+		}
+		replacement.setDeclaringClass(method.getDeclaringClass());
+		replacement.setGenericsTypes(method.getGenericsTypes());
+		replacement.setSynthetic(method.isSynthetic());
+		replacement.setSyntheticPublic(method.isSyntheticPublic());
+		replacement.setSourcePosition(method);
+		replacement.copyNodeMetaData(method);
+		if (method.isDynamicReturnType() && !replacement.isDynamicReturnType()) {
+			ReflectionUtils.setPrivateField(MethodNode.class, "dynamicReturnType", replacement, Boolean.TRUE);
+		}
+		bodyComments = unit.getComments();
+		return unit;
+	}
+
+	/**
+	 * The new body is resolved against copies of the parameters, since resolving it marks the parameters that closures use. The
+	 * copies have no default values: those have been dealt with already and must not be transformed again.
+	 */
+	private static Parameter[] copyParameters(Parameter[] parameters) {
+		Parameter[] copies = new Parameter[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			Parameter parameter = parameters[i];
+			Parameter copy = new Parameter(parameter.getType(), parameter.getName());
+			copy.setOriginType(parameter.getOriginType());
+			copy.setModifiers(parameter.getModifiers());
+			copy.setInStaticContext(parameter.isInStaticContext());
+			copy.addAnnotations(parameter.getAnnotations());
+			copy.setSourcePosition(parameter);
+			copy.setNameStart(parameter.getNameStart());
+			copy.setNameEnd(parameter.getNameEnd());
+			copies[i] = copy;
+		}
+		return copies;
+	}
+
+	/**
+	 * Writes the given text into the last run of blanks in front of limit that is long enough to hold it and a separating blank.
+	 *
+	 * @return the offset the text was written at, or -1 if there is no room for it
+	 */
+	private static int writeBackwards(char[] text, String header, int limit) {
+		int length = header.length(), blanks = 0;
+		for (int i = limit - 1; i >= 0; i--) {
+			if (text[i] != ' ') {
+				blanks = 0;
+			} else if (++blanks > length) {
+				header.getChars(0, length, text, i);
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Runs the phases that complete and check the new body against the declaring class in the module, as a full reconcile
+	 * would: variable scoping, type resolution, static imports and the check for references to instance members from a static
+	 * scope. Only the replacement method is visited; the declaring class is not changed.
+	 *
+	 * @return true iff this succeeded without errors; if the new body has errors, a full reconcile reports them
+	 */
+	private boolean resolveBody(SourceUnit unit, Map<String, ClassNode> types) {
+		ClassNode declaring = method.getDeclaringClass();
+		new BodyScopeVisitor(unit).visitClass(declaring);
+		new BodyResolver(types).resolve(declaring, unit);
+		StaticImportVisitor staticImports = new BodyStaticImportVisitor();
+		ReflectionUtils.setPrivateField(StaticImportVisitor.class, "isReconcile", staticImports, Boolean.TRUE);
+		staticImports.visitClass(declaring, unit);
+		if (!unit.getErrorCollector().hasErrors()) {
+			new BodyStaticVerifier().visitClass(declaring, unit);
+		}
+		return !unit.getErrorCollector().hasErrors();
+	}
+
+	/**
+	 * Task tags are found in the comments of a full reconcile only, so the edit must not change any comment. Comments that only
+	 * move keep their tasks, and a body that had tasks before the edit is not updated at all (see {@link #hasProblemsIn}).
+	 *
+	 * @return true iff a comment of the new body overlaps the text that was inserted or removed
+	 */
+	private boolean commentTouchesEdit() {
+		if (bodyComments == null) {
+			return false;
+		}
+		int[] start = lineAndColumn(newContents, editStart);
+		for (Comment comment : bodyComments) {
+			boolean endsBeforeEdit = comment.eline < start[0] || (comment.eline == start[0] && comment.ecol < start[1]);
+			boolean startsAfterEdit = comment.sline > newEndLine || (comment.sline == newEndLine && comment.scol > newEndColumn);
+			if (!endsBeforeEdit && !startsAfterEdit) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Maps the names the new body may use for types to the types the old module resolved them to. References are only taken
+	 * into account when the name written in the source can be matched with the type they resolved to; names that map to more than
+	 * one type are left out.
+	 */
+	private Map<String, ClassNode> collectTypes(List<ClassNode> references) {
+		Map<String, ClassNode> types = new HashMap<String, ClassNode>();
+		Set<String> ambiguous = new HashSet<String>();
+		for (ClassNode type : module.getClasses()) {
+			String name = type.getNameWithoutPackage();
+			addType(types, ambiguous, type.getName(), type);
+			addType(types, ambiguous, name, type);
+			int dollar = name.lastIndexOf('$');
+			if (dollar >= 0) {
+				addType(types, ambiguous, type.getName().replace('$', '.'), type);
+				addType(types, ambiguous, name.replace('$', '.'), type);
+				addType(types, ambiguous, name.substring(dollar + 1), type);
+			}
+		}
+		for (ImportNode node : module.getImports()) {
+			if (node.getType() != null && node.getAlias() != null) {
+				addType(types, ambiguous, node.getAlias(), node.getType().redirect());
+			}
+		}
+		for (ClassNode reference : references) {
+			if (reference.isArray() || reference.isGenericsPlaceHolder()) {
+				continue;
+			}
+			ClassNode type = reference.redirect();
+			String written = readTypeName(reference, type);
+			if (written != null) {
+				addType(types, ambiguous, written, type);
+			}
+			addType(types, ambiguous, type.getName(), type);
+		}
+		types.keySet().removeAll(ambiguous);
+		return types;
+	}
+
+	private static void addType(Map<String, ClassNode> types, Set<String> ambiguous, String name, ClassNode type) {
+		ClassNode existing = types.put(name, type);
+		if (existing != null && existing != type) {
+			ambiguous.add(name);
+		}
+	}
+
+	/**
+	 * @return the (possibly qualified) name used in the old contents for the given reference, or null if it cannot be read
+	 */
+	private String readTypeName(ClassNode reference, ClassNode type) {
+		int start = reference.getStart(), end = reference.getEnd();
+		if (start < 0 || end <= start || end > oldContents.length) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			char c = oldContents[i];
+			if (c == '<' || c == '[') {
+				break;
+			}
+			if (!Character.isWhitespace(c)) {
+				sb.append(c);
+			}
+		}
+		String written = sb.toString();
+		String[] segments = written.split("\\.", -1);
+		for (String segment : segments) {
+			if (segment.length() == 0 || !Character.isJavaIdentifierStart(segment.charAt(0))) {
+				return null;
+			}
+			for (int i = 1; i < segment.length(); i++) {
+				if (!Character.isJavaIdentifierPart(segment.charAt(i))) {
+					return null;
+				}
+			}
+		}
+		String typeName = type.getName();
+		String simpleName = typeName.substring(Math.max(typeName.lastIndexOf('.'), typeName.lastIndexOf('$')) + 1);
+		return segments[segments.length - 1].equals(simpleName) ? written : null;
+	}
+
+	//--------------------------------------------------------------------------
+	// Moving what follows the edit
+
+	private boolean isAfterEdit(int line, int column) {
+		return line > oldEndLine || (line == oldEndLine && column >= oldEndColumn);
+	}
+
+	private int newLine(int line, int column) {
+		return isAfterEdit(line, column) ? line + newEndLine - oldEndLine : line;
+	}
+
+	private int newColumn(int line, int column) {
+		return line == oldEndLine && column >= oldEndColumn ? column + newEndColumn - oldEndColumn : column;
+	}
+
+	private void move(ASTNode node) {
+		int line = node.getLineNumber(), column = node.getColumnNumber();
+		if (line > 0) {
+			node.setLineNumber(newLine(line, column));
+			node.setColumnNumber(newColumn(line, column));
+		}
+		line = node.getLastLineNumber();
+		column = node.getLastColumnNumber();
+		if (line > 0) {
+			node.setLastLineNumber(newLine(line, column));
+			node.setLastColumnNumber(newColumn(line, column));
+		}
+		int delta = newEnd - oldEnd;
+		if (node.getStart() >= oldEnd) {
+			node.setStart(node.getStart() + delta);
+		}
+		if (node.getEnd() >= oldEnd) {
+			node.setEnd(node.getEnd() + delta);
+		}
+		if (node instanceof AnnotatedNode) {
+			AnnotatedNode annotated = (AnnotatedNode) node;
+			if (annotated.getNameStart() >= oldEnd) {
+				annotated.setNameStart(annotated.getNameStart() + delta);
+			}
+			if (annotated.getNameEnd() >= oldEnd) {
+				annotated.setNameEnd(annotated.getNameEnd() + delta);
+			}
+		}
+	}
+
+	/**
+	 * Comments are shared with the parse result cache, so comments that move are copied rather than changed.
+	 *
+	 * @return the comments of the new contents, or null if the module does not keep comments
+	 */
+	private List<Comment> moveComments() {
+		List<Comment> oldComments = module.getContext().getComments();
+		if (oldComments == null) {
+			return null;
+		}
+		Statement body = method.getCode();
+		int bodyLine = body.getLineNumber(), bodyColumn = body.getColumnNumber();
+		int lastLine = body.getLastLineNumber(), lastColumn = body.getLastColumnNumber();
+		List<Comment> comments = new ArrayList<Comment>(oldComments.size() + 8);
+		boolean added = false;
+		for (Comment comment : oldComments) {
+			boolean startsInBody = comment.sline > bodyLine || (comment.sline == bodyLine && comment.scol >= bodyColumn);
+			boolean endsInBody = comment.eline < lastLine || (comment.eline == lastLine && comment.ecol <= lastColumn);
+			if (startsInBody && endsInBody) {
+				// replaced by the comments of the new body
+				continue;
+			}
+			if (startsInBody && !added) {
+				addAll(comments, bodyComments);
+				added = true;
+			}
+			if (isAfterEdit(comment.sline, comment.scol)) {
+				int sline = newLine(comment.sline, comment.scol), scol = newColumn(comment.sline, comment.scol);
+				int eline = newLine(comment.eline, comment.ecol), ecol = newColumn(comment.eline, comment.ecol);
+				String text = comment.toString();
+				comment = text.startsWith("//") ? Comment.makeSingleLineComment(sline, scol, eline, ecol, text) : Comment
+						.makeMultiLineComment(sline, scol, eline, ecol, text);
+			}
+			comments.add(comment);
+		}
+		if (!added) {
+			addAll(comments, bodyComments);
+		}
+		return comments;
+	}
+
+	private static void addAll(List<Comment> comments, List<Comment> toAdd) {
+		if (toAdd != null) {
+			comments.addAll(toAdd);
+		}
+	}
+
+	/**
+	 * The old problems have been reported already and may still be referenced, so problems that move are copied rather than
+	 * changed.
+	 *
+	 * @return the problems of the new contents, or null if a problem that has to move cannot be copied
+	 */
+	private Map<String, CategorizedProblem[]> moveProblems(Map<String, CategorizedProblem[]> oldProblems) {
+		Map<String, CategorizedProblem[]> newProblems = new HashMap<String, CategorizedProblem[]>();
+		if (oldProblems == null) {
+			return newProblems;
+		}
+		int delta = newEnd - oldEnd, lineDelta = newEndLine - oldEndLine;
+		for (Map.Entry<String, CategorizedProblem[]> entry : oldProblems.entrySet()) {
+			CategorizedProblem[] categorized = entry.getValue().clone();
+			for (int i = 0; i < categorized.length; i++) {
+				CategorizedProblem problem = categorized[i];
+				if (problem.getSourceStart() < oldEnd) {
+					continue;
+				}
+				if (problem.getClass() != DefaultProblem.class) {
+					return null;
+				}
+				DefaultProblem old = (DefaultProblem) problem;
+				int line = old.getSourceLineNumber(), column = old.getSourceColumnNumber();
+				categorized[i] = new DefaultProblem(old.getOriginatingFileName(), old.getMessage(), old.getID(), old.getArguments(),
+						old.isError() ? ProblemSeverities.Error : ProblemSeverities.Warning, old.getSourceStart() + delta,
+						old.getSourceEnd() + delta, line + lineDelta, line == oldEndLine ? column + newEndColumn - oldEndColumn
+								: column);
+			}
+			newProblems.put(entry.getKey(), categorized);
+		}
+		return newProblems;
+	}
+
+	//--------------------------------------------------------------------------
+	// Visitors
+
+	/**
+	 * Rejects bodies that cannot be handled: anonymous inner classes would have to be added to the module, and (if checkNames is
+	 * set) capitalized names that were not resolved to anything most likely refer to a type the body could not be resolved
+	 * against.
+	 */
+	private static class BodyChecker extends CodeVisitorSupport {
+		private final boolean checkNames;
+		private boolean accepted = true;
+
+		BodyChecker(boolean checkNames) {
+			this.checkNames = checkNames;
+		}
+
+		boolean accepts(Statement body) {
+			body.visit(this);
+			return accepted;
+		}
+
+		@Override
+		public void visitConstructorCallExpression(ConstructorCallExpression call) {
+			if (call.isUsingAnonymousInnerClass()) {
+				accepted = false;
+			}
+			super.visitConstructorCallExpression(call);
+		}
+
+		@Override
+		public void visitVariableExpression(VariableExpression expression) {
+			if (checkNames && isUnresolved(expression) && isCapitalized(expression.getName())) {
+				accepted = false;
+			}
+			super.visitVariableExpression(expression);
+		}
+
+		@Override
+		public void visitPropertyExpression(PropertyExpression expression) {
+			if (checkNames) {
+				boolean capitalized = false;
+				Expression object = expression;
+				while (object instanceof PropertyExpression) {
+					capitalized |= isCapitalized(((PropertyExpression) object).getPropertyAsString());
+					object = ((PropertyExpression) object).getObjectExpression();
+				}
+				if (capitalized && object instanceof VariableExpression && isUnresolved((VariableExpression) object)) {
+					accepted = false;
+				}
+			}
+			super.visitPropertyExpression(expression);
+		}
+
+		private static boolean isUnresolved(VariableExpression expression) {
+			return expression.getAccessedVariable() instanceof DynamicVariable;
+		}
+
+		private static boolean isCapitalized(String name) {
+			return name != null && name.length() > 0 && Character.isUpperCase(name.charAt(0));
+		}
+	}
+
+	private class BodyScopeVisitor extends VariableScopeVisitor {
+		BodyScopeVisitor(SourceUnit unit) {
+			super(unit);
+		}
+
+		@Override
+		public void visitField(FieldNode node) {
+		}
+
+		@Override
+		public void visitProperty(PropertyNode node) {
+		}
+
+		@Override
+		public void visitAnnotations(AnnotatedNode node) {
+		}
+
+		@Override
+		protected void visitObjectInitializerStatements(ClassNode node) {
+		}
+
+		@Override
+		protected void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+			if (node == method) {
+				super.visitConstructorOrMethod(replacement, isConstructor);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the types in the new body from the names the old module resolved, without asking JDT.
+	 */
+	private class BodyResolver extends ResolveVisitor {
+		private final Map<String, ClassNode> types;
+
+		BodyResolver(Map<String, ClassNode> types) {
+			super(null);
+			this.types = types;
+		}
+
+		void resolve(ClassNode declaring, SourceUnit unit) {
+			// only makes the declaring class current, see commencingResolution()
+			startResolving(declaring, unit);
+			// the type parameters of the declaring class and its outer classes are in scope in the body
+			Map<String, GenericsType> typeParameters = new HashMap<String, GenericsType>();
+			for (ClassNode type = declaring; type != null; type = type instanceof InnerClassNode
+					&& !Modifier.isStatic(type.getModifiers()) ? ((InnerClassNode) type).getOuterClass() : null) {
+				GenericsType[] generics = type.getGenericsTypes();
+				if (generics != null) {
+					for (GenericsType generic : generics) {
+						if (generic.isPlaceholder() && !typeParameters.containsKey(generic.getName())) {
+							typeParameters.put(generic.getName(), generic);
+						}
+					}
+				}
+			}
+			ReflectionUtils.setPrivateField(ResolveVisitor.class, "genericParameterNames", this, typeParameters);
+			super.visitConstructorOrMethod(replacement, replacement instanceof ConstructorNode);
+		}
+
+		/**
+		 * The header of the declaring class has been resolved already and is left alone.
+		 */
+		@Override
+		protected boolean commencingResolution() {
+			return false;
+		}
+
+		@Override
+		protected boolean resolveFromModule(ClassNode type, boolean testModuleImports) {
+			String name = type.getName();
+			ClassNode target = types.get(name);
+			if (target == null) {
+				target = JDTResolver.getCommonType(name);
+			}
+			if (target == null && name.indexOf('.') < 0) {
+				target = JDTResolver.getCommonType("java.lang." + name);
+			}
+			if (target == null) {
+				return false;
+			}
+			type.setRedirect(target);
+			return true;
+		}
+
+		@Override
+		protected boolean resolveFromCompileUnit(ClassNode type) {
+			return false;
+		}
+
+		@Override
+		protected boolean resolveFromDefaultImports(ClassNode type, boolean testDefaultImports) {
+			return false;
+		}
+
+		@Override
+		protected boolean resolveFromStaticInnerClasses(ClassNode type, boolean testStaticInnerClasses) {
+			return false;
+		}
+
+		@Override
+		protected boolean resolveFromClassCache(ClassNode type) {
+			return false;
+		}
+
+		@Override
+		protected boolean resolveToScript(ClassNode type) {
+			return false;
+		}
+
+		@Override
+		protected boolean resolveToInner(ClassNode type) {
+			return false;
+		}
+
+		@Override
+		protected boolean resolveToInnerEnum(ClassNode type) {
+			return false;
+		}
+
+		// Groovy 1.8
+		protected boolean resolveToClass(ClassNode type) {
+			return false;
+		}
+
+		// Groovy 2.0 and later
+		protected boolean resolveToOuter(ClassNode type) {
+			return false;
+		}
+
+		@Override
+		public void visitField(FieldNode node) {
+		}
+
+		@Override
+		public void visitProperty(PropertyNode node) {
+		}
+
+		@Override
+		public void visitAnnotations(AnnotatedNode node) {
+		}
+
+		@Override
+		protected void visitObjectInitializerStatements(ClassNode node) {
+		}
+
+		@Override
+		protected void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+			if (node == method) {
+				super.visitConstructorOrMethod(replacement, isConstructor);
+			}
+		}
+	}
+
+	private class BodyStaticImportVisitor extends StaticImportVisitor {
+		@Override
+		public void visitField(FieldNode node) {
+		}
+
+		@Override
+		public void visitProperty(PropertyNode node) {
+		}
+
+		@Override
+		public void visitAnnotations(AnnotatedNode node) {
+		}
+
+		@Override
+		protected void visitObjectInitializerStatements(ClassNode node) {
+		}
+
+		@Override
+		protected void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+			if (node == method) {
+				super.visitConstructorOrMethod(replacement, isConstructor);
+			}
+		}
+	}
+
+	private class BodyStaticVerifier extends StaticVerifier {
+		@Override
+		public void visitField(FieldNode node) {
+		}
+
+		@Override
+		public void visitProperty(PropertyNode node) {
+		}
+
+		@Override
+		public void visitAnnotations(AnnotatedNode node) {
+		}
+
+		@Override
+		protected void visitObjectInitializerStatements(ClassNode node) {
+		}
+
+		@Override
+		public void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+			if (node == method) {
+				super.visitConstructorOrMethod(replacement, isConstructor);
+			}
+		}
+	}
+
+	/**
+	 * Collects every node of a module that has a source position, along with the type references (nodes that redirect to the
+	 * type they were resolved to). Types that are not references are shared between modules and are never collected.
+	 */
+	private static class PositionCollector extends ClassCodeVisitorSupport {
+		final Map<ASTNode, Boolean> nodes = new IdentityHashMap<ASTNode, Boolean>();
+		final List<ClassNode> references = new ArrayList<ClassNode>();
+
+		void collect(ModuleNode module) {
+			add(module);
+			add(module.getPackage());
+			for (ImportNode node : new ImportNodeCompatibilityWrapper(module).getAllImportNodes()) {
+				add(node);
+				addType(node.getType());
+			}
+			for (ClassNode type : module.getClasses()) {
+				visitClass(type);
+			}
+		}
+
+		private void add(ASTNode node) {
+			if (node != null) {
+				nodes.put(node, Boolean.TRUE);
+			}
+		}
+
+		private void addType(ClassNode type) {
+			if (type == null || nodes.containsKey(type)) {
+				return;
+			}
+			if (type.isArray()) {
+				add(type);
+				addType(type.getComponentType());
+			} else if (type.redirect() != type) {
+				add(type);
+				references.add(type);
+				addGenerics(type.getGenericsTypes());
+			}
+		}
+
+		private void addGenerics(GenericsType[] generics) {
+			if (generics != null) {
+				for (GenericsType generic : generics) {
+					if (!nodes.containsKey(generic)) {
+						add(generic);
+						addType(generic.getType());
+						addType(generic.getLowerBound());
+						ClassNode[] upperBounds = generic.getUpperBounds();
+						if (upperBounds != null) {
+							for (ClassNode bound : upperBounds) {
+								addType(bound);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		private void addParameters(Parameter[] parameters) {
+			if (parameters != null) {
+				for (Parameter parameter : parameters) {
+					add(parameter);
+					addType(parameter.getOriginType());
+					addType(parameter.getType());
+					if (parameter.hasInitialExpression()) {
+						parameter.getInitialExpression().visit(this);
+					}
+				}
+			}
+		}
+
+		@Override
+		protected SourceUnit getSourceUnit() {
+			return null;
+		}
+
+		@Override
+		public void visitClass(ClassNode node) {
+			add(node);
+			addType(node.getUnresolvedSuperClass());
+			ClassNode[] interfaces = node.getInterfaces();
+			if (interfaces != null) {
+				for (ClassNode face : interfaces) {
+					addType(face);
+				}
+			}
+			addGenerics(node.getGenericsTypes());
+			visitAnnotations(node);
+			node.visitContents(this);
+			visitObjectInitializerStatements(node);
+		}
+
+		@Override
+		public void visitAnnotations(AnnotatedNode node) {
+			List<AnnotationNode> annotations = node.getAnnotations();
+			if (annotations != null) {
+				for (AnnotationNode annotation : annotations) {
+					add(annotation);
+					addType(annotation.getClassNode());
+					for (Expression value : annotation.getMembers().values()) {
+						value.visit(this);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void visitField(FieldNode node) {
+			add(node);
+			addType(node.getOriginType());
+			addType(node.getType());
+			super.visitField(node);
+		}
+
+		@Override
+		public void visitProperty(PropertyNode node) {
+			add(node);
+			super.visitProperty(node);
+		}
+
+		@Override
+		protected void visitConstructorOrMethod(MethodNode node, boolean isConstructor) {
+			add(node);
+			addType(node.getReturnType());
+			ClassNode[] exceptions = node.getExceptions();
+			if (exceptions != null) {
+				for (ClassNode exception : exceptions) {
+					addType(exception);
+				}
+			}
+			addGenerics(node.getGenericsTypes());
+			addParameters(node.getParameters());
+			super.visitConstructorOrMethod(node, isConstructor);
+		}
+
+		@Override
+		protected void visitStatement(Statement statement) {
+			add(statement);
+		}
+
+		@Override
+		public void visitCatchStatement(CatchStatement statement) {
+			addParameters(new Parameter[] { statement.getVariable() });
+			super.visitCatchStatement(statement);
+		}
+
+		@Override
+		public void visitForLoop(ForStatement forLoop) {
+			addParameters(new Parameter[] { forLoop.getVariable() });
+			super.visitForLoop(forLoop);
+		}
+
+		@Override
+		public void visitMethodCallExpression(MethodCallExpression call) {
+			add(call);
+			super.visitMethodCallExpression(call);
+		}
+
+		@Override
+		public void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
+			add(call);
+			addType(call.getOwnerType());
+			super.visitStaticMethodCallExpression(call);
+		}
+
+		@Override
+		public void visitConstructorCallExpression(ConstructorCallExpression call) {
+			add(call);
+			addType(call.getType());
+			super.visitConstructorCallExpression(call);
+		}
+
+		@Override
+		public void visitTernaryExpression(TernaryExpression expression) {
+			add(expression);
+			super.visitTernaryExpression(expression);
+		}
+
+		@Override
+		public void visitShortTernaryExpression(ElvisOperatorExpression expression) {
+			add(expression);
+			super.visitShortTernaryExpression(expression);
+		}
+
+		@Override
+		public void visitBinaryExpression(BinaryExpression expression) {
+			add(expression);
+			super.visitBinaryExpression(expression);
+		}
+
+		@Override
+		public void visitPrefixExpression(PrefixExpression expression) {
+			add(expression);
+			super.visitPrefixExpression(expression);
+		}
+
+		@Override
+		public void visitPostfixExpression(PostfixExpression expression) {
+			add(expression);
+			super.visitPostfixExpression(expression);
+		}
+
+		@Override
+		public void visitBooleanExpression(BooleanExpression expression) {
+			add(expression);
+			super.visitBooleanExpression(expression);
+		}
+
+		@Override
+		public void visitClosureExpression(ClosureExpression expression) {
+			add(expression);
+			addParameters(expression.getParameters());
+			super.visitClosureExpression(expression);
+		}
+
+		@Override
+		public void visitTupleExpression(TupleExpression expression) {
+			add(expression);
+			super.visitTupleExpression(expression);
+		}
+
+		@Override
+		public void visitMapExpression(MapExpression expression) {
+			add(expression);
+			super.visitMapExpression(expression);
+		}
+
+		@Override
+		public void visitMapEntryExpression(MapEntryExpression expression) {
+			add(expression);
+			super.visitMapEntryExpression(expression);
+		}
+
+		@Override
+		public void visitListExpression(ListExpression expression) {
+			add(expression);
+			super.visitListExpression(expression);
+		}
+
+		@Override
+		public void visitRangeExpression(RangeExpression expression) {
+			add(expression);
+			super.visitRangeExpression(expression);
+		}
+
+		@Override
+		public void visitPropertyExpression(PropertyExpression expression) {
+			add(expression);
+			super.visitPropertyExpression(expression);
+		}
+
+		@Override
+		public void visitAttributeExpression(AttributeExpression expression) {
+			add(expression);
+			super.visitAttributeExpression(expression);
+		}
+
+		@Override
+		public void visitFieldExpression(FieldExpression expression) {
+			add(expression);
+			super.visitFieldExpression(expression);
+		}
+
+		@Override
+		public void visitMethodPointerExpression(MethodPointerExpression expression) {
+			add(expression);
+			super.visitMethodPointerExpression(expression);
+		}
+
+		@Override
+		public void visitConstantExpression(ConstantExpression expression) {
+			add(expression);
+			super.visitConstantExpression(expression);
+		}
+
+		@Override
+		public void visitClassExpression(ClassExpression expression) {
+			add(expression);
+			addType(expression.getType());
+			super.visitClassExpression(expression);
+		}
+
+		@Override
+		public void visitVariableExpression(VariableExpression expression) {
+			add(expression);
+			addType(expression.getOriginType());
+			super.visitVariableExpression(expression);
+		}
+
+		@Override
+		public void visitDeclarationExpression(DeclarationExpression expression) {
+			add(expression);
+			super.visitDeclarationExpression(expression);
+		}
+
+		@Override
+		public void visitGStringExpression(GStringExpression expression) {
+			add(expression);
+			super.visitGStringExpression(expression);
+		}
+
+		@Override
+		public void visitArrayExpression(ArrayExpression expression) {
+			add(expression);
+			addType(expression.getElementType());
+			super.visitArrayExpression(expression);
+		}
+
+		@Override
+		public void visitSpreadExpression(SpreadExpression expression) {
+			add(expression);
+			super.visitSpreadExpression(expression);
+		}
+
+		@Override
+		public void visitSpreadMapExpression(SpreadMapExpression expression) {
+			add(expression);
+			super.visitSpreadMapExpression(expression);
+		}
+
+		@Override
+		public void visitNotExpression(NotExpression expression) {
+			add(expression);
+			super.visitNotExpression(expression);
+		}
+
+		@Override
+		public void visitUnaryMinusExpression(UnaryMinusExpression expression) {
+			add(expression);
+			super.visitUnaryMinusExpression(expression);
+		}
+
+		@Override
+		public void visitUnaryPlusExpression(UnaryPlusExpression expression) {
+			add(expression);
+			super.visitUnaryPlusExpression(expression);
+		}
+
+		@Override
+		public void visitBitwiseNegationExpression(BitwiseNegationExpression expression) {
+			add(expression);
+			super.visitBitwiseNegationExpression(expression);
+		}
+
+		@Override
+		public void visitCastExpression(CastExpression expression) {
+			add(expression);
+			addType(expression.getType());
+			super.visitCastExpression(expression);
+		}
+
+		@Override
+		public void visitArgumentlistExpression(ArgumentListExpression expression) {
+			add(expression);
+			super.visitArgumentlistExpression(expression);
+		}
+
+		@Override
+		public void visitClosureListExpression(ClosureListExpression expression) {
+			add(expression);
+			super.visitClosureListExpression(expression);
+		}
+
+		@Override
+		public void visitBytecodeExpression(BytecodeExpression expression) {
+			add(expression);
+			super.visitBytecodeExpression(expression);
+		}
+	}
+}
@@ -11,10 +11,13 @@
 
 package org.codehaus.jdt.groovy.model;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.codehaus.groovy.ast.ModuleNode;
@@ -25,7 +28,10 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.compiler.CategorizedProblem;
 import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.groovy.search.TypeMemberCache;
+import org.eclipse.jdt.internal.core.CompilationUnitElementInfo;
 import org.eclipse.jdt.internal.core.JavaModelManager;
 import org.eclipse.jdt.internal.core.JavaModelManager.PerWorkingCopyInfo;
 import org.eclipse.jdt.internal.core.util.Util;
@@ -36,7 +42,12 @@ import org.eclipse.jdt.internal.core.util.Util;
  *
  *          This class stores module nodes for groovy compilation units This class is not meant to be accessed externally.
  *
- *          One module node is stored per working copy of a unit
+ *          One module node is stored per working copy of a unit. Entries live in a concurrent map and are guarded by a set of
+ *          striped locks keyed by the working copy, so that operations on different units do not contend with each other. A
+ *          thread only ever waits for one stripe: operations that touch the entries of other units either do not lock them or
+ *          only try to, so stripes cannot deadlock whatever order they are taken in. Module nodes are kept for as long as the
+ *          working copy exists; resolvers are memory hungry so only the most recently used ones are held strongly, the rest are
+ *          held softly and dropped when the VM needs the memory.
  */
 public class ModuleNodeMapper {
 
@@ -50,24 +61,107 @@ public class ModuleNodeMapper {
 		public final JDTResolver resolver;
 	}
 
+	/**
+	 * A single cache entry. The resolver is demoted to a soft reference once the entry falls out of the set of most recently used
+	 * entries and is promoted back when it is accessed again (if it has not been collected in the meantime).
+	 */
+	private static class Entry {
+		final ModuleNode module;
+		private JDTResolver resolver;
+		private SoftReference<JDTResolver> softResolver;
+		volatile long lastAccess;
+
+		// the contents the module was built from and the problems found for them, if known; guarded by the lock of the entry
+		char[] contents;
+		Map<String, CategorizedProblem[]> problems;
+		// the java model structure built from the same contents, if known; guarded by the lock of the entry
+		CompilationUnitElementInfo structure;
+
+		Entry(ModuleNode module, JDTResolver resolver, long tick) {
+			this.module = module;
+			this.resolver = resolver;
+			this.lastAccess = tick;
+		}
+
+		synchronized boolean hasStrongResolver() {
+			return resolver != null;
+		}
+
+		synchronized boolean isResolverCollected() {
+			return resolver == null && softResolver != null && softResolver.get() == null;
+		}
+
+		/**
+		 * @return the resolver for this entry, which is held strongly again after this call, or null if there is none
+		 */
+		synchronized JDTResolver promote() {
+			if (resolver == null && softResolver != null) {
+				resolver = softResolver.get();
+				softResolver = null;
+			}
+			return resolver;
+		}
+
+		/**
+		 * @return true iff a strongly held resolver was released
+		 */
+		synchronized boolean demote() {
+			if (resolver == null) {
+				return false;
+			}
+			softResolver = new SoftReference<JDTResolver>(resolver);
+			resolver = null;
+			return true;
+		}
+	}
+
 	private static final ModuleNodeMapper INSTANCE = new ModuleNodeMapper();
 
 	static ModuleNodeMapper getInstance() {
 		return INSTANCE;
 	}
 
-	private final ReentrantLock lock = new ReentrantLock(true);
+	/**
+	 * Number of resolvers that are held strongly. Can be changed with the <code>groovy.eclipse.model.resolvers</code> system
+	 * property.
+	 */
+	private static final int MAX_STRONG_RESOLVERS = Math.max(1, Integer.getInteger("groovy.eclipse.model.resolvers", 10));
+
+	/** must be a power of 2 */
+	private static final int LOCK_STRIPES = 32;
+
+	private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+	{
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	private final Map<PerWorkingCopyInfo, Entry> infoToModuleMap = new ConcurrentHashMap<PerWorkingCopyInfo, Entry>();
+
+	private final AtomicLong clock = new AtomicLong();
 
-	private final Map<PerWorkingCopyInfo, ModuleNodeInfo> infoToModuleMap = new HashMap<PerWorkingCopyInfo, ModuleNodeInfo>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong collections = new AtomicLong();
 
 	void store(PerWorkingCopyInfo info, ModuleNode module, JDTResolver resolver) {
+		ReentrantLock lock = lockFor(info.getWorkingCopy());
 		lock.lock();
 		try {
 			sweepAndPurgeModuleNodes();
-			infoToModuleMap.put(info, new ModuleNodeInfo(module, shouldStoreResovler() ? resolver : null));
+			Entry replaced = infoToModuleMap.put(info, new Entry(module, shouldStoreResovler() ? resolver : null,
+					clock.incrementAndGet()));
+			if (replaced != null && replaced.module != module) {
+				TypeMemberCache.invalidate(replaced.module);
+			}
 		} finally {
 			lock.unlock();
 		}
+		if (resolver != null) {
+			enforceResolverBound();
+		}
 	}
 
 	private final static boolean DSL_BUNDLE_INSTALLED;
@@ -86,41 +180,61 @@ public class ModuleNodeMapper {
 	}
 
 	ModuleNode getModule(PerWorkingCopyInfo info) {
-		lock.lock();
-		try {
-			ModuleNodeInfo moduleNodeInfo = get(info);
-			return moduleNodeInfo != null ? moduleNodeInfo.module : null;
-		} finally {
-			lock.unlock();
-		}
+		ModuleNodeInfo moduleNodeInfo = get(info);
+		return moduleNodeInfo != null ? moduleNodeInfo.module : null;
 	}
 
+	/**
+	 * @return the module node and resolver for the given working copy or null if none is cached. If resolvers are being stored
+	 *         and the resolver for this working copy has been collected, the entry is purged and null is returned so that the
+	 *         caller will rebuild both halves together.
+	 */
 	ModuleNodeInfo get(PerWorkingCopyInfo info) {
+		ReentrantLock lock = lockFor(info.getWorkingCopy());
 		lock.lock();
 		try {
 			sweepAndPurgeModuleNodes();
-			return infoToModuleMap.get(info);
+			Entry entry = infoToModuleMap.get(info);
+			if (entry == null) {
+				misses.incrementAndGet();
+				return null;
+			}
+			boolean wasStrong = entry.hasStrongResolver();
+			JDTResolver resolver = entry.promote();
+			if (resolver == null && shouldStoreResovler()) {
+				collections.incrementAndGet();
+				misses.incrementAndGet();
+				infoToModuleMap.remove(info);
+				TypeMemberCache.invalidate(entry.module);
+				return null;
+			}
+			entry.lastAccess = clock.incrementAndGet();
+			hits.incrementAndGet();
+			if (!wasStrong && resolver != null) {
+				enforceResolverBound();
+			}
+			return new ModuleNodeInfo(entry.module, resolver);
 		} finally {
 			lock.unlock();
 		}
 	}
 
 	JDTResolver getResolver(PerWorkingCopyInfo info) {
-		lock.lock();
-		try {
-			ModuleNodeInfo moduleNodeInfo = get(info);
-			return moduleNodeInfo != null ? moduleNodeInfo.resolver : null;
-		} finally {
-			lock.unlock();
-		}
+		ModuleNodeInfo moduleNodeInfo = get(info);
+		return moduleNodeInfo != null ? moduleNodeInfo.resolver : null;
 	}
 
 	ModuleNode remove(PerWorkingCopyInfo info) {
+		ReentrantLock lock = lockFor(info.getWorkingCopy());
 		lock.lock();
 		try {
 			sweepAndPurgeModuleNodes();
-			ModuleNodeInfo removed = infoToModuleMap.remove(info);
-			return removed != null ? removed.module : null;
+			Entry removed = infoToModuleMap.remove(info);
+			if (removed == null) {
+				return null;
+			}
+			TypeMemberCache.invalidate(removed.module);
+			return removed.module;
 		} finally {
 			lock.unlock();
 		}
@@ -134,28 +248,30 @@ public class ModuleNodeMapper {
 	 */
 	protected void maybeCacheModuleNode(final JavaModelManager.PerWorkingCopyInfo perWorkingCopyInfo,
 			final GroovyCompilationUnitDeclaration compilationUnitDeclaration) {
+		if (perWorkingCopyInfo == null || compilationUnitDeclaration == null) {
+			return;
+		}
 
+		ReentrantLock lock = lockFor(perWorkingCopyInfo.getWorkingCopy());
 		if (lock.tryLock()) {
 			try {
-				if (perWorkingCopyInfo != null && compilationUnitDeclaration != null) {
-					ModuleNode module = compilationUnitDeclaration.getModuleNode();
-
-					// Store it for later
-					if (module != null) {
-						JDTResolver resolver;
-						if (shouldStoreResovler()) {
-							resolver = (JDTResolver) compilationUnitDeclaration.getCompilationUnit().getResolveVisitor();
-						} else {
-							resolver = null;
-						}
-						store(perWorkingCopyInfo, module, resolver);
+				ModuleNode module = compilationUnitDeclaration.getModuleNode();
+
+				// Store it for later
+				if (module != null) {
+					JDTResolver resolver;
+					if (shouldStoreResovler()) {
+						resolver = (JDTResolver) compilationUnitDeclaration.getCompilationUnit().getResolveVisitor();
+					} else {
+						resolver = null;
 					}
+					store(perWorkingCopyInfo, module, resolver);
 				}
 			} finally {
 				lock.unlock();
 			}
 		} else {
-			// lock grabbed by someone else. rerun this operation later
+			// lock for this unit grabbed by someone else. rerun this operation later
 			new Job("Cache module node") {
 				@Override
 				protected IStatus run(IProgressMonitor monitor) {
@@ -166,6 +282,131 @@ public class ModuleNodeMapper {
 		}
 	}
 
+	/**
+	 * Remember the contents the cached module and the given structure were built from, so that the next reconcile can try to
+	 * update both incrementally. Ignored if the module is not (or no longer) the one cached for the working copy.
+	 */
+	void recordReconcileState(PerWorkingCopyInfo info, ModuleNode module, char[] contents,
+			Map<String, CategorizedProblem[]> problems, CompilationUnitElementInfo structure) {
+		if (info == null || module == null || contents == null || !IncrementalReconciler.enabled) {
+			return;
+		}
+		ReentrantLock lock = lockFor(info.getWorkingCopy());
+		if (lock.tryLock()) {
+			try {
+				Entry entry = infoToModuleMap.get(info);
+				if (entry != null && entry.module == module) {
+					entry.contents = contents;
+					entry.problems = problems != null ? new HashMap<String, CategorizedProblem[]>(problems)
+							: new HashMap<String, CategorizedProblem[]>();
+					entry.structure = structure;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Forget the structure recorded for the working copy, because it has been rebuilt from contents other than the ones the
+	 * cached module was built from.
+	 */
+	void forgetStructure(PerWorkingCopyInfo info) {
+		if (info == null) {
+			return;
+		}
+		ReentrantLock lock = lockFor(info.getWorkingCopy());
+		lock.lock();
+		try {
+			Entry entry = infoToModuleMap.get(info);
+			if (entry != null) {
+				entry.structure = null;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Try to bring the module cached for the working copy up to date with the given contents without compiling the whole unit.
+	 *
+	 * @param newStructure the structure that is going to be built for the new contents
+	 * @return the edit and the problems for the new contents, or null if the unit must be reconciled in full
+	 * @see IncrementalReconciler
+	 */
+	IncrementalReconciler.Update reconcileIncrementally(PerWorkingCopyInfo info, char[] newContents,
+			CompilationUnitElementInfo newStructure) {
+		if (info == null || newContents == null || !IncrementalReconciler.enabled) {
+			return null;
+		}
+		ReentrantLock lock = lockFor(info.getWorkingCopy());
+		if (!lock.tryLock()) {
+			return null;
+		}
+		try {
+			Entry entry = infoToModuleMap.get(info);
+			if (entry == null || entry.contents == null || entry.isResolverCollected()) {
+				return null;
+			}
+			char[] oldContents = entry.contents;
+			Map<String, CategorizedProblem[]> oldProblems = entry.problems;
+			CompilationUnitElementInfo oldStructure = entry.structure;
+			// unless the update succeeds, the recorded state no longer describes the module
+			entry.contents = null;
+			entry.problems = null;
+			entry.structure = null;
+			IncrementalReconciler.Update update = IncrementalReconciler.reconcile(entry.module, oldContents, oldProblems,
+					newContents);
+			if (update != null) {
+				entry.contents = newContents;
+				entry.problems = new HashMap<String, CategorizedProblem[]>(update.problems);
+				entry.structure = newStructure;
+				entry.lastAccess = clock.incrementAndGet();
+				update.oldStructure = oldStructure;
+				// the edited method has been swapped for a new node, which the members cached for the module do not know
+				TypeMemberCache.invalidate(entry.module);
+			}
+			return update;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases the strong references to the least recently used resolvers so that at most {@link #MAX_STRONG_RESOLVERS} are
+	 * strongly reachable from this mapper. Races with concurrent stores may leave the count briefly above the bound; the next
+	 * call corrects it.
+	 */
+	private void enforceResolverBound() {
+		List<Entry> strong = new ArrayList<Entry>();
+		for (Entry entry : infoToModuleMap.values()) {
+			if (entry.hasStrongResolver()) {
+				strong.add(entry);
+			}
+		}
+		int excess = strong.size() - MAX_STRONG_RESOLVERS;
+		while (excess > 0) {
+			Entry oldest = null;
+			for (Entry entry : strong) {
+				if (oldest == null || entry.lastAccess < oldest.lastAccess) {
+					oldest = entry;
+				}
+			}
+			strong.remove(oldest);
+			if (oldest.demote()) {
+				evictions.incrementAndGet();
+			}
+			excess -= 1;
+		}
+	}
+
+	private ReentrantLock lockFor(Object key) {
+		int h = key != null ? key.hashCode() : 0;
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return locks[h & (LOCK_STRIPES - 1)];
+	}
+
 	public static boolean isEmpty() {
 		return INSTANCE.infoToModuleMap.isEmpty();
 	}
@@ -174,43 +415,109 @@ public class ModuleNodeMapper {
 		return INSTANCE.infoToModuleMap.size();
 	}
 
+	/**
+	 * @return number of lookups that found a usable entry
+	 */
+	public static long getHitCount() {
+		return INSTANCE.hits.get();
+	}
+
+	/**
+	 * @return number of lookups that found no entry or an entry whose resolver had been collected
+	 */
+	public static long getMissCount() {
+		return INSTANCE.misses.get();
+	}
+
+	/**
+	 * @return number of resolvers that were demoted from strong to soft references because they were least recently used
+	 */
+	public static long getEvictionCount() {
+		return INSTANCE.evictions.get();
+	}
+
+	/**
+	 * @return number of entries dropped because their softly held resolver was collected
+	 */
+	public static long getCollectedCount() {
+		return INSTANCE.collections.get();
+	}
+
+	/**
+	 * @return number of entries whose resolver is currently held strongly
+	 */
+	public static int getStrongResolverCount() {
+		int count = 0;
+		for (Entry entry : INSTANCE.infoToModuleMap.values()) {
+			if (entry.hasStrongResolver()) {
+				count += 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of entries whose resolver has been collected but that have not been looked up since
+	 */
+	public static int getCollectedResolverCount() {
+		int count = 0;
+		for (Entry entry : INSTANCE.infoToModuleMap.values()) {
+			if (entry.isResolverCollected()) {
+				count += 1;
+			}
+		}
+		return count;
+	}
+
+	public static String getStatistics() {
+		return "ModuleNodeMapper: size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+				+ getEvictionCount() + ", collected=" + getCollectedCount() + ", strongResolvers=" + getStrongResolverCount();
+	}
+
+	public static void resetStatistics() {
+		INSTANCE.hits.set(0);
+		INSTANCE.misses.set(0);
+		INSTANCE.evictions.set(0);
+		INSTANCE.collections.set(0);
+	}
+
 	// GRECLIPSE-804 check to see that the stored nodes are correct
-	// provide info to stdout if not and purge any stale elements
+	// log and purge any stale elements
 	void sweepAndPurgeModuleNodes() {
-		lock.lock();
-		try {
-			if (System.getProperty("groovy.eclipse.model.purge") == null) {
-				return;
-			}
-
-			List<PerWorkingCopyInfo> toPurge = new ArrayList<PerWorkingCopyInfo>();
-			for (PerWorkingCopyInfo info : infoToModuleMap.keySet()) {
-				int useCount = ((Integer) ReflectionUtils.getPrivateField(PerWorkingCopyInfo.class, "useCount", info)).intValue();
-				if (useCount <= 0) {
-					String message = "Bad module node map entry: " + info.getWorkingCopy().getElementName();
-					System.out.println(message);
-					Util.log(new RuntimeException(message), message);
-					toPurge.add(info);
-				} else if (useCount > 1) {
-					System.out.println(info.getWorkingCopy().getElementName() + " : useCount : " + useCount);
-				}
-			}
+		if (System.getProperty("groovy.eclipse.model.purge") == null) {
+			return;
+		}
 
-			if (toPurge.size() > 0) {
-				for (PerWorkingCopyInfo info : toPurge) {
-					infoToModuleMap.remove(info);
+		// callers already hold the lock of one entry, so never wait for the lock of another one: two threads sweeping at the
+		// same time could deadlock. An entry whose lock is busy is left for the next sweep
+		for (PerWorkingCopyInfo info : infoToModuleMap.keySet()) {
+			int useCount = ((Integer) ReflectionUtils.getPrivateField(PerWorkingCopyInfo.class, "useCount", info)).intValue();
+			if (useCount <= 0) {
+				ReentrantLock lock = lockFor(info.getWorkingCopy());
+				if (lock.tryLock()) {
+					try {
+						Entry purged = infoToModuleMap.remove(info);
+						if (purged != null) {
+							String message = "Bad module node map entry: " + info.getWorkingCopy().getElementName();
+							Util.log(new RuntimeException(message), message);
+							TypeMemberCache.invalidate(purged.module);
+						}
+					} finally {
+						lock.unlock();
+					}
 				}
 			}
-		} finally {
-			lock.unlock();
 		}
 	}
 
-	public void lock() {
-		lock.lock();
+	/**
+	 * Locks the entry for the given compilation unit. Callers must pair this with {@link #unlock(Object)} passing an equal unit.
+	 */
+	public void lock(Object unit) {
+		lockFor(unit).lock();
 	}
 
-	public void unlock() {
-		lock.unlock();
+	public void unlock(Object unit) {
+		lockFor(unit).unlock();
 	}
-}
\ No newline at end of file
+}
@@ -15,12 +15,14 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import org.codehaus.jdt.groovy.internal.compiler.ast.SharedTypeDescriptorCache;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jdt.groovy.search.InferredReferenceIndex;
 import org.eclipse.jdt.internal.core.util.Util;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.prefs.BackingStoreException;
@@ -56,9 +58,12 @@ public class Activator extends Plugin {
 		super.start(context);
 		plugin = this;
 		SystemPropertyCleaner.clean();
+		SharedTypeDescriptorCache.install();
 	}
 
 	public void stop(BundleContext context) throws Exception {
+		SharedTypeDescriptorCache.uninstall();
+		InferredReferenceIndex.saveDefault();
 		plugin = null;
 		super.stop(context);
 	}
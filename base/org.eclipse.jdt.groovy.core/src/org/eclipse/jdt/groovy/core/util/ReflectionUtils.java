@@ -14,6 +14,7 @@ package org.eclipse.jdt.groovy.core.util;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,7 +36,7 @@ public class ReflectionUtils {
 
 	private static final Class[] NO_TYPES = new Class[0];
 	private static final Object[] NO_ARGS = new Object[0];
-	private static Map<String, Field> fieldMap = new HashMap<String, Field>();
+	private static Map<String, Field> fieldMap = Collections.synchronizedMap(new HashMap<String, Field>());
 
 	public static <T> Object getPrivateField(Class<T> clazz, String fieldName, Object target) {
 		String key = clazz.getCanonicalName() + fieldName;
@@ -59,14 +59,25 @@ public class CategoryTypeLookup implements ITypeLookup {
 			}
 			String getterName = AccessorSupport.GETTER.createAccessorName(text);
 			String setterName = AccessorSupport.SETTER.createAccessorName(text);
+			TypeMemberCache members = scope.getMemberCache();
+			DefaultCategoryIndex index = DefaultCategoryIndex.enabled ? DefaultCategoryIndex.getDefault() : null;
+			boolean indexSearched = false;
 			for (ClassNode category : categories) {
-				List<MethodNode> methods = category.getMethods(text);
+				if (index != null && index.isIndexed(category)) {
+					// the default categories come first and are all searched at once
+					if (!indexSearched) {
+						indexSearched = true;
+						findIndexedMethods(index, text, getterName, setterName, currentType, members, possibleMethods);
+					}
+					continue;
+				}
+				List<MethodNode> methods = members.getMethods(category, text);
 
 				possibleMethods.addAll(methods);
 
 				// also check to see if the getter variant of any name is available
 				if (getterName != null) {
-					methods = category.getMethods(getterName);
+					methods = members.getMethods(category, getterName);
 					for (MethodNode method : methods) {
 						if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.GETTER) {
 							possibleMethods.add(method);
@@ -74,7 +85,7 @@ public class CategoryTypeLookup implements ITypeLookup {
 					}
 				}
 				if (setterName != null) {
-					methods = category.getMethods(setterName);
+					methods = members.getMethods(category, setterName);
 					for (MethodNode method : methods) {
 						if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.SETTER) {
 							possibleMethods.add(method);
@@ -85,7 +96,7 @@ public class CategoryTypeLookup implements ITypeLookup {
 			for (MethodNode methodNode : possibleMethods) {
 				Parameter[] params = methodNode.getParameters();
 				if (params != null && params.length > 0
-						&& isAssignableFrom(VariableScope.maybeConvertFromPrimitive(currentType), params[0].getType())) {
+						&& isAssignableFrom(VariableScope.maybeConvertFromPrimitive(currentType), params[0].getType(), members)) {
 					ClassNode declaringClass = methodNode.getDeclaringClass();
 					ClassNode returnType = SimpleTypeLookup.typeFromDeclaration(methodNode, currentType);
 					TypeConfidence confidence = getConfidence(declaringClass);
@@ -99,6 +110,38 @@ public class CategoryTypeLookup implements ITypeLookup {
 		return null;
 	}
 
+	/**
+	 * Adds the methods of the default categories that apply to the current type, in the same order as a scan of each category
+	 * would: by category, then the methods with the given name, the getters and finally the setters.
+	 */
+	private void findIndexedMethods(DefaultCategoryIndex index, String name, String getterName, String setterName,
+			ClassNode currentType, TypeMemberCache members, List<MethodNode> possibleMethods) {
+		ClassNode receiver = VariableScope.maybeConvertFromPrimitive(currentType);
+		if (receiver == null) {
+			return;
+		}
+		Set<String> receiverTypes = new HashSet<String>(members.getSuperTypeNames(receiver));
+		receiverTypes.add("java.lang.Object");
+
+		List<MethodNode> methods = new ArrayList<MethodNode>(index.getMethods(name, receiverTypes));
+		if (getterName != null) {
+			for (MethodNode method : index.getMethods(getterName, receiverTypes)) {
+				if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.GETTER) {
+					methods.add(method);
+				}
+			}
+		}
+		if (setterName != null) {
+			for (MethodNode method : index.getMethods(setterName, receiverTypes)) {
+				if (method.isStatic() && AccessorSupport.findAccessorKind(method, true) == AccessorSupport.SETTER) {
+					methods.add(method);
+				}
+			}
+		}
+		index.sortByCategory(methods);
+		possibleMethods.addAll(methods);
+	}
+
 	/**
 	 * DGM and DGSM classes are loosely inferred so that other lookups can provide better solutions
 	 *
@@ -132,24 +175,6 @@ public class CategoryTypeLookup implements ITypeLookup {
 		return TypeConfidence.EXACT;
 	}
 
-	/**
-	 * @param interf
-	 * @param allInterfaces
-	 */
-	private void findAllSupers(ClassNode clazz, Set<String> allSupers) {
-		if (!allSupers.contains(clazz.getName())) {
-			allSupers.add(clazz.getName());
-			if (clazz.getSuperClass() != null) {
-				findAllSupers(clazz.getSuperClass(), allSupers);
-			}
-			if (clazz.getInterfaces() != null) {
-				for (ClassNode superInterface : clazz.getInterfaces()) {
-					findAllSupers(superInterface, allSupers);
-				}
-			}
-		}
-	}
-
 	/**
 	 * can from be assigned to to?
 	 *
@@ -157,19 +182,12 @@ public class CategoryTypeLookup implements ITypeLookup {
 	 * @param to
 	 * @return
 	 */
-	private boolean isAssignableFrom(ClassNode from, ClassNode to) {
+	private boolean isAssignableFrom(ClassNode from, ClassNode to, TypeMemberCache members) {
 		if (from == null || to == null) {
 			return false;
 		}
-		Set<String> allSupers = new HashSet<String>();
-		allSupers.add("java.lang.Object");
-		findAllSupers(from, allSupers);
-		for (String supr : allSupers) {
-			if (to.getName().equals(supr)) {
-				return true;
-			}
-		}
-		return false;
+		String name = to.getName();
+		return name.equals("java.lang.Object") || members.getSuperTypeNames(from).contains(name);
 	}
 
 	public TypeLookupResult lookupType(FieldNode node, VariableScope scope) {
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.jdt.groovy.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.Parameter;
+
+/**
+ * An immutable index of the methods of the default categories ({@link VariableScope#ALL_DEFAULT_CATEGORIES}), keyed by method
+ * name and by the name of the (erased) type of the first parameter, which is the type the method is added to. Type inference
+ * and content assist used to go through every method of every default category to resolve a single reference.
+ * <p>
+ * Only methods with at least one parameter are indexed, since no other category method can apply to a receiver. Methods are
+ * returned in the order in which a scan of the categories would have found them: categories in the order of
+ * {@link VariableScope#ALL_DEFAULT_CATEGORIES}, then the methods of each category and of its super classes in declaration
+ * order. Setting <code>greclipse.categoryIndex</code> to
+ * false makes the callers go back to scanning.
+ */
+public class DefaultCategoryIndex {
+
+	public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.categoryIndex", "true")).booleanValue();
+
+	private static DefaultCategoryIndex defaultIndex;
+
+	/**
+	 * @return the index of the default categories, built the first time it is asked for
+	 */
+	public static synchronized DefaultCategoryIndex getDefault() {
+		if (defaultIndex == null) {
+			defaultIndex = new DefaultCategoryIndex(VariableScope.ALL_DEFAULT_CATEGORIES);
+		}
+		return defaultIndex;
+	}
+
+	private final Collection<ClassNode> categories;
+
+	// method name -> first parameter type name -> methods
+	private final Map<String, Map<String, List<MethodNode>>> byName = new HashMap<String, Map<String, List<MethodNode>>>();
+
+	// first parameter type name -> methods
+	private final Map<String, List<MethodNode>> byReceiver = new HashMap<String, List<MethodNode>>();
+
+	// methods whose only parameter is the receiver, which content assist may propose as properties of any type
+	private final List<MethodNode> singleParameterMethods = new ArrayList<MethodNode>();
+
+	// position of each method in the scan order and position of its category
+	private final Map<MethodNode, Integer> ordinals = new IdentityHashMap<MethodNode, Integer>();
+	private final Map<MethodNode, Integer> categoryOrdinals = new IdentityHashMap<MethodNode, Integer>();
+
+	private final Comparator<MethodNode> scanOrder = new Comparator<MethodNode>() {
+		public int compare(MethodNode m1, MethodNode m2) {
+			return ordinals.get(m1).compareTo(ordinals.get(m2));
+		}
+	};
+
+	private final Comparator<MethodNode> categoryOrder = new Comparator<MethodNode>() {
+		public int compare(MethodNode m1, MethodNode m2) {
+			return categoryOrdinals.get(m1).compareTo(categoryOrdinals.get(m2));
+		}
+	};
+
+	public DefaultCategoryIndex(Collection<ClassNode> categories) {
+		this.categories = categories;
+		int ordinal = 0, categoryOrdinal = 0;
+		for (ClassNode category : categories) {
+			categoryOrdinal += 1;
+			// same order as ClassNode.getMethods(String): the methods of a class come before those of its super class
+			for (ClassNode clazz = category; clazz != null; clazz = clazz.getSuperClass()) {
+				for (MethodNode method : clazz.getMethods()) {
+					Parameter[] params = method.getParameters();
+					if (params == null || params.length == 0 || ordinals.containsKey(method)) {
+						continue;
+					}
+					ordinals.put(method, ordinal++);
+					categoryOrdinals.put(method, categoryOrdinal);
+					index(method, params);
+				}
+			}
+		}
+	}
+
+	private void index(MethodNode method, Parameter[] params) {
+		String receiver = params[0].getType().getName();
+		Map<String, List<MethodNode>> receivers = byName.get(method.getName());
+		if (receivers == null) {
+			receivers = new HashMap<String, List<MethodNode>>();
+			byName.put(method.getName(), receivers);
+		}
+		add(receivers, receiver, method);
+		add(byReceiver, receiver, method);
+		if (params.length == 1) {
+			singleParameterMethods.add(method);
+		}
+	}
+
+	private static void add(Map<String, List<MethodNode>> map, String key, MethodNode method) {
+		List<MethodNode> methods = map.get(key);
+		if (methods == null) {
+			methods = new ArrayList<MethodNode>(2);
+			map.put(key, methods);
+		}
+		methods.add(method);
+	}
+
+	/**
+	 * @return true if the given category is one of the categories in this index
+	 */
+	public boolean isIndexed(ClassNode category) {
+		return categories.contains(category);
+	}
+
+	/**
+	 * @param name the method name
+	 * @param receiverTypes the names of the receiver type and all of its super types
+	 * @return the methods with the given name whose first parameter is one of the receiver types, in scan order
+	 */
+	public List<MethodNode> getMethods(String name, Collection<String> receiverTypes) {
+		Map<String, List<MethodNode>> receivers = byName.get(name);
+		if (receivers == null) {
+			return Collections.emptyList();
+		}
+		return collect(receivers, receiverTypes);
+	}
+
+	/**
+	 * @param receiverTypes the names of the receiver type and all of its super types
+	 * @return all methods whose first parameter is one of the receiver types, in scan order
+	 */
+	public List<MethodNode> getMethods(Collection<String> receiverTypes) {
+		return collect(byReceiver, receiverTypes);
+	}
+
+	/**
+	 * @return the methods that take the receiver as their only parameter, in scan order
+	 */
+	public List<MethodNode> getSingleParameterMethods() {
+		return Collections.unmodifiableList(singleParameterMethods);
+	}
+
+	/**
+	 * Sorts the given methods of this index into the order in which a scan of the categories would have found them.
+	 */
+	public void sort(List<MethodNode> methods) {
+		Collections.sort(methods, scanOrder);
+	}
+
+	/**
+	 * Sorts the given methods of this index by the position of their categories only, keeping the order of the methods that
+	 * belong to the same category.
+	 */
+	public void sortByCategory(List<MethodNode> methods) {
+		Collections.sort(methods, categoryOrder);
+	}
+
+	private List<MethodNode> collect(Map<String, List<MethodNode>> map, Collection<String> keys) {
+		List<MethodNode> result = null;
+		int found = 0;
+		for (String key : keys) {
+			List<MethodNode> methods = map.get(key);
+			if (methods != null) {
+				if (result == null) {
+					result = new ArrayList<MethodNode>(methods);
+				} else {
+					result.addAll(methods);
+				}
+				found += 1;
+			}
+		}
+		if (result == null) {
+			return Collections.emptyList();
+		}
+		if (found > 1) {
+			sort(result);
+		}
+		return result;
+	}
+
+	public int size() {
+		return ordinals.size();
+	}
+}
@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.jdt.groovy.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.ast.expr.FieldExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.expr.VariableExpression;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.groovy.core.Activator;
+import org.eclipse.jdt.groovy.core.util.ReflectionUtils;
+import org.eclipse.jdt.internal.core.search.matching.FieldPattern;
+import org.eclipse.jdt.internal.core.search.matching.MethodPattern;
+import org.eclipse.jdt.internal.core.search.matching.OrPattern;
+import org.eclipse.jdt.internal.core.search.matching.PossibleMatch;
+import org.eclipse.jdt.internal.core.search.matching.VariablePattern;
+import org.eclipse.jdt.internal.core.util.Util;
+
+/**
+ * The names that type inference came across in each groovy file, kept across sessions so that method and field searches do
+ * not have to infer files that can not hold a match. The method and field search requestors only match nodes whose name is
+ * the name searched for, so a file that was inferred since it last changed and that had no such node is skipped. Every other
+ * file is inferred as before, and its entry is brought up to date along the way.
+ * <p>
+ * Only names are kept. The declaring types that inference resolves them to depend on other files, so they can not tell
+ * whether a file holds a match without inferring it again. Entries are recorded during searches, which infer the files
+ * anyway, and are stale once the modification stamp of their file changes. Files with unsaved changes are neither skipped
+ * nor recorded. Setting <code>greclipse.inferredReferenceIndex</code> to true turns the index on.
+ */
+public class InferredReferenceIndex {
+
+	public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.inferredReferenceIndex", "false")).booleanValue();
+
+	private static final int VERSION = 1;
+
+	// longer names, such as the text of long string constants, are not kept and files are never skipped for them
+	private static final int MAX_NAME_LENGTH = 1000;
+
+	private static final String FILE_NAME = "inferredReferences.index"; //$NON-NLS-1$
+
+	private static InferredReferenceIndex defaultIndex;
+
+	/**
+	 * @return the index of the workspace, read from the state location of the plugin the first time it is asked for
+	 */
+	public static synchronized InferredReferenceIndex getDefault() {
+		if (defaultIndex == null) {
+			Activator activator = Activator.getDefault();
+			File file = activator != null ? activator.getStateLocation().append(FILE_NAME).toFile() : null;
+			defaultIndex = new InferredReferenceIndex(file);
+			defaultIndex.load();
+		}
+		return defaultIndex;
+	}
+
+	/**
+	 * Writes the index of the workspace, if it has been used and has changed
+	 */
+	public static synchronized void saveDefault() {
+		if (defaultIndex != null) {
+			defaultIndex.save();
+		}
+	}
+
+	private static class Entry {
+		final long modificationStamp;
+		final long localTimeStamp;
+		final Set<String> names;
+
+		Entry(long modificationStamp, long localTimeStamp, Set<String> names) {
+			this.modificationStamp = modificationStamp;
+			this.localTimeStamp = localTimeStamp;
+			this.names = names;
+		}
+
+		boolean isCurrent(IResource resource) {
+			return modificationStamp == resource.getModificationStamp() && localTimeStamp == resource.getLocalTimeStamp();
+		}
+	}
+
+	private final File file;
+
+	// full path of the file -> entry
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private boolean dirty;
+
+	private final AtomicLong skipped = new AtomicLong();
+
+	/**
+	 * @param file where the index is kept, or null to keep it in memory only
+	 */
+	public InferredReferenceIndex(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the number of files that searches have skipped
+	 */
+	public long getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return true if the file of the possible match is known to have no node with the name of the method or field searched
+	 *         for, so that it can not hold a match
+	 */
+	public boolean canSkip(PossibleMatch possibleMatch, SearchPattern pattern) {
+		IResource resource = getIndexedResource(possibleMatch);
+		if (resource == null) {
+			return false;
+		}
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(resource.getFullPath().toPortableString());
+		}
+		if (entry == null || !entry.isCurrent(resource)) {
+			return false;
+		}
+		Set<String> names = new HashSet<String>();
+		if (!collectNames(pattern, names)) {
+			return false;
+		}
+		for (String name : names) {
+			if (name.length() > MAX_NAME_LENGTH || entry.names.contains(name)) {
+				return false;
+			}
+		}
+		skipped.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return a requestor that passes the nodes of the possible match on to the given requestor and records their names, or
+	 *         null if the file of the possible match is not indexed. {@link Recorder#finish()} must be called once the visit
+	 *         is done.
+	 */
+	public Recorder createRecorder(PossibleMatch possibleMatch, ITypeRequestor requestor) {
+		IResource resource = getIndexedResource(possibleMatch);
+		return resource != null ? new Recorder(resource, requestor) : null;
+	}
+
+	/**
+	 * Records the names of the nodes of one file while it is inferred
+	 */
+	public class Recorder implements ITypeRequestor {
+		private final ITypeRequestor requestor;
+		private final String path;
+		// taken before the visit, so that changes made during the visit leave the entry stale
+		private final long modificationStamp;
+		private final long localTimeStamp;
+		private final Set<String> names = new HashSet<String>();
+		// false if the requestor cut the visit short, so that some nodes were not seen
+		private boolean complete = true;
+
+		Recorder(IResource resource, ITypeRequestor requestor) {
+			this.requestor = requestor;
+			this.path = resource.getFullPath().toPortableString();
+			this.modificationStamp = resource.getModificationStamp();
+			this.localTimeStamp = resource.getLocalTimeStamp();
+		}
+
+		public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+			VisitStatus status = requestor.acceptASTNode(node, result, enclosingElement);
+			if (status != VisitStatus.CONTINUE) {
+				complete = false;
+			}
+			String name = getName(node);
+			if (name != null && name.length() <= MAX_NAME_LENGTH) {
+				names.add(name);
+			}
+			return status;
+		}
+
+		/**
+		 * Stores the names seen during the visit as the entry of the file
+		 */
+		public void finish() {
+			if (complete) {
+				Entry entry = new Entry(modificationStamp, localTimeStamp, names);
+				synchronized (InferredReferenceIndex.this) {
+					entries.put(path, entry);
+					dirty = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the names that the method and field search requestors match, see {@link MethodReferenceSearchRequestor} and
+	 *         {@link FieldReferenceSearchRequestor}
+	 */
+	private static String getName(ASTNode node) {
+		if (node instanceof ConstantExpression) {
+			return ((ConstantExpression) node).getText();
+		} else if (node instanceof FieldExpression) {
+			return ((FieldExpression) node).getFieldName();
+		} else if (node instanceof MethodNode) {
+			return ((MethodNode) node).getName();
+		} else if (node instanceof FieldNode) {
+			return ((FieldNode) node).getName();
+		} else if (node instanceof VariableExpression) {
+			return ((VariableExpression) node).getName();
+		} else if (node instanceof StaticMethodCallExpression) {
+			return ((StaticMethodCallExpression) node).getMethod();
+		}
+		return null;
+	}
+
+	/**
+	 * @return false if a match of the pattern does not need a node with one of the collected names
+	 */
+	@SuppressWarnings("nls")
+	private static boolean collectNames(SearchPattern pattern, Set<String> names) {
+		char[] name;
+		if (pattern instanceof MethodPattern) {
+			name = (char[]) ReflectionUtils.getPrivateField(MethodPattern.class, "selector", pattern);
+		} else if (pattern instanceof FieldPattern) {
+			name = (char[]) ReflectionUtils.getPrivateField(VariablePattern.class, "name", pattern);
+		} else if (pattern instanceof OrPattern) {
+			SearchPattern[] patterns = (SearchPattern[]) ReflectionUtils.getPrivateField(OrPattern.class, "patterns", pattern);
+			if (patterns == null) {
+				return false;
+			}
+			for (SearchPattern orPattern : patterns) {
+				if (orPattern == null || !collectNames(orPattern, names)) {
+					return false;
+				}
+			}
+			return true;
+		} else {
+			return false;
+		}
+		if (name == null) {
+			return false;
+		}
+		names.add(String.valueOf(name));
+		return true;
+	}
+
+	/**
+	 * @return the file of the possible match, or null if it is not in the workspace or has unsaved changes
+	 */
+	private static IResource getIndexedResource(PossibleMatch possibleMatch) {
+		if (!(possibleMatch.resource instanceof IFile) || possibleMatch.openable == null) {
+			return null;
+		}
+		try {
+			if (possibleMatch.openable.hasUnsavedChanges()) {
+				return null;
+			}
+		} catch (JavaModelException e) {
+			return null;
+		}
+		return possibleMatch.resource;
+	}
+
+	private synchronized void load() {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != VERSION) {
+				return;
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				String path = in.readUTF();
+				long modificationStamp = in.readLong();
+				long localTimeStamp = in.readLong();
+				int numNames = in.readInt();
+				Set<String> names = new HashSet<String>(Math.max(16, numNames * 2));
+				for (int j = 0; j < numNames; j++) {
+					names.add(in.readUTF());
+				}
+				entries.put(path, new Entry(modificationStamp, localTimeStamp, names));
+			}
+		} catch (IOException e) {
+			// a damaged index is dropped and built again
+			entries.clear();
+			Util.log(e, "Error reading inferred reference index " + file); //$NON-NLS-1$
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private synchronized void save() {
+		if (file == null || !dirty) {
+			return;
+		}
+		// entries of deleted files are dropped
+		IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+		for (Iterator<String> iter = entries.keySet().iterator(); iter.hasNext();) {
+			if (root.findMember(Path.fromPortableString(iter.next())) == null) {
+				iter.remove();
+			}
+		}
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+				Entry entry = mapEntry.getValue();
+				out.writeUTF(mapEntry.getKey());
+				out.writeLong(entry.modificationStamp);
+				out.writeLong(entry.localTimeStamp);
+				out.writeInt(entry.names.size());
+				for (String name : entry.names) {
+					out.writeUTF(name);
+				}
+			}
+			dirty = false;
+		} catch (IOException e) {
+			Util.log(e, "Error writing inferred reference index " + file); //$NON-NLS-1$
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+}
@@ -17,10 +17,7 @@ import static org.eclipse.jdt.groovy.search.VariableScope.NO_GENERICS;
 import groovyjarjarasm.asm.Opcodes;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.AnnotatedNode;
@@ -51,7 +48,6 @@ import org.codehaus.groovy.ast.expr.TupleExpression;
 import org.codehaus.groovy.ast.expr.VariableExpression;
 import org.codehaus.groovy.ast.stmt.BlockStatement;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
-import org.eclipse.jdt.core.Flags;
 import org.eclipse.jdt.groovy.search.TypeLookupResult.TypeConfidence;
 import org.eclipse.jdt.groovy.search.VariableScope.VariableInfo;
 
@@ -65,8 +61,11 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 
 	private GroovyCompilationUnit unit;
 
+	private TypeMemberCache members;
+
 	public void initialize(GroovyCompilationUnit unit, VariableScope topLevelScope) {
 		this.unit = unit;
+		this.members = topLevelScope.getMemberCache();
 	}
 
 	public TypeLookupResult lookupType(Expression node, VariableScope scope, ClassNode objectExpressionType) {
@@ -580,21 +579,18 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 			}
 		}
 
-		LinkedHashSet<ClassNode> allClasses = new LinkedHashSet<ClassNode>();
-		VariableScope.createTypeHierarchy(declaringType, allClasses, true);
-
-		maybe = findPropertyInClass(name, allClasses);
+		maybe = members.findPropertyInHierarchy(declaringType, name);
 		if (maybe != null) {
 			return maybe;
 		}
 
-		maybe = declaringType.getField(name);
+		maybe = members.getField(declaringType, name);
 		if (maybe != null) {
 			return maybe;
 		}
 
 		// look for constants declared in super class
-		FieldNode constantFromSuper = findConstantInClass(name, allClasses);
+		FieldNode constantFromSuper = members.findConstantInHierarchy(declaringType, name);
 		if (constantFromSuper != null) {
 			return constantFromSuper;
 		}
@@ -628,10 +624,8 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 		// do this piece first since findAllInterfaces will return the current interface as well and this will avoid running this
 		// method on the same interface twice.
 		if (checkSuperInterfaces && declaringType.isInterface()) {
-			LinkedHashSet<ClassNode> allInterfaces = new LinkedHashSet<ClassNode>();
-			VariableScope.findAllInterfaces(declaringType, allInterfaces, true);
 			AnnotatedNode candidate = null;
-			interfacesSearch: for (ClassNode interf : allInterfaces) {
+			interfacesSearch: for (ClassNode interf : members.getAllInterfaces(declaringType)) {
 				AnnotatedNode methodDeclaration = findMethodDeclaration(name, interf, methodCallArgumentTypes, false);
 
 				if (candidate == null) {
@@ -670,7 +664,7 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 			return candidate;
 		}
 
-		List<MethodNode> maybeMethods = declaringType.getMethods(name);
+		List<MethodNode> maybeMethods = members.getMethods(declaringType, name);
 
 		if (maybeMethods != null && maybeMethods.size() > 0) {
 			// Remember first entry in case exact match not found
@@ -678,14 +672,12 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 			// prefer retrieving the method with the same number of args as specified in the parameter.
 			// if none exists, or parameter is -1, then arbitrarily choose the first.
 			if (methodCallArgumentTypes != null && methodCallArgumentTypes.size() >= 0) {
-				for (Iterator<MethodNode> iterator = maybeMethods.iterator(); iterator.hasNext();) {
-					MethodNode maybeMethod = iterator.next();
+				for (MethodNode maybeMethod : maybeMethods) {
 					Parameter[] parameters = maybeMethod.getParameters();
 					if ((parameters == null || parameters.length == 0) && methodCallArgumentTypes.size() == 0) {
 						return maybeMethod.getOriginal();
 					}
 					if (parameters != null && parameters.length == methodCallArgumentTypes.size()) {
-						boolean found = true;
 						boolean exactMatchFound = true;
 						closestMatch = maybeMethod.getOriginal();
 						for (int i = 0; i < parameters.length; i++) {
@@ -694,13 +686,11 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 							}
 							if (parameters[i].getType().isInterface()) {
 								if (!methodCallArgumentTypes.get(i).declaresInterface(parameters[i].getType())) {
-									found = false;
 									break;
 								}
 							} else {
 								// TODO 'null' literal argument should be correctly resolved
 								if (!methodCallArgumentTypes.get(i).isDerivedFrom(parameters[i].getType())) {
-									found = false;
 									break;
 								}
 							}
@@ -708,11 +698,6 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 						if (exactMatchFound) {
 							return closestMatch;
 						}
-						if (!found) {
-							iterator.remove();
-						}
-					} else {
-						iterator.remove();
 					}
 				}
 			}
@@ -733,24 +718,4 @@ public class SimpleTypeLookup implements ITypeLookupExtension {
 		lengthField.setDeclaringClass(declaringType);
 		return lengthField;
 	}
-
-	private PropertyNode findPropertyInClass(String name, Set<ClassNode> allClasses) {
-		for (ClassNode clazz : allClasses) {
-			PropertyNode prop = clazz.getProperty(name);
-			if (prop != null) {
-				return prop;
-			}
-		}
-		return null;
-	}
-
-	private FieldNode findConstantInClass(String name, Set<ClassNode> allClasses) {
-		for (ClassNode clazz : allClasses) {
-			FieldNode field = clazz.getField(name);
-			if (field != null && Flags.isFinal(field.getModifiers()) && field.isStatic()) {
-				return field;
-			}
-		}
-		return null;
-	}
 }
\ No newline at end of file
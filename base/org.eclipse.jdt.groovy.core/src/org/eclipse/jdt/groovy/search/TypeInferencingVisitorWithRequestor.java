@@ -1587,14 +1587,15 @@ public class TypeInferencingVisitorWithRequestor extends ClassCodeVisitorSupport
 				entry.visit(this);
 			}
 		} else {
+			TypeMemberCache members = scopes.peek().getMemberCache();
 			for (MapEntryExpression entry : node.getMapEntryExpressions()) {
 				// visit the key as a field reference if we can find the field
 				Expression key = entry.getKeyExpression();
 				if (key instanceof ConstantExpression) {
 					String fieldName = key.getText();
-					FieldNode field = newType.getField(fieldName);
+					FieldNode field = members.getField(newType, fieldName);
 					if (field == null) {
-						PropertyNode property = newType.getProperty(fieldName);
+						PropertyNode property = members.getProperty(newType, fieldName);
 						if (property == null) {
 							handleSimpleExpression(key);
 						} else {
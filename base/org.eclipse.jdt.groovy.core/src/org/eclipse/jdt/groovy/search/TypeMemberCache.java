@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.jdt.groovy.search;
+
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.ast.PropertyNode;
+import org.eclipse.jdt.core.Flags;
+
+/**
+ * Memoizes the type hierarchies and the members by name that type inference asks for over and over again: every property,
+ * method and category method reference walks the super types of its declaring type. All the scopes of an inference session share
+ * one cache (see {@link VariableScope#getMemberCache()}).
+ * <p>
+ * The types of a module only change when the module is rebuilt, so sessions over the same module share their cache. The cached
+ * types refer back to their module, so caches cannot be dropped along with their module by weak keys. Instead the caches of the
+ * most recently inferred modules are kept (as many as the <code>greclipse.typeMemberCache.modules</code> system property allows),
+ * a cache is dropped as soon as its module is replaced by a reconcile (see {@link #invalidate(ModuleNode)}), and all of them can
+ * be dropped when the VM runs low on memory. Incremental reconciles swap a new node in for the edited method, so they drop the
+ * cache of the module they update as well.
+ */
+public class TypeMemberCache {
+
+	private static final int MAX_MODULES = Math.max(1, Integer.getInteger("greclipse.typeMemberCache.modules", 16));
+
+	// ModuleNode does not override equals, so modules are compared by identity
+	private static final Map<ModuleNode, SoftReference<TypeMemberCache>> caches = new LinkedHashMap<ModuleNode, SoftReference<TypeMemberCache>>(
+			MAX_MODULES * 2, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ModuleNode, SoftReference<TypeMemberCache>> eldest) {
+			return size() > MAX_MODULES;
+		}
+	};
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @return the cache for the types seen while inferring the given module, or a new cache if module is null
+	 */
+	public static TypeMemberCache forModule(ModuleNode module) {
+		if (module == null) {
+			return new TypeMemberCache();
+		}
+		synchronized (caches) {
+			SoftReference<TypeMemberCache> ref = caches.get(module);
+			TypeMemberCache cache = ref != null ? ref.get() : null;
+			if (cache == null) {
+				cache = new TypeMemberCache();
+				caches.put(module, new SoftReference<TypeMemberCache>(cache));
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Drop the cache for a module that is not going to be inferred again, for instance because a reconcile replaced it.
+	 */
+	public static void invalidate(ModuleNode module) {
+		if (module != null) {
+			synchronized (caches) {
+				caches.remove(module);
+			}
+		}
+	}
+
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	public static void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+
+	// marks names that are known to have no member, since the maps cannot tell null values from missing entries cheaply
+	private static final Object NONE = new Object();
+
+	/**
+	 * The members of a type by name. Members are looked up through the redirect of a type, so all references to a type share
+	 * one instance.
+	 */
+	private static class Members {
+		final Map<String, List<MethodNode>> methods = new HashMap<String, List<MethodNode>>();
+		final Map<String, Object> fields = new HashMap<String, Object>();
+		final Map<String, Object> properties = new HashMap<String, Object>();
+		Set<String> superTypeNames;
+	}
+
+	/**
+	 * The hierarchy of a type and the lookups that walk it. Hierarchies computed from unresolved types start with the type
+	 * itself, so these are keyed by the node that was passed in rather than by its redirect.
+	 */
+	private static class Hierarchy {
+		Set<ClassNode> types;
+		Set<ClassNode> interfaces;
+		final Map<String, Object> properties = new HashMap<String, Object>();
+		final Map<String, Object> constants = new HashMap<String, Object>();
+	}
+
+	private final Map<ClassNode, Members> members = new IdentityHashMap<ClassNode, Members>();
+
+	private final Map<ClassNode, Hierarchy> hierarchies = new IdentityHashMap<ClassNode, Hierarchy>();
+
+	private Members membersOf(ClassNode type) {
+		ClassNode redirect = type.redirect();
+		Members result = members.get(redirect);
+		if (result == null) {
+			result = new Members();
+			members.put(redirect, result);
+		}
+		return result;
+	}
+
+	private Hierarchy hierarchyOf(ClassNode type) {
+		Hierarchy result = hierarchies.get(type);
+		if (result == null) {
+			result = new Hierarchy();
+			hierarchies.put(type, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the type followed by its super classes and then by all the interfaces it implements, as created by
+	 *         {@link VariableScope#createTypeHierarchy(ClassNode, LinkedHashSet, boolean)} from the unresolved types
+	 */
+	public synchronized Set<ClassNode> getTypeHierarchy(ClassNode type) {
+		Hierarchy h = hierarchyOf(type);
+		if (h.types == null) {
+			misses.incrementAndGet();
+			LinkedHashSet<ClassNode> allClasses = new LinkedHashSet<ClassNode>();
+			VariableScope.createTypeHierarchy(type, allClasses, true);
+			h.types = Collections.unmodifiableSet(allClasses);
+		} else {
+			hits.incrementAndGet();
+		}
+		return h.types;
+	}
+
+	/**
+	 * @return all interfaces implemented by the type (including the type itself if it is an interface), as found by
+	 *         {@link VariableScope#findAllInterfaces(ClassNode, LinkedHashSet, boolean)} from the unresolved types
+	 */
+	public synchronized Set<ClassNode> getAllInterfaces(ClassNode type) {
+		Hierarchy h = hierarchyOf(type);
+		if (h.interfaces == null) {
+			misses.incrementAndGet();
+			LinkedHashSet<ClassNode> found = new LinkedHashSet<ClassNode>();
+			VariableScope.findAllInterfaces(type, found, true);
+			h.interfaces = Collections.unmodifiableSet(found);
+		} else {
+			hits.incrementAndGet();
+		}
+		return h.interfaces;
+	}
+
+	/**
+	 * @return the names of the type, its super classes and all of its (resolved) super interfaces
+	 */
+	public synchronized Set<String> getSuperTypeNames(ClassNode type) {
+		Members m = membersOf(type);
+		if (m.superTypeNames == null) {
+			misses.incrementAndGet();
+			Set<String> names = new HashSet<String>();
+			addSuperTypeNames(type, names);
+			m.superTypeNames = Collections.unmodifiableSet(names);
+		} else {
+			hits.incrementAndGet();
+		}
+		return m.superTypeNames;
+	}
+
+	private static void addSuperTypeNames(ClassNode type, Set<String> names) {
+		if (names.add(type.getName())) {
+			if (type.getSuperClass() != null) {
+				addSuperTypeNames(type.getSuperClass(), names);
+			}
+			if (type.getInterfaces() != null) {
+				for (ClassNode superInterface : type.getInterfaces()) {
+					addSuperTypeNames(superInterface, names);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the methods with the given name declared in the type or inherited from its super classes, see
+	 *         {@link ClassNode#getMethods(String)}; the list must not be changed
+	 */
+	public synchronized List<MethodNode> getMethods(ClassNode type, String name) {
+		Map<String, List<MethodNode>> methods = membersOf(type).methods;
+		List<MethodNode> result = methods.get(name);
+		if (result == null) {
+			misses.incrementAndGet();
+			result = Collections.unmodifiableList(type.getMethods(name));
+			methods.put(name, result);
+		} else {
+			hits.incrementAndGet();
+		}
+		return result;
+	}
+
+	/**
+	 * @return the field declared in the type or one of its super classes, see {@link ClassNode#getField(String)}
+	 */
+	public synchronized FieldNode getField(ClassNode type, String name) {
+		Map<String, Object> fields = membersOf(type).fields;
+		Object result = fields.get(name);
+		if (result == null) {
+			misses.incrementAndGet();
+			result = type.getField(name);
+			fields.put(name, result != null ? result : NONE);
+		} else {
+			hits.incrementAndGet();
+		}
+		return result != NONE ? (FieldNode) result : null;
+	}
+
+	/**
+	 * @return the property declared in the type itself, see {@link ClassNode#getProperty(String)}
+	 */
+	public synchronized PropertyNode getProperty(ClassNode type, String name) {
+		Map<String, Object> properties = membersOf(type).properties;
+		Object result = properties.get(name);
+		if (result == null) {
+			misses.incrementAndGet();
+			result = type.getProperty(name);
+			properties.put(name, result != null ? result : NONE);
+		} else {
+			hits.incrementAndGet();
+		}
+		return result != NONE ? (PropertyNode) result : null;
+	}
+
+	/**
+	 * @return the first property with the given name in the {@link #getTypeHierarchy(ClassNode) type hierarchy}
+	 */
+	public synchronized PropertyNode findPropertyInHierarchy(ClassNode type, String name) {
+		Map<String, Object> properties = hierarchyOf(type).properties;
+		Object result = properties.get(name);
+		if (result == null) {
+			misses.incrementAndGet();
+			result = NONE;
+			for (ClassNode clazz : getTypeHierarchy(type)) {
+				PropertyNode prop = getProperty(clazz, name);
+				if (prop != null) {
+					result = prop;
+					break;
+				}
+			}
+			properties.put(name, result);
+		} else {
+			hits.incrementAndGet();
+		}
+		return result != NONE ? (PropertyNode) result : null;
+	}
+
+	/**
+	 * @return the first static final field with the given name in the {@link #getTypeHierarchy(ClassNode) type hierarchy}
+	 */
+	public synchronized FieldNode findConstantInHierarchy(ClassNode type, String name) {
+		Map<String, Object> constants = hierarchyOf(type).constants;
+		Object result = constants.get(name);
+		if (result == null) {
+			misses.incrementAndGet();
+			result = NONE;
+			for (ClassNode clazz : getTypeHierarchy(type)) {
+				FieldNode field = getField(clazz, name);
+				if (field != null && Flags.isFinal(field.getModifiers()) && field.isStatic()) {
+					result = field;
+					break;
+				}
+			}
+			constants.put(name, result);
+		} else {
+			hits.incrementAndGet();
+		}
+		return result != NONE ? (FieldNode) result : null;
+	}
+}
@@ -270,6 +270,11 @@ public class VariableScope {
 		 * true iff current scope is implicit run method of script
 		 */
 		boolean isRunMethod;
+
+		/**
+		 * memoized type hierarchies and members for the lookups of this inference session
+		 */
+		TypeMemberCache memberCache;
 	}
 
 	public static ClassNode NO_CATEGORY = null;
@@ -314,6 +319,8 @@ public class VariableScope {
 			this.shared = parent.shared;
 		} else {
 			this.shared = new SharedState();
+			this.shared.memberCache = TypeMemberCache.forModule(enclosingNode instanceof ModuleNode ? (ModuleNode) enclosingNode
+					: null);
 		}
 
 		// keep track of whether or not in a script body
@@ -343,6 +350,13 @@ public class VariableScope {
 		return shared.wormhole;
 	}
 
+	/**
+	 * @return the cache of type hierarchies and members shared by all scopes of this inference session
+	 */
+	public TypeMemberCache getMemberCache() {
+		return shared.memberCache;
+	}
+
 	public ASTNode getEnclosingNode() {
 		if (shared.nodeStack.size() > 1) {
 			ASTNode current = shared.nodeStack.pop();
@@ -16,10 +16,16 @@ import java.util.HashSet;
 
 import org.codehaus.groovy.eclipse.codeassist.GroovyContentAssistActivator;
 import org.codehaus.groovy.eclipse.codeassist.completions.GroovyJavaMethodCompletionProposal;
+import org.codehaus.groovy.eclipse.codeassist.processors.ExpressionCompletionCache;
 import org.codehaus.groovy.eclipse.codeassist.requestor.GroovyCompletionProposalComputer;
+import org.codehaus.groovy.eclipse.test.SynchronizationUtils;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.tests.util.GroovyUtils;
+import org.eclipse.jdt.groovy.search.DefaultCategoryIndex;
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 
 /**
@@ -128,6 +134,30 @@ public class DefaultGroovyMethodCompletionTests extends CompletionTestCase {
         proposalExists(proposals, "text", 1);
     }
     
+    public void testNarrowedProposals() throws Exception {
+        String contents = "''.toURL().";
+        ICompilationUnit unit = createGroovyWithContents("Script", contents);
+        SynchronizationUtils.joinBackgroudActivities();
+        IDocument document = ((JavaEditor) EditorUtility.openInEditor(unit)).getViewer().getDocument();
+        int hits = ExpressionCompletionCache.getHitCount();
+        performContentAssist(unit, contents.length(), GroovyCompletionProposalComputer.class);
+
+        // the property variant of getText is only proposed once the prefix no longer matches getText
+        document.replace(contents.length(), 0, "t");
+        ICompletionProposal[] narrowed = performContentAssist(unit, contents.length() + 1, GroovyCompletionProposalComputer.class);
+        assertEquals(hits + 1, ExpressionCompletionCache.getHitCount());
+        proposalExists(narrowed, "text", 1);
+
+        ICompletionProposal[] computed;
+        ExpressionCompletionCache.enabled = false;
+        try {
+            computed = performContentAssist(unit, contents.length() + 1, GroovyCompletionProposalComputer.class);
+        } finally {
+            ExpressionCompletionCache.enabled = true;
+        }
+        assertEquals(printProposals(computed), printProposals(narrowed));
+    }
+
     // tests GRECLIPSE-1158
     public void testDateGM() throws Exception {
         String contents = "new Date().toCal";
@@ -218,7 +248,35 @@ public class DefaultGroovyMethodCompletionTests extends CompletionTestCase {
         // should find 2, not 4.  dups removed
         proposalExists(proposals, "findAll", 2);
     }
+
+    // the index of default category methods must find what scanning all of them finds
+    public void testCategoryIndexMatchesScan() throws Exception {
+        String contents = "def foo = [1, 2, 3]\nfoo.ea";
+        ICompilationUnit unit = createGroovyWithContents("Script", contents);
+        boolean wasIndexed = DefaultCategoryIndex.enabled;
+        ExpressionCompletionCache.enabled = false;
+        try {
+            DefaultCategoryIndex.enabled = false;
+            ICompletionProposal[] scanned = performContentAssist(unit, contents.length(), GroovyCompletionProposalComputer.class);
+            DefaultCategoryIndex.enabled = true;
+            ICompletionProposal[] indexed = performContentAssist(unit, contents.length(), GroovyCompletionProposalComputer.class);
+            assertTrue("Should propose category methods starting with 'ea'", indexed.length > 0);
+            assertEquals(sortedDisplayStrings(scanned), sortedDisplayStrings(indexed));
+        } finally {
+            DefaultCategoryIndex.enabled = wasIndexed;
+            ExpressionCompletionCache.enabled = true;
+        }
+    }
     
+    private static String sortedDisplayStrings(ICompletionProposal[] proposals) {
+        String[] names = new String[proposals.length];
+        for (int i = 0; i < proposals.length; i++) {
+            names[i] = proposals[i].getDisplayString();
+        }
+        Arrays.sort(names);
+        return Arrays.toString(names);
+    }
+
     private void setDGMFilter(String... filter) {
         GroovyContentAssistActivator.getDefault().setFilteredDGMs(new HashSet<String>(Arrays.asList(filter)));
     }
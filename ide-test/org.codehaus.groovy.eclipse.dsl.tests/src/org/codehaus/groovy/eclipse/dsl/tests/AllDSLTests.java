@@ -29,7 +29,10 @@ public class AllDSLTests {
         suite.addTest(DSLInferencingTests.suite());
         suite.addTest(BuiltInDSLInferencingTests.suite());
         suite.addTest(DSLStoreTests.suite());
+        suite.addTest(StaticCheckerTests.suite());
+        suite.addTest(SuggestionsManagerTests.suite());
         suite.addTestSuite(StringObjectVectorTests.class);
+        suite.addTestSuite(SuggestionsJournalTests.class);
         suite.addTestSuite(DSLContentAssistTests.class);
         suite.addTestSuite(DSLNamedArgContentAssistTests.class);
         return suite;
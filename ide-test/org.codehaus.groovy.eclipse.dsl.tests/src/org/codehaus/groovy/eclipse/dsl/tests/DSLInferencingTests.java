@@ -16,6 +16,9 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.codehaus.groovy.eclipse.dsl.RefreshDSLDJob;
+import org.codehaus.groovy.eclipse.dsl.lookup.ResolverCache;
+import org.codehaus.groovy.eclipse.dsl.lookup.SharedResolverCache;
+import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
 
@@ -221,6 +224,70 @@ public class DSLInferencingTests extends AbstractDSLInferencingTest {
         assertType(contents, start, end, "java.util.Map<java.lang.Integer,java.lang.Long>", true);
     }
     
+    // the second file gets the type of the property from the types shared by all files of the project, without resolving it again
+    public void testSharedResolverCache() throws Exception {
+        createDsls("currentType('Foo').accept { property name: 'fooProp', type: 'java.util.Map<java.lang.Integer,java.lang.Long>' }");
+        String contents = 
+            "class Foo {\n" +
+            "}\n" +
+            "new Foo().fooProp";
+        GroovyCompilationUnit first = createUnit("First", contents);
+        GroovyCompilationUnit second = createUnit("Second", "new Foo().fooProp");
+        SharedResolverCache.resetStatistics();
+        int start = contents.lastIndexOf("fooProp");
+        assertType(first, start, start + "fooProp".length(), "java.util.Map<java.lang.Integer,java.lang.Long>", true);
+        assertTrue("The first file should have resolved the type", SharedResolverCache.getMissCount() > 0);
+        
+        SharedResolverCache.resetStatistics();
+        start = "new Foo().".length();
+        assertType(second, start, start + "fooProp".length(), "java.util.Map<java.lang.Integer,java.lang.Long>", true);
+        assertEquals("The second file should not have resolved any shared name again", 0, SharedResolverCache.getMissCount());
+        assertTrue("Resolved type should have been shared", SharedResolverCache.getHitCount() > 0);
+    }
+    
+    // simple names depend on the imports of each file, so they are not shared
+    public void testSharedResolverCacheSimpleNames() throws Exception {
+        createDsls("currentType('Foo').accept { property name: 'fooProp', type: 'List' }");
+        String contents = 
+            "class Foo {\n" +
+            "}\n" +
+            "new Foo().fooProp";
+        int start = contents.lastIndexOf("fooProp");
+        int end = start + "fooProp".length();
+        SharedResolverCache.resetStatistics();
+        assertType(contents, start, end, "java.util.List", true);
+        String awtContents = "import java.awt.List\n" + contents;
+        start = awtContents.lastIndexOf("fooProp");
+        end = start + "fooProp".length();
+        assertType(awtContents, start, end, "java.awt.List", true);
+        assertEquals("Simple names should not have been shared", 0, SharedResolverCache.getHitCount());
+    }
+    
+    // the property is only built once for each file
+    public void testCachedDeclaration() throws Exception {
+        createDsls("currentType('java.lang.String').accept { property name: 'fooProp', type: 'java.lang.Integer' }");
+        String contents = "''.fooProp\n''.fooProp";
+        int start = contents.lastIndexOf("fooProp");
+        int end = start + "fooProp".length();
+        ResolverCache.resetStatistics();
+        assertType(contents, start, end, "java.lang.Integer", true);
+        assertTrue("Declaration should have been cached", ResolverCache.getDeclarationHitCount() > 0);
+    }
+    
+    // a property built only from types on the classpath is built once for the whole project
+    public void testSharedDeclaration() throws Exception {
+        createDsls("currentType('java.lang.String').accept { property name: 'fooProp', type: 'java.lang.Integer' }");
+        String contents = "''.fooProp";
+        GroovyCompilationUnit first = createUnit("First", contents);
+        GroovyCompilationUnit second = createUnit("Second", contents);
+        int start = contents.lastIndexOf("fooProp");
+        int end = start + "fooProp".length();
+        assertType(first, start, end, "java.lang.Integer", true);
+        ResolverCache.resetStatistics();
+        assertType(second, start, end, "java.lang.Integer", true);
+        assertTrue("Declaration should have been shared", ResolverCache.getDeclarationHitCount() > 0);
+    }
+    
     public void testDeprecated1() throws Exception {
         createDsls("currentType('Foo').accept { property name: 'fooProp', type: 'Map< Integer, Long>', isDeprecated:true }");
         String contents = 
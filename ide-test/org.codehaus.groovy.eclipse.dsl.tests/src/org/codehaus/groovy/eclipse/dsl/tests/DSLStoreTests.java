@@ -10,16 +10,36 @@
  *******************************************************************************/
 package org.codehaus.groovy.eclipse.dsl.tests;
 
+import groovy.lang.Script;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.eclipse.dsl.DSLDProfiler;
 import org.codehaus.groovy.eclipse.dsl.DSLDStore;
+import org.codehaus.groovy.eclipse.dsl.DSLDStoreManager;
 import org.codehaus.groovy.eclipse.dsl.DSLPreferences;
+import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionElement;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionGroup;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.BindingSet;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.GroovyDSLDContext;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.PointcutMatchMemo;
 import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.CurrentTypePointcut;
 import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.FindFieldPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.SubTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.script.DSLDScriptCache;
 import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
 
@@ -331,4 +351,229 @@ public class DSLStoreTests extends AbstractDSLInferencingTest {
                         new Integer[] { }));
 
     }
+    
+    // only the scripts of the changed jar are executed again, the scripts of the project are kept
+    public void testRefreshChangedRoots() throws Exception {
+        createDsls("currentType().accept { }");
+        addJarToProject("simple_dsld.jar");
+        env.fullBuild();
+        DSLDStoreManager manager = GroovyDSLCoreActivator.getDefault().getContextStoreManager();
+        manager.initialize(project, true);
+        DSLDStore store = manager.getDSLDStore(project);
+        assertEquals(2, store.getAllContextKeys().length);
+        
+        IPath jarPath = new Path(findExternalFilePath("simple_dsld.jar"));
+        DSLDScriptCache.resetStatistics();
+        manager.refresh(Collections.singletonMap(project, Collections.singleton(jarPath)), true);
+        
+        assertEquals(2, store.getAllContextKeys().length);
+        assertEquals("Only the script in the jar should have been executed", 1, 
+                DSLDScriptCache.getReusedCount() + DSLDScriptCache.getLoadedFromDiskCount() + DSLDScriptCache.getCompiledCount());
+    }
+    
+    // only the pointcuts that can match the current type are evaluated, in the order they were added
+    @SuppressWarnings("deprecation")
+    public void testFindContributionsForCurrentType() throws Exception {
+        IStorage storage = project.getFile("index.dsld");
+        List<String> matched = new ArrayList<String>();
+        DSLDStore store = new DSLDStore();
+        
+        IPointcut string = new CurrentTypePointcut(storage, "currentType");
+        string.addArgument("java.lang.String");
+        store.addContributionGroup(string, new RecordingContributionGroup("string", matched));
+        
+        IPointcut subType = new SubTypePointcut(storage, "subType");
+        subType.addArgument("java.lang.CharSequence");
+        IPointcut charSequence = new CurrentTypePointcut(storage, "currentType");
+        charSequence.addArgument(subType);
+        store.addContributionGroup(charSequence, new RecordingContributionGroup("charSequence", matched));
+        
+        IPointcut any = new CurrentTypePointcut(storage, "currentType");
+        store.addContributionGroup(any, new RecordingContributionGroup("any", matched));
+        
+        GroovyDSLDContext pattern = new GroovyDSLDContext(new String[0], "src/p/Foo.groovy", "src");
+        pattern.setTargetType(ClassHelper.STRING_TYPE);
+        store.findContributions(pattern, Collections.<String>emptySet());
+        assertEquals(Arrays.asList("string", "charSequence", "any"), matched);
+        
+        matched.clear();
+        pattern.setTargetType(ClassHelper.Integer_TYPE);
+        store.findContributions(pattern, Collections.<String>emptySet());
+        assertEquals(Arrays.asList("any"), matched);
+    }
+    
+    // the pointcuts that scripts collect in parallel are added in script order, whichever script finished first
+    @SuppressWarnings("deprecation")
+    public void testAddAllInScriptOrder() throws Exception {
+        IStorage first = project.getFile("first.dsld");
+        IStorage second = project.getFile("second.dsld");
+        List<String> matched = new ArrayList<String>();
+        DSLDStore firstPointcuts = new DSLDStore();
+        DSLDStore secondPointcuts = new DSLDStore();
+        
+        secondPointcuts.addContributionGroup(new CurrentTypePointcut(second, "currentType"),
+                new RecordingContributionGroup("second", matched));
+        firstPointcuts.addContributionGroup(new CurrentTypePointcut(first, "currentType"),
+                new RecordingContributionGroup("first1", matched));
+        firstPointcuts.addContributionGroup(new CurrentTypePointcut(first, "currentType"),
+                new RecordingContributionGroup("first2", matched));
+        
+        DSLDStore store = new DSLDStore();
+        store.addAll(firstPointcuts);
+        store.addAll(secondPointcuts);
+        assertEquals(2, store.getAllContextKeys().length);
+        
+        GroovyDSLDContext pattern = new GroovyDSLDContext(new String[0], "src/p/Foo.groovy", "src");
+        pattern.setTargetType(ClassHelper.STRING_TYPE);
+        store.findContributions(pattern, Collections.<String>emptySet());
+        assertEquals(Arrays.asList("first1", "first2", "second"), matched);
+    }
+    
+    // unchanged scripts are reused in memory and, in a new session, read back from disk instead of being compiled again
+    public void testScriptCache() throws Exception {
+        File folder = new File(System.getProperty("java.io.tmpdir"), "dsldClasses" + System.currentTimeMillis());
+        String contents = "currentType().accept { }";
+        DSLDScriptCache.resetStatistics();
+        try {
+            DSLDScriptCache cache = new DSLDScriptCache(folder);
+            Class<?> compiled = cache.getScriptClass("dsl0", "dsl0.dsld", contents);
+            assertSame(compiled, cache.getScriptClass("dsl0", "dsl0.dsld", contents));
+            assertEquals(1, DSLDScriptCache.getCompiledCount());
+            assertEquals(1, DSLDScriptCache.getReusedCount());
+            
+            Class<?> loaded = new DSLDScriptCache(folder).getScriptClass("dsl0", "dsl0.dsld", contents);
+            assertEquals(compiled.getName(), loaded.getName());
+            assertTrue(Script.class.isAssignableFrom(loaded));
+            assertEquals(1, DSLDScriptCache.getLoadedFromDiskCount());
+            assertEquals(1, DSLDScriptCache.getCompiledCount());
+            
+            cache.getScriptClass("dsl0", "dsl0.dsld", contents + "\nfields().accept { }");
+            assertEquals(2, DSLDScriptCache.getCompiledCount());
+        } finally {
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            folder.delete();
+        }
+    }
+    
+    // a pointcut is matched once per current type, but its contributions are asked for every time
+    @SuppressWarnings("deprecation")
+    public void testMatchMemo() throws Exception {
+        IStorage storage = project.getFile("memo.dsld");
+        List<String> matched = new ArrayList<String>();
+        DSLDStore store = new DSLDStore();
+        IPointcut string = new CurrentTypePointcut(storage, "currentType");
+        string.addArgument("java.lang.String");
+        store.addContributionGroup(string, new RecordingContributionGroup("string", matched));
+        
+        GroovyDSLDContext pattern = new GroovyDSLDContext(new String[0], "src/p/Foo.groovy", "src");
+        PointcutMatchMemo.resetStatistics();
+        for (int i = 0; i < 3; i++) {
+            pattern.setTargetType(ClassHelper.STRING_TYPE);
+            store.findContributions(pattern, Collections.<String>emptySet());
+            pattern.setTargetType(ClassHelper.Integer_TYPE);
+            store.findContributions(pattern, Collections.<String>emptySet());
+        }
+        assertEquals(Arrays.asList("string", "string", "string"), matched);
+        assertEquals(1, PointcutMatchMemo.getMissCount());
+        assertEquals(2, PointcutMatchMemo.getHitCount());
+    }
+    
+    // the sub-store of a file is reused until the pointcuts change
+    @SuppressWarnings("deprecation")
+    public void testSubStoreCache() throws Exception {
+        IStorage storage = project.getFile("substore.dsld");
+        DSLDStore store = new DSLDStore();
+        IPointcut string = new CurrentTypePointcut(storage, "currentType");
+        string.addArgument("java.lang.String");
+        store.addContributionGroup(string, new RecordingContributionGroup("string", new ArrayList<String>()));
+        
+        DSLDStore subStore = store.createSubStore(new GroovyDSLDContext(new String[0], "src/p/Foo.groovy", "src"));
+        assertSame(subStore, store.createSubStore(new GroovyDSLDContext(new String[0], "src/p/Foo.groovy", "src")));
+        assertNotSame(subStore, store.createSubStore(new GroovyDSLDContext(new String[0], "src/p/Bar.groovy", "src")));
+        
+        List<String> matched = new ArrayList<String>();
+        IPointcut integer = new CurrentTypePointcut(storage, "currentType");
+        integer.addArgument("java.lang.Integer");
+        store.addContributionGroup(integer, new RecordingContributionGroup("integer", matched));
+        GroovyDSLDContext pattern = new GroovyDSLDContext(new String[0], "src/p/Foo.groovy", "src");
+        DSLDStore newSubStore = store.createSubStore(pattern);
+        assertNotSame(subStore, newSubStore);
+        pattern.setTargetType(ClassHelper.Integer_TYPE);
+        subStore.findContributions(pattern, Collections.<String>emptySet());
+        assertEquals(Collections.emptyList(), matched);
+        newSubStore.findContributions(pattern, Collections.<String>emptySet());
+        assertEquals(Arrays.asList("integer"), matched);
+    }
+    
+    // only the pointcuts that are evaluated are recorded, each under the script it comes from
+    @SuppressWarnings("deprecation")
+    public void testProfiler() throws Exception {
+        IStorage storage = project.getFile("profile.dsld");
+        List<String> matched = new ArrayList<String>();
+        DSLDStore store = new DSLDStore();
+        IPointcut string = new CurrentTypePointcut(storage, "currentType");
+        string.addArgument("java.lang.String");
+        store.addContributionGroup(string, new RecordingContributionGroup("string", matched));
+        
+        GroovyDSLDContext pattern = new GroovyDSLDContext(new String[0], "src/p/Foo.groovy", "src");
+        DSLDProfiler.reset();
+        for (int i = 0; i < 3; i++) {
+            pattern.setTargetType(ClassHelper.STRING_TYPE);
+            store.findContributions(pattern, Collections.<String>emptySet());
+            pattern.setTargetType(ClassHelper.Integer_TYPE);
+            store.findContributions(pattern, Collections.<String>emptySet());
+        }
+        
+        String scriptName = DSLDStore.toUniqueString(storage);
+        DSLDProfiler.Stats found = findProfile(scriptName);
+        assertNotNull("Should have recorded the pointcut of " + scriptName, found);
+        assertTrue(found.getLabel(), found.getLabel().contains("java.lang.String"));
+        // the index leaves out the pointcut for Integer
+        assertEquals(3, found.getEvaluations());
+        assertEquals(3, found.getMatches());
+        assertTrue(DSLDProfiler.getReport(Integer.MAX_VALUE).contains(scriptName));
+        
+        DSLDProfiler.reset();
+        assertFalse(DSLDProfiler.getReport(Integer.MAX_VALUE).contains(scriptName));
+        
+        // the store records into new stats after a reset
+        pattern.setTargetType(ClassHelper.STRING_TYPE);
+        store.findContributions(pattern, Collections.<String>emptySet());
+        found = findProfile(scriptName);
+        assertNotNull("Should have recorded the pointcut of " + scriptName + " again", found);
+        assertEquals(1, found.getEvaluations());
+        
+        // and forgets them when the script is purged
+        store.purgeIdentifier(storage);
+        assertNull("Should have forgotten the pointcut of " + scriptName, findProfile(scriptName));
+    }
+    
+    private static DSLDProfiler.Stats findProfile(String scriptName) {
+        DSLDProfiler.Stats found = null;
+        for (DSLDProfiler.Stats stats : DSLDProfiler.getPointcutStats()) {
+            if (stats.getScriptName().equals(scriptName)) {
+                assertNull("Should have only one pointcut for " + scriptName, found);
+                found = stats;
+            }
+        }
+        return found;
+    }
+    
+    private static class RecordingContributionGroup implements IContributionGroup {
+        private final String name;
+        private final List<String> matched;
+        RecordingContributionGroup(String name, List<String> matched) {
+            this.name = name;
+            this.matched = matched;
+        }
+        public List<IContributionElement> getContributions(GroovyDSLDContext pattern, BindingSet matches) {
+            matched.add(name);
+            return Collections.emptyList();
+        }
+    }
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.codehaus.groovy.ast.expr.ConstantExpression;
+import org.codehaus.groovy.eclipse.dsl.checker.ReportStaticCheckerHandler;
+import org.codehaus.groovy.eclipse.dsl.checker.ReportStaticCheckerHandler.Format;
+import org.codehaus.groovy.eclipse.dsl.checker.ResourceTypeChecker;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Tests the headless static checker and its JSON and JUnit reports
+ */
+public class StaticCheckerTests extends AbstractDSLInferencingTest {
+
+    public static Test suite() {
+        return new TestSuite(StaticCheckerTests.class);
+    }
+
+    public StaticCheckerTests(String name) {
+        super(name);
+    }
+
+    private static final String MESSAGE = "say \"hi\" <b> & \nbye";
+
+    // checking files concurrently must not change what is reported, nor the order it is reported in
+    public void testThreadsReportLikeSequentialCheck() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            createUnit("p", "Check" + i,
+                "package p\n" +
+                "def a = 'a' // TYPE:java.lang.String\n" +
+                "def b = " + i + " // TYPE:" + (i % 2 == 0 ? "java.lang.Integer" : "java.lang.String") + "\n" +
+                (i % 3 == 0 ? "unknown" + i + ".foo()\n" : ""));
+        }
+        String sequential = check(1);
+        String parallel = check(4);
+        assertTrue("Should have reported all files:\n" + sequential, sequential.contains("\"files\": 8, \"problems\": "));
+        assertTrue("Should have found problems:\n" + sequential, sequential.contains("\"actual\": \"java.lang.Integer\""));
+        assertTrue("Should not have failed:\n" + sequential, sequential.contains("\"errors\": 0, "));
+        assertEquals(normalize(sequential), normalize(parallel));
+    }
+
+    public void testJsonReport() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportStaticCheckerHandler handler = report(bytes, Format.JSON);
+        String json = bytes.toString("UTF-8");
+
+        assertEquals(2, handler.numProblemsFound());
+        assertTrue(json, json.contains("{\"path\": \"/Project/src/p/Quote\\\"s.groovy\", \"millis\": 5, \"problems\": ["));
+        assertTrue(json, json.contains("{\"line\": 3, \"kind\": \"unknown\", \"text\": \"say \\\"hi\\\" <b> & \\nbye\"}"));
+        assertTrue(json, json.contains("{\"line\": 4, \"kind\": \"assertion\", \"text\": \"say \\\"hi\\\" <b> & \\nbye\", "
+                + "\"expected\": \"java.util.List<java.lang.String>\", \"actual\": \"java.lang.Object\"}"));
+        assertTrue(json, json.contains("{\"path\": \"/Project/src/p/Broken.groovy\", \"millis\": 7, "
+                + "\"error\": \"java.lang.RuntimeException: a & \\\"b\\\"\", \"problems\": []}"));
+        assertTrue(json, json.contains("\"summary\": {\"files\": 2, \"problems\": 2, \"errors\": 1, "));
+        assertTrue(json, json.trim().endsWith("}"));
+    }
+
+    public void testJUnitReport() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportStaticCheckerHandler handler = report(bytes, Format.JUNIT);
+        String xml = bytes.toString("UTF-8");
+
+        assertEquals(2, handler.numProblemsFound());
+        assertTrue(xml, xml.contains("<!-- 2 files, 2 problems, 1 errors, "));
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(bytes.toByteArray()));
+        NodeList suites = document.getElementsByTagName("testsuite");
+        assertEquals(2, suites.getLength());
+
+        Element quoted = (Element) suites.item(0);
+        assertEquals("/Project/src/p/Quote\"s.groovy", quoted.getAttribute("name"));
+        assertEquals("1", quoted.getAttribute("failures"));
+        assertEquals("0", quoted.getAttribute("errors"));
+        Element testCase = (Element) quoted.getElementsByTagName("testcase").item(0);
+        assertEquals("Project.src.p.Quote\"s", testCase.getAttribute("classname"));
+        Element failure = (Element) testCase.getElementsByTagName("failure").item(0);
+        assertEquals("2 type checking problems", failure.getAttribute("message"));
+        assertEquals("Line 3: unknown type: " + MESSAGE + "\n"
+                + "Line 4: Invalid inferred type.  " + MESSAGE + "  Expected: java.util.List<java.lang.String> Actual: java.lang.Object\n",
+                failure.getTextContent());
+
+        Element broken = (Element) suites.item(1);
+        assertEquals("0", broken.getAttribute("failures"));
+        assertEquals("1", broken.getAttribute("errors"));
+        Element error = (Element) broken.getElementsByTagName("error").item(0);
+        assertEquals("java.lang.RuntimeException: a & \"b\"", error.getAttribute("message"));
+    }
+
+    /**
+     * Reports two files: one with two problems whose text needs escaping, and one that could not be checked
+     */
+    private ReportStaticCheckerHandler report(ByteArrayOutputStream bytes, Format format) throws Exception {
+        ReportStaticCheckerHandler handler = new ReportStaticCheckerHandler(new PrintStream(bytes, true, "UTF-8"), format);
+        IFile quoted = env.getWorkspace().getRoot().getProject("Project").getFile("src/p/Quote\"s.groovy");
+        handler.setResource(quoted);
+        handler.handleUnknownReference(new ConstantExpression(MESSAGE), null, 3);
+        handler.handleTypeAssertionFailed(new ConstantExpression(MESSAGE), "java.util.List<java.lang.String>", "java.lang.Object", null, 4);
+        handler.handleResourceEnd(quoted, 5000000, null);
+        IFile broken = env.getWorkspace().getRoot().getProject("Project").getFile("src/p/Broken.groovy");
+        handler.setResource(broken);
+        handler.handleResourceEnd(broken, 7000000, new RuntimeException("a & \"b\""));
+        assertFalse(handler.finish(null));
+        return handler;
+    }
+
+    private String check(int threads) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReportStaticCheckerHandler handler = new ReportStaticCheckerHandler(new PrintStream(bytes, true, "UTF-8"), Format.JSON);
+        ResourceTypeChecker checker = new ResourceTypeChecker(handler, Collections.<IResource>singletonList(project), null, null, false);
+        checker.setThreads(threads);
+        checker.doCheck(null);
+        return bytes.toString("UTF-8");
+    }
+
+    // timings differ from one run to the next
+    private static String normalize(String report) {
+        return report.replaceAll("\"(millis|checkMillis|filesPerSecond)\": [0-9.]+", "\"$1\": 0");
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.tests;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.MethodParameter;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.SuggestionDescriptor;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsJournal;
+
+/**
+ * Tests the format of the inferencing suggestions file
+ */
+public class SuggestionsJournalTests extends TestCase {
+
+    public void testMethodRecord() throws Exception {
+        List<MethodParameter> parameters = Arrays.asList(new MethodParameter("a", "java.lang.String"),
+                new MethodParameter("b\tc", null));
+        SuggestionDescriptor descriptor = new SuggestionDescriptor("p.Foo", true, "bar", "line 1\nline 2 \\n", "java.util.List<java.lang.String>",
+                true, parameters, false);
+        SuggestionDescriptor read = SuggestionsJournal.toDescriptor(SuggestionsJournal.toRecord(descriptor));
+        assertTrue(read.isMethod());
+        assertEquals("p.Foo", read.getDeclaringTypeName());
+        assertEquals("bar", read.getName());
+        assertEquals("line 1\nline 2 \\n", read.getJavaDoc());
+        assertEquals("java.util.List<java.lang.String>", read.getSuggestionType());
+        assertTrue(read.isStatic());
+        assertTrue(read.isUseArgumentNames());
+        assertFalse(read.isActive());
+        assertEquals(parameters, read.getParameters());
+    }
+
+    public void testPropertyRecord() throws Exception {
+        SuggestionDescriptor descriptor = new SuggestionDescriptor("p.Foo", false, "baz", null, "int", true);
+        SuggestionDescriptor read = SuggestionsJournal.toDescriptor(SuggestionsJournal.toRecord(descriptor));
+        assertFalse(read.isMethod());
+        assertEquals("baz", read.getName());
+        assertNull(read.getJavaDoc());
+        assertNull(read.getParameters());
+        assertTrue(read.isActive());
+    }
+
+    public void testNoParameters() throws Exception {
+        SuggestionDescriptor none = new SuggestionDescriptor("p.Foo", false, "m", null, "void", false, null, true);
+        SuggestionDescriptor empty = new SuggestionDescriptor("p.Foo", false, "m", null, "void", false,
+                new ArrayList<MethodParameter>(), true);
+        assertNull(SuggestionsJournal.toDescriptor(SuggestionsJournal.toRecord(none)).getParameters());
+        assertEquals(0, SuggestionsJournal.toDescriptor(SuggestionsJournal.toRecord(empty)).getParameters().size());
+        assertFalse(SuggestionsJournal.toRecord(none).equals(SuggestionsJournal.toRecord(empty)));
+    }
+
+    public void testInvalidRecord() throws Exception {
+        assertNull(SuggestionsJournal.toDescriptor("p.Foo\tX\tm\tvoid\t0000\tdoc"));
+        assertNull(SuggestionsJournal.toDescriptor("p.Foo\tM\tm"));
+    }
+
+    public void testReplayChanges() throws Exception {
+        String foo1 = property("p.Foo", "one");
+        String foo2 = property("p.Foo", "two");
+        String bar1 = property("p.Bar", "one");
+
+        SuggestionsJournal journal = new SuggestionsJournal();
+        StringBuilder file = new StringBuilder(SuggestionsJournal.HEADER + "\n");
+        file.append(journal.add(foo1));
+        file.append(journal.add(foo2));
+        file.append(journal.add(bar1));
+        file.append(journal.remove(foo1));
+        assertEquals(Arrays.asList("p.Foo", "p.Bar"), new ArrayList<String>(journal.getDeclaringTypeNames()));
+        assertEquals(Arrays.asList(foo2), new ArrayList<String>(journal.getRecords("p.Foo")));
+
+        file.append(journal.removeDeclaringType("p.Bar"));
+        assertEquals(0, journal.getRecords("p.Bar").size());
+
+        SuggestionsJournal read = SuggestionsJournal.read(new StringReader(file.toString()));
+        assertEquals(Arrays.asList("p.Foo"), new ArrayList<String>(read.getDeclaringTypeNames()));
+        assertEquals(Arrays.asList(foo2), new ArrayList<String>(read.getRecords("p.Foo")));
+        assertEquals(journal.getText(), read.getText());
+    }
+
+    public void testNotAJournal() throws Exception {
+        assertNull(SuggestionsJournal.read(new StringReader("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<projectSuggestions/>")));
+    }
+
+    public void testCompaction() throws Exception {
+        SuggestionsJournal journal = new SuggestionsJournal();
+        String record = property("p.Foo", "one");
+        for (int i = 0; i < 100; i++) {
+            journal.add(record);
+            journal.remove(record);
+        }
+        assertTrue(journal.needsCompaction());
+        assertEquals(SuggestionsJournal.HEADER + "\n", journal.getText());
+        assertFalse(journal.needsCompaction());
+    }
+
+    private static String property(String declaringTypeName, String name) {
+        return SuggestionsJournal.toRecord(new SuggestionDescriptor(declaringTypeName, false, name, null, "java.lang.Object", true));
+    }
+}
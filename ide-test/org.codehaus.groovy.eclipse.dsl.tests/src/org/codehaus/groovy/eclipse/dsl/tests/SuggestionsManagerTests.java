@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.GroovySuggestionDeclaringType;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.IGroovySuggestion;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.InferencingSuggestionsManager;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.InferencingSuggestionsManager.ProjectSuggestions;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.SuggestionDescriptor;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsJournal;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsTransform;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+
+/**
+ * Tests how inferencing suggestions are written to and read back from the
+ * suggestions file of a project, and how they are exported and imported
+ */
+public class SuggestionsManagerTests extends AbstractDSLInferencingTest {
+
+    public static Test suite() {
+        return new TestSuite(SuggestionsManagerTests.class);
+    }
+
+    public SuggestionsManagerTests(String name) {
+        super(name);
+    }
+
+    private InferencingSuggestionsManager manager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        manager = InferencingSuggestionsManager.getInstance();
+    }
+
+    public void testCommitAppendsThenCompacts() throws Exception {
+        IFile file = writeSuggestionsFile("");
+        ProjectSuggestions suggestions = manager.getSuggestions(project).registerNewProjectSuggestion();
+        SuggestionDescriptor a = property("a", "int");
+        suggestions.addSuggestion(a);
+        assertTrue(manager.commitChanges(project));
+        String written = read(file);
+        assertEquals(SuggestionsJournal.HEADER + "\n+" + SuggestionsJournal.toRecord(a) + "\n", written);
+
+        SuggestionDescriptor b = property("b", "java.lang.String");
+        IGroovySuggestion suggestion = suggestions.addSuggestion(b);
+        assertTrue(manager.commitChanges(project));
+        String appended = read(file);
+        assertEquals(written + "+" + SuggestionsJournal.toRecord(b) + "\n", appended);
+
+        // every change appends a line to remove the old suggestion and one to
+        // add the new one, until the file is written out in full again
+        GroovySuggestionDeclaringType declaringType = suggestions.getExactDeclaringType("p.Foo");
+        int lines = countLines(appended);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(declaringType.removeSuggestion(suggestion));
+            b = property("b", "p.Type" + i);
+            suggestion = suggestions.addSuggestion(b);
+            assertTrue(manager.commitChanges(project));
+            String contents = read(file);
+            int newLines = countLines(contents);
+            if (newLines < lines) {
+                assertTrue("Should have appended changes more than once before compacting, but compacted after " + i, i > 10);
+                assertEquals(SuggestionsJournal.HEADER + "\n+" + SuggestionsJournal.toRecord(a) + "\n+"
+                        + SuggestionsJournal.toRecord(b) + "\n", contents);
+                assertSuggestions(b, a);
+                return;
+            }
+            assertEquals(lines + 2, newLines);
+            lines = newLines;
+        }
+        fail("Should have compacted the suggestions file, but it has " + lines + " lines:\n" + read(file));
+    }
+
+    public void testMigrateXmlFile() throws Exception {
+        SuggestionDescriptor baz = property("baz", "java.lang.String");
+        SuggestionDescriptor qux = new SuggestionDescriptor("p.Foo", true, "qux", null, "java.util.List", false);
+        ProjectSuggestions old = manager.getSuggestions(project).registerNewProjectSuggestion();
+        old.addSuggestion(baz);
+        old.addSuggestion(qux);
+        String xml = new SuggestionsTransform(old).transform();
+        assertNotNull(xml);
+        IFile file = writeSuggestionsFile(xml);
+
+        assertTrue(manager.restoreSuggestions(project));
+        GroovySuggestionDeclaringType declaringType = manager.getSuggestions(project).getExactDeclaringType("p.Foo");
+        assertTrue("XML suggestions are read in full", declaringType.isLoaded());
+        assertEquals(2, declaringType.getSuggestions().size());
+
+        assertTrue(manager.commitChanges(project));
+        String written = read(file);
+        assertTrue(written, written.startsWith(SuggestionsJournal.HEADER + "\n"));
+        assertEquals(3, countLines(written));
+        assertTrue(written, written.contains("+" + SuggestionsJournal.toRecord(baz) + "\n"));
+        assertTrue(written, written.contains("+" + SuggestionsJournal.toRecord(qux) + "\n"));
+        assertSuggestions(baz, qux);
+    }
+
+    public void testLazyLoading() throws Exception {
+        SuggestionDescriptor foo = property("foo", "int");
+        SuggestionDescriptor bar = new SuggestionDescriptor("p.Bar", true, "bar", null, "int", true);
+        IFile file = writeSuggestionsFile(SuggestionsJournal.HEADER + "\n+" + SuggestionsJournal.toRecord(foo) + "\n+"
+                + SuggestionsJournal.toRecord(bar) + "\n");
+
+        assertTrue(manager.restoreSuggestions(project));
+        ProjectSuggestions suggestions = manager.getSuggestions(project);
+        GroovySuggestionDeclaringType fooType = suggestions.getExactDeclaringType("p.Foo");
+        GroovySuggestionDeclaringType barType = suggestions.getExactDeclaringType("p.Bar");
+        assertFalse(fooType.isLoaded());
+        assertFalse(barType.isLoaded());
+
+        List<IGroovySuggestion> fooSuggestions = fooType.getSuggestions();
+        assertTrue(fooType.isLoaded());
+        assertFalse("Should only create the suggestions of the type that is used", barType.isLoaded());
+        assertEquals(1, fooSuggestions.size());
+        assertEquals(SuggestionsJournal.toRecord(foo), SuggestionsJournal.toRecord(new SuggestionDescriptor(fooSuggestions.get(0))));
+
+        // nothing changed, so nothing is written
+        String contents = read(file);
+        assertTrue(manager.commitChanges(project));
+        assertEquals(contents, read(file));
+        assertFalse(barType.isLoaded());
+
+        // a change to one type leaves the records of the other alone
+        fooType.removeSuggestion(fooSuggestions.get(0));
+        assertTrue(manager.commitChanges(project));
+        assertEquals(contents + "*p.Foo\n", read(file));
+        assertFalse(barType.isLoaded());
+        assertSuggestions(bar);
+    }
+
+    public void testExportSuggestions() throws Exception {
+        writeSuggestionsFile("");
+        ProjectSuggestions suggestions = manager.getSuggestions(project).registerNewProjectSuggestion();
+        SuggestionDescriptor a = property("a", "int");
+        SuggestionDescriptor b = new SuggestionDescriptor("p.Bar", true, "b", null, "java.lang.String", false);
+        suggestions.addSuggestion(a);
+        suggestions.addSuggestion(b);
+        assertTrue(manager.commitChanges(project));
+
+        // the declaring types are only read from the journal, and are created for the export
+        assertTrue(manager.restoreSuggestions(project));
+        File file = File.createTempFile("suggestions", ".xml");
+        try {
+            assertTrue(manager.exportSuggestions(project, file));
+            assertEquals(new SuggestionsTransform(manager.getSuggestions(project)).transform(), read(file));
+
+            // reading the export back gives the same suggestions
+            manager.getSuggestions(project).registerNewProjectSuggestion().addSuggestion(property("c", "int"));
+            assertTrue(manager.importSuggestions(project, file));
+            assertSuggestions(a, b);
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testImportSuggestions() throws Exception {
+        SuggestionDescriptor baz = property("baz", "java.lang.String");
+        SuggestionDescriptor qux = new SuggestionDescriptor("p.Foo", true, "qux", null, "java.util.List", false);
+        ProjectSuggestions other = manager.getSuggestions(project).registerNewProjectSuggestion();
+        other.addSuggestion(baz);
+        other.addSuggestion(qux);
+        File xml = File.createTempFile("suggestions", ".xml");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(xml), "UTF-8");
+            try {
+                writer.write(new SuggestionsTransform(other).transform());
+            } finally {
+                writer.close();
+            }
+
+            IFile file = writeSuggestionsFile("");
+            SuggestionDescriptor old = property("old", "int");
+            manager.getSuggestions(project).registerNewProjectSuggestion().addSuggestion(old);
+            assertTrue(manager.commitChanges(project));
+
+            // the imported suggestions replace the old ones, and the journal is written out in full
+            assertTrue(manager.importSuggestions(project, xml));
+            String written = read(file);
+            assertTrue(written, written.startsWith(SuggestionsJournal.HEADER + "\n"));
+            assertEquals(3, countLines(written));
+            assertFalse(written, written.contains(SuggestionsJournal.toRecord(old)));
+            assertSuggestions(baz, qux);
+        } finally {
+            xml.delete();
+        }
+    }
+
+    /**
+     * Reads the suggestions file back and checks it holds exactly the given
+     * suggestions
+     */
+    private void assertSuggestions(SuggestionDescriptor... expected) throws Exception {
+        assertTrue(manager.restoreSuggestions(project));
+        ProjectSuggestions suggestions = manager.getSuggestions(project);
+        int numSuggestions = 0;
+        for (GroovySuggestionDeclaringType declaringType : suggestions.getDeclaringTypes()) {
+            numSuggestions += declaringType.getSuggestions().size();
+        }
+        assertEquals(expected.length, numSuggestions);
+        for (SuggestionDescriptor descriptor : expected) {
+            GroovySuggestionDeclaringType declaringType = suggestions.getExactDeclaringType(descriptor.getDeclaringTypeName());
+            assertNotNull("Missing declaring type " + descriptor.getDeclaringTypeName(), declaringType);
+            boolean found = false;
+            for (IGroovySuggestion suggestion : declaringType.getSuggestions()) {
+                if (SuggestionsJournal.toRecord(descriptor).equals(SuggestionsJournal.toRecord(new SuggestionDescriptor(suggestion)))) {
+                    found = true;
+                }
+            }
+            assertTrue("Missing suggestion " + descriptor.getName(), found);
+        }
+    }
+
+    private static SuggestionDescriptor property(String name, String type) {
+        return new SuggestionDescriptor("p.Foo", false, name, null, type, true);
+    }
+
+    private IFile writeSuggestionsFile(String contents) throws Exception {
+        IFolder folder = project.getFolder(".groovy");
+        if (!folder.exists()) {
+            folder.create(true, true, null);
+        }
+        IFile file = folder.getFile("suggestions.xdsl");
+        ByteArrayInputStream source = new ByteArrayInputStream(contents.getBytes("UTF-8"));
+        if (file.exists()) {
+            file.setContents(source, true, false, null);
+        } else {
+            file.create(source, true, null);
+        }
+        return file;
+    }
+
+    private static String read(IFile file) throws Exception {
+        Reader reader = new InputStreamReader(file.getContents(true), "UTF-8");
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String read(File file) throws Exception {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int countLines(String contents) {
+        int lines = 0;
+        for (int i = 0; i < contents.length(); i++) {
+            if (contents.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
@@ -25,8 +25,11 @@ import static org.codehaus.groovy.eclipse.editor.highlighting.HighlightedTypedPo
 import static org.codehaus.groovy.eclipse.editor.highlighting.HighlightedTypedPosition.HighlightKind.UNKNOWN;
 import static org.codehaus.groovy.eclipse.editor.highlighting.HighlightedTypedPosition.HighlightKind.NUMBER;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 import org.codehaus.groovy.eclipse.GroovyPlugin;
 import org.codehaus.groovy.eclipse.core.preferences.PreferenceConstants;
@@ -293,6 +296,39 @@ public class SemanticHighlightingTests extends EclipseTestCase {
                 new HighlightedTypedPosition(contents.indexOf("key2"), "key2".length(), MAP_KEY));
     }
 
+    public void testVisibleRegion() throws Exception {
+        String contents = "class X {\n" +
+                "  static int f\n" +
+                "  def m1() { f; m2() }\n" +
+                "  def m2() { X.f; 10 }\n" +
+                "  def m3() { m1(); \"${f}\" }\n" +
+                "}";
+        GroovyCompilationUnit unit = openFile(contents);
+        GatherSemanticReferences references = new GatherSemanticReferences(unit);
+        List<HighlightedTypedPosition> all = new ArrayList<HighlightedTypedPosition>(references.findSemanticHighlightingReferences());
+        int start = contents.indexOf("def m2"), end = contents.indexOf("def m3");
+
+        List<HighlightedTypedPosition> inside = new ArrayList<HighlightedTypedPosition>(
+                references.findSemanticHighlightingReferences(start, end, true, null));
+        for (HighlightedTypedPosition pos : inside) {
+            assertTrue("Should be inside of the region: " + pos, pos.offset >= start && pos.offset < end);
+        }
+        assertEquals(3, inside.size());
+
+        List<HighlightedTypedPosition> both = new ArrayList<HighlightedTypedPosition>(
+                references.findSemanticHighlightingReferences(start, end, false, null));
+        for (HighlightedTypedPosition pos : both) {
+            assertTrue("Should be outside of the region: " + pos, pos.offset < start || pos.offset >= end);
+        }
+        both.addAll(inside);
+        Collections.sort(both, new Comparator<HighlightedTypedPosition>() {
+            public int compare(HighlightedTypedPosition h1, HighlightedTypedPosition h2) {
+                return h1.offset - h2.offset;
+            }
+        });
+        assertEquals(all, both);
+    }
+
     private void assertHighlighting(String contents, HighlightedTypedPosition... expectedPositions) throws Exception {
         GroovyCompilationUnit unit = openFile(contents);
         checkStyles(unit, expectedPositions);
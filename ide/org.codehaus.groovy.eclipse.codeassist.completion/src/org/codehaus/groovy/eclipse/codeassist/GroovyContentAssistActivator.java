@@ -18,6 +18,7 @@ package org.codehaus.groovy.eclipse.codeassist;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.codehaus.groovy.eclipse.codeassist.processors.ExpressionCompletionCache;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
@@ -46,6 +47,7 @@ public class GroovyContentAssistActivator extends AbstractUIPlugin {
 	@Override
     public void start(BundleContext context) throws Exception {
 		super.start(context);
+		ExpressionCompletionCache.install();
 	}
 
 	/*
@@ -54,6 +56,7 @@ public class GroovyContentAssistActivator extends AbstractUIPlugin {
 	 */
 	@Override
     public void stop(BundleContext context) throws Exception {
+		ExpressionCompletionCache.uninstall();
 		plugin = null;
 		super.stop(context);
 	}
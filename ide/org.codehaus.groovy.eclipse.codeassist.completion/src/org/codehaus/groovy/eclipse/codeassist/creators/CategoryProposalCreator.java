@@ -32,6 +32,7 @@ import org.codehaus.groovy.eclipse.codeassist.preferences.DGMProposalFilter;
 import org.codehaus.groovy.eclipse.codeassist.proposals.GroovyCategoryMethodProposal;
 import org.codehaus.groovy.eclipse.codeassist.proposals.GroovyFieldProposal;
 import org.codehaus.groovy.eclipse.codeassist.proposals.IGroovyProposal;
+import org.eclipse.jdt.groovy.search.DefaultCategoryIndex;
 import org.eclipse.jdt.groovy.search.VariableScope;
 
 /**
@@ -41,6 +42,19 @@ import org.eclipse.jdt.groovy.search.VariableScope;
  */
 public class CategoryProposalCreator extends AbstractProposalCreator {
 
+    private Map<IGroovyProposal, String> accessorProposals;
+
+    /**
+     * Makes the property variant of an accessor be proposed even when the
+     * prefix matches the name of the accessor itself, and records the name of
+     * the accessor of each property variant in the map. Narrowing the
+     * proposals down to a prefix later on then requires that the property
+     * name matches the prefix but the accessor name does not.
+     */
+    public void recordAccessorProposals(Map<IGroovyProposal, String> accessorProposals) {
+        this.accessorProposals = accessorProposals;
+    }
+
     public List<IGroovyProposal> findAllProposals(ClassNode type, Set<ClassNode> categories, String prefix, boolean isStatic,
             boolean isPrimary) {
         ClassNode candidate = VariableScope.maybeConvertFromPrimitive(type);
@@ -57,8 +71,21 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
         List<IGroovyProposal> groovyProposals = new LinkedList<IGroovyProposal>();
         Set<String> existingFieldProposals = new HashSet<String>();
         Map<String, List<MethodNode>> existingMethodProposals = new HashMap<String, List<MethodNode>>();
+        DefaultCategoryIndex index = DefaultCategoryIndex.enabled
+                && categories.containsAll(VariableScope.ALL_DEFAULT_CATEGORIES) ? DefaultCategoryIndex.getDefault() : null;
+        boolean indexSearched = false;
         for (ClassNode category : categories) {
-            List<MethodNode> allMethods = category.getAllDeclaredMethods();
+            List<MethodNode> allMethods;
+            if (index != null && index.isIndexed(category)) {
+                // all default categories are searched at once
+                if (indexSearched) {
+                    continue;
+                }
+                indexSearched = true;
+                allMethods = findIndexedMethods(index, set);
+            } else {
+                allMethods = category.getAllDeclaredMethods();
+            }
             boolean isDGMCategory = isDGMCategory(category);
             for (MethodNode method : allMethods) {
                 // Check for DGMs filtered from preferences
@@ -70,7 +97,8 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
                 String methodName = method.getName();
                 if (method.isStatic() && method.isPublic()) {
                     Parameter[] params = method.getParameters();
-                    if (ProposalUtils.looselyMatches(prefix, methodName)) {
+                    boolean nameMatches = ProposalUtils.looselyMatches(prefix, methodName);
+                    if (nameMatches) {
                         if (params != null && params.length > 0 && set.contains(params[0].getType().getName())
                                 && !dupMethod(method, existingMethodProposals)) {
                             GroovyCategoryMethodProposal methodProposal = new GroovyCategoryMethodProposal(method);
@@ -83,7 +111,8 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
                             }
                             methodList.add(method);
                         }
-                    } else if (params.length == 1
+                    }
+                    if ((!nameMatches || accessorProposals != null) && params.length == 1
                             && findLooselyMatchedAccessorKind(prefix, methodName, true).isAccessorKind(method, true)
                             && !existingFieldProposals.contains(methodName) && hasNoField(declaringClass, methodName)) {
                         // add property variant of accessor name
@@ -91,6 +120,9 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
                         fieldProposal.setRelevanceMultiplier(1);
                         groovyProposals.add(fieldProposal);
                         existingFieldProposals.add(methodName);
+                        if (accessorProposals != null) {
+                            accessorProposals.put(fieldProposal, methodName);
+                        }
                     }
 
                 }
@@ -99,6 +131,22 @@ public class CategoryProposalCreator extends AbstractProposalCreator {
         return groovyProposals;
     }
 
+    /**
+     * The only default category methods that can be proposed are those that apply to one of the given types and those that
+     * may be proposed as a property of any type
+     */
+    private List<MethodNode> findIndexedMethods(DefaultCategoryIndex index, Set<String> set) {
+        List<MethodNode> methods = new ArrayList<MethodNode>(index.getMethods(set));
+        Set<MethodNode> found = new HashSet<MethodNode>(methods);
+        for (MethodNode method : index.getSingleParameterMethods()) {
+            if (!found.contains(method)) {
+                methods.add(method);
+            }
+        }
+        index.sort(methods);
+        return methods;
+    }
+
     /**
      * Check thatthe new method hasn't already been added
      * We SHOULD be checking if this new method is more specific than the old
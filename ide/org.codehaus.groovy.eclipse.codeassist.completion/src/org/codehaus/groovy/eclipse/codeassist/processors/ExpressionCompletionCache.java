@@ -0,0 +1,201 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse.codeassist.processors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.eclipse.codeassist.ProposalUtils;
+import org.codehaus.groovy.eclipse.codeassist.proposals.GroovyFieldProposal;
+import org.codehaus.groovy.eclipse.codeassist.proposals.GroovyMethodProposal;
+import org.codehaus.groovy.eclipse.codeassist.proposals.IGroovyProposal;
+import org.codehaus.groovy.eclipse.codeassist.requestor.ContentAssistContext;
+import org.codehaus.groovy.eclipse.codeassist.requestor.ContentAssistLocation;
+import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.groovy.search.VariableScope;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * The proposals for completing on an expression after a '.', kept between
+ * invocations of content assist. Finding the type of the expression requires
+ * a visit of the whole compilation unit, so while the user keeps typing a
+ * longer name after the same '.', the proposals made for the first invocation
+ * are narrowed down to the new prefix instead.
+ * <p>
+ * Only the proposals of one expression are kept. They are made for all
+ * prefixes at once, and used for as long as the text of the document before
+ * the prefix and after the caret is unchanged and no other compilation unit
+ * has changed.
+ */
+public class ExpressionCompletionCache {
+
+    /**
+     * When set, the proposals for an expression are kept. Defaults to the
+     * value of the <code>greclipse.completionCache</code> system property.
+     */
+    public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.completionCache", "true")).booleanValue();
+
+    private static Entry entry;
+
+    private static int hitCount;
+
+    // forgets the proposals when any other compilation unit changes, since
+    // the type of the expression may be declared there
+    private static final IElementChangedListener listener = new IElementChangedListener() {
+        public void elementChanged(ElementChangedEvent event) {
+            synchronized (ExpressionCompletionCache.class) {
+                if (entry != null
+                        && (event.getType() != ElementChangedEvent.POST_RECONCILE || !entry.unit.equals(event.getDelta()
+                                .getElement()))) {
+                    entry = null;
+                }
+            }
+        }
+    };
+
+    public static void install() {
+        JavaCore.addElementChangedListener(listener, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+    }
+
+    public static void uninstall() {
+        JavaCore.removeElementChangedListener(listener);
+        clear();
+    }
+
+    public static synchronized void clear() {
+        entry = null;
+    }
+
+    /**
+     * @return the number of times that kept proposals have been used
+     */
+    public static synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return true if the proposals for the expression being completed may be
+     *         kept
+     */
+    static boolean isCacheable(ContentAssistContext context, IDocument document) {
+        return enabled && document != null && context.location == ContentAssistLocation.EXPRESSION;
+    }
+
+    /**
+     * @return the entry kept for the expression being completed, or null if
+     *         the proposals have to be made again
+     */
+    static synchronized Entry find(ContentAssistContext context, IDocument document) {
+        if (entry == null || !isCacheable(context, document) || !entry.unit.equals(context.unit)) {
+            return null;
+        }
+        int prefixStart = getPrefixStart(context);
+        String text = document.get();
+        int suffixLength = text.length() - context.completionLocation;
+        if (prefixStart != entry.prefixStart || suffixLength != entry.text.length() - entry.completionLocation
+                || !text.regionMatches(0, entry.text, 0, prefixStart)
+                || !text.regionMatches(context.completionLocation, entry.text, entry.completionLocation, suffixLength)) {
+            return null;
+        }
+        hitCount++;
+        return entry;
+    }
+
+    /**
+     * Keeps the proposals made for all prefixes of the expression being
+     * completed.
+     *
+     * @param accessorProposals the names of the accessors of the property
+     *            proposals, see
+     *            {@link org.codehaus.groovy.eclipse.codeassist.creators.CategoryProposalCreator#recordAccessorProposals(Map)}
+     * @return the new entry
+     */
+    static synchronized Entry store(ContentAssistContext context, IDocument document, ClassNode completionType,
+            boolean isStatic, Set<ClassNode> categories, VariableScope currentScope, List<IGroovyProposal> proposals,
+            Map<IGroovyProposal, String> accessorProposals) {
+        entry = new Entry(context.unit, document.get(), getPrefixStart(context), context.completionLocation,
+                completionType, isStatic, categories, currentScope, proposals, accessorProposals);
+        return entry;
+    }
+
+    private static int getPrefixStart(ContentAssistContext context) {
+        return context.completionLocation - context.completionExpression.length();
+    }
+
+    static class Entry {
+        final GroovyCompilationUnit unit;
+        final String text;
+        final int prefixStart;
+        final int completionLocation;
+
+        final ClassNode completionType;
+        final boolean isStatic;
+        final Set<ClassNode> categories;
+        final VariableScope currentScope;
+
+        private final IGroovyProposal[] proposals;
+        // the name that a prefix has to match, or null if every prefix does
+        private final String[] names;
+        // the name that a prefix must not match, or null if there is none
+        private final String[] accessorNames;
+
+        Entry(GroovyCompilationUnit unit, String text, int prefixStart, int completionLocation, ClassNode completionType,
+                boolean isStatic, Set<ClassNode> categories, VariableScope currentScope, List<IGroovyProposal> proposals,
+                Map<IGroovyProposal, String> accessorProposals) {
+            this.unit = unit;
+            this.text = text;
+            this.prefixStart = prefixStart;
+            this.completionLocation = completionLocation;
+            this.completionType = completionType;
+            this.isStatic = isStatic;
+            this.categories = categories;
+            this.currentScope = currentScope;
+            this.proposals = proposals.toArray(new IGroovyProposal[proposals.size()]);
+            this.names = new String[this.proposals.length];
+            this.accessorNames = new String[this.proposals.length];
+            for (int i = 0; i < this.proposals.length; i++) {
+                IGroovyProposal proposal = this.proposals[i];
+                if (proposal instanceof GroovyMethodProposal) {
+                    names[i] = ((GroovyMethodProposal) proposal).getMethod().getName();
+                } else if (proposal instanceof GroovyFieldProposal) {
+                    names[i] = ((GroovyFieldProposal) proposal).getField().getName();
+                }
+                accessorNames[i] = accessorProposals.get(proposal);
+            }
+        }
+
+        /**
+         * @return the proposals that the creators make for the prefix, in the
+         *         same order
+         */
+        List<IGroovyProposal> findProposals(String prefix) {
+            List<IGroovyProposal> found = new ArrayList<IGroovyProposal>();
+            for (int i = 0; i < proposals.length; i++) {
+                if ((names[i] == null || ProposalUtils.looselyMatches(prefix, names[i]))
+                        && (accessorNames[i] == null || !ProposalUtils.looselyMatches(prefix, accessorNames[i]))) {
+                    found.add(proposals[i]);
+                }
+            }
+            return found;
+        }
+    }
+}
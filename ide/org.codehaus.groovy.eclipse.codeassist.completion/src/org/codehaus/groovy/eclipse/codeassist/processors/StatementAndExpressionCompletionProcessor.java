@@ -17,8 +17,10 @@
 package org.codehaus.groovy.eclipse.codeassist.processors;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.codehaus.groovy.ast.ASTNode;
@@ -67,6 +69,7 @@ import org.eclipse.jdt.internal.core.SearchableEnvironment;
 import org.eclipse.jdt.internal.core.util.Util;
 import org.eclipse.jdt.ui.text.java.IJavaCompletionProposal;
 import org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.contentassist.ICompletionProposal;
 
 /**
@@ -338,89 +341,127 @@ public class StatementAndExpressionCompletionProcessor extends
     }
 
     public List<ICompletionProposal> generateProposals(IProgressMonitor monitor) {
-        TypeInferencingVisitorFactory factory = new TypeInferencingVisitorFactory();
         ContentAssistContext context = getContext();
-        TypeInferencingVisitorWithRequestor visitor = factory.createVisitor(context.unit);
-        ExpressionCompletionRequestor requestor = new ExpressionCompletionRequestor();
+        List<IProposalFilter> filters = getFilters();
+        IDocument document = getJavaContext().getDocument();
+        // filters may change the proposals they are given, so proposals cannot be kept when there are any
+        boolean cacheable = filters.isEmpty() && ExpressionCompletionCache.isCacheable(context, document);
+        ExpressionCompletionCache.Entry cached = cacheable ? ExpressionCompletionCache.find(context, document) : null;
 
-        // if completion node is null, then it is likely because of a syntax error
-        if (completionNode != null) {
-            visitor.visitCompilationUnit(requestor);
-        }
         ClassNode completionType;
         boolean isStatic;
-        List<IGroovyProposal> groovyProposals = new LinkedList<IGroovyProposal>();
-        if (requestor.isVisitSuccessful()) {
-            // get all proposal creators
-            isStatic = isStatic() || requestor.isStatic;
-            IProposalCreator[] creators = getAllProposalCreators();
-            completionType = getCompletionType(requestor);
-            if (completionType == null) {
-                completionType = context.containingDeclaration instanceof ClassNode ? (ClassNode) context.containingDeclaration
-                        : context.unit.getModuleNode().getScriptClassDummy();
+        Set<ClassNode> categories;
+        VariableScope currentScope;
+        List<IGroovyProposal> groovyProposals;
+        if (cached != null) {
+            // the user has typed a longer name after the same expression
+            completionType = cached.completionType;
+            isStatic = cached.isStatic;
+            categories = cached.categories;
+            currentScope = cached.currentScope;
+            groovyProposals = cached.findProposals(context.getPerceivedCompletionExpression());
+        } else {
+            TypeInferencingVisitorFactory factory = new TypeInferencingVisitorFactory();
+            TypeInferencingVisitorWithRequestor visitor = factory.createVisitor(context.unit);
+            ExpressionCompletionRequestor requestor = new ExpressionCompletionRequestor();
+
+            // if completion node is null, then it is likely because of a syntax error
+            if (completionNode != null) {
+                visitor.visitCompilationUnit(requestor);
             }
-            if (context.completionNode instanceof ClassExpression) {
-                if ("java.lang.Class".equals(completionType.getName())) {
-                    // Add proposals for static members
-                    ClassNode type = ((ClassExpression) context.completionNode).getType();
-                    proposalCreatorLoop(context, requestor, type, isStatic, groovyProposals, creators, false);
+            groovyProposals = new LinkedList<IGroovyProposal>();
+            if (requestor.isVisitSuccessful()) {
+                // get all proposal creators
+                isStatic = isStatic() || requestor.isStatic;
+                IProposalCreator[] creators = getAllProposalCreators();
+                completionType = getCompletionType(requestor);
+                if (completionType == null) {
+                    completionType = context.containingDeclaration instanceof ClassNode ? (ClassNode) context.containingDeclaration
+                            : context.unit.getModuleNode().getScriptClassDummy();
                 }
-            }
-            proposalCreatorLoop(context, requestor, completionType, isStatic, groovyProposals, creators, false);
-            if (ContentAssistLocation.STATEMENT == context.location) {
-                ClassNode closureThis = requestor.currentScope.getThis();
-                if (closureThis != null && !closureThis.equals(completionType)) {
-                    // inside of a closure
-                    // must also add content assist for this (previously did the
-                    // delegate)
-                    proposalCreatorLoop(context, requestor, closureThis, isStatic, groovyProposals, creators, true);
+
+                // proposals that are kept are made for all prefixes
+                String prefix = cacheable ? "" : context.getPerceivedCompletionExpression();
+                Map<IGroovyProposal, String> accessorProposals = null;
+                if (cacheable) {
+                    accessorProposals = new IdentityHashMap<IGroovyProposal, String>();
+                    for (IProposalCreator creator : creators) {
+                        if (creator instanceof CategoryProposalCreator) {
+                            ((CategoryProposalCreator) creator).recordAccessorProposals(accessorProposals);
+                        }
+                    }
+                }
+
+                if (context.completionNode instanceof ClassExpression) {
+                    if ("java.lang.Class".equals(completionType.getName())) {
+                        // Add proposals for static members
+                        ClassNode type = ((ClassExpression) context.completionNode).getType();
+                        proposalCreatorLoop(context, requestor, type, isStatic, prefix, groovyProposals, creators, false);
+                    }
+                }
+                proposalCreatorLoop(context, requestor, completionType, isStatic, prefix, groovyProposals, creators, false);
+                if (ContentAssistLocation.STATEMENT == context.location) {
+                    ClassNode closureThis = requestor.currentScope.getThis();
+                    if (closureThis != null && !closureThis.equals(completionType)) {
+                        // inside of a closure
+                        // must also add content assist for this (previously did the
+                        // delegate)
+                        proposalCreatorLoop(context, requestor, closureThis, isStatic, prefix, groovyProposals, creators, true);
+                    }
+                }
+
+                if (cacheable) {
+                    groovyProposals = ExpressionCompletionCache.store(context, document, completionType, isStatic,
+                            requestor.categories, requestor.currentScope, groovyProposals, accessorProposals).findProposals(
+                            context.getPerceivedCompletionExpression());
                 }
-            }
-        } else {
-            // we are at the statement location of a script
-            // return the category proposals only
-            AnnotatedNode node = context.containingDeclaration;
-            ClassNode containingClass;
-            if (node instanceof ClassNode) {
-                containingClass = (ClassNode) node;
-            } else if (node instanceof MethodNode) {
-                containingClass = ((MethodNode) node).getDeclaringClass();
             } else {
-                containingClass = null;
-            }
-            if (containingClass != null) {
-                groovyProposals.addAll(new CategoryProposalCreator().findAllProposals(containingClass,
-                        VariableScope.ALL_DEFAULT_CATEGORIES, context.getPerceivedCompletionExpression(), false,
-                        ContentAssistLocation.STATEMENT == context.location));
-            } else if (node instanceof ImportNode) {
-                ImportNode importNode = (ImportNode) node;
-                if (importNode.isStatic()) {
-                    containingClass = importNode.getType();
-                    groovyProposals.addAll(new FieldProposalCreator().findAllProposals(containingClass,
-                            VariableScope.ALL_DEFAULT_CATEGORIES, context.getPerceivedCompletionExpression(), true,
-                            ContentAssistLocation.STATEMENT == context.location));
-                    groovyProposals.addAll(new MethodProposalCreator().findAllProposals(containingClass,
-                            VariableScope.ALL_DEFAULT_CATEGORIES, context.getPerceivedCompletionExpression(), true,
+                // we are at the statement location of a script
+                // return the category proposals only
+                AnnotatedNode node = context.containingDeclaration;
+                ClassNode containingClass;
+                if (node instanceof ClassNode) {
+                    containingClass = (ClassNode) node;
+                } else if (node instanceof MethodNode) {
+                    containingClass = ((MethodNode) node).getDeclaringClass();
+                } else {
+                    containingClass = null;
+                }
+                if (containingClass != null) {
+                    groovyProposals.addAll(new CategoryProposalCreator().findAllProposals(containingClass,
+                            VariableScope.ALL_DEFAULT_CATEGORIES, context.getPerceivedCompletionExpression(), false,
                             ContentAssistLocation.STATEMENT == context.location));
+                } else if (node instanceof ImportNode) {
+                    ImportNode importNode = (ImportNode) node;
+                    if (importNode.isStatic()) {
+                        containingClass = importNode.getType();
+                        groovyProposals.addAll(new FieldProposalCreator().findAllProposals(containingClass,
+                                VariableScope.ALL_DEFAULT_CATEGORIES, context.getPerceivedCompletionExpression(), true,
+                                ContentAssistLocation.STATEMENT == context.location));
+                        groovyProposals.addAll(new MethodProposalCreator().findAllProposals(containingClass,
+                                VariableScope.ALL_DEFAULT_CATEGORIES, context.getPerceivedCompletionExpression(), true,
+                                ContentAssistLocation.STATEMENT == context.location));
+                    }
                 }
-            }
-            completionType = context.containingDeclaration instanceof ClassNode ? (ClassNode) context.containingDeclaration
-                    : context.unit.getModuleNode().getScriptClassDummy();
+                completionType = context.containingDeclaration instanceof ClassNode ? (ClassNode) context.containingDeclaration
+                        : context.unit.getModuleNode().getScriptClassDummy();
 
-            isStatic = false;
+                isStatic = false;
+            }
+            categories = requestor.categories;
+            currentScope = requestor.currentScope;
         }
 
         // get proposals from providers
         try {
-            context.currentScope = requestor.currentScope != null ? requestor.currentScope
-                    : createTopLevelScope(completionType);
+            context.currentScope = currentScope != null ? currentScope : createTopLevelScope(completionType);
             List<IProposalProvider> providers = ProposalProviderRegistry.getRegistry().getProvidersFor(context.unit);
             for (IProposalProvider provider : providers) {
                 try {
                     List<IGroovyProposal> otherProposals = provider
                             .getStatementAndExpressionProposals(context,
                                     completionType, isStatic,
-                                    requestor.categories);
+                                    categories);
                     if (otherProposals != null) {
                         groovyProposals.addAll(otherProposals);
                     }
@@ -436,28 +477,21 @@ public class StatementAndExpressionCompletionProcessor extends
             GroovyCore.logException("Exception accessing proposal provider registry", e);
         }
 
-        fillInExtendedContext(requestor);
+        fillInExtendedContext(currentScope);
 
         // extra filtering and sorting provided by third parties
-        try {
-            List<IProposalFilter> filters = ProposalProviderRegistry
-                    .getRegistry().getFiltersFor(context.unit);
-            for (IProposalFilter filter : filters) {
-                try {
-                    List<IGroovyProposal> newProposals = filter
-                            .filterProposals(groovyProposals, context,
-                                    getJavaContext());
-                    groovyProposals = newProposals == null ? groovyProposals
-                            : newProposals;
-                } catch (Exception e) {
-                    GroovyCore.logException(
-                            "Exception when using third party proposal filter: "
-                                    + filter.getClass().getCanonicalName(), e);
-                }
+        for (IProposalFilter filter : filters) {
+            try {
+                List<IGroovyProposal> newProposals = filter
+                        .filterProposals(groovyProposals, context,
+                                getJavaContext());
+                groovyProposals = newProposals == null ? groovyProposals
+                        : newProposals;
+            } catch (Exception e) {
+                GroovyCore.logException(
+                        "Exception when using third party proposal filter: "
+                                + filter.getClass().getCanonicalName(), e);
             }
-        } catch (CoreException e) {
-            GroovyCore.logException(
-                    "Exception accessing proposal provider registry", e);
         }
 
         List<ICompletionProposal> javaProposals = new ArrayList<ICompletionProposal>(groovyProposals.size());
@@ -479,8 +513,8 @@ public class StatementAndExpressionCompletionProcessor extends
     }
 
     private void proposalCreatorLoop(ContentAssistContext context, ExpressionCompletionRequestor requestor,
-            ClassNode completionType, boolean isStatic, List<IGroovyProposal> groovyProposals, IProposalCreator[] creators,
-            boolean isClosureThis) {
+            ClassNode completionType, boolean isStatic, String prefix, List<IGroovyProposal> groovyProposals,
+            IProposalCreator[] creators, boolean isClosureThis) {
         for (IProposalCreator creator : creators) {
             if (isClosureThis && !creator.redoForLoopClosure()) {
                 // avoid duplicate DGMs by not proposing category proposals
@@ -492,21 +526,31 @@ public class StatementAndExpressionCompletionProcessor extends
                 ((AbstractProposalCreator) creator).setCurrentScope(requestor.currentScope);
             }
             groovyProposals.addAll(creator.findAllProposals(completionType, requestor.categories,
-                    context.getPerceivedCompletionExpression(), isStatic, ContentAssistLocation.STATEMENT == context.location));
+                    prefix, isStatic, ContentAssistLocation.STATEMENT == context.location));
+        }
+    }
+
+    private List<IProposalFilter> getFilters() {
+        try {
+            return ProposalProviderRegistry.getRegistry().getFiltersFor(getContext().unit);
+        } catch (CoreException e) {
+            GroovyCore.logException(
+                    "Exception accessing proposal provider registry", e);
+            return new ArrayList<IProposalFilter>();
         }
     }
 
     /**
-     * @param requestor
+     * @param currentScope
      */
-    private void fillInExtendedContext(ExpressionCompletionRequestor requestor) {
+    private void fillInExtendedContext(VariableScope currentScope) {
         JavaContentAssistInvocationContext javaContext = getJavaContext();
         CompletionContext coreContext = javaContext.getCoreContext();
         if (coreContext != null && !coreContext.isExtended()) {
             // must use reflection to set the fields
             ReflectionUtils.setPrivateField(InternalCompletionContext.class, "isExtended", coreContext, true);
             ReflectionUtils.setPrivateField(InternalCompletionContext.class, "extendedContext", coreContext,
-                    new GroovyExtendedCompletionContext(getContext(), requestor.currentScope));
+                    new GroovyExtendedCompletionContext(getContext(), currentScope));
         }
     }
 
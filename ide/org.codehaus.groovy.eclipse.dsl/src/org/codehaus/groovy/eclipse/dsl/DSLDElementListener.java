@@ -16,18 +16,26 @@
 package org.codehaus.groovy.eclipse.dsl;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.codehaus.jdt.groovy.model.GroovyNature;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.IElementChangedListener;
 import org.eclipse.jdt.core.IJavaElementDelta;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
 
 /**
  * Listens for classpath changes and refreshes DSLDs accordingly.  Only look for raw classpath changes
  * all other changes are handled by the {@link DSLDResourceListener}.
+ * When the delta tells which package fragment roots were added, removed, or changed, only the scripts
+ * of those roots are refreshed.
  * @author andrew
  * @created Oct 28, 2011
  */
@@ -37,18 +45,79 @@ public class DSLDElementListener implements IElementChangedListener {
         // the root delta is always the JavaModel
         if (event.getType() == ElementChangedEvent.POST_CHANGE && event.getDelta() != null) {
             List<IProject> projectsToRefresh = new ArrayList<IProject>();
+            Map<IProject, Set<IPath>> rootsToRefresh = new LinkedHashMap<IProject, Set<IPath>>();
             for (IJavaElementDelta delta : event.getDelta().getChangedChildren()) {
+                if (!(delta.getElement() instanceof IJavaProject) || 
+                        !GroovyNature.hasGroovyNature(((IJavaProject) delta.getElement()).getProject())) {
+                    continue;
+                }
+                IProject project = ((IJavaProject) delta.getElement()).getProject();
+                if (isClasspathChange(delta)) {
+                    // type names may resolve differently now
+                    GroovyDSLCoreActivator.getDefault().getContextStoreManager().clearSharedResolverCache(project);
+                }
                 // Look for resolved classpath changes for Groovy projects
-                if (delta.getElement() instanceof IJavaProject && 
-                        isResolvedClasspathChangeNotRawClasspath(delta) && 
-                        GroovyNature.hasGroovyNature(((IJavaProject) delta.getElement()).getProject())) {
-                    projectsToRefresh.add(((IJavaProject) delta.getElement()).getProject());
+                if (isResolvedClasspathChangeNotRawClasspath(delta)) {
+                    Set<IPath> changedRoots = getChangedRoots(delta, CLASSPATH_CHANGE_FLAGS);
+                    if (changedRoots == null || hasReorderedRoots(delta)) {
+                        projectsToRefresh.add(project);
+                    } else {
+                        rootsToRefresh.put(project, changedRoots);
+                    }
+                } else {
+                    // a jar or class folder on the classpath has changed
+                    Set<IPath> changedRoots = getChangedRoots(delta, IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED);
+                    if (changedRoots != null) {
+                        rootsToRefresh.put(project, changedRoots);
+                    }
                 }
             }
             if (!projectsToRefresh.isEmpty()) {
                 GroovyDSLCoreActivator.getDefault().getContextStoreManager().initialize(projectsToRefresh, false);
             }
+            if (!rootsToRefresh.isEmpty()) {
+                GroovyDSLCoreActivator.getDefault().getContextStoreManager().refresh(rootsToRefresh, false);
+            }
+        }
+    }
+
+    private static final int CLASSPATH_CHANGE_FLAGS = IJavaElementDelta.F_ADDED_TO_CLASSPATH | 
+            IJavaElementDelta.F_REMOVED_FROM_CLASSPATH | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED;
+
+    /**
+     * @return the paths of the package fragment roots of the project that were added, removed, or 
+     * changed as described by the flags, or null if there are none
+     */
+    private Set<IPath> getChangedRoots(IJavaElementDelta delta, int flags) {
+        Set<IPath> roots = null;
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            if (child.getElement() instanceof IPackageFragmentRoot && 
+                    (child.getKind() != IJavaElementDelta.CHANGED || (child.getFlags() & flags) != 0)) {
+                if (roots == null) {
+                    roots = new HashSet<IPath>();
+                }
+                roots.add(child.getElement().getPath());
+            }
+        }
+        return roots;
+    }
+    
+    // the first script with a given name on the classpath wins, so all scripts must 
+    // be refreshed when the roots are in a different order
+    private boolean hasReorderedRoots(IJavaElementDelta delta) {
+        for (IJavaElementDelta child : delta.getAffectedChildren()) {
+            if ((child.getFlags() & IJavaElementDelta.F_REORDER) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isClasspathChange(IJavaElementDelta delta) {
+        if ((delta.getFlags() & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED)) != 0) {
+            return true;
         }
+        return getChangedRoots(delta, IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED) != null;
     }
 
     // returns true if there is a change to a classpath container, or something else that does not
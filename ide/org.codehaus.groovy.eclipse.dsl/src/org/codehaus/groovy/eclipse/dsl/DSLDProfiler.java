@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
+
+/**
+ * Counts how often each DSLD pointcut is evaluated and how often it matches, and how much time is spent matching it and
+ * running its contribution blocks in {@link DSLDStore#findContributions}. The costs of the pointcuts of a script add up to
+ * the cost of the script. {@link #getReport(int)} ranks scripts and pointcuts by cost, so that it is easy to tell which
+ * DSLD slows down inferencing. The report can be written to the Groovy event console with {@link #logReport()}.
+ * <p>
+ * Recording is cheap enough to always be on: two calls to {@link System#nanoTime()} and a few atomic increments for each
+ * pointcut that is evaluated. Statistics are kept by script and pointcut text until the script is purged from its store or
+ * recompiled (see {@link #removeScript(String)}) or until the profiler is {@link #reset()}. Setting
+ * <code>greclipse.dsldProfile</code> to false turns recording off.
+ */
+public class DSLDProfiler {
+
+    public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.dsldProfile", "true")).booleanValue();
+
+    // incremented on reset, so that stores holding on to older stats know to look them up again
+    private static volatile int generation = 0;
+
+    /**
+     * What was recorded for one pointcut, or for all pointcuts of one script
+     */
+    public static class Stats {
+        final String scriptName;
+        final String label;
+        final AtomicLong evaluations = new AtomicLong();
+        final AtomicLong matches = new AtomicLong();
+        final AtomicLong matchNanos = new AtomicLong();
+        final AtomicLong contributionNanos = new AtomicLong();
+        final int createdIn = generation;
+
+        Stats(String scriptName, String label) {
+            this.scriptName = scriptName;
+            this.label = label;
+        }
+
+        /**
+         * @return true if the profiler has been reset since these stats were created, so they are no longer reported
+         */
+        public boolean isStale() {
+            return createdIn != generation;
+        }
+
+        /**
+         * @param matched whether the pointcut matched
+         * @param matchNanos time spent matching the pointcut
+         * @param contributionNanos time spent running its contribution blocks
+         */
+        public void record(boolean matched, long matchNanos, long contributionNanos) {
+            evaluations.incrementAndGet();
+            if (matched) {
+                matches.incrementAndGet();
+            }
+            this.matchNanos.addAndGet(matchNanos);
+            this.contributionNanos.addAndGet(contributionNanos);
+        }
+
+        public String getScriptName() {
+            return scriptName;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getEvaluations() {
+            return evaluations.get();
+        }
+
+        public long getMatches() {
+            return matches.get();
+        }
+
+        public long getTotalNanos() {
+            return matchNanos.get() + contributionNanos.get();
+        }
+
+        void add(Stats other) {
+            evaluations.addAndGet(other.evaluations.get());
+            matches.addAndGet(other.matches.get());
+            matchNanos.addAndGet(other.matchNanos.get());
+            contributionNanos.addAndGet(other.contributionNanos.get());
+        }
+    }
+
+    // keyed by script and pointcut text
+    private static final Map<String, Stats> allStats = new ConcurrentHashMap<String, Stats>();
+
+    // saves computing the text of a pointcut for every new store
+    private static final Map<IPointcut, Stats> pointcutStats = Collections.synchronizedMap(new WeakHashMap<IPointcut, Stats>());
+
+    private static final Comparator<Stats> BY_COST = new Comparator<Stats>() {
+        public int compare(Stats s1, Stats s2) {
+            long t1 = s1.getTotalNanos(), t2 = s2.getTotalNanos();
+            return t1 > t2 ? -1 : t1 < t2 ? 1 : 0;
+        }
+    };
+
+    /**
+     * @param scriptName the unique name of the script that the pointcut comes from, see {@link DSLDStore#toUniqueString}
+     * @return where to record the evaluations of the pointcut
+     */
+    public static Stats getStats(IPointcut pointcut, String scriptName) {
+        Stats stats = pointcutStats.get(pointcut);
+        if (stats == null || stats.isStale()) {
+            String label = describe(pointcut);
+            String key = scriptName + '\n' + label;
+            synchronized (allStats) {
+                stats = allStats.get(key);
+                if (stats == null) {
+                    stats = new Stats(scriptName, label);
+                    allStats.put(key, stats);
+                }
+            }
+            pointcutStats.put(pointcut, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Forgets everything recorded so far
+     */
+    public static void reset() {
+        synchronized (allStats) {
+            generation++;
+            allStats.clear();
+            pointcutStats.clear();
+        }
+    }
+
+    /**
+     * Forgets what was recorded for a script that has been purged from its store or is about to be recompiled
+     * @param scriptName the unique name of the script, see {@link DSLDStore#toUniqueString}
+     */
+    public static void removeScript(String scriptName) {
+        synchronized (allStats) {
+            for (Iterator<Stats> it = allStats.values().iterator(); it.hasNext();) {
+                if (it.next().scriptName.equals(scriptName)) {
+                    it.remove();
+                }
+            }
+            synchronized (pointcutStats) {
+                for (Iterator<Stats> it = pointcutStats.values().iterator(); it.hasNext();) {
+                    if (it.next().scriptName.equals(scriptName)) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the stats of the pointcuts that have been evaluated, most expensive first
+     */
+    public static List<Stats> getPointcutStats() {
+        List<Stats> result = new ArrayList<Stats>(allStats.size());
+        for (Stats stats : allStats.values()) {
+            if (stats.getEvaluations() > 0) {
+                // copied, since the counts may change while sorting
+                Stats copy = new Stats(stats.scriptName, stats.label);
+                copy.add(stats);
+                result.add(copy);
+            }
+        }
+        Collections.sort(result, BY_COST);
+        return result;
+    }
+
+    /**
+     * @return the scripts, most expensive first; the label of each is the name of the script
+     */
+    public static List<Stats> getScriptStats() {
+        Map<String, Stats> byScript = new HashMap<String, Stats>();
+        for (Stats stats : allStats.values()) {
+            if (stats.getEvaluations() == 0) {
+                continue;
+            }
+            Stats script = byScript.get(stats.scriptName);
+            if (script == null) {
+                script = new Stats(stats.scriptName, stats.scriptName);
+                byScript.put(stats.scriptName, script);
+            }
+            script.add(stats);
+        }
+        List<Stats> result = new ArrayList<Stats>(byScript.values());
+        Collections.sort(result, BY_COST);
+        return result;
+    }
+
+    /**
+     * @param limit the maximum number of scripts and of pointcuts to list
+     * @return the most expensive scripts and pointcuts as text
+     */
+    public static String getReport(int limit) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("DSLD profile, most expensive first (total ms = match ms + contribution ms, matches/evaluations)\n");
+        sb.append("Scripts:\n");
+        appendStats(sb, getScriptStats(), limit, false);
+        sb.append("Pointcuts:\n");
+        appendStats(sb, getPointcutStats(), limit, true);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the report for all scripts and pointcuts to the Groovy event console
+     */
+    public static void logReport() {
+        if (GroovyLogManager.manager.hasLoggers()) {
+            GroovyLogManager.manager.log(TraceCategory.DSL, getReport(Integer.MAX_VALUE));
+        }
+    }
+
+    private static void appendStats(StringBuilder sb, List<Stats> list, int limit, boolean withScript) {
+        if (list.isEmpty()) {
+            sb.append("  (none)\n");
+        }
+        for (int i = 0; i < list.size() && i < limit; i++) {
+            Stats stats = list.get(i);
+            sb.append(String.format(Locale.US, "  %10.2f = %9.2f + %9.2f  %d/%d  ", stats.getTotalNanos() / 1e6,
+                    stats.matchNanos.get() / 1e6, stats.contributionNanos.get() / 1e6, stats.getMatches(), stats.getEvaluations()));
+            if (withScript) {
+                sb.append(stats.scriptName).append(": ");
+            }
+            sb.append(stats.label).append('\n');
+        }
+    }
+
+    private static String describe(IPointcut pointcut) {
+        String text = pointcut.toString();
+        // the first line names the script, which is shown separately
+        int firstLine = text.indexOf('\n');
+        if (text.startsWith("(") && firstLine > 0) {
+            text = text.substring(firstLine + 1);
+        }
+        return text.replaceAll("\\s+", " ").trim();
+    }
+}
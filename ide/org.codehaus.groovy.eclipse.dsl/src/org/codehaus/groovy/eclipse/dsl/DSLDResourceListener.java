@@ -102,6 +102,7 @@ public class DSLDResourceListener implements IResourceChangeListener {
                     // if this file diden't exist in the past, then this is a
                     // no-op
                     store.purgeIdentifier(file);
+                    contextStoreManager.clearSharedDeclarations(project);
 
                     if (file.isAccessible() && eventType == IResourceChangeEvent.POST_CHANGE) {
                         // also refresh the file
@@ -11,6 +11,8 @@
 package org.codehaus.groovy.eclipse.dsl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -20,6 +22,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.eclipse.GroovyLogManager;
 import org.codehaus.groovy.eclipse.TraceCategory;
 import org.codehaus.groovy.eclipse.dsl.contributions.IContributionElement;
@@ -31,7 +34,8 @@ import org.eclipse.core.resources.IStorage;
 import org.eclipse.jdt.internal.core.NonJavaResource;
 
 /**
- * Stores the pointcuts for a single project
+ * Stores the pointcuts for a single project.
+ * Scripts are executed concurrently during a refresh, so all changes are synchronized.
  * @author andrew
  * @created Nov 17, 2010
  */
@@ -39,19 +43,75 @@ public class DSLDStore {
 
     private final Map<IPointcut, List<IContributionGroup>> pointcutContributionMap;  // maps pointcuts to their contributors
     private final Map<IStorage, Set<IPointcut>> keyContextMap;  // maps unique keys (such as script names) to all the pointcuts that they produce
+    private volatile PointcutIndex index;  // created on demand and discarded whenever the pointcuts change
+    private Map<String, DSLDStore> subStores;  // sub-stores by the path-level facts of the files they were created for, discarded whenever the pointcuts change
+    
+    /**
+     * Set <code>greclipse.dsldSubStoreCache</code> to false to create a new sub-store for every inference pass
+     */
+    public static boolean cacheSubStores = Boolean.valueOf(System.getProperty("greclipse.dsldSubStoreCache", "true")).booleanValue();
+    
+    static final int MAX_SUB_STORES = 200;
+    
     public DSLDStore() {
         // use linked hash map because order matters
         pointcutContributionMap = new LinkedHashMap<IPointcut, List<IContributionGroup>>();
         keyContextMap = new HashMap<IStorage, Set<IPointcut>>();
     }
     
+    /**
+     * Set on the threads of a parallel refresh while a script is executed, so that the pointcuts of
+     * each script can be added to the store of the project in script order once all scripts have run
+     */
+    private static final ThreadLocal<DSLDStore> collector = new ThreadLocal<DSLDStore>();
+
+    /**
+     * Collects the pointcuts that are added to any store on this thread in a new store, until
+     * {@link #stopCollecting()} is called
+     * @return the store that receives the pointcuts
+     */
+    static DSLDStore startCollecting() {
+        DSLDStore store = new DSLDStore();
+        collector.set(store);
+        return store;
+    }
+
+    static void stopCollecting() {
+        collector.remove();
+    }
+
+    /**
+     * Adds the pointcuts and contributions of the given store to this one, in the order they were added to it
+     */
+    public void addAll(DSLDStore other) {
+        List<Entry<IPointcut, List<IContributionGroup>>> entries;
+        synchronized (other) {
+            entries = new ArrayList<Entry<IPointcut, List<IContributionGroup>>>(other.pointcutContributionMap.entrySet());
+        }
+        for (Entry<IPointcut, List<IContributionGroup>> entry : entries) {
+            for (IContributionGroup contribution : entry.getValue()) {
+                addContributionGroup(entry.getKey(), contribution);
+            }
+        }
+    }
+
     public void addContributionGroup(IPointcut pointcut, IContributionGroup contribution) {
+        DSLDStore target = collector.get();
+        if (target != null && target != this) {
+            target.addContributionGroup(pointcut, contribution);
+        } else {
+            doAddContributionGroup(pointcut, contribution);
+        }
+    }
+
+    private synchronized void doAddContributionGroup(IPointcut pointcut, IContributionGroup contribution) {
         List<IContributionGroup> contributions = pointcutContributionMap.get(pointcut);
         if (contributions == null) {
             contributions = new ArrayList<IContributionGroup>();
             pointcutContributionMap.put(pointcut, contributions);
         }
         contributions.add(contribution);
+        changed();
         
         IStorage identifier = pointcut.getContainerIdentifier();
         Set<IPointcut> pointcuts = keyContextMap.get(identifier);
@@ -63,49 +123,90 @@ public class DSLDStore {
     }
     
     
-    public void purgeIdentifier(IStorage identifier) {
+    public synchronized void purgeIdentifier(IStorage identifier) {
         if (GroovyLogManager.manager.hasLoggers()) {
             GroovyLogManager.manager.log(TraceCategory.DSL, "Purging pointcut for DSL file " + identifier);
         }
         Set<IPointcut> pointcuts = keyContextMap.remove(identifier);
+        DSLDProfiler.removeScript(toUniqueString(identifier));
         if (pointcuts != null) {
             for (IPointcut pointcut : pointcuts) {
                 pointcutContributionMap.remove(pointcut);
             }
+            changed();
         }
     }
     
-    public void purgeAll() {
+    public synchronized void purgeAll() {
+        for (IStorage identifier : keyContextMap.keySet()) {
+            DSLDProfiler.removeScript(toUniqueString(identifier));
+        }
         keyContextMap.clear();
         pointcutContributionMap.clear();
+        changed();
     }
 
     /**
      * Creates a new {@link DSLDStore} based on the pattern passed in
      * only includes {@link IPointcut}s that match the pattern.
-     * Sub-stores are meant to be short-lived and are not purged when a 
-     * script changes.
+     * Sub-stores are not purged when a script changes, so callers should ask for
+     * the sub-store again on every inference pass instead of holding on to it.
+     * <p>
+     * {@link IPointcut#fastMatch(GroovyDSLDContext)} only looks at the path of the file
+     * and the natures of its project, so the sub-store for a file is kept and returned 
+     * again until the pointcuts of this store change or the file moves.  This way the 
+     * pointcuts are not filtered again (and the sub-store's index is not built again) on 
+     * every inference pass over the file.  Sub-stores are shared and must not be changed.
      * 
      * @param patern the pattern to match against
-     * @return a new {@link DSLDStore} containing only matches against the pattern
+     * @return a {@link DSLDStore} containing only matches against the pattern
      */
-    public DSLDStore createSubStore(GroovyDSLDContext pattern) {
+    public synchronized DSLDStore createSubStore(GroovyDSLDContext pattern) {
+        String key = null;
+        if (cacheSubStores) {
+            key = pattern.fullPathName + '\n' + pattern.packageRootPath + '\n' + Arrays.toString(pattern.projectNatures);
+            if (subStores == null) {
+                subStores = new LinkedHashMap<String, DSLDStore>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, DSLDStore> eldest) {
+                        return size() > MAX_SUB_STORES;
+                    }
+                };
+            } else {
+                DSLDStore subStore = subStores.get(key);
+                if (subStore != null) {
+                    return subStore;
+                }
+            }
+        }
         DSLDStore subStore = new DSLDStore();
         for (Entry<IPointcut, List<IContributionGroup>> entry : pointcutContributionMap.entrySet()) {
             if (entry.getKey().fastMatch(pattern)) {
-                subStore.addAllContributions(entry.getKey(), entry.getValue());
+                // copied since the list of this store may still grow while the sub-store is in use
+                subStore.addAllContributions(entry.getKey(), new ArrayList<IContributionGroup>(entry.getValue()));
             }
         }
+        if (key != null) {
+            subStores.put(key, subStore);
+        }
         return subStore;
     }
+    
+    private void changed() {
+        index = null;
+        subStores = null;
+    }
 
-    public void addAllContributions(IPointcut pointcut, List<IContributionGroup> contributions) {
+    public synchronized void addAllContributions(IPointcut pointcut, List<IContributionGroup> contributions) {
         List<IContributionGroup> existing = pointcutContributionMap.get(pointcut);
         if (existing == null) {
             pointcutContributionMap.put(pointcut, contributions);
         } else {
             existing.addAll(contributions);
         }
+        changed();
     }
     public void addAllContexts(List<IPointcut> pointcuts, IContributionGroup contribution) {
         for (IPointcut pointcut : pointcuts) {
@@ -115,29 +216,55 @@ public class DSLDStore {
     
    
     /**
-     * Find all contributions for this pattern and this declaring type
+     * Find all contributions for this pattern and this declaring type.
+     * Only the pointcuts that the {@link PointcutIndex} has as candidates for the 
+     * current type are evaluated, and only if the pattern has not matched them against
+     * the same type and scope before.  The time spent on each pointcut is recorded
+     * by the {@link DSLDProfiler}.
      * @param pattern The pattern to match against
      * @param disabledScripts The set of scripts that are disabled and should be ignored
      * @return The set of contributions applicable for the pattern
      */
     public List<IContributionElement> findContributions(GroovyDSLDContext pattern, Set<String> disabledScripts) {
         List<IContributionElement> elts = new ArrayList<IContributionElement>();
-        for (Entry<IPointcut, List<IContributionGroup>> entry : pointcutContributionMap.entrySet()) {
-            IPointcut pointcut = entry.getKey();
-            if (! disabledScripts.contains(DSLDStore.toUniqueString(pointcut.getContainerIdentifier()))) {
-                pattern.resetBinding();
-                Collection<?> results = pointcut.matches(pattern, pattern.getCurrentType());
+        PointcutIndex index = getIndex();
+        ClassNode candidateType = pattern.getCurrentType();
+        BitSet candidates = index.getCandidates(candidateType);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            PointcutIndex.Entry entry = index.getEntry(i);
+            if (! disabledScripts.contains(entry.scriptName)) {
+                DSLDProfiler.Stats stats = entry.getStats();
+                long start = stats != null ? System.nanoTime() : 0;
+                Collection<?> results = pattern.getMatchMemo().matchCurrentType(entry.pointcut, pattern);
+                long matched = stats != null ? System.nanoTime() : 0;
                 if (results != null) {
-                    for (IContributionGroup group : entry.getValue()) {
+                    for (IContributionGroup group : entry.contributions) {
                         elts.addAll(group.getContributions(pattern, pattern.getCurrentBinding()));
                     }
+                    if (pattern.getCurrentType() != candidateType) {
+                        // the contributions have set a new delegate type, which the remaining pointcuts are matched against
+                        candidateType = pattern.getCurrentType();
+                        candidates = index.getCandidates(candidateType);
+                    }
+                }
+                if (stats != null) {
+                    stats.record(results != null, matched - start, results != null ? System.nanoTime() - matched : 0);
                 }
             }
         }
         return elts;
     }
     
-    public IStorage[] getAllContextKeys() {
+    private synchronized PointcutIndex getIndex() {
+        PointcutIndex result = index;
+        if (result == null) {
+            result = new PointcutIndex(pointcutContributionMap);
+            index = result;
+        }
+        return result;
+    }
+    
+    public synchronized IStorage[] getAllContextKeys() {
         return keyContextMap.keySet().toArray(new IStorage[0]);
     }
     
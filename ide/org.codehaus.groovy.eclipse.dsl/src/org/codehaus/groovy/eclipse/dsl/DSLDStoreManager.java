@@ -15,13 +15,17 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.codehaus.groovy.eclipse.dsl.lookup.SharedResolverCache;
+import org.codehaus.groovy.eclipse.dsl.script.DSLDScriptCache;
 import org.codehaus.jdt.groovy.model.GroovyNature;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IJavaProject;
 
@@ -34,6 +38,10 @@ public class DSLDStoreManager {
     
     private final Map<String, DSLDStore> projectDSLDMap;
     
+    private final Map<String, DSLDScriptCache> projectScriptCacheMap = new HashMap<String, DSLDScriptCache>();
+    
+    private final Map<String, SharedResolverCache> projectResolverCacheMap = new HashMap<String, SharedResolverCache>();
+    
     private final Set<String> inProgress = new HashSet<String>();
     
     public DSLDStoreManager() {
@@ -48,32 +56,114 @@ public class DSLDStoreManager {
     }
     
     public DSLDStore getDSLDStore(String projectName) {
-        DSLDStore contextStore = projectDSLDMap.get(projectName);
-        if (contextStore == null) {
-            contextStore = new DSLDStore();
-            projectDSLDMap.put(projectName, contextStore);
+        // scripts register their pointcuts from several threads at once
+        synchronized (projectDSLDMap) {
+            DSLDStore contextStore = projectDSLDMap.get(projectName);
+            if (contextStore == null) {
+                contextStore = new DSLDStore();
+                projectDSLDMap.put(projectName, contextStore);
+            }
+            return contextStore;
         }
-        return contextStore;
     }
     
     public void clearDSLDStore(IProject project) {
-        projectDSLDMap.remove(project.getName());
+        synchronized (projectDSLDMap) {
+            projectDSLDMap.remove(project.getName());
+        }
+        clearProjectCaches(project.getName());
     }
     
     public void clearDSLDStore(IJavaProject project) {
-        projectDSLDMap.remove(project.getElementName());
+        synchronized (projectDSLDMap) {
+            projectDSLDMap.remove(project.getElementName());
+        }
+        clearProjectCaches(project.getElementName());
     }
     
     public void reset() {
-        projectDSLDMap.clear();
+        synchronized (projectDSLDMap) {
+            projectDSLDMap.clear();
+        }
+        synchronized (projectScriptCacheMap) {
+            projectScriptCacheMap.clear();
+        }
+        synchronized (projectResolverCacheMap) {
+            projectResolverCacheMap.clear();
+        }
+    }
+    
+    /**
+     * @return the compiled DSLD scripts of the project and the class loader they share
+     */
+    public DSLDScriptCache getScriptCache(IProject project) {
+        synchronized (projectScriptCacheMap) {
+            DSLDScriptCache cache = projectScriptCacheMap.get(project.getName());
+            if (cache == null) {
+                cache = new DSLDScriptCache();
+                projectScriptCacheMap.put(project.getName(), cache);
+            }
+            return cache;
+        }
+    }
+    
+    private void clearProjectCaches(String projectName) {
+        synchronized (projectScriptCacheMap) {
+            projectScriptCacheMap.remove(projectName);
+        }
+        synchronized (projectResolverCacheMap) {
+            projectResolverCacheMap.remove(projectName);
+        }
+    }
+    
+    /**
+     * @return the types that DSLD type names have resolved to in the files of the project
+     */
+    public SharedResolverCache getSharedResolverCache(IProject project) {
+        synchronized (projectResolverCacheMap) {
+            SharedResolverCache cache = projectResolverCacheMap.get(project.getName());
+            if (cache == null) {
+                cache = new SharedResolverCache();
+                projectResolverCacheMap.put(project.getName(), cache);
+            }
+            return cache;
+        }
+    }
+    
+    /**
+     * Forgets the types that DSLD type names have resolved to, since the classpath of the project has changed
+     */
+    public void clearSharedResolverCache(IProject project) {
+        synchronized (projectResolverCacheMap) {
+            SharedResolverCache cache = projectResolverCacheMap.get(project.getName());
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+    
+    /**
+     * Forgets the declarations that contribution elements have built, since the scripts of the project have changed
+     */
+    public void clearSharedDeclarations(IProject project) {
+        synchronized (projectResolverCacheMap) {
+            SharedResolverCache cache = projectResolverCacheMap.get(project.getName());
+            if (cache != null) {
+                cache.clearDeclarations();
+            }
+        }
     }
 
     public boolean hasDSLDStoreFor(IProject project) {
-        return projectDSLDMap.containsKey(project.getName());
+        synchronized (projectDSLDMap) {
+            return projectDSLDMap.containsKey(project.getName());
+        }
     }
 
     public List<String> getAllStores() {
-        return new ArrayList<String>(projectDSLDMap.keySet());
+        synchronized (projectDSLDMap) {
+            return new ArrayList<String>(projectDSLDMap.keySet());
+        }
     }
     
     public void initializeAll(boolean synchronous) {
@@ -108,6 +198,37 @@ public class DSLDStoreManager {
         }
     }
     
+    /**
+     * Refreshes only the DSLD scripts that come from the given package fragment roots of each project, 
+     * for example after a jar was added to or removed from the classpath.  Scripts in the project 
+     * itself are kept up to date by the {@link DSLDResourceListener}.
+     * @param changedRoots the paths of the changed package fragment roots of each project
+     */
+    public void refresh(Map<IProject, Set<IPath>> changedRoots, boolean synchronous) {
+        Map<IProject, Set<IPath>> groovyProjects = new LinkedHashMap<IProject, Set<IPath>>();
+        List<IProject> uninitialized = new ArrayList<IProject>();
+        for (Map.Entry<IProject, Set<IPath>> entry : changedRoots.entrySet()) {
+            if (!hasDSLDStoreFor(entry.getKey())) {
+                // nothing to refresh yet, so initialize the store with all scripts
+                uninitialized.add(entry.getKey());
+            } else if (GroovyNature.hasGroovyNature(entry.getKey())) {
+                groovyProjects.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!uninitialized.isEmpty()) {
+            initialize(uninitialized, synchronous);
+        }
+        if (groovyProjects.isEmpty()) {
+            return;
+        }
+        Job refreshJob = new RefreshDSLDJob(groovyProjects);
+        refreshJob.setPriority(synchronous ? Job.INTERACTIVE : Job.LONG);
+        refreshJob.schedule();
+        if (synchronous) {
+            waitForFinish();
+        }
+    }
+    
     public void ensureInitialized(IProject project, boolean synchronous) {
         if (!hasDSLDStoreFor(project) && !isInProgress(project)) {
             initialize(project, synchronous);
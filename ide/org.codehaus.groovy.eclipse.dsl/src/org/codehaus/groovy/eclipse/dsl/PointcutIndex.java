@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.eclipse.dsl.contributions.IContributionGroup;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.AndPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.CurrentTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.OrPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.SubTypePointcut;
+
+/**
+ * An index over the pointcuts of a {@link DSLDStore} that finds the pointcuts which can possibly match a given current type
+ * without evaluating them. Most pointcuts start with <code>currentType("...")</code> or
+ * <code>currentType(subType("..."))</code>; the type names in there are known as soon as the pointcut is created, so each
+ * pointcut is filed under the names of the types it requires the current type (or one of its super types) to have. Pointcuts
+ * that do not require anything in particular, such as those that look at the enclosing method, are candidates for every type.
+ * <p>
+ * Pointcuts that only look at the file being inferred are already left out of the sub-store created for the file (see
+ * {@link DSLDStore#createSubStore(org.codehaus.groovy.eclipse.dsl.pointcuts.GroovyDSLDContext)}), so they are not indexed here.
+ * The index is immutable; the store creates a new one after it has changed.
+ */
+class PointcutIndex {
+
+    static class Entry {
+        final IPointcut pointcut;
+        final List<IContributionGroup> contributions;
+        // the unique name of the script that contributed the pointcut, see DSLDStore.toUniqueString
+        final String scriptName;
+        // where the cost of the pointcut is recorded, or null if profiling is off
+        private volatile DSLDProfiler.Stats stats;
+
+        Entry(IPointcut pointcut, List<IContributionGroup> contributions) {
+            this.pointcut = pointcut;
+            this.contributions = contributions;
+            this.scriptName = DSLDStore.toUniqueString(pointcut.getContainerIdentifier());
+            this.stats = DSLDProfiler.enabled ? DSLDProfiler.getStats(pointcut, scriptName) : null;
+        }
+
+        /**
+         * @return where to record the cost of the pointcut, or null if profiling is off
+         */
+        DSLDProfiler.Stats getStats() {
+            DSLDProfiler.Stats result = stats;
+            if (result != null && result.isStale()) {
+                // the profiler has been reset since the index was built
+                result = DSLDProfiler.getStats(pointcut, scriptName);
+                stats = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The names of the types that a pointcut requires as the current type or as one of its super types. A pointcut with no
+     * requirements is described by <code>null</code>.
+     */
+    private static class Requirement {
+        final Set<String> typeNames = new HashSet<String>();
+        final Set<String> superTypeNames = new HashSet<String>();
+
+        int size() {
+            return typeNames.size() + superTypeNames.size();
+        }
+    }
+
+    private final Entry[] entries;
+
+    private final BitSet unrestricted;
+
+    private final Map<String, BitSet> byTypeName = new HashMap<String, BitSet>();
+
+    private final Map<String, BitSet> bySuperTypeName = new HashMap<String, BitSet>();
+
+    PointcutIndex(Map<IPointcut, List<IContributionGroup>> pointcutContributionMap) {
+        entries = new Entry[pointcutContributionMap.size()];
+        unrestricted = new BitSet(entries.length);
+        int i = 0;
+        for (Map.Entry<IPointcut, List<IContributionGroup>> entry : pointcutContributionMap.entrySet()) {
+            entries[i] = new Entry(entry.getKey(), entry.getValue());
+            Requirement requirement = requirementOf(entry.getKey(), true);
+            if (requirement == null) {
+                unrestricted.set(i);
+            } else {
+                for (String name : requirement.typeNames) {
+                    file(byTypeName, name, i);
+                }
+                for (String name : requirement.superTypeNames) {
+                    file(bySuperTypeName, name, i);
+                }
+            }
+            i += 1;
+        }
+    }
+
+    private static void file(Map<String, BitSet> map, String name, int index) {
+        BitSet bits = map.get(name);
+        if (bits == null) {
+            bits = new BitSet();
+            map.put(name, bits);
+        }
+        bits.set(index);
+    }
+
+    Entry getEntry(int index) {
+        return entries[index];
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    /**
+     * @param currentType the current type, or null if it is not known
+     * @return the indices of the entries whose pointcuts may match the current type, in store order
+     */
+    BitSet getCandidates(ClassNode currentType) {
+        BitSet candidates = (BitSet) unrestricted.clone();
+        if (currentType == null) {
+            candidates.set(0, entries.length);
+            return candidates;
+        }
+        BitSet bits = byTypeName.get(currentType.getName());
+        if (bits != null) {
+            candidates.or(bits);
+        }
+        if (!bySuperTypeName.isEmpty()) {
+            Set<String> supers = new HashSet<String>();
+            getAllSuperNames(currentType, supers);
+            for (String name : supers) {
+                bits = bySuperTypeName.get(name);
+                if (bits != null) {
+                    candidates.or(bits);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * The same super types that {@link SubTypePointcut} matches against
+     */
+    private static void getAllSuperNames(ClassNode type, Set<String> names) {
+        if (type == null) {
+            return;
+        }
+        names.add(type.getName());
+        getAllSuperNames(type.getSuperClass(), names);
+        for (ClassNode inter : type.getAllInterfaces()) {
+            if (!inter.getName().equals(type.getName())) {
+                getAllSuperNames(inter, names);
+            }
+        }
+    }
+
+    /**
+     * @param isCurrentType true if the pointcut is matched against the current type
+     * @return what the pointcut requires of the current type in order to match, or null if that is not known
+     */
+    private static Requirement requirementOf(IPointcut pointcut, boolean isCurrentType) {
+        if (pointcut instanceof CurrentTypePointcut) {
+            // ignores what it is matched against and looks at the current type instead
+            Object arg = pointcut.getFirstArgument();
+            String name = typeName(arg);
+            if (name != null) {
+                Requirement requirement = new Requirement();
+                requirement.typeNames.add(name);
+                return requirement;
+            } else if (arg instanceof IPointcut) {
+                return requirementOf((IPointcut) arg, true);
+            }
+        } else if (pointcut instanceof SubTypePointcut && isCurrentType) {
+            String name = typeName(pointcut.getFirstArgument());
+            if (name != null) {
+                Requirement requirement = new Requirement();
+                requirement.superTypeNames.add(name);
+                return requirement;
+            }
+        } else if (pointcut instanceof AndPointcut) {
+            // every argument must match, so the most selective one will do
+            Requirement best = null;
+            for (Object arg : pointcut.getArgumentValues()) {
+                if (arg instanceof IPointcut) {
+                    Requirement requirement = requirementOf((IPointcut) arg, isCurrentType);
+                    if (requirement != null && (best == null || requirement.size() < best.size())) {
+                        best = requirement;
+                    }
+                }
+            }
+            return best;
+        } else if (pointcut instanceof OrPointcut) {
+            // one argument must match, so all of them must have requirements
+            Object[] args = pointcut.getArgumentValues();
+            if (args.length == 0) {
+                return null;
+            }
+            Requirement all = new Requirement();
+            for (Object arg : args) {
+                Requirement requirement = arg instanceof IPointcut ? requirementOf((IPointcut) arg, isCurrentType) : null;
+                if (requirement == null) {
+                    return null;
+                }
+                all.typeNames.addAll(requirement.typeNames);
+                all.superTypeNames.addAll(requirement.superTypeNames);
+            }
+            return all;
+        }
+        return null;
+    }
+
+    private static String typeName(Object arg) {
+        if (arg instanceof String) {
+            return (String) arg;
+        } else if (arg instanceof Class<?>) {
+            return ((Class<?>) arg).getName();
+        }
+        return null;
+    }
+}
@@ -11,10 +11,21 @@
 package org.codehaus.groovy.eclipse.dsl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.codehaus.groovy.eclipse.GroovyLogManager;
 import org.codehaus.groovy.eclipse.TraceCategory;
@@ -33,6 +44,7 @@ import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.MultiStatus;
@@ -42,6 +54,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJarEntryResource;
 import org.eclipse.jdt.core.IJavaModelStatusConstants;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
@@ -59,12 +72,27 @@ public class RefreshDSLDJob extends Job {
         private final IProject project;
         private final Set<IStorage> dsldFiles;
         private final Set<String> alreadyAdded; 
+        // null if all roots have changed and the project is searched as well
+        private final Set<IPath> changedRoots;
         
         
         public DSLDResourceVisitor(IProject project) {
+            this(project, null, Collections.<String>emptySet());
+        }
+        
+        /**
+         * Only searches the package fragment roots and not the project itself.  The roots are still searched
+         * in classpath order, so that the first script with a given name wins as in a full search, but only
+         * the changed roots are refreshed.
+         * @param changedRoots the paths of the roots that have changed, or null to search the project and refresh all roots
+         * @param knownNames names of the scripts in the project, which are already in the store and take precedence
+         */
+        public DSLDResourceVisitor(IProject project, Set<IPath> changedRoots, Collection<String> knownNames) {
             this.project = project;
-            this.dsldFiles = new HashSet<IStorage>();
-            alreadyAdded = new HashSet<String>();
+            // keep the scripts in the order they are found, which is the order they are executed in
+            this.dsldFiles = new LinkedHashSet<IStorage>();
+            this.changedRoots = changedRoots;
+            alreadyAdded = new HashSet<String>(knownNames);
         }
     
         public boolean visit(IResource resource) throws CoreException {
@@ -90,7 +118,9 @@ public class RefreshDSLDJob extends Job {
         public Set<IStorage> findFiles(IProgressMonitor monitor) {
             try {
                 // first look for files in the project
-                project.accept(this);
+                if (changedRoots == null) {
+                    project.accept(this);
+                }
 
                 // now look for files in class folders of the project
                 findDSLDsInLibraries(monitor);
@@ -114,6 +144,12 @@ public class RefreshDSLDJob extends Job {
                     throw new OperationCanceledException();
                 }
                 
+                if (changedRoots != null && isInProject(root)) {
+                    // kept up to date by the DSLDResourceListener
+                    continue;
+                }
+                boolean changed = changedRoots == null || changedRoots.contains(root.getPath());
+                
                 if (root.getKind() == IPackageFragmentRoot.K_BINARY ||
                         // GRECLIPSE-1458 must check source folders, but avoid source folders from same project
                         isSourceFolderFromOtherProject(root)) {
@@ -128,7 +164,7 @@ public class RefreshDSLDJob extends Job {
                             // external source roots return null for getResource, but do have a resource 
                             rootResource = ((ExternalPackageFragmentRoot) root).resource();
                         }
-                        if (rootResource != null) {
+                        if (rootResource != null && changed) {
                             try {
                                 rootResource.refreshLocal(IResource.DEPTH_INFINITE, monitor);
                                 root.close();
@@ -196,6 +232,11 @@ public class RefreshDSLDJob extends Job {
             }
         }
 
+        private boolean isInProject(IPackageFragmentRoot root) {
+            IResource resource = root.getResource();
+            return resource != null && resource.getProject().equals(project);
+        }
+
         private boolean isSourceFolderFromOtherProject(IPackageFragmentRoot root) {
             if (root.isReadOnly()) {
                 // not source folder
@@ -254,7 +295,16 @@ public class RefreshDSLDJob extends Job {
         }
     }
 
+    /**
+     * The most scripts that are executed at the same time.  Set <code>greclipse.dsldRefreshThreads</code> to 1
+     * to execute them one after the other.
+     */
+    public static int maxThreads = Integer.getInteger("greclipse.dsldRefreshThreads", 
+            Math.min(4, Runtime.getRuntime().availableProcessors())).intValue();
+
     private final List<IProject> projects;
+    // the paths of the changed package fragment roots of each project, or null to refresh everything
+    private final Map<IProject, Set<IPath>> changedRoots;
     private DSLDStoreManager contextStoreManager = GroovyDSLCoreActivator.getDefault().getContextStoreManager();
 
     /**
@@ -276,6 +326,17 @@ public class RefreshDSLDJob extends Job {
     public RefreshDSLDJob(List<IProject> projects) {
         super("Refresh DSLD scripts");
         this.projects = contextStoreManager.addInProgress(projects);
+        this.changedRoots = null;
+    }
+    
+    /**
+     * Only refreshes the scripts of the given package fragment roots.
+     * Use {@link DSLDStoreManager#refresh(Map, boolean)}.
+     */
+    RefreshDSLDJob(Map<IProject, Set<IPath>> changedRoots) {
+        super("Refresh DSLD scripts");
+        this.projects = contextStoreManager.addInProgress(new ArrayList<IProject>(changedRoots.keySet()));
+        this.changedRoots = changedRoots;
     }
     
     protected boolean isDSLD(IStorage file) {
@@ -365,7 +426,25 @@ public class RefreshDSLDJob extends Job {
             GroovyLogManager.manager.log(TraceCategory.DSL, "Purging old state");
         }
         DSLDStore store = GroovyDSLCoreActivator.getDefault().getContextStoreManager().getDSLDStore(project);
-        store.purgeAll();
+        Set<IPath> roots = changedRoots != null ? changedRoots.get(project) : null;
+        // the scripts of the project come first, so they are kept and hide the scripts of the roots with the same name
+        Set<String> knownNames = new HashSet<String>();
+        // the scripts of unchanged roots, which are kept unless a script of a changed root now hides them
+        Map<String, IStorage> keptScripts = new HashMap<String, IStorage>();
+        contextStoreManager.clearSharedDeclarations(project);
+        if (roots == null) {
+            store.purgeAll();
+        } else {
+            for (IStorage key : store.getAllContextKeys()) {
+                if (isInRoots(key, project, roots)) {
+                    store.purgeIdentifier(key);
+                } else if (key instanceof IFile && ((IFile) key).getProject().equals(project)) {
+                    knownNames.add(key.getName());
+                } else {
+                    keptScripts.put(DSLDStore.toUniqueString(key), key);
+                }
+            }
+        }
         
         if (monitor.isCanceled()) {
             return Status.CANCEL_STATUS;
@@ -376,7 +455,7 @@ public class RefreshDSLDJob extends Job {
         if (GroovyLogManager.manager.hasLoggers()) {
             GroovyLogManager.manager.log(TraceCategory.DSL, "Finding inferencing DSL scripts");
         }
-        Set<IStorage> findDSLDFiles = new DSLDResourceVisitor(project).findFiles(monitor);
+        Set<IStorage> findDSLDFiles = new DSLDResourceVisitor(project, roots, knownNames).findFiles(monitor);
         
         if (monitor.isCanceled()) {
             return Status.CANCEL_STATUS;
@@ -384,22 +463,26 @@ public class RefreshDSLDJob extends Job {
         monitor.worked(1);
         
         // now add the rest
+        List<IStorage> scripts = new ArrayList<IStorage>(findDSLDFiles.size());
         for (IStorage file : findDSLDFiles) {
-            if (GroovyLogManager.manager.hasLoggers()) {
-                GroovyLogManager.manager.log(TraceCategory.DSL, "Processing " + file.getName() + " in project " + project.getName());
-            }
-            monitor.subTask("Processing " + file.getName() + " in project " + project.getName());
-            
             if (isDSLD(file)) {
-                DSLDScriptExecutor executor = new DSLDScriptExecutor(JavaCore.create(project));
-                executor.executeScript(file);
+                if (keptScripts.remove(DSLDStore.toUniqueString(file)) == null) {
+                    scripts.add(file);
+                }
             } else if (isSuggestionFile(file)) {
+                if (GroovyLogManager.manager.hasLoggers()) {
+                    GroovyLogManager.manager.log(TraceCategory.DSL, "Processing " + file.getName() + " in project " + project.getName());
+                }
                 new SuggestionsLoader((IFile)file).loadExistingSuggestions();
             }
-             
-            if (monitor.isCanceled()) {
-                return Status.CANCEL_STATUS;
-            }
+        }
+        // a kept script that was not found again is hidden by a script with the same name that comes earlier on the classpath
+        for (IStorage hidden : keptScripts.values()) {
+            store.purgeIdentifier(hidden);
+        }
+        monitor.subTask("Processing " + scripts.size() + " DSLD files in project " + project.getName());
+        if (!executeScripts(project, scripts, monitor)) {
+            return Status.CANCEL_STATUS;
         }
         monitor.worked(6);
         
@@ -410,6 +493,113 @@ public class RefreshDSLDJob extends Job {
         return Status.OK_STATUS;
     }
     
+    /**
+     * @return true if the script comes from one of the given roots and not from the project itself
+     */
+    private static boolean isInRoots(IStorage script, IProject project, Set<IPath> roots) {
+        IPath rootPath;
+        if (script instanceof IJarEntryResource) {
+            rootPath = ((IJarEntryResource) script).getPackageFragmentRoot().getPath();
+        } else if (script instanceof IFile) {
+            if (((IFile) script).getProject().equals(project)) {
+                return false;
+            }
+            rootPath = script.getFullPath();
+        } else {
+            return false;
+        }
+        for (IPath root : roots) {
+            if (root.isPrefixOf(rootPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes the scripts on up to {@link #maxThreads} threads.  The pointcuts of each script are collected
+     * while it runs and are only added to the store of the project once all scripts have finished, in the
+     * order of the scripts, so that contributions are found in the same order as after a sequential refresh.
+     * @return false if the monitor was canceled
+     */
+    private boolean executeScripts(final IProject project, List<IStorage> scripts, IProgressMonitor monitor) {
+        int threads = Math.min(maxThreads, scripts.size());
+        if (threads <= 1) {
+            for (IStorage script : scripts) {
+                executeScript(project, script);
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DSLD refresh " + project.getName() + " " + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            final DSLDStore[] collected = new DSLDStore[scripts.size()];
+            List<Future<?>> results = new ArrayList<Future<?>>(scripts.size());
+            for (int i = 0; i < scripts.size(); i++) {
+                final int index = i;
+                final IStorage script = scripts.get(i);
+                results.add(pool.submit(new Runnable() {
+                    public void run() {
+                        collected[index] = DSLDStore.startCollecting();
+                        try {
+                            executeScript(project, script);
+                        } finally {
+                            DSLDStore.stopCollecting();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                while (true) {
+                    if (monitor.isCanceled()) {
+                        pool.shutdownNow();
+                        return false;
+                    }
+                    try {
+                        result.get(100, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        // check for cancellation and keep waiting
+                    } catch (ExecutionException e) {
+                        GroovyDSLCoreActivator.logException(e.getCause());
+                        break;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        pool.shutdownNow();
+                        return false;
+                    }
+                }
+            }
+            // every future has completed, so the collected stores are visible here
+            DSLDStore store = contextStoreManager.getDSLDStore(project);
+            for (DSLDStore pointcuts : collected) {
+                if (pointcuts != null) {
+                    store.addAll(pointcuts);
+                }
+            }
+            return true;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void executeScript(IProject project, IStorage script) {
+        if (GroovyLogManager.manager.hasLoggers()) {
+            GroovyLogManager.manager.log(TraceCategory.DSL, "Processing " + script.getName() + " in project " + project.getName());
+        }
+        new DSLDScriptExecutor(JavaCore.create(project)).executeScript(script);
+    }
+    
     @Override
     public boolean belongsTo(Object family) {
         return family == RefreshDSLDJob.class;
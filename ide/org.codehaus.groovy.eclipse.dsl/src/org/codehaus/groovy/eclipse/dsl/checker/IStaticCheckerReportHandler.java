@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.checker;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * A handler that is also told when the checking of each file is done and how long it took.  Files that can not be checked
+ * are passed on to the handler as well, and checking goes on with the next file.
+ */
+public interface IStaticCheckerReportHandler extends IStaticCheckerHandler {
+
+    /**
+     * Called after all problems of the file have been passed on to the handler
+     * @param resource the file set with the last call to {@link #setResource(IFile)}
+     * @param elapsedNanos how long it took to check the file
+     * @param error why the file could not be checked, or null if it was checked
+     */
+    void handleResourceEnd(IFile resource, long elapsedNanos, Throwable error);
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.checker;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.codehaus.groovy.ast.ASTNode;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jface.text.Position;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Writes the results of static checking as a JSON or JUnit XML report.  Each file is written out as soon as it has been
+ * checked, together with how long that took, so a partial report is available while a long check is still running.  The
+ * report ends with the number of files, problems and errors and the overall throughput, which is also printed to sysout.
+ * <p>
+ * In a JUnit report every file is a test suite with a single test case that fails if the file has problems, so that CI
+ * servers show the problems per file.
+ */
+public class ReportStaticCheckerHandler implements IStaticCheckerReportHandler {
+
+    public enum Format {
+        JSON, JUNIT;
+
+        /**
+         * @return the format with the given name (case is ignored), or null if there is none
+         */
+        public static Format fromName(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final PrintStream out;
+
+    private final Format format;
+
+    // problems of the file being checked, already formatted for the report
+    private final List<String> problems = new ArrayList<String>();
+
+    private final long startNanos = System.nanoTime();
+
+    private int numFiles = 0;
+    private int numProblems = 0;
+    private int numErrors = 0;
+    private long checkNanos = 0;
+
+    public ReportStaticCheckerHandler(PrintStream out, Format format) {
+        this.out = out;
+        this.format = format;
+        if (format == Format.JSON) {
+            out.println("{");
+            out.println("  \"files\": [");
+        } else {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            out.println("<testsuites>");
+        }
+    }
+
+    public void setResource(IFile resource) {
+        problems.clear();
+    }
+
+    public void handleResourceStart(IResource resource) throws CoreException {
+        // do nothing
+    }
+
+    public void handleUnknownReference(ASTNode node, Position position, int line) {
+        if (format == Format.JSON) {
+            problems.add("{\"line\": " + line + ", \"kind\": \"unknown\", \"text\": " + json(node.getText()) + "}");
+        } else {
+            problems.add("Line " + line + ": unknown type: " + node.getText());
+        }
+        numProblems++;
+    }
+
+    public void handleTypeAssertionFailed(ASTNode node, String expectedType, String actualType, Position position, int line) {
+        if (format == Format.JSON) {
+            problems.add("{\"line\": " + line + ", \"kind\": \"assertion\", \"text\": " + json(node.getText()) + ", \"expected\": "
+                    + json(expectedType) + ", \"actual\": " + json(actualType) + "}");
+        } else {
+            problems.add("Line " + line + ": Invalid inferred type.  " + node.getText() + "  Expected: " + expectedType + " Actual: "
+                    + actualType);
+        }
+        numProblems++;
+    }
+
+    public void handleResourceEnd(IFile resource, long elapsedNanos, Throwable error) {
+        checkNanos += elapsedNanos;
+        if (error != null) {
+            numErrors++;
+        }
+        String path = resource.getFullPath().toString();
+        if (format == Format.JSON) {
+            out.print(numFiles == 0 ? "    " : ",\n    ");
+            out.print("{\"path\": " + json(path) + ", \"millis\": " + millis(elapsedNanos));
+            if (error != null) {
+                out.print(", \"error\": " + json(String.valueOf(error)));
+            }
+            out.print(", \"problems\": [");
+            for (int i = 0; i < problems.size(); i++) {
+                out.print(i == 0 ? "\n      " : ",\n      ");
+                out.print(problems.get(i));
+            }
+            out.print(problems.isEmpty() ? "]}" : "\n    ]}");
+        } else {
+            String seconds = seconds(elapsedNanos);
+            out.println("  <testsuite name=" + xml(path) + " tests=\"1\" failures=\"" + (problems.isEmpty() ? 0 : 1) + "\" errors=\""
+                    + (error == null ? 0 : 1) + "\" time=\"" + seconds + "\">");
+            out.println("    <testcase classname=" + xml(toClassName(resource)) + " name=\"typeCheck\" time=\"" + seconds + "\">");
+            if (!problems.isEmpty()) {
+                out.print("      <failure message=" + xml(problems.size() + (problems.size() == 1 ? " type checking problem" : " type checking problems")) + ">");
+                for (String problem : problems) {
+                    out.print(xmlText(problem));
+                    out.print('\n');
+                }
+                out.println("</failure>");
+            }
+            if (error != null) {
+                out.println("      <error message=" + xml(String.valueOf(error)) + "/>");
+            }
+            out.println("    </testcase>");
+            out.println("  </testsuite>");
+        }
+        // let whoever watches the report see the file right away
+        out.flush();
+        problems.clear();
+        numFiles++;
+    }
+
+    public int numProblemsFound() {
+        return numProblems;
+    }
+
+    public boolean finish(Shell shell) {
+        long wallNanos = System.nanoTime() - startNanos;
+        String filesPerSecond = String.format(Locale.US, "%.1f", numFiles / Math.max(wallNanos / 1e9, 1e-9));
+        if (format == Format.JSON) {
+            out.println(numFiles == 0 ? "  ]," : "\n  ],");
+            out.println("  \"summary\": {\"files\": " + numFiles + ", \"problems\": " + numProblems + ", \"errors\": " + numErrors
+                    + ", \"millis\": " + millis(wallNanos) + ", \"checkMillis\": " + millis(checkNanos) + ", \"filesPerSecond\": "
+                    + filesPerSecond + "}");
+            out.println("}");
+        } else {
+            out.println("  <!-- " + numFiles + " files, " + numProblems + " problems, " + numErrors + " errors, " + seconds(wallNanos)
+                    + "s, " + filesPerSecond + " files/s -->");
+            out.println("</testsuites>");
+        }
+        String message = (numProblems == 0 && numErrors == 0 ? "SUCCESS" : "FAILURE") + " checked " + numFiles + " files in "
+                + seconds(wallNanos) + "s (" + filesPerSecond + " files/s, " + seconds(checkNanos) + "s spent checking), found "
+                + numProblems + " type checking problems and " + numErrors + " errors";
+        if (out != System.out) {
+            out.close();
+        }
+        System.out.println(message);
+        return numProblems == 0 && numErrors == 0;
+    }
+
+    private static String toClassName(IFile resource) {
+        String path = resource.getProjectRelativePath().removeFileExtension().toString();
+        return resource.getProject().getName() + "." + path.replace('/', '.');
+    }
+
+    private static String millis(long nanos) {
+        return String.valueOf(nanos / 1000000);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1e9);
+    }
+
+    private static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+    /**
+     * @return the value as a quoted attribute value
+     */
+    private static String xml(String value) {
+        return "\"" + xmlText(value).replace("\"", "&quot;") + "\"";
+    }
+
+    private static String xmlText(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                default:
+                    // characters that are not allowed in XML 1.0
+                    sb.append(c < 0x20 && c != '\n' && c != '\r' && c != '\t' ? ' ' : c);
+            }
+        }
+        return sb.toString();
+    }
+}
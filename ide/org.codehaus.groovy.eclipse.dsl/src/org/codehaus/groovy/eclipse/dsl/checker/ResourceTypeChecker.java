@@ -15,13 +15,24 @@
  */
 package org.codehaus.groovy.eclipse.dsl.checker;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.Comment;
+import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
 import org.codehaus.jdt.groovy.model.GroovyNature;
 import org.eclipse.core.resources.IFile;
@@ -38,9 +49,17 @@ import org.eclipse.jdt.groovy.core.util.ContentTypeUtils;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorFactory;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
 import org.eclipse.jdt.internal.core.util.Util;
+import org.eclipse.jface.text.Position;
+import org.eclipse.swt.widgets.Shell;
 
 /**
- * Performs static checking on all groovy files contained in the resource passed in
+ * Performs static checking on all groovy files contained in the resource passed in.
+ * <p>
+ * By default the files are checked one after the other.  When more than one thread is set with {@link #setThreads(int)},
+ * the files are first collected and then checked concurrently by a pool of workers.  Each file gets its own inferencing
+ * visitor and requestor, and the problems found in it are collected by the worker and passed on to the handler from the 
+ * calling thread once the file is done, so the handler does not need to be thread safe.  Files are passed on in the order 
+ * in which they were found, so the handler sees the same results in the same order as when checking one file at a time.
  * @author andrew
  * @created Aug 29, 2011
  */
@@ -48,9 +67,17 @@ public class ResourceTypeChecker {
     
     class CheckerVisitor implements IResourceVisitor {
         private IProgressMonitor monitor;
+        
+        // if not null, units to check are collected here instead of being checked right away
+        private final List<GroovyCompilationUnit> units;
 
         CheckerVisitor(IProgressMonitor monitor) {
+            this(monitor, null);
+        }
+
+        CheckerVisitor(IProgressMonitor monitor, List<GroovyCompilationUnit> units) {
             this.monitor = monitor;
+            this.units = units;
         }
 
         public boolean visit(IResource resource) throws CoreException {
@@ -70,56 +97,105 @@ public class ResourceTypeChecker {
                     if (monitor.isCanceled()) {
                         throw new OperationCanceledException();
                     }
+                    if (units != null) {
+                        units.add(unit);
+                        return true;
+                    }
                     monitor.subTask(resource.getName());
                     handler.setResource((IFile) resource);
-                    Map<Integer, String> commentsMap = findComments(unit);
-                    StaticTypeCheckerRequestor requestor = new StaticTypeCheckerRequestor(handler, commentsMap, onlyAssertions);
-                    TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
+                    long start = System.nanoTime();
+                    Exception error = null;
                     try {
-                        unit.becomeWorkingCopy(monitor);
-                        visitor.visitCompilationUnit(requestor);
-                    } finally {
-                        unit.discardWorkingCopy();
+                        checkUnit(unit, handler, monitor);
+                    } catch (OperationCanceledException e) {
+                        throw e;
+                    } catch (CoreException e) {
+                        error = e;
+                    } catch (RuntimeException e) {
+                        error = e;
+                    }
+                    if (handler instanceof IStaticCheckerReportHandler) {
+                        // a report records the failure and goes on with the next file
+                        ((IStaticCheckerReportHandler) handler).handleResourceEnd((IFile) resource, System.nanoTime() - start, error);
+                    } else if (error instanceof CoreException) {
+                        throw (CoreException) error;
+                    } else if (error != null) {
+                        throw (RuntimeException) error;
                     }
                 }
             }
             return true;
         }
+    }
 
-        private Map<Integer, String> findComments(GroovyCompilationUnit unit) {
-            List<Comment> comments = unit.getModuleNode().getContext().getComments();
-            Map<Integer, String> allComments = new HashMap<Integer, String>(comments.size());
-            for (Comment comment : comments) {
-                StringTokenizer stok = new StringTokenizer(comment.toString());
-                String type = null;
-                if (stok.hasMoreTokens()) {
-                    // consume the comment start
-                    String val = stok.nextToken();
-                    int typeIndex = val.indexOf("TYPE:");
-                    if (typeIndex > 0) {
-                        type = val.substring(typeIndex + "TYPE:".length());
-                        if (type.length() == 0) {
-                            type = null;
-                        }
-                    }
-                }
-                String candidate;
-                if (stok.hasMoreTokens() && (candidate = stok.nextToken()).startsWith("TYPE:")) {
-                    // may or may not have a space after the colon
-                    if (candidate.equals("TYPE:")) {
-                        if (stok.hasMoreTokens()) {
-                            type = stok.nextToken();
-                        }
-                    } else {
-                        String[] split = candidate.split("\\:");
-                        type = split[1];
-                    }
-                }
-                if (type != null) {
-                    allComments.put(comment.sline, type);
+    private static class Problem {
+        final ASTNode node;
+        // null for unknown references
+        final String expectedType;
+        final String actualType;
+        final Position position;
+        final int line;
+
+        Problem(ASTNode node, String expectedType, String actualType, Position position, int line) {
+            this.node = node;
+            this.expectedType = expectedType;
+            this.actualType = actualType;
+            this.position = position;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Collects what a worker found in one file, until it can be passed on to the real handler
+     */
+    private static class FileResult implements IStaticCheckerHandler {
+        final IFile file;
+        final List<Problem> problems = new ArrayList<Problem>();
+        long elapsedNanos;
+        Throwable error;
+
+        FileResult(IFile file) {
+            this.file = file;
+        }
+
+        public void handleUnknownReference(ASTNode node, Position position, int line) {
+            problems.add(new Problem(node, null, null, position, line));
+        }
+
+        public void handleTypeAssertionFailed(ASTNode node, String expectedType, String actualType, Position position, int line) {
+            problems.add(new Problem(node, expectedType, actualType, position, line));
+        }
+
+        void replay(IStaticCheckerHandler handler) {
+            handler.setResource(file);
+            for (Problem problem : problems) {
+                if (problem.expectedType == null) {
+                    handler.handleUnknownReference(problem.node, problem.position, problem.line);
+                } else {
+                    handler.handleTypeAssertionFailed(problem.node, problem.expectedType, problem.actualType, problem.position, problem.line);
                 }
             }
-            return allComments;
+            if (handler instanceof IStaticCheckerReportHandler) {
+                ((IStaticCheckerReportHandler) handler).handleResourceEnd(file, elapsedNanos, error);
+            } else if (error != null) {
+                GroovyDSLCoreActivator.logException(error);
+            }
+        }
+
+        public void setResource(IFile resource) {
+            // only ever one resource
+        }
+
+        public int numProblemsFound() {
+            return problems.size();
+        }
+
+        public void handleResourceStart(IResource resource) {
+            // only called while collecting
+        }
+
+        public boolean finish(Shell shell) {
+            return problems.isEmpty();
         }
     }
     
@@ -130,6 +206,8 @@ public class ResourceTypeChecker {
     protected final char[][] includes;
     protected final char[][] excludes;
     
+    private int threads = 1;
+    
     public ResourceTypeChecker(IStaticCheckerHandler handler, String projectName, char[][] includes, char[][] excludes, boolean onlyAssertions) {
         this(handler, createProject(projectName), includes, excludes, onlyAssertions);
     }
@@ -142,6 +220,13 @@ public class ResourceTypeChecker {
         this.onlyAssertions = onlyAssertions;
     }
 
+    /**
+     * @param threads the number of files to check at the same time, 1 (the default) to check them one after the other
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
     private static List<IResource> createProject(String projectName) {
         IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject(projectName);
         if (!GroovyNature.hasGroovyNature(project)) {
@@ -160,6 +245,9 @@ public class ResourceTypeChecker {
         if (monitor == null) {
             monitor = new NullProgressMonitor();
         }
+        if (threads > 1) {
+            return doCheckInParallel(monitor);
+        }
         monitor.beginTask("Static type analysis", resources.size());
         for (IResource resource : resources) {
             if (monitor.isCanceled()) {
@@ -171,4 +259,124 @@ public class ResourceTypeChecker {
         }
         return handler.finish(null);
     }
+
+    private boolean doCheckInParallel(IProgressMonitor monitor) throws CoreException {
+        List<GroovyCompilationUnit> units = new ArrayList<GroovyCompilationUnit>();
+        for (IResource resource : resources) {
+            if (monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            resource.accept(new CheckerVisitor(monitor, units));
+        }
+        monitor.beginTask("Static type analysis", units.size());
+        
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, units.size())), new ThreadFactory() {
+            private int count = 0;
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Static type checker " + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<FileResult>> results = new ArrayList<Future<FileResult>>(units.size());
+            for (final GroovyCompilationUnit unit : units) {
+                results.add(pool.submit(new Callable<FileResult>() {
+                    public FileResult call() {
+                        FileResult result = new FileResult((IFile) unit.getResource());
+                        long start = System.nanoTime();
+                        try {
+                            checkUnit(unit, result, new NullProgressMonitor());
+                        } catch (Throwable e) {
+                            result.error = e;
+                        }
+                        result.elapsedNanos = System.nanoTime() - start;
+                        return result;
+                    }
+                }));
+            }
+            for (Future<FileResult> future : results) {
+                FileResult result = null;
+                while (result == null) {
+                    if (monitor.isCanceled()) {
+                        pool.shutdownNow();
+                        throw new OperationCanceledException();
+                    }
+                    try {
+                        result = future.get(100, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        // check for cancellation again
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        pool.shutdownNow();
+                        throw new OperationCanceledException();
+                    } catch (ExecutionException e) {
+                        // the task itself catches everything
+                        GroovyDSLCoreActivator.logException(e.getCause());
+                        break;
+                    }
+                }
+                if (result != null) {
+                    monitor.subTask(result.file.getName());
+                    result.replay(handler);
+                }
+                monitor.worked(1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return handler.finish(null);
+    }
+
+    /**
+     * Checks a single file, reporting what it finds to the given handler.  Each call uses its own inferencing
+     * visitor and requestor, so different files can be checked at the same time.
+     */
+    private void checkUnit(GroovyCompilationUnit unit, IStaticCheckerHandler fileHandler, IProgressMonitor monitor) throws CoreException {
+        Map<Integer, String> commentsMap = findComments(unit);
+        StaticTypeCheckerRequestor requestor = new StaticTypeCheckerRequestor(fileHandler, commentsMap, onlyAssertions);
+        TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
+        try {
+            unit.becomeWorkingCopy(monitor);
+            visitor.visitCompilationUnit(requestor);
+        } finally {
+            unit.discardWorkingCopy();
+        }
+    }
+
+    private Map<Integer, String> findComments(GroovyCompilationUnit unit) {
+        List<Comment> comments = unit.getModuleNode().getContext().getComments();
+        Map<Integer, String> allComments = new HashMap<Integer, String>(comments.size());
+        for (Comment comment : comments) {
+            StringTokenizer stok = new StringTokenizer(comment.toString());
+            String type = null;
+            if (stok.hasMoreTokens()) {
+                // consume the comment start
+                String val = stok.nextToken();
+                int typeIndex = val.indexOf("TYPE:");
+                if (typeIndex > 0) {
+                    type = val.substring(typeIndex + "TYPE:".length());
+                    if (type.length() == 0) {
+                        type = null;
+                    }
+                }
+            }
+            String candidate;
+            if (stok.hasMoreTokens() && (candidate = stok.nextToken()).startsWith("TYPE:")) {
+                // may or may not have a space after the colon
+                if (candidate.equals("TYPE:")) {
+                    if (stok.hasMoreTokens()) {
+                        type = stok.nextToken();
+                    }
+                } else {
+                    String[] split = candidate.split("\\:");
+                    type = split[1];
+                }
+            }
+            if (type != null) {
+                allComments.put(comment.sline, type);
+            }
+        }
+        return allComments;
+    }
 }
@@ -72,8 +72,10 @@ public class StaticCheckerApplication implements IApplication {
             System.out.println("Performing static type checking on project " + projectName);
             boolean success = false;
             try {
-                IStaticCheckerHandler handler = new SysoutStaticCheckerHandler(resultFile == null ? System.out : createOutStream(resultFile));
+                PrintStream out = resultFile == null ? System.out : createOutStream(resultFile);
+                IStaticCheckerHandler handler = reportFormat == null ? new SysoutStaticCheckerHandler(out) : new ReportStaticCheckerHandler(out, reportFormat);
                 ResourceTypeChecker checker = new ResourceTypeChecker(handler, projectName, inclusionFilters, exclusionFilters, assertionsOnly);
+                checker.setThreads(threads);
                 success = checker.doCheck(null);
             } catch (Exception e) {
                 e.printStackTrace();
@@ -127,6 +129,8 @@ public class StaticCheckerApplication implements IApplication {
     private String projectFolderPath;
     Display display;
     private String resultFile;
+    private ReportStaticCheckerHandler.Format reportFormat;
+    private int threads = 1;
     
     public Object start(IApplicationContext context) throws Exception {
         processCommandLine((String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS));
@@ -255,6 +259,34 @@ public class StaticCheckerApplication implements IApplication {
                     break;
                 }
                 resultFile = args[++i];
+            } else if (arg.equals("--report_format")) {
+                if (i == args.length-1) {
+                    System.err.println("Missing --report_format argument");
+                    doHelp = true;
+                    break;
+                }
+                reportFormat = ReportStaticCheckerHandler.Format.fromName(args[++i]);
+                if (reportFormat == null) {
+                    System.err.println("Invalid --report_format argument: " + args[i]);
+                    doHelp = true;
+                    break;
+                }
+            } else if (arg.equals("--threads")) {
+                if (i == args.length-1) {
+                    System.err.println("Missing --threads argument");
+                    doHelp = true;
+                    break;
+                }
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    System.err.println("Invalid --threads argument: " + args[i]);
+                    doHelp = true;
+                    break;
+                }
             }
         }
         
@@ -285,7 +317,7 @@ public class StaticCheckerApplication implements IApplication {
         }
         
         System.out.println("Usage:");
-        System.out.println("eclipse -application org.codehause.groovy.eclipse.staticCheck [--help] [-h] [--extra_dslds <FILES>] [--assertions_only] [--excludes <PATH>] [--includes <PATH>] [--project_path <PATH>] <PROJECT_NAME>");
+        System.out.println("eclipse -application org.codehause.groovy.eclipse.staticCheck [--help] [-h] [--extra_dslds <FILES>] [--assertions_only] [--excludes <PATH>] [--includes <PATH>] [--project_path <PATH>] [--result_file <FILE>] [--report_format <json|junit>] [--threads <N>] <PROJECT_NAME>");
         System.out.println("where:");
         System.out.println("\t--help OR -h  Print this message and exit.");
         System.out.println("\t--extra_dslds  list of extra dsld files to be included in this check.  Use '|' as a file separator.");
@@ -294,6 +326,8 @@ public class StaticCheckerApplication implements IApplication {
         System.out.println("\t--includes  Project-relative inclusion filters.");
         System.out.println("\t--project_path  File system path to the project to check (only required if project is not already in workspace).");
         System.out.println("\t--result_file  File to send static checking results to.  If not specified, then results sent to sysout.");
+        System.out.println("\t--report_format  Write results as a 'json' or 'junit' XML report with the time taken per file, instead of as plain text.");
+        System.out.println("\t--threads  Number of files to check at the same time.  Defaults to 1.");
         System.out.println("\t<PROJECT_NAME>  Name of a project to type check.  If not already in workspace, then must also use '--project_path'.");
         System.out.println();
         System.out.println("Ant style filters are allowed.  Eg, src/org/codehaus/groovy/**/*.groovy means all files with groovy extensions in the org.codehaus.groovy package or below will be ex/included   Filters can be concentenated using '|'.");
@@ -36,6 +36,7 @@ import org.codehaus.groovy.eclipse.codeassist.proposals.GroovyNamedArgumentPropo
 import org.codehaus.groovy.eclipse.codeassist.proposals.IGroovyProposal;
 import org.codehaus.groovy.eclipse.codeassist.proposals.ProposalFormattingOptions;
 import org.codehaus.groovy.eclipse.dsl.lookup.ResolverCache;
+import org.codehaus.groovy.eclipse.dsl.lookup.SharedResolverCache;
 import org.eclipse.jdt.groovy.search.AbstractSimplifiedTypeLookup.TypeAndDeclaration;
 import org.eclipse.jdt.groovy.search.VariableScope;
 
@@ -63,6 +64,8 @@ public class MethodContributionElement implements IContributionElement {
     
     private final String provider;
     private final String doc;
+    // everything the method is built from, other than the type the element is applied to
+    private final String declarationKey;
     
     
     private ClassNode cachedDeclaringType;
@@ -96,19 +99,66 @@ public class MethodContributionElement implements IContributionElement {
         
         this.provider = provider == null ? GROOVY_DSL_PROVIDER : provider;
         this.doc = doc == null ? NO_DOC + this.provider : doc;
-        
+        this.declarationKey = "method " + toString() + Arrays.toString(namedParams) + Arrays.toString(optionalParams) + noParens 
+                + "\n" + this.doc;
     }
     
     public TypeAndDeclaration lookupType(String name, ClassNode declaringType, ResolverCache resolver) {
         if (name.equals(methodName))
-            return new TypeAndDeclaration(ensureReturnType(resolver), toMethod(declaringType, resolver),
-                    ensureDeclaringType(declaringType, resolver), doc);
+            return resolve(declaringType, resolver);
         else
             return null;
     }
 
+    /**
+     * Builds the method, or gets it from the resolver if an element with the same signature has built it before.
+     * Elements are created again every time their group runs, so the resolver keeps the methods: those built from
+     * the types of the file for the file, and those built only from types on the classpath for the whole project.
+     */
+    private TypeAndDeclaration resolve(ClassNode lexicalDeclaringType, ResolverCache resolver) {
+        // the lexical type is only known by its name, so it must not have type arguments
+        boolean cacheable = resolver != null && (declaringType != null || lexicalDeclaringType.getGenericsTypes() == null);
+        String appliedTo = declaringType == null ? lexicalDeclaringType.getName() : null;
+        if (cacheable) {
+            TypeAndDeclaration cached = resolver.getDeclaration(declarationKey, appliedTo);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MethodNode method = toMethod(lexicalDeclaringType, resolver);
+        TypeAndDeclaration result = new TypeAndDeclaration(ensureReturnType(resolver), method, 
+                ensureDeclaringType(lexicalDeclaringType, resolver), doc);
+        if (cacheable) {
+            resolver.putDeclaration(declarationKey, appliedTo, result, isShareable(method));
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the method is only built from types that every file of the project resolves the same way
+     */
+    private boolean isShareable(MethodNode method) {
+        if (!SharedResolverCache.isShareable(method.getDeclaringClass())
+                || !SharedResolverCache.isShareable(method.getReturnType())) {
+            return false;
+        }
+        Parameter[][] allParameters = { cachedRegularParameters, cachedNamedParameters, cachedOptionalParameters };
+        for (Parameter[] parameters : allParameters) {
+            for (Parameter parameter : parameters) {
+                if (!SharedResolverCache.isShareable(parameter.getType())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private MethodNode getMethod(ClassNode declaringType, ResolverCache resolver) {
+        return resolver == null ? toMethod(declaringType, resolver) : (MethodNode) resolve(declaringType, resolver).declaration;
+    }
+
     public IGroovyProposal toProposal(ClassNode declaringType, ResolverCache resolver) {
-        GroovyMethodProposal groovyMethodProposal = new GroovyMethodProposal(toMethod(declaringType.redirect(), resolver), provider, options);
+        GroovyMethodProposal groovyMethodProposal = new GroovyMethodProposal(getMethod(declaringType.redirect(), resolver), provider, options);
         groovyMethodProposal.setUseNamedArguments(useNamedArgs);
         groovyMethodProposal.setNoParens(noParens);
         groovyMethodProposal.setRelevanceMultiplier(relevanceMultiplier);
@@ -127,7 +177,7 @@ public class MethodContributionElement implements IContributionElement {
         
         List<IGroovyProposal> extraProposals = new ArrayList<IGroovyProposal>(availableParams.size());
         for (Entry<String, ClassNode> available : availableParams.entrySet()) {
-            extraProposals.add(new GroovyNamedArgumentProposal(available.getKey(), available.getValue(), toMethod(declaringType.redirect(), resolver), provider));
+            extraProposals.add(new GroovyNamedArgumentProposal(available.getKey(), available.getValue(), getMethod(declaringType.redirect(), resolver), provider));
         }
         return extraProposals;
     }
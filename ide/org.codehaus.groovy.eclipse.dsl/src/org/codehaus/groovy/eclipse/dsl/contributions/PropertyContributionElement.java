@@ -23,6 +23,7 @@ import org.codehaus.groovy.eclipse.codeassist.ProposalUtils;
 import org.codehaus.groovy.eclipse.codeassist.proposals.GroovyPropertyProposal;
 import org.codehaus.groovy.eclipse.codeassist.proposals.IGroovyProposal;
 import org.codehaus.groovy.eclipse.dsl.lookup.ResolverCache;
+import org.codehaus.groovy.eclipse.dsl.lookup.SharedResolverCache;
 import org.eclipse.jdt.groovy.search.AbstractSimplifiedTypeLookup.TypeAndDeclaration;
 
 /**
@@ -44,6 +45,8 @@ public class PropertyContributionElement implements IContributionElement {
     
     private final String provider;
     private final String doc;
+    // everything the property is built from, other than the type the element is applied to
+    private final String declarationKey;
 
     private final int relevanceMultiplier;
 
@@ -60,17 +63,43 @@ public class PropertyContributionElement implements IContributionElement {
         
         this.provider = provider == null ? GROOVY_DSL_PROVIDER : provider;
         this.doc = doc == null ? NO_DOC + this.provider : doc;
+        this.declarationKey = "property " + toString() + "\n" + this.doc;
     }
 
     public IGroovyProposal toProposal(ClassNode declaringType, ResolverCache resolver) {
-        GroovyPropertyProposal groovyPropertyProposal = new GroovyPropertyProposal(toProperty(declaringType, resolver), provider);
+        GroovyPropertyProposal groovyPropertyProposal = new GroovyPropertyProposal((PropertyNode) resolve(declaringType, resolver).declaration, provider);
         groovyPropertyProposal.setRelevanceMultiplier(relevanceMultiplier);
         return groovyPropertyProposal;
     }
 
     public TypeAndDeclaration lookupType(String name, ClassNode declaringType, ResolverCache resolver) {
-        return name.equals(propName) ? new TypeAndDeclaration(ensureReturnType(resolver), toProperty(declaringType, resolver),
-                ensureDeclaringType(declaringType, resolver), doc) : null;
+        return name.equals(propName) ? resolve(declaringType, resolver) : null;
+    }
+
+    /**
+     * Builds the property, or gets it from the resolver if an element with the same signature has built it before.
+     * Elements are created again every time their group runs, so the resolver keeps the properties: those built from
+     * the types of the file for the file, and those built only from types on the classpath for the whole project.
+     */
+    private TypeAndDeclaration resolve(ClassNode lexicalDeclaringType, ResolverCache resolver) {
+        // the lexical type is only known by its name, so it must not have type arguments
+        boolean cacheable = resolver != null && (declaringType != null || lexicalDeclaringType.getGenericsTypes() == null);
+        String appliedTo = declaringType == null ? lexicalDeclaringType.getName() : null;
+        if (cacheable) {
+            TypeAndDeclaration cached = resolver.getDeclaration(declarationKey, appliedTo);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        PropertyNode property = toProperty(lexicalDeclaringType, resolver);
+        TypeAndDeclaration result = new TypeAndDeclaration(ensureReturnType(resolver), property,
+                ensureDeclaringType(lexicalDeclaringType, resolver), doc);
+        if (cacheable) {
+            boolean shareable = SharedResolverCache.isShareable(property.getDeclaringClass())
+                    && SharedResolverCache.isShareable(property.getType());
+            resolver.putDeclaration(declarationKey, appliedTo, result, shareable);
+        }
+        return result;
     }
 
     private PropertyNode toProperty(ClassNode declaringType, ResolverCache resolver) {
@@ -18,6 +18,8 @@ package org.codehaus.groovy.eclipse.dsl.inferencing.suggestions;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsJournal;
+
 /**
  * 
  * @author Nieraj Singh
@@ -28,6 +30,10 @@ public class GroovySuggestionDeclaringType implements IBaseGroovySuggestion {
 
     private String name;
 
+    // records read from the suggestions file that have not been turned into
+    // suggestions yet, or null once they have
+    private volatile List<String> records;
+
     public GroovySuggestionDeclaringType(String name) {
         this.suggestions = new ArrayList<IGroovySuggestion>();
         this.name = name;
@@ -48,7 +54,7 @@ public class GroovySuggestionDeclaringType implements IBaseGroovySuggestion {
      * @return new created suggestion, or null if the suggestion already exists
      */
     public IGroovySuggestion createSuggestion(SuggestionDescriptor descriptor) {
-
+        loadRecords();
         IGroovySuggestion suggestion = new SuggestionFactory(descriptor).createSuggestion(this);
         if (containsSuggestion(suggestion)) {
             return null;
@@ -110,6 +116,7 @@ public class GroovySuggestionDeclaringType implements IBaseGroovySuggestion {
     }
 
     public IGroovySuggestion replaceSuggestion(SuggestionDescriptor descriptor, IGroovySuggestion suggestion) {
+        loadRecords();
 
         if (suggestions.contains(suggestion)) {
             removeSuggestion(suggestion);
@@ -122,15 +129,49 @@ public class GroovySuggestionDeclaringType implements IBaseGroovySuggestion {
     }
 
     public boolean removeSuggestion(IGroovySuggestion suggestion) {
+        loadRecords();
         return suggestions.remove(suggestion);
     }
 
     public List<IGroovySuggestion> getSuggestions() {
+        loadRecords();
         return suggestions;
     }
 
     public boolean hasSuggestions() {
+        loadRecords();
         return !suggestions.isEmpty();
     }
 
+    /**
+     * Sets the records of the suggestions of this declaring type in the
+     * suggestions file. They are only turned into suggestions when the
+     * suggestions of this type are first asked for, so that reading the file
+     * does not create the suggestions of all declaring types.
+     */
+    void setRecords(List<String> records) {
+        this.records = records;
+    }
+
+    /**
+     * @return true if the suggestions of this type have been created, and so
+     *         may have been changed since the suggestions file was read
+     */
+    public boolean isLoaded() {
+        return records == null;
+    }
+
+    private synchronized void loadRecords() {
+        List<String> toLoad = records;
+        if (toLoad != null) {
+            records = null;
+            for (String record : toLoad) {
+                SuggestionDescriptor descriptor = SuggestionsJournal.toDescriptor(record);
+                if (descriptor != null) {
+                    createSuggestion(descriptor);
+                }
+            }
+        }
+    }
+
 }
@@ -16,12 +16,23 @@
 package org.codehaus.groovy.eclipse.dsl.inferencing.suggestions;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
 import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsFile;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsJournal;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsReader;
 import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsTransform;
 import org.codehaus.jdt.groovy.model.GroovyNature;
 import org.eclipse.core.resources.IFile;
@@ -54,7 +65,9 @@ public class InferencingSuggestionsManager {
     }
 
     /**
-     * For now support per project commits
+     * For now support per project commits. Only the suggestions that were
+     * added, changed or removed since the last commit are appended to the
+     * suggestions file, see {@link SuggestionsJournal}.
      * 
      * @return true if changes for given project are successfully committed.
      *         False otherwise
@@ -69,19 +82,83 @@ public class InferencingSuggestionsManager {
         lastModifiedProject = project;
 
         ProjectSuggestions suggestions = getSuggestions(project);
-        SuggestionsTransform transform = new SuggestionsTransform(suggestions);
-        String result = transform.transform();
+        SuggestionsFile suggestionsFile = new SuggestionsFile(project);
+        if (suggestionsFile.getFile() == null) {
+            // the file has to be written in full, even if it was deleted
+            // after the last commit
+            suggestions.resetJournal();
+        }
+        IFile file = suggestionsFile.createFile();
+        if (file == null) {
+            return false;
+        }
 
-        if (result != null) {
-            SuggestionsFile suggestionsFile = new SuggestionsFile(project);
+        String changes = suggestions.updateJournal();
+        boolean committed;
+        if (changes == null) {
+            committed = writeToFile(file, suggestions.getJournal().getText());
+        } else if (changes.length() > 0) {
+            committed = appendToFile(file, changes);
+        } else {
+            committed = true;
+        }
+        if (!committed) {
+            // no longer known what the file holds
+            suggestions.resetJournal();
+        }
+        return committed;
+    }
 
-            IFile file = suggestionsFile.createFile();
-            writeToFile(file, result);
+    /**
+     * Writes the suggestions of the project to the given file as XML, which
+     * is the format that {@link #importSuggestions(IProject, File)} reads.
+     * 
+     * @return true if the suggestions were written
+     */
+    public boolean exportSuggestions(IProject project, File file) {
+        ProjectSuggestions suggestions = getSuggestions(project);
+        if (suggestions == null) {
+            return false;
+        }
+        String result = new SuggestionsTransform(suggestions).transform();
+        if (result == null) {
+            return false;
+        }
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(result.getBytes("UTF-8"));
             return true;
+        } catch (IOException e) {
+            GroovyDSLCoreActivator.logException(e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
         }
         return false;
     }
 
+    /**
+     * Replaces the suggestions of the project with the suggestions in the
+     * given XML file, such as one written by
+     * {@link #exportSuggestions(IProject, File)}, and commits them. The
+     * suggestions file of the project is written out in full.
+     * 
+     * @return true if the suggestions were read and committed
+     */
+    public boolean importSuggestions(IProject project, File file) {
+        if (!isValidProject(project)) {
+            return false;
+        }
+        ProjectSuggestions imported = new SuggestionsReader(project, file.getAbsolutePath()).read();
+        return imported != null && commitChanges(project);
+    }
+
     /**
      * Restores the suggestions for an accessible project back in the
      * suggestions model.
@@ -131,15 +208,33 @@ public class InferencingSuggestionsManager {
         return lastModifiedProject = null;
     }
 
-    protected void writeToFile(IFile file, String value) {
+    protected boolean writeToFile(IFile file, String value) {
         if (file != null) {
             try {
-                // For now replace all the contents
-                file.setContents(new ByteArrayInputStream(value.getBytes()), true, true, new NullProgressMonitor());
+                file.setContents(new ByteArrayInputStream(value.getBytes("UTF-8")), true, true, new NullProgressMonitor());
+                return true;
             } catch (CoreException e) {
                 GroovyDSLCoreActivator.logException(e);
+            } catch (UnsupportedEncodingException e) {
+                GroovyDSLCoreActivator.logException(e);
             }
         }
+        return false;
+    }
+
+    protected boolean appendToFile(IFile file, String value) {
+        if (file != null) {
+            try {
+                // no local history for every change
+                file.appendContents(new ByteArrayInputStream(value.getBytes("UTF-8")), true, false, new NullProgressMonitor());
+                return true;
+            } catch (CoreException e) {
+                GroovyDSLCoreActivator.logException(e);
+            } catch (UnsupportedEncodingException e) {
+                GroovyDSLCoreActivator.logException(e);
+            }
+        }
+        return false;
     }
 
     /**
@@ -173,6 +268,10 @@ public class InferencingSuggestionsManager {
 
         private IProject project;
 
+        // what the suggestions file holds, or null if it has to be written in
+        // full on the next commit
+        private SuggestionsJournal journal;
+
         protected ProjectSuggestions(IProject project) {
             suggestions = new HashMap<String, GroovySuggestionDeclaringType>();
             this.project = project;
@@ -248,6 +347,78 @@ public class InferencingSuggestionsManager {
             return suggestions.values();
         }
 
+        /**
+         * Adds the declaring types in the journal read from the suggestions
+         * file. Their suggestions are created when they are first used.
+         */
+        void loadJournal(SuggestionsJournal journal) {
+            this.journal = journal;
+            for (String declaringTypeName : journal.getDeclaringTypeNames()) {
+                GroovySuggestionDeclaringType declaringType = new GroovySuggestionDeclaringType(declaringTypeName);
+                declaringType.setRecords(new ArrayList<String>(journal.getRecords(declaringTypeName)));
+                suggestions.put(declaringTypeName, declaringType);
+            }
+        }
+
+        SuggestionsJournal getJournal() {
+            return journal;
+        }
+
+        void resetJournal() {
+            journal = null;
+        }
+
+        /**
+         * Brings the journal up to date with the suggestions. Declaring types
+         * whose suggestions have not been created since the file was read can
+         * not have changed, and are skipped.
+         * 
+         * @return the lines to append to the suggestions file, or null if the
+         *         file has to be written in full
+         */
+        String updateJournal() {
+            if (journal == null) {
+                journal = new SuggestionsJournal();
+                for (GroovySuggestionDeclaringType declaringType : suggestions.values()) {
+                    for (IGroovySuggestion suggestion : declaringType.getSuggestions()) {
+                        journal.add(SuggestionsJournal.toRecord(new SuggestionDescriptor(suggestion)));
+                    }
+                }
+                return null;
+            }
+
+            StringBuilder changes = new StringBuilder();
+            for (String declaringTypeName : new ArrayList<String>(journal.getDeclaringTypeNames())) {
+                GroovySuggestionDeclaringType declaringType = suggestions.get(declaringTypeName);
+                if (declaringType == null || (declaringType.isLoaded() && !declaringType.hasSuggestions())) {
+                    changes.append(journal.removeDeclaringType(declaringTypeName));
+                }
+            }
+            for (GroovySuggestionDeclaringType declaringType : suggestions.values()) {
+                if (!declaringType.isLoaded()) {
+                    continue;
+                }
+                Set<String> committed = journal.getRecords(declaringType.getName());
+                Set<String> current = new HashSet<String>();
+                List<String> added = new ArrayList<String>();
+                for (IGroovySuggestion suggestion : declaringType.getSuggestions()) {
+                    String record = SuggestionsJournal.toRecord(new SuggestionDescriptor(suggestion));
+                    if (current.add(record) && !committed.contains(record)) {
+                        added.add(record);
+                    }
+                }
+                for (String record : new ArrayList<String>(committed)) {
+                    if (!current.contains(record)) {
+                        changes.append(journal.remove(record));
+                    }
+                }
+                for (String record : added) {
+                    changes.append(journal.add(record));
+                }
+            }
+            return journal.needsCompaction() ? null : changes.toString();
+        }
+
     }
 
 }
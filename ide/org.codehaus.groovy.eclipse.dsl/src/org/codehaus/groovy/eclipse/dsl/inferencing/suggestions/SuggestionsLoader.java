@@ -15,11 +15,17 @@
  */
 package org.codehaus.groovy.eclipse.dsl.inferencing.suggestions;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+
 import org.codehaus.groovy.eclipse.dsl.DSLDStore;
 import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.InferencingSuggestionsManager.ProjectSuggestions;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsJournal;
 import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer.SuggestionsReader;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 
 /**
@@ -36,7 +42,7 @@ public class SuggestionsLoader {
     }
 
     /**
-     * Loads all suggestions from XML, clearing any existing in-memory
+     * Loads all suggestions from the file, clearing any existing in-memory
      * suggestions, and adds corresponding contribution groups and point cutsF
      */
     public boolean loadExistingSuggestions() {
@@ -44,11 +50,20 @@ public class SuggestionsLoader {
             IProject project = file.getProject();
             // Make sure the file is in a Groovy project, and the project is
             // accessible
-            if (InferencingSuggestionsManager.getInstance().isValidProject(project)) {
-                IPath path = file.getLocation();
-                String absoluteFileName = path != null ? path.toString() : null;
-                SuggestionsReader reader = new SuggestionsReader(file.getProject(), absoluteFileName);
-                reader.read();
+            InferencingSuggestionsManager manager = InferencingSuggestionsManager.getInstance();
+            if (manager.isValidProject(project)) {
+                SuggestionsJournal journal = readJournal();
+                if (journal != null) {
+                    ProjectSuggestions suggestions = manager.getSuggestions(project).registerNewProjectSuggestion();
+                    suggestions.loadJournal(journal);
+                } else {
+                    // Files written by earlier versions are XML. They are
+                    // written as a journal on the next commit
+                    IPath path = file.getLocation();
+                    String absoluteFileName = path != null ? path.toString() : null;
+                    SuggestionsReader reader = new SuggestionsReader(file.getProject(), absoluteFileName);
+                    reader.read();
+                }
                 addSuggestionsContributionGroup();
                 return true;
             }
@@ -56,6 +71,20 @@ public class SuggestionsLoader {
         return false;
     }
 
+    /**
+     * @return the journal in the file, or null if the file is not a journal
+     */
+    protected SuggestionsJournal readJournal() {
+        try {
+            return SuggestionsJournal.read(new InputStreamReader(file.getContents(true), "UTF-8"));
+        } catch (CoreException e) {
+            GroovyDSLCoreActivator.logException(e);
+        } catch (IOException e) {
+            GroovyDSLCoreActivator.logException(e);
+        }
+        return null;
+    }
+
     /**
      * Add contribution groups from existing in-memory suggestions. Does not
      * load suggestions from XML.
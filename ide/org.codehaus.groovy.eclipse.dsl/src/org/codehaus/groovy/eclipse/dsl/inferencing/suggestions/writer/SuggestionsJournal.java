@@ -0,0 +1,357 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.writer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.InferencingSuggestionsManager;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.MethodParameter;
+import org.codehaus.groovy.eclipse.dsl.inferencing.suggestions.SuggestionDescriptor;
+
+/**
+ * The format of the suggestions file. Instead of an XML document that has to
+ * be written out in full for every change, the file is a journal with one line
+ * per change: a line adds a suggestion, removes a suggestion or removes all
+ * suggestions of a declaring type. Committing a change only appends its lines,
+ * and the journal is written out in full again once it holds many more lines
+ * than suggestions.
+ * <p>
+ * Every suggestion is a single record that starts with the name of its
+ * declaring type, so reading the file only groups the records by declaring
+ * type. The records of a declaring type are turned into suggestions when the
+ * declaring type is first used, see {@link #toDescriptor(String)}.
+ * <p>
+ * Suggestions are exported and imported as XML, see
+ * {@link InferencingSuggestionsManager#exportSuggestions exportSuggestions} and
+ * {@link InferencingSuggestionsManager#importSuggestions importSuggestions},
+ * which use {@link SuggestionsTransform} and {@link SuggestionsReader}. A
+ * suggestions file that still holds XML is read the same way and written out
+ * as a journal on the next commit.
+ */
+public class SuggestionsJournal {
+
+    /**
+     * First line of every journal, which tells it apart from the XML written
+     * by earlier versions
+     */
+    public static final String HEADER = "#groovy-suggestions 1";
+
+    private static final char ADD = '+';
+
+    private static final char REMOVE = '-';
+
+    private static final char REMOVE_DECLARING_TYPE = '*';
+
+    private static final char SEPARATOR = '\t';
+
+    private static final String NULL = "\\0";
+
+    private static final String METHOD = "M";
+
+    private static final String PROPERTY = "P";
+
+    // the journal is compacted when it has this many more lines than twice the
+    // number of suggestions
+    private static final int MAX_EXTRA_LINES = 100;
+
+    private final Map<String, Set<String>> records = new LinkedHashMap<String, Set<String>>();
+
+    private int numLines = 0;
+
+    private int numRecords = 0;
+
+    /**
+     * Reads a journal.
+     *
+     * @return the journal, or null if the reader does not start with
+     *         {@link #HEADER}
+     */
+    public static SuggestionsJournal read(Reader reader) throws IOException {
+        BufferedReader buffered = new BufferedReader(reader);
+        try {
+            if (!HEADER.equals(buffered.readLine())) {
+                return null;
+            }
+            SuggestionsJournal journal = new SuggestionsJournal();
+            String line;
+            while ((line = buffered.readLine()) != null) {
+                journal.apply(line);
+            }
+            return journal;
+        } finally {
+            buffered.close();
+        }
+    }
+
+    /**
+     * @return the declaring types that have suggestions, in the order they
+     *         were added
+     */
+    public Set<String> getDeclaringTypeNames() {
+        return Collections.unmodifiableSet(records.keySet());
+    }
+
+    /**
+     * @return the records of the suggestions of the declaring type. Never null,
+     *         but may be empty
+     */
+    public Set<String> getRecords(String declaringTypeName) {
+        Set<String> typeRecords = records.get(declaringTypeName);
+        return typeRecords != null ? Collections.unmodifiableSet(typeRecords) : Collections.<String> emptySet();
+    }
+
+    /**
+     * Adds a suggestion.
+     *
+     * @return the line to append to the file
+     */
+    public String add(String record) {
+        String line = ADD + record;
+        apply(line);
+        return line + '\n';
+    }
+
+    /**
+     * Removes a suggestion.
+     *
+     * @return the line to append to the file
+     */
+    public String remove(String record) {
+        String line = REMOVE + record;
+        apply(line);
+        return line + '\n';
+    }
+
+    /**
+     * Removes all suggestions of a declaring type.
+     *
+     * @return the line to append to the file
+     */
+    public String removeDeclaringType(String declaringTypeName) {
+        String line = REMOVE_DECLARING_TYPE + escape(declaringTypeName);
+        apply(line);
+        return line + '\n';
+    }
+
+    /**
+     * @return true if the journal holds so many lines that have been undone by
+     *         later ones, that it should be written out in full with
+     *         {@link #getText()}
+     */
+    public boolean needsCompaction() {
+        return numLines > 2 * numRecords + MAX_EXTRA_LINES;
+    }
+
+    /**
+     * @return the journal with only the lines that add the current
+     *         suggestions, which is what the file holds after it has been
+     *         written out in full
+     */
+    public String getText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append('\n');
+        for (Set<String> typeRecords : records.values()) {
+            for (String record : typeRecords) {
+                sb.append(ADD).append(record).append('\n');
+            }
+        }
+        numLines = numRecords;
+        return sb.toString();
+    }
+
+    protected void apply(String line) {
+        if (line.length() < 2) {
+            return;
+        }
+        String record = line.substring(1);
+        switch (line.charAt(0)) {
+            case ADD: {
+                String declaringTypeName = getDeclaringTypeName(record);
+                Set<String> typeRecords = records.get(declaringTypeName);
+                if (typeRecords == null) {
+                    typeRecords = new LinkedHashSet<String>();
+                    records.put(declaringTypeName, typeRecords);
+                }
+                if (typeRecords.add(record)) {
+                    numRecords++;
+                }
+                break;
+            }
+            case REMOVE: {
+                String declaringTypeName = getDeclaringTypeName(record);
+                Set<String> typeRecords = records.get(declaringTypeName);
+                if (typeRecords != null && typeRecords.remove(record)) {
+                    numRecords--;
+                    if (typeRecords.isEmpty()) {
+                        records.remove(declaringTypeName);
+                    }
+                }
+                break;
+            }
+            case REMOVE_DECLARING_TYPE: {
+                Set<String> typeRecords = records.remove(unescape(record));
+                if (typeRecords != null) {
+                    numRecords -= typeRecords.size();
+                }
+                break;
+            }
+            default:
+                // not a change, such as a comment
+                return;
+        }
+        numLines++;
+    }
+
+    /**
+     * @return the record of the suggestion described by the descriptor
+     */
+    public static String toRecord(SuggestionDescriptor descriptor) {
+        List<MethodParameter> parameters = descriptor.getParameters();
+        StringBuilder sb = new StringBuilder();
+        sb.append(escape(descriptor.getDeclaringTypeName())).append(SEPARATOR);
+        sb.append(descriptor.isMethod() ? METHOD : PROPERTY).append(SEPARATOR);
+        sb.append(escape(descriptor.getName())).append(SEPARATOR);
+        sb.append(escape(descriptor.getSuggestionType())).append(SEPARATOR);
+        sb.append(descriptor.isStatic() ? '1' : '0');
+        sb.append(descriptor.isActive() ? '1' : '0');
+        sb.append(descriptor.isUseArgumentNames() ? '1' : '0');
+        sb.append(parameters != null ? '1' : '0').append(SEPARATOR);
+        sb.append(escape(descriptor.getJavaDoc()));
+        if (parameters != null) {
+            for (MethodParameter parameter : parameters) {
+                sb.append(SEPARATOR).append(escape(parameter.getName()));
+                sb.append(SEPARATOR).append(escape(parameter.getType()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return a descriptor of the suggestion in the record, or null if the
+     *         record is not valid
+     */
+    public static SuggestionDescriptor toDescriptor(String record) {
+        String[] fields = record.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length < 6 || fields[4].length() != 4 || fields.length % 2 != 0) {
+            return null;
+        }
+        String declaringTypeName = unescape(fields[0]);
+        String name = unescape(fields[2]);
+        String type = unescape(fields[3]);
+        String flags = fields[4];
+        boolean isStatic = flags.charAt(0) == '1';
+        boolean isActive = flags.charAt(1) == '1';
+        boolean useArgumentNames = flags.charAt(2) == '1';
+        String javaDoc = unescape(fields[5]);
+        if (METHOD.equals(fields[1])) {
+            List<MethodParameter> parameters = null;
+            if (flags.charAt(3) == '1') {
+                parameters = new ArrayList<MethodParameter>((fields.length - 6) / 2);
+                for (int i = 6; i < fields.length; i += 2) {
+                    parameters.add(new MethodParameter(unescape(fields[i]), unescape(fields[i + 1])));
+                }
+            }
+            return new SuggestionDescriptor(declaringTypeName, isStatic, name, javaDoc, type, useArgumentNames, parameters,
+                    isActive);
+        } else if (PROPERTY.equals(fields[1])) {
+            return new SuggestionDescriptor(declaringTypeName, isStatic, name, javaDoc, type, isActive);
+        }
+        return null;
+    }
+
+    private static String getDeclaringTypeName(String record) {
+        int end = record.indexOf(SEPARATOR);
+        return unescape(end >= 0 ? record.substring(0, end) : record);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escaped;
+            switch (c) {
+                case '\\':
+                    escaped = "\\\\";
+                    break;
+                case '\t':
+                    escaped = "\\t";
+                    break;
+                case '\n':
+                    escaped = "\\n";
+                    break;
+                case '\r':
+                    escaped = "\\r";
+                    break;
+                default:
+                    escaped = null;
+            }
+            if (escaped != null && sb == null) {
+                sb = new StringBuilder(value.length() + 8);
+                sb.append(value, 0, i);
+            }
+            if (escaped != null) {
+                sb.append(escaped);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb != null ? sb.toString() : value;
+    }
+
+    private static String unescape(String value) {
+        if (NULL.equals(value)) {
+            return null;
+        }
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    default:
+                        sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -10,30 +10,125 @@
  *******************************************************************************/
 package org.codehaus.groovy.eclipse.dsl.lookup;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.codehaus.groovy.ast.ClassHelper;
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.GenericsType;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
+import org.eclipse.jdt.groovy.search.AbstractSimplifiedTypeLookup.TypeAndDeclaration;
 import org.eclipse.jdt.groovy.search.VariableScope;
 
 /**
  * A wrapper around the JDT resolver that caches
  * resolve requests.  Handles classes with type parameters.
+ * Fully qualified names that resolve to binary types are also 
+ * shared with the other files of the project through a 
+ * {@link SharedResolverCache}, so that only the first file that 
+ * asks for such a name resolves it.
+ * <p>
+ * The cache also keeps the declarations that contribution elements 
+ * build from the resolved types, such as the synthetic methods and 
+ * properties of a DSLD, so that they are not built again for every 
+ * lookup.  Declarations built only from shared types are shared with 
+ * the other files of the project as well, until the scripts or the 
+ * classpath of the project change.  Setting 
+ * <code>greclipse.dsldDeclarationCache</code> to false builds them on 
+ * every lookup.
  * @author andrew
  * @created Nov 21, 2010
  */
 public class ResolverCache {
 
+    public static boolean cacheDeclarations = Boolean.valueOf(System.getProperty("greclipse.dsldDeclarationCache", "true")).booleanValue();
+
+    private static final AtomicLong declarationHits = new AtomicLong();
+
+    public static long getDeclarationHitCount() {
+        return declarationHits.get();
+    }
+
+    public static void resetStatistics() {
+        declarationHits.set(0);
+    }
+
     private final Map<String, ClassNode> nameTypeCache;
     private final JDTResolver resolver;
+    private final SharedResolverCache sharedCache;
+    // by the key of the element that built them, and then by the name of the type the element was applied to
+    private final Map<String, Map<String, TypeAndDeclaration>> declarations =
+            new HashMap<String, Map<String, TypeAndDeclaration>>();
     
     public ResolverCache(JDTResolver resolver, ModuleNode thisModule) {
+        this(resolver, thisModule, null);
+    }
+    
+    /**
+     * @param sharedCache the types resolved by other files of the project, or null
+     */
+    public ResolverCache(JDTResolver resolver, ModuleNode thisModule, SharedResolverCache sharedCache) {
         this.nameTypeCache = new WeakHashMap<String, ClassNode>();
         this.resolver = resolver;
+        this.sharedCache = sharedCache;
+    }
+    
+    /**
+     * @param key identifies a contribution element and everything its declaration is built from, other than the type 
+     *        the element is applied to
+     * @param appliedTo the name of the type the element is applied to, or null if the element names its declaring type
+     * @return the declaration that an equal element built in this file or, from shared types, in another file of the
+     *         project, or null
+     */
+    public TypeAndDeclaration getDeclaration(String key, String appliedTo) {
+        if (!cacheDeclarations) {
+            return null;
+        }
+        TypeAndDeclaration declaration = getDeclaration(declarations, key, appliedTo);
+        if (declaration == null && sharedCache != null) {
+            declaration = sharedCache.getDeclaration(key, appliedTo);
+        }
+        if (declaration != null) {
+            declarationHits.incrementAndGet();
+        }
+        return declaration;
+    }
+    
+    /**
+     * Remembers the declaration that a contribution element built from the types of this file.
+     * Declarations are handed out as they are and must not be changed.
+     * @param shareable true if the declaration is only built from types that are 
+     *        {@link SharedResolverCache#isShareable(ClassNode) shareable}, so that the other files of the 
+     *        project can use it as well
+     */
+    public void putDeclaration(String key, String appliedTo, TypeAndDeclaration declaration, boolean shareable) {
+        if (cacheDeclarations) {
+            if (shareable && sharedCache != null) {
+                sharedCache.putDeclaration(key, appliedTo, declaration);
+            } else {
+                putDeclaration(declarations, key, appliedTo, declaration);
+            }
+        }
+    }
+    
+    static TypeAndDeclaration getDeclaration(Map<String, Map<String, TypeAndDeclaration>> declarations, String key,
+            String appliedTo) {
+        Map<String, TypeAndDeclaration> byType = declarations.get(key);
+        return byType == null ? null : byType.get(appliedTo);
+    }
+    
+    static void putDeclaration(Map<String, Map<String, TypeAndDeclaration>> declarations, String key, String appliedTo,
+            TypeAndDeclaration declaration) {
+        Map<String, TypeAndDeclaration> byType = declarations.get(key);
+        if (byType == null) {
+            // most elements name their declaring type or are only applied to one type
+            byType = new HashMap<String, TypeAndDeclaration>(2);
+            declarations.put(key, byType);
+        }
+        byType.put(appliedTo, declaration);
     }
     
     /**
@@ -51,6 +146,14 @@ public class ResolverCache {
             return VariableScope.VOID_CLASS_NODE;
         }
         ClassNode clazz = nameTypeCache.get(qName);
+        if (clazz == null && resolver != null && sharedCache != null && qName.indexOf('.') > 0 && qName.indexOf('[') < 0) {
+            // only fully qualified names of types that are not arrays are shared
+            clazz = sharedCache.get(qName);
+            if (clazz != null) {
+                nameTypeCache.put(qName, clazz);
+                return clazz;
+            }
+        }
         int arrayCnt = 0;
         if (clazz == null && resolver != null) {
         	int typeParamEnd = qName.lastIndexOf('>');
@@ -73,17 +176,18 @@ public class ResolverCache {
                 }
         	}
             clazz = resolver.resolve(erasureName);
-            if (clazz == null) {
-                clazz = VariableScope.OBJECT_CLASS_NODE;
-            }
+            // the resolver answers the dynamic type for names that it can not resolve
+            boolean unresolved = clazz == ClassHelper.DYNAMIC_TYPE && !erasureName.equals("java.lang.Object");
+            ClassNode erasure = clazz;
             nameTypeCache.put(erasureName, clazz);
+            String[] typeParameterNames = null;
             
             // now recur down through the type parameters
             if (typeParamStart > 0) {
                 // only need to clone if generics are involved
                 clazz = VariableScope.clone(clazz);
                 
-                String[] typeParameterNames = componentName.substring(typeParamStart+1, componentName.length()-1).split(",");
+                typeParameterNames = componentName.substring(typeParamStart+1, componentName.length()-1).split(",");
                 ClassNode[] typeParameters = new ClassNode[typeParameterNames.length];
                 for (int i = 0; i < typeParameterNames.length; i++) {
                     typeParameters[i] = resolve(typeParameterNames[i]);
@@ -105,11 +209,39 @@ public class ResolverCache {
                 nameTypeCache.put(componentName, clazz);
             	arrayCnt--;
             }
+            if (sharedCache != null && !unresolved && arrayStart < 0) {
+                // type may be on the classpath later, so don't share unresolved names
+                share(qName, erasureName, erasure, clazz, typeParameterNames);
+            }
         }
         
         return clazz;
     }
 
+    /**
+     * Shares a name with the other files of the project if it does not depend on the package or the imports of this
+     * file: the name of the type and the names of all its type arguments must be fully qualified, and the type must 
+     * not come from source
+     */
+    private void share(String qName, String erasureName, ClassNode erasure, ClassNode type, String[] typeParameterNames) {
+        if (erasureName.indexOf('.') < 0 || !erasureName.equals(erasure.getName()) || !SharedResolverCache.isShareable(type)) {
+            return;
+        }
+        if (typeParameterNames != null) {
+            if (erasure.getGenericsTypes() == null) {
+                // the type arguments were dropped
+                return;
+            }
+            for (String typeParameterName : typeParameterNames) {
+                // type arguments were resolved first, so they have been shared already if they can be
+                if (sharedCache.peek(typeParameterName.trim()) == null) {
+                    return;
+                }
+            }
+        }
+        sharedCache.put(qName, type);
+    }
+
     /**
      * @param qName
      * @param arrayStart
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.lookup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.GenericsType;
+import org.codehaus.jdt.groovy.internal.compiler.ast.JDTClassNode;
+import org.codehaus.jdt.groovy.internal.compiler.ast.SharedTypeDescriptorCache;
+import org.eclipse.jdt.groovy.search.AbstractSimplifiedTypeLookup.TypeAndDeclaration;
+import org.eclipse.jdt.groovy.search.VariableScope;
+import org.eclipse.jdt.internal.compiler.lookup.ReferenceBinding;
+
+/**
+ * The DSLD types of a project that are known to resolve, shared by the {@link ResolverCache}s of all files of the project.
+ * Contribution elements resolve the same names (such as <code>java.util.Map&lt;java.lang.String,java.lang.Object&gt;</code>) in
+ * every file, and each {@link ResolverCache} only lives for one inference pass.
+ * <p>
+ * Only names that mean the same in every file are kept: the type and all its type arguments must be written with their fully
+ * qualified names, since simple names depend on the package and the imports of a file, and they must be plain binary types read
+ * from archives, since types in source files and output folders change on every edit and build. The cache keeps a copy of the
+ * node that the first file resolved, which is handed to every other file as it is and must not be changed. The bindings of
+ * such types do not change until the classpath does, so the cache is dropped whenever a new classpath generation starts (see
+ * {@link SharedTypeDescriptorCache#classpathChanged()}) and when the classpath of the project changes. It holds at most
+ * {@link #MAX_SIZE} types, dropping the least recently used ones first. Setting <code>greclipse.dsldSharedResolverCache</code>
+ * to false resolves every name in every file again.
+ * <p>
+ * The declarations that contribution elements build only from such types are kept the same way, and are dropped as well
+ * whenever the scripts of the project change.
+ */
+public class SharedResolverCache {
+
+    public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.dsldSharedResolverCache", "true")).booleanValue();
+
+    static final int MAX_SIZE = 1000;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of fully qualified names that were not shared yet, and so were resolved by the file that asked for them
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private final Map<String, ClassNode> types = new LinkedHashMap<String, ClassNode>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClassNode> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    // by the key of the element that built them, and then by the name of the type the element was applied to
+    private final Map<String, Map<String, TypeAndDeclaration>> declarations =
+            new LinkedHashMap<String, Map<String, TypeAndDeclaration>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, TypeAndDeclaration>> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    // the classpath generation that the cached types were resolved in
+    private long generation = SharedTypeDescriptorCache.getGeneration();
+
+    /**
+     * @param name a type name as accepted by {@link ResolverCache#resolve(String)}
+     * @return the type that another file resolved the name to, which must not be changed, or null if the name is not cached
+     */
+    ClassNode get(String name) {
+        ClassNode type = peek(name);
+        if (type == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return type;
+    }
+
+    /**
+     * Like {@link #get(String)}, but without counting a hit or a miss
+     */
+    ClassNode peek(String name) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (types) {
+            checkGeneration();
+            return types.get(name);
+        }
+    }
+
+    /**
+     * Remembers a name that has been resolved. The caller makes sure that it is made of fully qualified names of types that
+     * are {@link #isShareable(ClassNode) shareable}.
+     */
+    void put(String name, ClassNode type) {
+        if (enabled) {
+            // the file that resolved the type keeps its own node
+            ClassNode copy = VariableScope.clone(type);
+            synchronized (types) {
+                checkGeneration();
+                types.put(name, copy);
+            }
+        }
+    }
+
+    /**
+     * @see ResolverCache#getDeclaration(String, String)
+     */
+    TypeAndDeclaration getDeclaration(String key, String appliedTo) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (types) {
+            checkGeneration();
+            return ResolverCache.getDeclaration(declarations, key, appliedTo);
+        }
+    }
+
+    /**
+     * Remembers a declaration that a contribution element built only from shareable types
+     */
+    void putDeclaration(String key, String appliedTo, TypeAndDeclaration declaration) {
+        if (enabled) {
+            synchronized (types) {
+                checkGeneration();
+                ResolverCache.putDeclaration(declarations, key, appliedTo, declaration);
+            }
+        }
+    }
+
+    /**
+     * Forgets the declarations built by contribution elements, since the scripts of the project have changed
+     */
+    public void clearDeclarations() {
+        synchronized (types) {
+            declarations.clear();
+        }
+    }
+
+    private void checkGeneration() {
+        long current = SharedTypeDescriptorCache.getGeneration();
+        if (generation != current) {
+            types.clear();
+            declarations.clear();
+            generation = current;
+        }
+    }
+
+    public void clear() {
+        synchronized (types) {
+            types.clear();
+            declarations.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (types) {
+            return types.size();
+        }
+    }
+
+    /**
+     * @return true if the type and its type arguments are plain binary types read from archives or the types that Groovy
+     *         itself declares, and so do not change until the classpath changes
+     */
+    public static boolean isShareable(ClassNode type) {
+        return isShareable(type, 0);
+    }
+
+    private static boolean isShareable(ClassNode type, int depth) {
+        if (type == null || depth > 10 || type.isArray() || type == ClassHelper.DYNAMIC_TYPE) {
+            // array types are cheap to create from their cached component types, and
+            // the dynamic type stands for names that could not be resolved
+            return false;
+        }
+        ClassNode redirect = type.redirect();
+        if (redirect instanceof JDTClassNode) {
+            ReferenceBinding binding = ((JDTClassNode) redirect).getJdtBinding();
+            if (binding == null || !SharedTypeDescriptorCache.isShareable(binding)) {
+                return false;
+            }
+        } else if (redirect.isPrimaryClassNode()) {
+            // declared in a groovy file
+            return false;
+        }
+        GenericsType[] generics = type.getGenericsTypes();
+        if (generics != null) {
+            for (GenericsType gt : generics) {
+                if (!isShareable(gt.getType(), depth + 1)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Set;
 
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
 import org.codehaus.groovy.eclipse.dsl.lookup.ResolverCache;
 import org.codehaus.jdt.groovy.internal.compiler.ast.JDTResolver;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
@@ -75,7 +76,8 @@ public class GroovyDSLDContext {
         this(getProjectNatures(unit), 
                 getFullPathToFile(unit),
                 getPathToPackage(unit));
-        resolverCache = new ResolverCache(jdtResolver, module);
+        resolverCache = new ResolverCache(jdtResolver, module, 
+                GroovyDSLCoreActivator.getDefault().getContextStoreManager().getSharedResolverCache(unit.getJavaProject().getProject()));
     }
 
 
@@ -131,6 +133,9 @@ public class GroovyDSLDContext {
     /** cached type hierarchy for checking type matches (consider caching more) */
     private Set<ClassNode> cachedHierarchy;
 
+    /** results of matching pointcuts against the current type during this inference pass */
+    private final PointcutMatchMemo matchMemo = new PointcutMatchMemo();
+
     private boolean isStatic;
 
     private boolean isPrimaryNode;
@@ -260,6 +265,10 @@ public class GroovyDSLDContext {
     }
 
 
+    public PointcutMatchMemo getMatchMemo() {
+        return matchMemo;
+    }
+
     public ResolverCache getResolverCache() {
         return resolverCache;
     }
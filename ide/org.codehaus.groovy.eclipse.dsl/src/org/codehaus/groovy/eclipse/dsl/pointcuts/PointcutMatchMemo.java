@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.pointcuts;
+
+import groovy.lang.Closure;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.CurrentIdentifierPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.CurrentTypeIsEnclosingTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.CurrentTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingCallDeclaringTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingCallNamePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingCallPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingClassPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingClosurePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingFieldPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingMethodPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.EnclosingScriptPointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.IsThisTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.SourceFolderOfTypePointcut;
+import org.codehaus.groovy.eclipse.dsl.pointcuts.impl.UserExtensiblePointcut;
+import org.eclipse.jdt.groovy.search.VariableScope;
+
+/**
+ * Remembers the results of matching pointcuts against the current type during one inference pass over a file, so that
+ * each pointcut is evaluated once for each distinct current type and each distinct part of the scope that it looks at.
+ * Most pointcuts only look at the current type and the file, which do not change while a pass is visiting the expressions
+ * of a file.
+ * <p>
+ * The parts of the scope that a pointcut looks at are found from the pointcuts it is made of. The built-in pointcuts are
+ * known; a pointcut that is made of a user-defined pointcut, a pointcut from another plugin, or a pointcut that looks at
+ * the current identifier is always evaluated. Results that depend on the scope are dropped when the pass leaves the
+ * enclosing method, field or type they were computed in. Setting <code>greclipse.dsldMatchMemo</code> to false
+ * evaluates every pointcut every time.
+ */
+public class PointcutMatchMemo {
+
+    public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.dsldMatchMemo", "true")).booleanValue();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    // the parts of the context that a pointcut may look at besides the current type and the file
+    private static final int ENCLOSING_TYPE = 1;
+    private static final int ENCLOSING_METHOD = 1 << 1;
+    private static final int ENCLOSING_FIELD = 1 << 2;
+    private static final int ENCLOSING_CLOSURE = 1 << 3;
+    private static final int ENCLOSING_CALL = 1 << 4;
+    private static final int PRIMARY_NODE = 1 << 5;
+    private static final int NOT_MEMOIZABLE = 1 << 30;
+
+    private static final Package BUILT_IN = CurrentTypePointcut.class.getPackage();
+
+    /**
+     * The result of one match together with what it added to the binding
+     */
+    private static class Match {
+        final Collection<?> result;
+        final BindingSet binding;
+
+        Match(Collection<?> result, BindingSet binding) {
+            this.result = result;
+            this.binding = binding;
+        }
+    }
+
+    /**
+     * Identifies the current type and the parts of the scope that a pointcut looks at, all compared by identity
+     */
+    private static class Key {
+        private final Object[] parts;
+        private final int hash;
+
+        Key(Object[] parts) {
+            this.parts = parts;
+            int h = 1;
+            for (Object part : parts) {
+                h = 31 * h + System.identityHashCode(part);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Object[] others = ((Key) obj).parts;
+            if (others.length != parts.length) {
+                return false;
+            }
+            for (int i = 0; i < parts.length; i++) {
+                if (others[i] != parts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(parts);
+        }
+    }
+
+    // results that only depend on the current type, kept for the whole pass
+    private final Map<Key, Match> typeMatches = new HashMap<Key, Match>();
+
+    // results that also depend on the scope, kept until the pass leaves the enclosing declaration
+    private final Map<Key, Match> scopeMatches = new HashMap<Key, Match>();
+
+    private Object enclosingDeclaration;
+
+    private final Map<IPointcut, Integer> dependencies = new IdentityHashMap<IPointcut, Integer>();
+
+    /**
+     * Matches the pointcut against the current type of the context, or reuses the result of an earlier match that looked at
+     * the same things. Resets the binding of the context to the binding that the match produced.
+     * @return the result of {@link IPointcut#matches(GroovyDSLDContext, Object)}
+     */
+    public Collection<?> matchCurrentType(IPointcut pointcut, GroovyDSLDContext pattern) {
+        int depends = enabled ? getDependencies(pointcut) : NOT_MEMOIZABLE;
+        if (depends == NOT_MEMOIZABLE) {
+            pattern.resetBinding();
+            return pointcut.matches(pattern, pattern.getCurrentType());
+        }
+
+        VariableScope scope = pattern.getCurrentScope();
+        Map<Key, Match> matches;
+        Key key;
+        if (depends == 0) {
+            matches = typeMatches;
+            key = new Key(new Object[] { pointcut, pattern.getCurrentType() });
+        } else {
+            checkEnclosingDeclaration(scope);
+            matches = scopeMatches;
+            key = new Key(new Object[] { pointcut, pattern.getCurrentType(),
+                    (depends & ENCLOSING_TYPE) != 0 && scope != null ? scope.getEnclosingTypeDeclaration() : null,
+                    (depends & ENCLOSING_METHOD) != 0 && scope != null ? scope.getEnclosingMethodDeclaration() : null,
+                    (depends & ENCLOSING_FIELD) != 0 && scope != null ? scope.getEnclosingFieldDeclaration() : null,
+                    (depends & ENCLOSING_CLOSURE) != 0 && scope != null ? scope.getEnclosingClosure() : null,
+                    (depends & ENCLOSING_CALL) != 0 && scope != null ? scope.getEnclosingMethodCallExpression() : null,
+                    (depends & PRIMARY_NODE) != 0 ? Boolean.valueOf(pattern.isPrimaryNode()) : null });
+        }
+
+        Match match = matches.get(key);
+        if (match != null) {
+            hits.incrementAndGet();
+            pattern.setCurrentBinding(match.binding);
+            return match.result;
+        }
+        misses.incrementAndGet();
+        pattern.resetBinding();
+        Collection<?> result = pointcut.matches(pattern, pattern.getCurrentType());
+        matches.put(key, new Match(result, pattern.getCurrentBinding()));
+        return result;
+    }
+
+    private void checkEnclosingDeclaration(VariableScope scope) {
+        Object declaration = null;
+        if (scope != null) {
+            declaration = scope.getEnclosingMethodDeclaration();
+            if (declaration == null) {
+                declaration = scope.getEnclosingFieldDeclaration();
+            }
+            if (declaration == null) {
+                declaration = scope.getEnclosingTypeDeclaration();
+            }
+        }
+        if (declaration != enclosingDeclaration) {
+            scopeMatches.clear();
+            enclosingDeclaration = declaration;
+        }
+    }
+
+    private int getDependencies(IPointcut pointcut) {
+        Integer result = dependencies.get(pointcut);
+        if (result == null) {
+            result = computeDependencies(pointcut);
+            dependencies.put(pointcut, result);
+        }
+        return result.intValue();
+    }
+
+    private static int computeDependencies(IPointcut pointcut) {
+        if (pointcut.getClass().getPackage() != BUILT_IN || pointcut instanceof UserExtensiblePointcut
+                || pointcut instanceof CurrentIdentifierPointcut) {
+            return NOT_MEMOIZABLE;
+        }
+        int result = 0;
+        if (pointcut instanceof EnclosingClassPointcut || pointcut instanceof EnclosingScriptPointcut
+                || pointcut instanceof CurrentTypeIsEnclosingTypePointcut || pointcut instanceof SourceFolderOfTypePointcut) {
+            result |= ENCLOSING_TYPE;
+        } else if (pointcut instanceof EnclosingMethodPointcut) {
+            result |= ENCLOSING_METHOD;
+        } else if (pointcut instanceof EnclosingFieldPointcut) {
+            result |= ENCLOSING_FIELD;
+        } else if (pointcut instanceof EnclosingClosurePointcut) {
+            result |= ENCLOSING_CLOSURE;
+        } else if (pointcut instanceof EnclosingCallPointcut || pointcut instanceof EnclosingCallNamePointcut
+                || pointcut instanceof EnclosingCallDeclaringTypePointcut) {
+            result |= ENCLOSING_CALL;
+        } else if (pointcut instanceof IsThisTypePointcut) {
+            result |= PRIMARY_NODE;
+        }
+        for (Object arg : pointcut.getArgumentValues()) {
+            if (arg instanceof IPointcut) {
+                result |= computeDependencies((IPointcut) arg);
+            } else if (arg instanceof Closure) {
+                // may look at anything
+                return NOT_MEMOIZABLE;
+            }
+            if ((result & NOT_MEMOIZABLE) != 0) {
+                return NOT_MEMOIZABLE;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,353 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.script;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.eclipse.GroovyLogManager;
+import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
+import org.codehaus.groovy.tools.GroovyClass;
+
+/**
+ * Compiles the DSLD scripts of a project and keeps the compiled classes, so that a refresh only compiles the scripts that have
+ * actually changed. All scripts of a project are compiled with one shared {@link GroovyClassLoader}.
+ * <p>
+ * Compiled classes are keyed by a hash of the script contents, its file name and the Groovy version. They are kept in memory for
+ * as long as the project is open and are also written to the <code>dsldClasses</code> folder in the state location of the DSL
+ * plugin, so that scripts that have not changed since the last session (for example those in jars on the classpath) do not have
+ * to be compiled after a restart either. Cache files that have not been used for {@link #MAX_AGE_DAYS} days are deleted. Setting
+ * <code>greclipse.dsldCache</code> to false compiles every script on every refresh again.
+ */
+public class DSLDScriptCache {
+
+    public static boolean enabled = Boolean.valueOf(System.getProperty("greclipse.dsldCache", "true")).booleanValue();
+
+    static final int MAX_AGE_DAYS = 30;
+
+    // change whenever the format of the cache files changes
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String CACHE_FOLDER = "dsldClasses";
+
+    private static final String CACHE_FILE_EXTENSION = ".classes";
+
+    private static final AtomicLong compiled = new AtomicLong();
+    private static final AtomicLong loadedFromDisk = new AtomicLong();
+    private static final AtomicLong reused = new AtomicLong();
+
+    private static boolean pruned;
+
+    public static long getCompiledCount() {
+        return compiled.get();
+    }
+
+    public static long getLoadedFromDiskCount() {
+        return loadedFromDisk.get();
+    }
+
+    public static long getReusedCount() {
+        return reused.get();
+    }
+
+    public static void resetStatistics() {
+        compiled.set(0);
+        loadedFromDisk.set(0);
+        reused.set(0);
+    }
+
+    /**
+     * The classes compiled from one version of one script
+     */
+    private static class CompiledScript {
+        final String key;
+        final Class<?> scriptClass;
+
+        CompiledScript(String key, Class<?> scriptClass) {
+            this.key = key;
+            this.scriptClass = scriptClass;
+        }
+    }
+
+    /**
+     * Defines the classes compiled from a single script. Each version of a script gets its own loader since the classes of the
+     * next version have the same names.
+     */
+    private static class ScriptClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classBytes;
+
+        ScriptClassLoader(ClassLoader parent, Map<String, byte[]> classBytes) {
+            super(parent);
+            this.classBytes = classBytes;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class<?> c = findLoadedClass(name);
+            if (c == null) {
+                byte[] bytes = classBytes.get(name);
+                if (bytes == null) {
+                    return super.loadClass(name, resolve);
+                }
+                c = defineClass(name, bytes, 0, bytes.length);
+            }
+            if (resolve) {
+                resolveClass(c);
+            }
+            return c;
+        }
+    }
+
+    private final GroovyClassLoader loader;
+
+    private final File cacheFolder;
+
+    // script identifier -> the classes compiled from its current contents
+    private final Map<String, CompiledScript> scripts = new HashMap<String, CompiledScript>();
+
+    public DSLDScriptCache() {
+        this(getDefaultCacheFolder());
+    }
+
+    /**
+     * @param cacheFolder the folder to write compiled classes to, or null to keep them in memory only
+     */
+    public DSLDScriptCache(File cacheFolder) {
+        this.loader = new GroovyClassLoader(GroovyDSLCoreActivator.class.getClassLoader());
+        this.cacheFolder = cacheFolder;
+    }
+
+    private static File getDefaultCacheFolder() {
+        try {
+            return GroovyDSLCoreActivator.getDefault().getStateLocation().append(CACHE_FOLDER).toFile();
+        } catch (Exception e) {
+            // no state location, eg- the plugin is shutting down
+            return null;
+        }
+    }
+
+    /**
+     * @return the loader that compiles the scripts of the project and that their classes are loaded through
+     */
+    public GroovyClassLoader getClassLoader() {
+        return loader;
+    }
+
+    /**
+     * @param scriptId uniquely identifies the script within the project, see
+     *        {@link org.codehaus.groovy.eclipse.dsl.DSLDStore#toUniqueString(org.eclipse.core.resources.IStorage)}
+     * @param fileName the name of the script file
+     * @param contents the contents of the script file
+     * @return the script class compiled from the given contents
+     * @throws org.codehaus.groovy.control.CompilationFailedException if the script does not compile
+     */
+    public Class<?> getScriptClass(String scriptId, String fileName, String contents) {
+        if (!enabled) {
+            compiled.incrementAndGet();
+            return loader.parseClass(contents, fileName);
+        }
+        String key = computeKey(fileName, contents);
+        synchronized (scripts) {
+            CompiledScript script = scripts.get(scriptId);
+            if (script != null && script.key.equals(key)) {
+                reused.incrementAndGet();
+                return script.scriptClass;
+            }
+        }
+
+        // scripts are compiled and read outside of the lock so that a refresh can compile several of them at once
+
+        Class<?> scriptClass = null;
+        File cacheFile = getCacheFile(key);
+        if (cacheFile != null && cacheFile.isFile()) {
+            scriptClass = readFromDisk(cacheFile);
+            if (scriptClass != null) {
+                loadedFromDisk.incrementAndGet();
+                cacheFile.setLastModified(System.currentTimeMillis());
+            }
+        }
+        if (scriptClass == null) {
+            scriptClass = compile(fileName, contents, cacheFile);
+            compiled.incrementAndGet();
+        }
+        synchronized (scripts) {
+            scripts.put(scriptId, new CompiledScript(key, scriptClass));
+        }
+        return scriptClass;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<?> compile(String fileName, String contents, File cacheFile) {
+        CompilationUnit unit = new CompilationUnit(CompilerConfiguration.DEFAULT, null, loader);
+        unit.addSource(fileName, contents);
+        unit.compile(Phases.CLASS_GENERATION);
+
+        // same as GroovyClassLoader.parseClass: the script class is the first class of the module
+        ModuleNode module = (ModuleNode) unit.getAST().getModules().get(0);
+        String mainClassName = ((ClassNode) module.getClasses().get(0)).getName();
+        Map<String, byte[]> classBytes = new LinkedHashMap<String, byte[]>();
+        for (GroovyClass groovyClass : (List<GroovyClass>) unit.getClasses()) {
+            classBytes.put(groovyClass.getName(), groovyClass.getBytes());
+        }
+        if (cacheFile != null) {
+            writeToDisk(cacheFile, mainClassName, classBytes);
+        }
+        return defineClasses(mainClassName, classBytes);
+    }
+
+    private Class<?> defineClasses(String mainClassName, Map<String, byte[]> classBytes) {
+        try {
+            return new ScriptClassLoader(loader, classBytes).loadClass(mainClassName);
+        } catch (ClassNotFoundException e) {
+            // can't happen since the bytes of the main class are available
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    private File getCacheFile(String key) {
+        if (cacheFolder == null) {
+            return null;
+        }
+        if (!cacheFolder.isDirectory() && !cacheFolder.mkdirs()) {
+            return null;
+        }
+        pruneOldFiles(cacheFolder);
+        return new File(cacheFolder, key + CACHE_FILE_EXTENSION);
+    }
+
+    /**
+     * @return the script class read from the given file or null if the file can't be read
+     */
+    private Class<?> readFromDisk(File cacheFile) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            String mainClassName = in.readUTF();
+            int count = in.readInt();
+            Map<String, byte[]> classBytes = new LinkedHashMap<String, byte[]>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classBytes.put(name, bytes);
+            }
+            return defineClasses(mainClassName, classBytes);
+        } catch (Exception e) {
+            // corrupt or truncated, so compile again
+            if (GroovyLogManager.manager.hasLoggers()) {
+                GroovyLogManager.manager.log(TraceCategory.DSL, "Could not read compiled DSLD from " + cacheFile + ": " + e);
+            }
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private void writeToDisk(File cacheFile, String mainClassName, Map<String, byte[]> classBytes) {
+        // write to a temporary file first so that other sessions and threads never see a partially written file
+        File tempFile = null;
+        DataOutputStream out = null;
+        try {
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(mainClassName);
+            out.writeInt(classBytes.size());
+            for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                tempFile.renameTo(cacheFile);
+            }
+        } catch (IOException e) {
+            if (GroovyLogManager.manager.hasLoggers()) {
+                GroovyLogManager.manager.log(TraceCategory.DSL, "Could not write compiled DSLD to " + cacheFile + ": " + e);
+            }
+        } finally {
+            close(out);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static void close(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static synchronized void pruneOldFiles(File folder) {
+        if (pruned) {
+            return;
+        }
+        pruned = true;
+        long oldest = System.currentTimeMillis() - MAX_AGE_DAYS * 24L * 60 * 60 * 1000;
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.lastModified() < oldest) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static String computeKey(String fileName, String contents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update((FORMAT_VERSION + ":" + GroovySystem.getVersion() + ":" + fileName + ":").getBytes("UTF-8"));
+            digest.update(contents.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(40);
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage());
+        } catch (IOException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+}
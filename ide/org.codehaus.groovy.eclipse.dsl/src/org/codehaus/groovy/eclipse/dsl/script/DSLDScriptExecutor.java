@@ -12,7 +12,6 @@ package org.codehaus.groovy.eclipse.dsl.script;
 
 import groovy.lang.Binding;
 import groovy.lang.Closure;
-import groovy.lang.GroovyClassLoader;
 import groovy.lang.MissingMethodException;
 import groovy.lang.Script;
 
@@ -29,6 +28,7 @@ import java.util.Map.Entry;
 
 import org.codehaus.groovy.eclipse.GroovyLogManager;
 import org.codehaus.groovy.eclipse.TraceCategory;
+import org.codehaus.groovy.eclipse.dsl.DSLDStore;
 import org.codehaus.groovy.eclipse.dsl.GroovyDSLCoreActivator;
 import org.codehaus.groovy.eclipse.dsl.pointcuts.IPointcut;
 import org.eclipse.core.internal.resources.ResourceException;
@@ -207,14 +207,14 @@ public class DSLDScriptExecutor {
         }
     }
     
-    private final GroovyClassLoader gcl;
+    private final DSLDScriptCache scriptCache;
     private final IJavaProject project;
     private PointcutFactory factory;
     private IStorage scriptFile;
     
     public DSLDScriptExecutor(IJavaProject project) {
-        // FIXADE Should have one classloader per project
-        gcl = new GroovyClassLoader(GroovyDSLCoreActivator.class.getClassLoader());
+        // all scripts of the project share one class loader, and unchanged scripts are not compiled again
+        scriptCache = GroovyDSLCoreActivator.getDefault().getContextStoreManager().getScriptCache(project.getProject());
         this.project = project;
     }
 
@@ -231,9 +231,9 @@ public class DSLDScriptExecutor {
             Object result = null;
             try {
                 String scriptContents = getContents(scriptFile);
-                Class<Script> clazz = null;
+                Class<?> clazz = null;
                 try {
-                    clazz = gcl.parseClass(scriptContents, scriptFile.getName());
+                    clazz = scriptCache.getScriptClass(DSLDStore.toUniqueString(scriptFile), scriptFile.getName(), scriptContents);
                 } catch (Exception e) {
                     if (GroovyLogManager.manager.hasLoggers()) {
                         StringWriter writer = new StringWriter();
@@ -253,7 +253,7 @@ public class DSLDScriptExecutor {
                     }
                     return result;
                 }
-                Script dsldScript = clazz.newInstance();
+                Script dsldScript = (Script) clazz.newInstance();
                 dsldScript.setBinding(new DSLDScriptBinding(dsldScript));
                 result = dsldScript.run();
             } catch (UnsupportedDSLVersion e) {
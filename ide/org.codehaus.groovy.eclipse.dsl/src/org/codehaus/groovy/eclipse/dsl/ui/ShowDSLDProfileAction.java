@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.groovy.eclipse.dsl.ui;
+
+import org.codehaus.groovy.eclipse.dsl.DSLDProfiler;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPart;
+
+/**
+ * Shows the most expensive DSLD scripts and pointcuts recorded by the {@link DSLDProfiler} and writes the full ranking to
+ * the Groovy event console.  The recorded statistics can be reset from the dialog.
+ */
+public class ShowDSLDProfileAction implements IObjectActionDelegate {
+
+    // number of scripts and of pointcuts shown in the dialog
+    private static final int SHOWN = 10;
+
+    private Shell shell;
+
+    public void run(IAction action) {
+        DSLDProfiler.logReport();
+        String message;
+        if (DSLDProfiler.enabled) {
+            message = DSLDProfiler.getReport(SHOWN) + "\nThe full profile has been written to the Groovy event console, if it is open.";
+        } else {
+            message = "DSLD profiling has been turned off with -Dgreclipse.dsldProfile=false.";
+        }
+        MessageDialog dialog = new MessageDialog(shell, "DSLD profile", null, message, MessageDialog.INFORMATION,
+                new String[] { IDialogConstants.OK_LABEL, "Reset" }, 0);
+        if (dialog.open() == 1) {
+            DSLDProfiler.reset();
+        }
+    }
+
+    public void selectionChanged(IAction action, ISelection selection) {
+        // the profile covers all projects
+    }
+
+    public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+        shell = targetPart != null && targetPart.getSite() != null ? targetPart.getSite().getShell() : null;
+    }
+}
@@ -274,6 +274,29 @@ public class SemanticHighlightingPresenter implements ITextPresentationListener,
 		}
 	}
 
+	// GROOVY add
+	/**
+	 * Adds the current positions whose offset is in the given range to the given list, ordered by offset.
+	 * <p>
+	 * NOTE: Called from background thread.
+	 * </p>
+	 *
+	 * @param list The list
+	 * @param start The start of the range
+	 * @param end The end of the range, exclusive
+	 */
+	public void addPositions(List list, int start, int end) {
+		synchronized (fPositionLock) {
+			for (int i= computeIndexAtOffset(fPositions, start), n= fPositions.size(); i < n; i++) {
+				Position position= (Position) fPositions.get(i);
+				if (position.getOffset() >= end)
+					break;
+				list.add(position);
+			}
+		}
+	}
+	// GROOVY end
+
 	/**
 	 * Create a text presentation in the background.
 	 * <p>
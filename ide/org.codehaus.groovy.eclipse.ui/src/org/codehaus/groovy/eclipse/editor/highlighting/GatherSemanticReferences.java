@@ -16,15 +16,25 @@
 
 package org.codehaus.groovy.eclipse.editor.highlighting;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
 
+import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.ast.MethodNode;
 import org.codehaus.groovy.eclipse.GroovyPlugin;
 import org.codehaus.groovy.eclipse.core.GroovyCore;
 import org.codehaus.groovy.eclipse.core.preferences.PreferenceConstants;
 import org.codehaus.jdt.groovy.model.GroovyCompilationUnit;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.groovy.search.ITypeRequestor;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorFactory;
 import org.eclipse.jdt.groovy.search.TypeInferencingVisitorWithRequestor;
+import org.eclipse.jdt.groovy.search.TypeLookupResult;
 import org.eclipse.jface.preference.IPreferenceStore;
 
 public class GatherSemanticReferences {
@@ -37,6 +47,22 @@ public class GatherSemanticReferences {
     }
 
     public Collection<HighlightedTypedPosition> findSemanticHighlightingReferences() {
+        return findSemanticHighlightingReferences(0, Integer.MAX_VALUE, true, null);
+    }
+
+    /**
+     * Finds the positions that start inside of the range, or outside of it.
+     * Methods and fields that can not hold any of these positions are not
+     * inferred, so that the positions of a small range are found quickly.
+     *
+     * @param inside true for the positions inside of the range, false for
+     *            the ones outside of it
+     * @param monitor stops the search when canceled, may be null
+     * @return the positions ordered by offset, or an empty collection if the
+     *         search was canceled
+     */
+    public Collection<HighlightedTypedPosition> findSemanticHighlightingReferences(final int start, final int end,
+            final boolean inside, final IProgressMonitor monitor) {
         if (preferences.getBoolean(PreferenceConstants.GROOVY_SEMANTIC_HIGHLIGHTING) /*
                                                                                       * &&
                                                                                       * unit
@@ -47,14 +73,45 @@ public class GatherSemanticReferences {
                                                                                       */) {
 
             try {
-                SemanticHighlightingReferenceRequestor typeRequestor = new SemanticHighlightingReferenceRequestor(unit.getContents());
+                final SemanticHighlightingReferenceRequestor typeRequestor = new SemanticHighlightingReferenceRequestor(unit.getContents());
                 TypeInferencingVisitorWithRequestor visitor = new TypeInferencingVisitorFactory().createVisitor(unit);
-                visitor.visitCompilationUnit(typeRequestor);
-                return typeRequestor.typedPosition;
+                visitor.visitCompilationUnit(new ITypeRequestor() {
+                    public VisitStatus acceptASTNode(ASTNode node, TypeLookupResult result, IJavaElement enclosingElement) {
+                        if (monitor != null && monitor.isCanceled()) {
+                            return VisitStatus.STOP_VISIT;
+                        }
+                        if ((node instanceof MethodNode || node instanceof FieldNode) && hasValidRange(node)) {
+                            boolean canHold = inside ? node.getStart() < end && node.getEnd() > start
+                                    : node.getStart() < start || node.getEnd() > end;
+                            if (!canHold) {
+                                return VisitStatus.CANCEL_MEMBER;
+                            }
+                        }
+                        return typeRequestor.acceptASTNode(node, result, enclosingElement);
+                    }
+                });
+                if (monitor != null && monitor.isCanceled()) {
+                    return Collections.emptyList();
+                }
+                SortedSet<HighlightedTypedPosition> positions = typeRequestor.typedPosition;
+                // the positions are compared by offset only
+                HighlightedTypedPosition from = new HighlightedTypedPosition(start, null);
+                HighlightedTypedPosition to = new HighlightedTypedPosition(end, null);
+                if (inside) {
+                    return end == Integer.MAX_VALUE ? positions.tailSet(from) : positions.subSet(from, to);
+                }
+                List<HighlightedTypedPosition> outside = new ArrayList<HighlightedTypedPosition>(positions.headSet(from));
+                outside.addAll(positions.tailSet(to));
+                return outside;
             } catch (Exception e) {
                 GroovyCore.logException("Exception with semantic highlighting", e);
             }
         }
         return Collections.emptyList();
     }
+
+    private static boolean hasValidRange(ASTNode node) {
+        // synthetic members may be anywhere
+        return node.getEnd() > 0 && !(node.getStart() == 0 && node.getEnd() == 1);
+    }
 }
\ No newline at end of file
@@ -23,8 +23,6 @@ import greclipse.org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingPres
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.codehaus.groovy.eclipse.GroovyPlugin;
@@ -40,6 +38,9 @@ import org.eclipse.jdt.internal.ui.javaeditor.JavaSourceViewer;
 import org.eclipse.jdt.internal.ui.text.JavaPresentationReconciler;
 import org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener;
 import org.eclipse.jface.preference.PreferenceConverter;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.IViewportListener;
+import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextAttribute;
 import org.eclipse.jface.text.TextPresentation;
 import org.eclipse.swt.SWT;
@@ -88,6 +89,20 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
      */
     private boolean fIsReconciling= false;
 
+    private JavaSourceViewer viewer;
+
+    /**
+     * The lines shown in the editor, and half a page above and below them.
+     * Updated on the UI thread, read by the reconciler thread.
+     */
+    private volatile IRegion visibleRegion;
+
+    private final IViewportListener viewportListener = new IViewportListener() {
+        public void viewportChanged(int verticalOffset) {
+            updateVisibleRegion();
+        }
+    };
+
 
     public GroovySemanticReconciler() {
         RGB rgbString = PreferenceConverter.getColor(GroovyPlugin.getDefault().getPreferenceStore(),
@@ -121,17 +136,42 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
         this.editor = editor;
         this.presenter = new SemanticHighlightingPresenter();
         presenter.install(viewer, (JavaPresentationReconciler) editor.getGroovyConfiguration().getPresentationReconciler(viewer));
+        this.viewer = viewer;
+        viewer.addViewportListener(viewportListener);
+        updateVisibleRegion();
     }
 
     public void uninstall() {
+        if (viewer != null) {
+            viewer.removeViewportListener(viewportListener);
+            viewer = null;
+        }
+        visibleRegion = null;
         presenter.uninstall();
         presenter = null;
         editor = null;
     }
 
+    private void updateVisibleRegion() {
+        JavaSourceViewer thisViewer = viewer;
+        if (thisViewer == null || thisViewer.getTextWidget() == null || thisViewer.getTextWidget().isDisposed()) {
+            visibleRegion = null;
+            return;
+        }
+        int top = thisViewer.getTopIndexStartOffset();
+        int bottom = thisViewer.getBottomIndexEndOffset();
+        if (bottom <= top) {
+            // nothing shown yet, so everything is highlighted at once
+            visibleRegion = null;
+            return;
+        }
+        int margin = (bottom - top) / 2;
+        int start = Math.max(0, top - margin);
+        visibleRegion = new Region(start, bottom + margin - start);
+    }
+
     public void aboutToBeReconciled() { }
 
-    @SuppressWarnings("unchecked")
     public void reconciled(CompilationUnit ast, boolean forced,
             IProgressMonitor progressMonitor) {
 
@@ -150,35 +190,26 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
             if (unit != null) {
                 presenter.setCanceled(progressMonitor.isCanceled());
                 GatherSemanticReferences finder = new GatherSemanticReferences(unit);
-                Collection<HighlightedTypedPosition> semanticReferences = finder.findSemanticHighlightingReferences();
-                progressMonitor.worked(50);
-
-                List<HighlightedPosition> newPositions = new LinkedList<HighlightedPosition>();
-                List<HighlightedPosition> removedPositions = new LinkedList<HighlightedPosition>();
-
-                for (HighlightedPosition oldPosition : (Iterable<HighlightedPosition>) presenter.fPositions) {
-                    if (oldPosition != null) {
-                        removedPositions.add(oldPosition);
+                IRegion visible = visibleRegion;
+                if (visible == null) {
+                    updateHighlighting(finder.findSemanticHighlightingReferences(0, Integer.MAX_VALUE, true, progressMonitor),
+                            0, Integer.MAX_VALUE, true, progressMonitor);
+                    progressMonitor.worked(100);
+                } else {
+                    // the visible part of the file first, so that it is up to date as soon as possible...
+                    int start = visible.getOffset();
+                    int end = start + visible.getLength();
+                    updateHighlighting(finder.findSemanticHighlightingReferences(start, end, true, progressMonitor),
+                            start, end, true, progressMonitor);
+                    progressMonitor.worked(30);
+
+                    // ...then the rest of it, unless the file has changed in the meantime
+                    if (!progressMonitor.isCanceled()) {
+                        updateHighlighting(finder.findSemanticHighlightingReferences(start, end, false, progressMonitor),
+                                start, end, false, progressMonitor);
                     }
+                    progressMonitor.worked(70);
                 }
-                progressMonitor.worked(20);
-                List<HighlightedPosition> semanticReferencesHighlighted = new ArrayList<HighlightedPosition>(semanticReferences.size());
-                for (HighlightedTypedPosition pos : semanticReferences) {
-                    HighlightedPosition range = createHighlightedPosition(pos);
-                    maybeAddPosition(newPositions, removedPositions, range);
-                    semanticReferencesHighlighted.add(range);
-                }
-                progressMonitor.worked(20);
-
-                TextPresentation textPresentation = null;
-                if (!presenter.isCanceled()) {
-                    textPresentation= presenter.createPresentation(newPositions, removedPositions);
-                }
-
-                if (!presenter.isCanceled()) {
-                    updatePresentation(textPresentation, newPositions, removedPositions);
-                }
-                progressMonitor.worked(10);
             }
         } catch (NullPointerException e) {
             // do nothing...reconciler has been uninstalled
@@ -189,6 +220,87 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
         }
     }
 
+    /**
+     * Replaces the highlighted positions that start inside of the range, or
+     * outside of it, with the ones found.
+     *
+     * @param found the positions found, ordered by offset
+     */
+    private void updateHighlighting(Collection<HighlightedTypedPosition> found, int start, int end, boolean inside,
+            IProgressMonitor progressMonitor) {
+        if (progressMonitor.isCanceled()) {
+            // what was found is incomplete
+            return;
+        }
+        List<HighlightedPosition> oldPositions = new ArrayList<HighlightedPosition>();
+        if (inside) {
+            presenter.addPositions(oldPositions, start, end);
+        } else {
+            presenter.addPositions(oldPositions, Integer.MIN_VALUE, start);
+            presenter.addPositions(oldPositions, end, Integer.MAX_VALUE);
+        }
+        HighlightedPosition[] newPositions = new HighlightedPosition[found.size()];
+        int i = 0;
+        for (HighlightedTypedPosition pos : found) {
+            newPositions[i++] = createHighlightedPosition(pos);
+        }
+
+        List<HighlightedPosition> addedPositions = new ArrayList<HighlightedPosition>();
+        List<HighlightedPosition> removedPositions = new ArrayList<HighlightedPosition>();
+        diffPositions(oldPositions.toArray(new HighlightedPosition[oldPositions.size()]), newPositions, addedPositions,
+                removedPositions);
+        if (addedPositions.isEmpty() && removedPositions.isEmpty()) {
+            return;
+        }
+
+        TextPresentation textPresentation = null;
+        if (!presenter.isCanceled()) {
+            textPresentation= presenter.createPresentation(addedPositions, removedPositions);
+        }
+
+        if (!presenter.isCanceled()) {
+            updatePresentation(textPresentation, addedPositions, removedPositions);
+        }
+    }
+
+    /**
+     * Walks the old and the new positions together, both ordered by offset.
+     * Old positions that have an equal new position are kept, all other old
+     * positions are removed and all other new positions are added, in order.
+     */
+    static void diffPositions(HighlightedPosition[] oldPositions, HighlightedPosition[] newPositions,
+            List<HighlightedPosition> addedPositions, List<HighlightedPosition> removedPositions) {
+        int i = 0, j = 0;
+        while (i < oldPositions.length && j < newPositions.length) {
+            HighlightedPosition oldPosition = oldPositions[i];
+            HighlightedPosition newPosition = newPositions[j];
+            if (oldPosition == null) {
+                i++;
+            } else if (oldPosition.isDeleted() || oldPosition.getOffset() < newPosition.getOffset()) {
+                removedPositions.add(oldPosition);
+                i++;
+            } else if (oldPosition.getOffset() > newPosition.getOffset()) {
+                addedPositions.add(newPosition);
+                j++;
+            } else if (oldPosition.isEqual(newPosition.offset, newPosition.length, newPosition.getHighlighting())) {
+                i++;
+                j++;
+            } else {
+                // the new position may still be equal to another old one at the same offset
+                removedPositions.add(oldPosition);
+                i++;
+            }
+        }
+        for (; i < oldPositions.length; i++) {
+            if (oldPositions[i] != null) {
+                removedPositions.add(oldPositions[i]);
+            }
+        }
+        for (; j < newPositions.length; j++) {
+            addedPositions.add(newPositions[j]);
+        }
+    }
+
     private HighlightedPosition createHighlightedPosition(HighlightedTypedPosition pos) {
         switch (pos.kind) {
             case UNKNOWN:
@@ -214,23 +326,6 @@ public class GroovySemanticReconciler implements IJavaReconcilingListener {
         return null;
     }
 
-    private void maybeAddPosition(List<HighlightedPosition> newPositions, List<HighlightedPosition> oldPositionsCopy,
-            HighlightedPosition maybePosition) {
-        boolean found = false;
-        for (Iterator<HighlightedPosition> positionIter = oldPositionsCopy.iterator(); positionIter.hasNext();) {
-            HighlightedPosition oldPosition = positionIter.next();
-            if (oldPosition.isEqual(maybePosition.offset, maybePosition.length, maybePosition.getHighlighting())) {
-                positionIter.remove();
-                found = true;
-                break;
-            }
-        }
-        if (!found) {
-            newPositions.add(maybePosition);
-        }
-    }
-
-
     /**
      * Update the presentation.
      *
@@ -12,6 +12,7 @@
 package org.codehaus.jdt.groovy.integration;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.WorkingCopyOwner;
@@ -105,6 +106,15 @@ class DefaultLanguageSupport implements LanguageSupport {
 		return false;
 	}
 
+	public void prepareDelegatedSearch(PossibleMatch[] possibleMatches, int start, int length, SearchPattern pattern,
+			IProgressMonitor monitor) {
+		// nothing to prepare
+	}
+
+	public void finishDelegatedSearch() {
+		// nothing to release
+	}
+
 	public EventHandler getEventHandler() {
 		return DefaultEventHandler.instance;
 	}
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Codehaus.org, SpringSource, and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.codehaus.jdt.groovy.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.jdt.groovy.integration.LanguageSupportFactory;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.problem.AbortCompilation;
+import org.eclipse.jdt.internal.core.builder.SourceFile;
+
+/**
+ * Splits the source files of a build in a Groovy project into batches that can be compiled one after the other.
+ * <p>
+ * Groovy sources cannot be faulted in by a later compiler pass, and a Java file compiled in an earlier batch cannot see
+ * the Groovy types of a later one, so every file must be compiled in the same batch as the files it refers to, or in a
+ * later one. Files that refer to each other through a cycle of references are kept in the same batch; otherwise the
+ * files are ordered so that the files a file refers to come first, and then cut into batches.
+ * <p>
+ * References are found by a lexical scan that matches names against the types declared in the build, following the
+ * Java rules for which types a simple name can denote: types of the same package, types imported singly or on demand
+ * (including through a Groovy alias), and names qualified with the package of the type. This over-approximates the real
+ * dependencies, which only makes cycles larger than they need to be.
+ * <p>
+ * Enabled with the system property <code>greclipse.build.chunked</code>, batches are bounded by
+ * <code>AbstractImageBuilder.MAX_AT_ONCE</code>. Only a cycle of files that is larger than the bound makes a batch that
+ * is larger than the bound.
+ */
+public class BuildChunker {
+
+	public static boolean ENABLED = Boolean.getBoolean("greclipse.build.chunked"); //$NON-NLS-1$
+
+	// for tests: number of batches handed out and the size of the largest
+	private static final AtomicInteger chunkCount = new AtomicInteger();
+	private static final AtomicInteger largestChunk = new AtomicInteger();
+
+	private static final String[] TYPE_KEYWORDS = { "class", "interface", "enum", "trait" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+	/**
+	 * @return the batches in the order they should be compiled, or <code>null</code> if the units should be compiled
+	 *         all at once
+	 */
+	public static SourceFile[][] chunk(SourceFile[] units, int maxAtOnce) {
+		int length = units.length;
+		if (maxAtOnce <= 0 || length <= maxAtOnce) {
+			return null;
+		}
+
+		char[][] contents = new char[length][];
+		String[] packages = new String[length];
+		Map declaringUnits = new HashMap(); // simple type name -> List of Integer
+		for (int i = 0; i < length; i++) {
+			try {
+				contents[i] = units[i].getContents();
+			} catch (AbortCompilation e) {
+				// unreadable file; let the compiler report it in a single pass
+				return null;
+			}
+			packages[i] = new String(CharOperation.concatWith(units[i].getPackageName(), '.'));
+			addDeclaration(declaringUnits, new String(units[i].getMainTypeName()), i);
+			if (LanguageSupportFactory.isInterestingSourceFile(units[i].resource.getName())) {
+				// groovy files may declare any number of types with unrelated names
+				List declared = findDeclaredTypes(contents[i]);
+				for (int j = 0, n = declared.size(); j < n; j++) {
+					addDeclaration(declaringUnits, (String) declared.get(j), i);
+				}
+			}
+		}
+
+		// references[i] holds the indices of the units that unit i refers to
+		int[][] references = new int[length][];
+		for (int i = 0; i < length; i++) {
+			references[i] = findReferences(contents[i], declaringUnits, packages, i);
+			contents[i] = null;
+		}
+
+		// fill the batches with the cycles in dependency order, a batch never refers to a later one
+		int[][] components = findComponents(references);
+		List chunks = new ArrayList();
+		List current = new ArrayList();
+		for (int c = 0; c < components.length; c++) {
+			int[] component = components[c];
+			if (!current.isEmpty() && current.size() + component.length > maxAtOnce) {
+				chunks.add(current);
+				current = new ArrayList();
+			}
+			for (int i = 0; i < component.length; i++) {
+				current.add(units[component[i]]);
+			}
+		}
+		chunks.add(current);
+		if (chunks.size() == 1) {
+			return null;
+		}
+
+		SourceFile[][] result = new SourceFile[chunks.size()][];
+		for (int c = 0; c < result.length; c++) {
+			List chunk = (List) chunks.get(c);
+			result[c] = (SourceFile[]) chunk.toArray(new SourceFile[chunk.size()]);
+			int largest;
+			while ((largest = largestChunk.get()) < result[c].length && !largestChunk.compareAndSet(largest, result[c].length)) {
+				// retry
+			}
+		}
+		chunkCount.addAndGet(result.length);
+		return result;
+	}
+
+	/**
+	 * @return the total number of batches that builds have been split into
+	 */
+	public static int getChunkCount() {
+		return chunkCount.get();
+	}
+
+	/**
+	 * @return the number of units in the largest batch handed out
+	 */
+	public static int getLargestChunkSize() {
+		return largestChunk.get();
+	}
+
+	public static void resetStatistics() {
+		chunkCount.set(0);
+		largestChunk.set(0);
+	}
+
+	private static void addDeclaration(Map declaringUnits, String simpleName, int unit) {
+		List declaring = (List) declaringUnits.get(simpleName);
+		if (declaring == null) {
+			declaring = new ArrayList(1);
+			declaringUnits.put(simpleName, declaring);
+		}
+		Integer index = new Integer(unit);
+		if (!declaring.contains(index)) {
+			declaring.add(index);
+		}
+	}
+
+	/**
+	 * Finds the identifiers that follow a type declaring keyword. Something like <code>Foo.class</code> followed by an
+	 * identifier may be mistaken for a declaration, which is harmless.
+	 */
+	static List findDeclaredTypes(char[] contents) {
+		List declared = new ArrayList();
+		boolean expectName = false;
+		int i = 0, n = contents.length;
+		while (i < n) {
+			char c = contents[i];
+			if (Character.isJavaIdentifierStart(c)) {
+				int start = i;
+				while (i < n && Character.isJavaIdentifierPart(contents[i])) {
+					i++;
+				}
+				String identifier = new String(contents, start, i - start);
+				if (expectName) {
+					declared.add(identifier);
+					expectName = false;
+				} else {
+					expectName = isTypeKeyword(identifier);
+				}
+			} else {
+				if (!Character.isWhitespace(c)) {
+					expectName = false;
+				}
+				i++;
+			}
+		}
+		return declared;
+	}
+
+	private static boolean isTypeKeyword(String identifier) {
+		for (int i = 0; i < TYPE_KEYWORDS.length; i++) {
+			if (TYPE_KEYWORDS[i].equals(identifier)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the dotted names in the contents in the order they appear, such as <code>a.b.C</code> or
+	 *         <code>a.b.*</code>
+	 */
+	static List findNames(char[] contents) {
+		List names = new ArrayList();
+		int i = 0, n = contents.length;
+		while (i < n) {
+			if (Character.isJavaIdentifierStart(contents[i])) {
+				int start = i;
+				while (true) {
+					while (i < n && Character.isJavaIdentifierPart(contents[i])) {
+						i++;
+					}
+					if (i + 1 < n && contents[i] == '.' && Character.isJavaIdentifierStart(contents[i + 1])) {
+						i++;
+					} else {
+						if (i + 1 < n && contents[i] == '.' && contents[i + 1] == '*') {
+							i += 2;
+						}
+						break;
+					}
+				}
+				names.add(new String(contents, start, i - start));
+			} else {
+				i++;
+			}
+		}
+		return names;
+	}
+
+	private static int[] findReferences(char[] contents, Map declaringUnits, String[] packages, int self) {
+		List names = findNames(contents);
+		Imports imports = new Imports(packages[self], names);
+		Set seenNames = new HashSet();
+		Set referenced = new HashSet();
+		for (int k = 0, n = names.size(); k < n; k++) {
+			String name = (String) names.get(k);
+			if (!seenNames.add(name)) {
+				continue;
+			}
+			// every part of a.b.C may be a type, qualified by the parts before it
+			String qualifier = null;
+			int start = 0;
+			while (start < name.length()) {
+				int end = name.indexOf('.', start);
+				if (end == -1) {
+					end = name.length();
+				}
+				String simpleName = name.substring(start, end);
+				List declaring = (List) declaringUnits.get(simpleName);
+				if (declaring != null) {
+					for (int d = 0, size = declaring.size(); d < size; d++) {
+						Integer unit = (Integer) declaring.get(d);
+						if (imports.canSee(packages[unit.intValue()], simpleName, qualifier)) {
+							referenced.add(unit);
+						}
+					}
+				}
+				String aliased = imports.getAliased(simpleName);
+				if (aliased != null) {
+					int dot = aliased.lastIndexOf('.');
+					String aliasedPackage = dot == -1 ? "" : aliased.substring(0, dot); //$NON-NLS-1$
+					declaring = (List) declaringUnits.get(aliased.substring(dot + 1));
+					if (declaring != null) {
+						for (int d = 0, size = declaring.size(); d < size; d++) {
+							Integer unit = (Integer) declaring.get(d);
+							if (packages[unit.intValue()].equals(aliasedPackage)) {
+								referenced.add(unit);
+							}
+						}
+					}
+				}
+				qualifier = qualifier == null ? simpleName : qualifier + '.' + simpleName;
+				start = end + 1;
+			}
+		}
+		referenced.remove(new Integer(self));
+		int[] result = new int[referenced.size()];
+		int r = 0;
+		for (Iterator iter = referenced.iterator(); iter.hasNext();) {
+			result[r++] = ((Integer) iter.next()).intValue();
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * The package and the imports of a unit, which decide the types that a simple name in the unit can denote.
+	 */
+	private static class Imports {
+
+		private final String packageName;
+		private final Set onDemand = new HashSet();
+		private final Set singleTypes = new HashSet();
+		private final Map aliases = new HashMap();
+
+		Imports(String packageName, List names) {
+			this.packageName = packageName;
+			for (int k = 0, n = names.size(); k < n; k++) {
+				if (!"import".equals(names.get(k)) || k + 1 == n) { //$NON-NLS-1$
+					continue;
+				}
+				int m = k + 1;
+				if ("static".equals(names.get(m)) && m + 1 < n) { //$NON-NLS-1$
+					m += 1;
+				}
+				String imported = (String) names.get(m);
+				if (imported.endsWith(".*")) { //$NON-NLS-1$
+					imported = imported.substring(0, imported.length() - 2);
+					onDemand.add(imported);
+				} else if (m + 2 < n && "as".equals(names.get(m + 1))) { //$NON-NLS-1$
+					aliases.put(names.get(m + 2), imported);
+				}
+				// the type itself, or the type that declares a static member or a member type
+				singleTypes.add(imported);
+				int dot = imported.lastIndexOf('.');
+				if (dot != -1) {
+					singleTypes.add(imported.substring(0, dot));
+				}
+			}
+		}
+
+		/**
+		 * @return true if the simple name, written after the given qualifier (or null), may denote the type of that name
+		 *         in the given package
+		 */
+		boolean canSee(String typePackage, String simpleName, String qualifier) {
+			return typePackage.equals(packageName) || typePackage.equals(qualifier) || onDemand.contains(typePackage)
+					|| singleTypes.contains(typePackage.length() == 0 ? simpleName : typePackage + '.' + simpleName);
+		}
+
+		/**
+		 * @return the qualified name of the type imported as the given alias, or null
+		 */
+		String getAliased(String simpleName) {
+			return (String) aliases.get(simpleName);
+		}
+	}
+
+	/**
+	 * Finds the strongly connected components of the reference graph with Tarjan's algorithm, without recursion so that
+	 * long chains of references cannot overflow the stack.
+	 *
+	 * @return the components, each made of the indices of its units in ascending order, and each listed after all the
+	 *         components that it refers to
+	 */
+	static int[][] findComponents(int[][] references) {
+		int n = references.length;
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		int[] lowLink = new int[n];
+		int[] nextEdge = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] path = new int[n];
+		int pathSize = 0;
+		int counter = 0;
+		List components = new ArrayList();
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			index[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			path[pathSize++] = root;
+			while (pathSize > 0) {
+				int v = path[pathSize - 1];
+				if (nextEdge[v] < references[v].length) {
+					int w = references[v][nextEdge[v]++];
+					if (index[w] == -1) {
+						index[w] = lowLink[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						path[pathSize++] = w;
+					} else if (onStack[w] && index[w] < lowLink[v]) {
+						lowLink[v] = index[w];
+					}
+					continue;
+				}
+				pathSize -= 1;
+				if (pathSize > 0 && lowLink[v] < lowLink[path[pathSize - 1]]) {
+					lowLink[path[pathSize - 1]] = lowLink[v];
+				}
+				if (lowLink[v] == index[v]) {
+					int start = stackSize;
+					do {
+						start -= 1;
+						onStack[stack[start]] = false;
+					} while (stack[start] != v);
+					int[] component = new int[stackSize - start];
+					System.arraycopy(stack, start, component, 0, component.length);
+					Arrays.sort(component);
+					components.add(component);
+					stackSize = start;
+				}
+			}
+		}
+		return (int[][]) components.toArray(new int[components.size()][]);
+	}
+}
@@ -1012,6 +1012,9 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 	// GROOVY start
 	boolean isInterestingProject = LanguageSupportFactory.isInterestingProject(javaProject.getProject());
 	Set alreadyMatched = new HashSet();
+	if (isInterestingProject) {
+		LanguageSupportFactory.prepareDelegatedSearch(possibleMatches, start, length, this.pattern, this.progressMonitor);
+	}
 	// GROOVY end
 
 	
@@ -1083,6 +1086,12 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 		}
 	} catch (AbortCompilation e) {
 		bindingsWereCreated = false;
+	// GROOVY start
+	} finally {
+		if (isInterestingProject) {
+			LanguageSupportFactory.finishDelegatedSearch();
+		}
+	// GROOVY end
 	}
 
 	if (!mustResolve) {
@@ -12,6 +12,7 @@
 package org.codehaus.jdt.groovy.integration;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.JavaCore;
@@ -100,6 +101,15 @@ public class LanguageSupportFactory {
 		return getLanguageSupport().maybePerformDelegatedSearch(possibleMatch, pattern, requestor);
 	}
 	
+	public static void prepareDelegatedSearch(PossibleMatch[] possibleMatches, int start, int length, SearchPattern pattern,
+			IProgressMonitor monitor) {
+		getLanguageSupport().prepareDelegatedSearch(possibleMatches, start, length, pattern, monitor);
+	}
+	
+	public static void finishDelegatedSearch() {
+		getLanguageSupport().finishDelegatedSearch();
+	}
+	
 	/**
 	 * Removes members from this binary type that are not mapped to locations in the 
 	 * source code (ie- their source location is invalid).  This ensures that 
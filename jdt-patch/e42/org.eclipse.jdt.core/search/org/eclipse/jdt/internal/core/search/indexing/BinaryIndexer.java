@@ -10,9 +10,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.search.indexing;
 
-import java.util.Iterator;
-import java.util.List;
-
+import org.codehaus.jdt.groovy.integration.ISupplementalIndexer;
 import org.codehaus.jdt.groovy.integration.LanguageSupportFactory;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jdt.core.Signature;
@@ -801,17 +799,17 @@ public class BinaryIndexer extends AbstractIndexer implements SuffixConstants {
 			// TODO would be nice to check for an "interesting project" here, but don't have access to that
 			char[] sourceFileName = reader.sourceFileName();
 			if (sourceFileName!= null && LanguageSupportFactory.isInterestingSourceFile(String.valueOf(sourceFileName))) {
-				List references = LanguageSupportFactory.getSupplementalIndexer().extractNamedReferences(contents, reader);
-				for (Iterator iterator = references.iterator(); iterator.hasNext();) {
-					char[] reference = (char[]) iterator.next();
-					addNameReference(reference);
-					addMethodReference(reference, 0);
-					addMethodReference(reference, 1);
-					addMethodReference(reference, 2);
-					addMethodReference(reference, 3);
-					addMethodReference(reference, 4);
-					addMethodReference(reference, 5);
-				}
+				LanguageSupportFactory.getSupplementalIndexer().extractNamedReferences(contents, reader, new ISupplementalIndexer.IReferenceRequestor() {
+					public void acceptReference(char[] reference) {
+						addNameReference(reference);
+						addMethodReference(reference, 0);
+						addMethodReference(reference, 1);
+						addMethodReference(reference, 2);
+						addMethodReference(reference, 3);
+						addMethodReference(reference, 4);
+						addMethodReference(reference, 5);
+					}
+				});
 			}
 			// GROOVY end
 			
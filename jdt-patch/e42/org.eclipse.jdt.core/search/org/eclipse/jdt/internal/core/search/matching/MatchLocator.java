@@ -1071,6 +1071,9 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 	// GROOVY start
 	boolean isInterestingProject = LanguageSupportFactory.isInterestingProject(javaProject.getProject());
 	Set alreadyMatched = new HashSet();
+	if (isInterestingProject) {
+		LanguageSupportFactory.prepareDelegatedSearch(possibleMatches, start, length, this.pattern, this.progressMonitor);
+	}
 	// GROOVY end
 
 	
@@ -1153,6 +1156,12 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 		}
 	} catch (AbortCompilation e) {
 		bindingsWereCreated = false;
+	// GROOVY start
+	} finally {
+		if (isInterestingProject) {
+			LanguageSupportFactory.finishDelegatedSearch();
+		}
+	// GROOVY end
 	}
 
 	if (!mustResolve) {
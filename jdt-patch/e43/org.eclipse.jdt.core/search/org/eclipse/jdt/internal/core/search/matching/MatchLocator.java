@@ -1073,6 +1073,9 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 	// GROOVY start
 	boolean isInterestingProject = LanguageSupportFactory.isInterestingProject(javaProject.getProject());
 	Set alreadyMatched = new HashSet();
+	if (isInterestingProject) {
+		LanguageSupportFactory.prepareDelegatedSearch(possibleMatches, start, length, this.pattern, this.progressMonitor);
+	}
 	// GROOVY end
 
 	
@@ -1144,6 +1147,12 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 		}
 	} catch (AbortCompilation e) {
 		bindingsWereCreated = false;
+	// GROOVY start
+	} finally {
+		if (isInterestingProject) {
+			LanguageSupportFactory.finishDelegatedSearch();
+		}
+	// GROOVY end
 	}
 
 	if (!mustResolve) {
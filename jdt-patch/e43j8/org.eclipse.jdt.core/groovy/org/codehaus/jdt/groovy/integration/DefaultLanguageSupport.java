@@ -113,6 +113,15 @@ class DefaultLanguageSupport implements LanguageSupport {
 		return false;
 	}
 
+	public void prepareDelegatedSearch(PossibleMatch[] possibleMatches, int start, int length, SearchPattern pattern,
+			IProgressMonitor monitor) {
+		// nothing to prepare
+	}
+
+	public void finishDelegatedSearch() {
+		// nothing to release
+	}
+
 	public EventHandler getEventHandler() {
 		return DefaultEventHandler.instance;
 	}
@@ -10,8 +10,6 @@
  *******************************************************************************/
 package org.codehaus.jdt.groovy.integration;
 
-import java.util.List;
-
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 
 /**
@@ -21,12 +19,23 @@ import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
  */
 public interface ISupplementalIndexer {
 
+	/**
+	 * Receives the extra things to add to the index
+	 */
+	interface IReferenceRequestor {
+
+		/**
+		 * @param reference a name that the class file refers to. The array is not reused.
+		 */
+		void acceptReference(char[] reference);
+	}
+
 	/**
 	 * Provides supplemental indexing for a class file
 	 * @param contents The byte contents of the classfile
 	 * @param reader a reader for the class file
-	 * @return a char[] list of extra things to add to the index
+	 * @param requestor receives the extra things to add to the index, each one once
 	 */
-	List extractNamedReferences(byte[] contents, ClassFileReader reader);
+	void extractNamedReferences(byte[] contents, ClassFileReader reader, IReferenceRequestor requestor);
 
 }
@@ -11,6 +11,7 @@
 package org.eclipse.jdt.internal.core.builder;
 // GROOVY PATCHED
 import org.codehaus.jdt.groovy.integration.LanguageSupportFactory;
+import org.codehaus.jdt.groovy.internal.BuildChunker;
 import org.eclipse.core.runtime.*;
 import org.eclipse.core.resources.*;
 import org.eclipse.jdt.core.*;
@@ -314,12 +315,21 @@ protected void compile(SourceFile[] units) {
 	// GROOVY start
 	// currently can't easily fault in files from the other group.  Easier to
 	// do this than fix that right now.
+	SourceFile[][] groovyChunks = null;
 	if (this.compiler!=null && this.compiler.options!=null && this.compiler.options.buildGroovyFiles==2) {
+		// unless chunking is enabled and finds independent groups, compile everything in one pass
+		if (!this.compiledAllAtOnce && BuildChunker.ENABLED)
+			groovyChunks = BuildChunker.chunk(units, MAX_AT_ONCE);
 		// System.out.println("although more than "+MAX_AT_ONCE+" still compiling "+unitsLength+" files at once");
-		this.compiledAllAtOnce = true;
+		this.compiledAllAtOnce = groovyChunks == null;
 	}
-	// GROOVY end
+	/* old {
 	if (this.compiledAllAtOnce) {
+	} new */
+	if (groovyChunks != null) {
+		compileChunks(groovyChunks);
+	} else if (this.compiledAllAtOnce) {
+	// GROOVY end
 		// do them all now
 		if (JavaBuilder.DEBUG)
 			for (int i = 0; i < unitsLength; i++)
@@ -365,6 +375,43 @@ protected void compile(SourceFile[] units) {
 	}
 }
 
+// GROOVY start
+/* Compile the batches computed by the BuildChunker one after the other. Units of
+* later batches are offered as additional units, like the MAX_AT_ONCE groups.
+*/
+private void compileChunks(SourceFile[][] chunks) {
+	for (int c = 0; c < chunks.length; c++) {
+		boolean compilingFirstGroup = c == 0;
+		SourceFile[] chunk = chunks[c];
+		SourceFile[] toCompile = new SourceFile[chunk.length];
+		int count = 0;
+		for (int i = 0; i < chunk.length; i++) {
+			// Although it needed compiling when this method was called, it may have
+			// already been compiled when it was referenced by another unit.
+			if (compilingFirstGroup || this.workQueue.isWaiting(chunk[i])) {
+				if (JavaBuilder.DEBUG)
+					System.out.println("About to compile chunk #" + c + " : " + chunk[i].typeLocator()); //$NON-NLS-1$ //$NON-NLS-2$
+				toCompile[count++] = chunk[i];
+			}
+		}
+		if (count < chunk.length)
+			System.arraycopy(toCompile, 0, toCompile = new SourceFile[count], 0, count);
+		int remainingLength = 0;
+		for (int r = c + 1; r < chunks.length; r++)
+			remainingLength += chunks[r].length;
+		SourceFile[] remainingUnits = new SourceFile[remainingLength];
+		int index = 0;
+		for (int r = c + 1; r < chunks.length; r++)
+			for (int i = 0; i < chunks[r].length; i++)
+				if (compilingFirstGroup || !this.workQueue.isCompiled(chunks[r][i]))
+					remainingUnits[index++] = chunks[r][i];
+		if (index < remainingLength)
+			System.arraycopy(remainingUnits, 0, remainingUnits = new SourceFile[index], 0, index);
+		compile(toCompile, remainingUnits, compilingFirstGroup);
+	}
+}
+// GROOVY end
+
 protected void compile(SourceFile[] units, SourceFile[] additionalUnits, boolean compilingFirstGroup) {
 	if (units.length == 0) return;
 	this.notifier.aboutToCompile(units[0]); // just to change the message
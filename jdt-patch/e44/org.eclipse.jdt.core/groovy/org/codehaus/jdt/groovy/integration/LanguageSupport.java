@@ -113,6 +113,24 @@ public interface LanguageSupport {
 	 */
 	boolean maybePerformDelegatedSearch(PossibleMatch possibleMatch, SearchPattern pattern, SearchRequestor requestor);
 
+	/**
+	 * Called before {@link #maybePerformDelegatedSearch(PossibleMatch, SearchPattern, SearchRequestor)} is called for each of the
+	 * given possible matches, so that they may be searched ahead of time, for example in parallel.
+	 * @param possibleMatches the possible matches that are about to be searched
+	 * @param start the first possible match to search
+	 * @param length the number of possible matches to search
+	 * @param pattern
+	 * @param monitor the monitor of the search, may be null
+	 */
+	void prepareDelegatedSearch(PossibleMatch[] possibleMatches, int start, int length, SearchPattern pattern, IProgressMonitor monitor);
+
+	/**
+	 * Called once the possible matches given to
+	 * {@link #prepareDelegatedSearch(PossibleMatch[], int, int, SearchPattern, IProgressMonitor)} have been searched, or the
+	 * search has stopped early, so that whatever was prepared for them can be released.
+	 */
+	void finishDelegatedSearch();
+
 	EventHandler getEventHandler();
 
 	void filterNonSourceMembers(BinaryType binaryType);
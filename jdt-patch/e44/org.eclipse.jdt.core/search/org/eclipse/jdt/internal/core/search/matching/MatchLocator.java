@@ -1091,6 +1091,9 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 	// GROOVY start
 	boolean isInterestingProject = LanguageSupportFactory.isInterestingProject(javaProject.getProject());
 	Set alreadyMatched = new HashSet();
+	if (isInterestingProject) {
+		LanguageSupportFactory.prepareDelegatedSearch(possibleMatches, start, length, this.pattern, this.progressMonitor);
+	}
 	// GROOVY end
 	
 	// create and resolve binding (equivalent to beginCompilation() in Compiler)
@@ -1165,6 +1168,12 @@ protected void locateMatches(JavaProject javaProject, PossibleMatch[] possibleMa
 		}
 	} catch (AbortCompilation e) {
 		bindingsWereCreated = false;
+	// GROOVY start
+	} finally {
+		if (isInterestingProject) {
+			LanguageSupportFactory.finishDelegatedSearch();
+		}
+	// GROOVY end
 	}
 
 	if (!mustResolve) {
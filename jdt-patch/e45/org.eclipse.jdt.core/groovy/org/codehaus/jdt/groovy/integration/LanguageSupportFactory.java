@@ -110,6 +110,15 @@ public class LanguageSupportFactory {
 		return getLanguageSupport().maybePerformDelegatedSearch(possibleMatch, pattern, requestor);
 	}
 	
+	public static void prepareDelegatedSearch(PossibleMatch[] possibleMatches, int start, int length, SearchPattern pattern,
+			IProgressMonitor monitor) {
+		getLanguageSupport().prepareDelegatedSearch(possibleMatches, start, length, pattern, monitor);
+	}
+	
+	public static void finishDelegatedSearch() {
+		getLanguageSupport().finishDelegatedSearch();
+	}
+	
 	/**
 	 * Removes members from this binary type that are not mapped to locations in the 
 	 * source code (ie- their source location is invalid).  This ensures that 
@@ -10,9 +10,6 @@
  *******************************************************************************/
 package org.codehaus.jdt.groovy.integration;
 
-import java.util.Collections;
-import java.util.List;
-
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 
 /**
@@ -24,10 +21,10 @@ import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 public class NoopIndexer implements ISupplementalIndexer {
 
 	/**
-	 * @return an empty list
+	 * Adds nothing
 	 */
-	public List extractNamedReferences(byte[] contents, ClassFileReader reader) {
-		return Collections.EMPTY_LIST;
+	public void extractNamedReferences(byte[] contents, ClassFileReader reader, IReferenceRequestor requestor) {
+		// nothing to add
 	}
 
 }